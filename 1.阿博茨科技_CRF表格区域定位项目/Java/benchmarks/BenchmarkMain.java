@@ -0,0 +1,110 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基准测试入口。
+ * <p>
+ * 运行: {@code BenchmarkMain [jmh 参数...]}, 默认开启 {@code -prof gc} 并把结果以 JSON 格式写到
+ * {@code results/<name>.json}, name 取系统属性 {@code benchmark.name}, 默认为当前时间戳;
+ * 建议用 git 的提交号作为 name, 方便在不同提交之间对比。
+ * <p>
+ * 对比: {@code BenchmarkMain compare results/old.json results/new.json}, 输出每个基准的耗时和每次操作分配内存的变化。
+ */
+public class BenchmarkMain {
+
+    // 旧版本 JMH 的 profiler 指标名带有前缀 "·"
+    private static final String[] ALLOC_NORM_KEYS = {"gc.alloc.rate.norm", "\u00b7gc.alloc.rate.norm"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && "compare".equals(args[0])) {
+            compare(new File(args[1]), new File(args[2]));
+            return;
+        }
+        String name = System.getProperty("benchmark.name", String.valueOf(System.currentTimeMillis()));
+        File resultFile = new File("results", name + ".json");
+        if (!resultFile.getParentFile().exists() && !resultFile.getParentFile().mkdirs()) {
+            throw new IOException("Can't create result directory: " + resultFile.getParent());
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.getPath());
+        new Runner(builder.build()).run();
+    }
+
+    private static void compare(File baseFile, File currentFile) throws IOException {
+        Map<String, JsonObject> base = loadResults(baseFile);
+        Map<String, JsonObject> current = loadResults(currentFile);
+        System.out.printf("%-60s %14s %14s %8s %14s %14s%n",
+                "Benchmark", "base", "current", "diff", "base B/op", "current B/op");
+        for (Map.Entry<String, JsonObject> entry : current.entrySet()) {
+            JsonObject now = entry.getValue();
+            JsonObject before = base.get(entry.getKey());
+            double score = primaryScore(now);
+            double alloc = allocPerOp(now);
+            if (before == null) {
+                System.out.printf("%-60s %14s %14.3f %8s %14s %14.0f%n", entry.getKey(), "-", score, "new", "-", alloc);
+                continue;
+            }
+            double baseScore = primaryScore(before);
+            double diff = baseScore != 0 ? (score - baseScore) / baseScore * 100 : 0;
+            System.out.printf("%-60s %14.3f %14.3f %+7.1f%% %14.0f %14.0f%n",
+                    entry.getKey(), baseScore, score, diff, allocPerOp(before), alloc);
+        }
+    }
+
+    private static Map<String, JsonObject> loadResults(File file) throws IOException {
+        Map<String, JsonObject> results = new LinkedHashMap<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            JsonArray array = new JsonParser().parse(reader).getAsJsonArray();
+            for (JsonElement element : array) {
+                JsonObject result = element.getAsJsonObject();
+                StringBuilder key = new StringBuilder(result.get("benchmark").getAsString());
+                if (result.has("params")) {
+                    for (Map.Entry<String, JsonElement> param : result.getAsJsonObject("params").entrySet()) {
+                        key.append(':').append(param.getKey()).append('=').append(param.getValue().getAsString());
+                    }
+                }
+                results.put(key.toString(), result);
+            }
+        }
+        return results;
+    }
+
+    private static double primaryScore(JsonObject result) {
+        return result.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+    }
+
+    private static double allocPerOp(JsonObject result) {
+        JsonObject secondary = result.getAsJsonObject("secondaryMetrics");
+        if (secondary == null) {
+            return Double.NaN;
+        }
+        for (String key : ALLOC_NORM_KEYS) {
+            if (secondary.has(key)) {
+                return secondary.getAsJsonObject(key).get("score").getAsDouble();
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,89 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.model.CellMergeNLP;
+import com.abcft.pdfextract.core.model.TensorflowManager;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.tensorflow.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单元格合并模型每 1000 对单元格的耗时, 对比字符串输入 ({@code string}) 和 Java 中转换好的字符 id 输入 ({@code ids})。
+ * <p>
+ * 需要配置好支持字符 id 输入的 {@link TensorflowManager#CELL_MERGE} 模型, 否则跳过。
+ * Trial 开始前会检查两种输入得到的 score 和 class 完全一致。单元格文本由程序按固定的随机种子生成。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CellMergeBenchmark {
+
+    private static final String[] WORDS = {
+            "营业收入", "营业成本", "净利润", "归属于母公司", "所有者权益", "资产总计", "负债", "合计",
+            "其中:", "(元)", "同比增长", "%", "2017年", "2018E", "一季度", "Q3", "EPS", "PE", "-", "—",
+    };
+
+    @Param({"1000"})
+    public int pairs;
+
+    @Param({"string", "ids"})
+    public String input;
+
+    @Param({"128"})
+    public int batchSize;
+
+    private final List<List<Pair<String, String>>> batches = new ArrayList<>();
+    private Session session;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (!TensorflowManager.INSTANCE.isModelAvailable(TensorflowManager.CELL_MERGE)
+                || !CellMergeNLP.isIdInputSupported()) {
+            throw new IllegalStateException("Cell merge model with id input isn't configured, skip");
+        }
+        session = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.CELL_MERGE).session();
+
+        Random random = new Random(42);
+        List<Pair<String, String>> rowCells = new ArrayList<>(pairs);
+        for (int i = 0; i < pairs; i++) {
+            rowCells.add(Pair.of(randomCell(random), randomCell(random)));
+        }
+        for (int i = 0; i < pairs; i += batchSize) {
+            batches.add(rowCells.subList(i, Math.min(pairs, i + batchSize)));
+        }
+
+        for (List<Pair<String, String>> batch : batches) {
+            List<Pair<Float, Long>> expected = CellMergeNLP.runBatch(session, batch, false);
+            List<Pair<Float, Long>> actual = CellMergeNLP.runBatch(session, batch, true);
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Scores mismatch between string and id input: " + batch);
+            }
+        }
+    }
+
+    private static String randomCell(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int words = random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (words == 0 || random.nextBoolean()) {
+            sb.append(String.format("%,.2f", random.nextDouble() * 100000));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public Object predict() {
+        boolean useIds = "ids".equals(input);
+        List<Pair<Float, Long>> results = null;
+        for (List<Pair<String, String>> batch : batches) {
+            results = CellMergeNLP.runBatch(session, batch, useIds);
+        }
+        return results;
+    }
+}
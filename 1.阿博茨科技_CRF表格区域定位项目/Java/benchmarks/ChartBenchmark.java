@@ -0,0 +1,45 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.chart.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 矢量图表解析的基准测试。
+ * <p>
+ * {@code ChartContentDetector.detectChart} 是包内方法, 这里通过 {@link ChartExtractor#processPage} 调用,
+ * 页面的 ContentGroup 已经在 {@link PdfFixture} 里缓存好, 位图检测服务没有配置, 所以耗时基本都在 detectChart 里。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ChartBenchmark {
+
+    private final ChartExtractor extractor = new ChartExtractor();
+    private final List<ChartExtractParameters> params = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) throws Exception {
+        for (PdfFixture.Sample sample : fixture.samples) {
+            params.add(new ChartExtractParameters.Builder()
+                    .setContext(sample.context)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public void detectChart(PdfFixture fixture, Blackhole blackhole) {
+        for (int s = 0; s < fixture.samples.size(); s++) {
+            PdfFixture.Sample sample = fixture.samples.get(s);
+            ChartExtractionResult result = new ChartExtractionResult();
+            for (int i = 0; i < sample.pages.size(); i++) {
+                extractor.processPage(sample.document.getDocument(), i, sample.pages.get(i), params.get(s), result, NoopCallbacks.CHART);
+            }
+            blackhole.consume(result.getItems());
+        }
+    }
+}
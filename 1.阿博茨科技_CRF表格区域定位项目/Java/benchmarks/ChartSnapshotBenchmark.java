@@ -0,0 +1,109 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.ContentGroupImageDrawer;
+import com.abcft.pdfextract.core.model.ContentGroup;
+import com.abcft.pdfextract.core.model.ContentGroupDrawable;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 页面中小区域的快照 ({@link ContentGroupImageDrawer}, 和 ChartUtils.saveChartToImage 相同的绘制方式)。
+ * <p>
+ * 每个页面在中间取一个 {@code width x height} 的区域 (类似页面中的一个小图表) 绘制整个页面的 ContentGroup,
+ * {@code cull} 跳过和区域不相交的路径, {@code all} 重放所有操作。Trial 开始前检查两种方式绘制的像素完全一致。
+ * 使用 -p category=chart 或内容较多的页面。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ChartSnapshotBenchmark {
+
+    private static final float SCALE = 2;
+
+    @Param({"cull", "all"})
+    public String impl;
+
+    @Param({"200"})
+    public int width;
+
+    @Param({"150"})
+    public int height;
+
+    private final List<PDPage> pages = new ArrayList<>();
+    private final List<ContentGroupDrawable> drawables = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) throws IOException {
+        for (PdfFixture.Sample sample : fixture.samples) {
+            for (int i = 0; i < sample.pages.size(); i++) {
+                PDPage page = sample.pages.get(i);
+                PDRectangle cropBox = page.getCropBox();
+                Rectangle2D area = new Rectangle2D.Double(
+                        cropBox.getLowerLeftX() + (cropBox.getWidth() - width) / 2,
+                        cropBox.getLowerLeftY() + (cropBox.getHeight() - height) / 2,
+                        width, height);
+                ContentGroup contentGroup = sample.contentGroups.get(i);
+                pages.add(page);
+                drawables.add(new ContentGroupDrawable() {
+                    @Override
+                    public ContentGroup getContentGroup() {
+                        return contentGroup;
+                    }
+
+                    @Override
+                    public Rectangle2D getDrawArea() {
+                        return area;
+                    }
+                });
+            }
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            int[] expected = pixels(render(pages.get(i), drawables.get(i), false));
+            int[] actual = pixels(render(pages.get(i), drawables.get(i), true));
+            if (!Arrays.equals(expected, actual)) {
+                throw new IllegalStateException("Snapshot mismatch on page " + i);
+            }
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static BufferedImage render(PDPage page, ContentGroupDrawable drawable, boolean cull) throws IOException {
+        Rectangle2D area = drawable.getDrawArea();
+        int widthPx = (int) Math.round(area.getWidth() * SCALE);
+        int heightPx = (int) Math.round(area.getHeight() * SCALE);
+        int rotation = page.getRotation();
+        BufferedImage image = rotation == 90 || rotation == 270
+                ? new BufferedImage(heightPx, widthPx, BufferedImage.TYPE_INT_RGB)
+                : new BufferedImage(widthPx, heightPx, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setBackground(Color.WHITE);
+        graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
+        ContentGroupImageDrawer drawer = new ContentGroupImageDrawer(page, drawable);
+        drawer.setCullPaths(cull);
+        drawer.renderToGraphics(graphics, SCALE);
+        graphics.dispose();
+        return image;
+    }
+
+    @Benchmark
+    public void snapshot(Blackhole blackhole) throws IOException {
+        boolean cull = "cull".equals(impl);
+        for (int i = 0; i < pages.size(); i++) {
+            blackhole.consume(render(pages.get(i), drawables.get(i), cull));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
+import com.abcft.pdfextract.core.chart.DetectEngine;
+import com.abcft.pdfextract.core.chart.TFDetectChartType;
+import com.abcft.pdfextract.core.chart.TFModelConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地 Chart 类型分类模型 ({@link TFDetectChartType}) 对一组位图的分类耗时。
+ * <p>
+ * 每个页面渲染后切成 {@code grid} x {@code grid} 个子图, 模拟一个文档中的候选 Chart, 每次调用分类所有子图。
+ * {@code batch}: {@link TFDetectChartType#classifyImages} 在 Java 中缩放并按批次推理;
+ * {@code single}: 逐个调用 {@link TFDetectChartType#classifyImage}, 由模型内部缩放。
+ * Trial 开始前检查两种方式每个子图概率最大的类型一致, 需要用 export_chart_classify.py 重新导出的 image_classify.pb,
+ * 使用 -p category=chart。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ChartTypeBenchmark {
+
+    @Param({"batch", "single"})
+    public String impl;
+
+    @Param({"2"})
+    public int grid;
+
+    private static final float PROB_THRESHOLD = 0.65f;
+
+    private final List<BufferedImage> images = new ArrayList<>();
+    private TFDetectChartType model;
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        if (!TFModelConfig.getInstance().isDCTConfigValid()) {
+            throw new IllegalStateException("Chart type model isn't configured, skip");
+        }
+        model = TFDetectChartType.getInstance();
+        if (!model.isBatchInputSupported()) {
+            throw new IllegalStateException("Chart type model doesn't support batch input");
+        }
+        for (PdfFixture.Sample sample : fixture.samples) {
+            for (int i = 0; i < sample.pages.size(); i++) {
+                BufferedImage page = DetectEngine.getOneShutPageImage(sample.document.getDocument(), i, 72);
+                if (page == null) {
+                    continue;
+                }
+                int w = page.getWidth() / grid;
+                int h = page.getHeight() / grid;
+                for (int y = 0; y < grid; y++) {
+                    for (int x = 0; x < grid; x++) {
+                        images.add(page.getSubimage(x * w, y * h, w, h));
+                    }
+                }
+            }
+        }
+
+        List<List<ImageClassification>> batched = model.classifyImages(images, PROB_THRESHOLD);
+        for (int i = 0; i < images.size(); i++) {
+            int expected = bestType(model.classifyImage(images.get(i), PROB_THRESHOLD));
+            int actual = bestType(batched.get(i));
+            if (expected != actual) {
+                throw new IllegalStateException("Chart type mismatch on image " + i + ": " + expected + " vs " + actual);
+            }
+        }
+    }
+
+    private static int bestType(List<ImageClassification> classifications) {
+        if (classifications == null || classifications.isEmpty()) {
+            return -1;
+        }
+        ImageClassification best = classifications.get(0);
+        for (ImageClassification classification : classifications) {
+            if (classification.score > best.score) {
+                best = classification;
+            }
+        }
+        return best.type;
+    }
+
+    @Benchmark
+    public void classify(Blackhole blackhole) {
+        if ("batch".equals(impl)) {
+            blackhole.consume(model.classifyImages(images, PROB_THRESHOLD));
+            return;
+        }
+        for (BufferedImage image : images) {
+            blackhole.consume(model.classifyImage(image, PROB_THRESHOLD));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n%s: %d images%n", impl, images.size());
+    }
+}
@@ -0,0 +1,73 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.ContentGroupRenderer;
+import com.abcft.pdfextract.core.content.Page;
+import com.abcft.pdfextract.core.content.ParagraphMerger;
+import com.abcft.pdfextract.core.content.TextChunkMerger;
+import com.abcft.pdfextract.core.model.ContentGroup;
+import com.abcft.pdfextract.core.model.TextChunk;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 正文相关热点的基准测试: 页面内容解析 ({@link ContentGroupRenderer#processPage}), 文字块合并和段落合并。
+ * <p>
+ * 文字块合并按页面调用, 和页眉页脚检测、正文解析中的用法一致; 密集的财务报表页面放在 ruled/gridless 类别中。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ContentBenchmark {
+
+    private final List<Page.TextGroup> textGroups = new ArrayList<>();
+    private final List<List<TextChunk>> pageTextChunks = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        for (PdfFixture.Sample sample : fixture.samples) {
+            for (ContentGroup contentGroup : sample.contentGroups) {
+                if (contentGroup == null) {
+                    continue;
+                }
+                List<TextChunk> textChunks = contentGroup.getAllTextChunks();
+                if (textChunks.isEmpty()) {
+                    continue;
+                }
+                pageTextChunks.add(textChunks);
+                Page.TextGroup textGroup = new Page.TextGroup(textChunks.get(0));
+                textGroup.addTexts(textChunks);
+                textGroups.add(textGroup);
+            }
+        }
+    }
+
+    @Benchmark
+    public void processPage(PdfFixture fixture, Blackhole blackhole) throws Exception {
+        for (PdfFixture.Sample sample : fixture.samples) {
+            ContentGroupRenderer renderer = new ContentGroupRenderer(sample.document.getDocument());
+            for (PDPage page : sample.pages) {
+                blackhole.consume(renderer.processPage(page, Collections.emptyMap()));
+            }
+        }
+    }
+
+    @Benchmark
+    public void textChunkMerger(Blackhole blackhole) {
+        for (List<TextChunk> textChunks : pageTextChunks) {
+            blackhole.consume(new TextChunkMerger().merge(textChunks));
+        }
+    }
+
+    @Benchmark
+    public void paragraphMerger(Blackhole blackhole) {
+        for (Page.TextGroup textGroup : textGroups) {
+            blackhole.consume(ParagraphMerger.merge(textGroup));
+        }
+    }
+}
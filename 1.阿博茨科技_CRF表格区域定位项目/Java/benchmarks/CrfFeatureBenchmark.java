@@ -0,0 +1,73 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.content.Page;
+import com.abcft.pdfextract.core.model.Rectangle;
+import com.abcft.pdfextract.core.model.TensorflowManager;
+import com.abcft.pdfextract.core.table.ContentGroupPage;
+import com.abcft.pdfextract.core.table.TableExtractParameters;
+import com.abcft.pdfextract.core.util.LineFeatures;
+import com.abcft.pdfextract.core.util.TrainDataWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRF 表格区域模型 ({@link TensorflowManager#LINE_CRF_TABLE}) 每个页面的预测耗时, 包括输入的构造。
+ * <p>
+ * {@code example}: 构造并序列化 tf.Example; {@code dense}: {@link LineFeatures} 直接写入行特征。
+ * 每页的耗时和分配是结果除以结束时打印的页数, 分配看 -prof gc 的 gc.alloc.rate.norm。
+ * Trial 开始前检查两种输入预测的 tag 完全一致, 需要重新导出的 line-crf-table 模型。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CrfFeatureBenchmark {
+
+    @Param({"example", "dense"})
+    public String input;
+
+    private final List<List<TrainDataWriter.LineInfo>> pageLines = new ArrayList<>();
+    private boolean dense;
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        if (LineFeatures.forModel(TensorflowManager.LINE_CRF_TABLE) == null) {
+            throw new IllegalStateException("Model " + TensorflowManager.LINE_CRF_TABLE + " doesn't support dense input");
+        }
+        dense = "dense".equals(input);
+        List<ContentGroupPage> pages = fixture.buildTablePages(new TableExtractParameters.Builder().setLayoutAnalysis(true));
+        for (ContentGroupPage page : pages) {
+            List<TrainDataWriter.LineInfo> lineInfos = new ArrayList<>();
+            for (Rectangle rc : page.getTableLayoutAnalysis()) {
+                Page.TextGroup textGroup = new Page.TextGroup(rc);
+                textGroup.addTexts(page.getMutableTextChunks(rc));
+                lineInfos.addAll(TrainDataWriter.buildLineInfosForLayout(page, null, textGroup));
+            }
+            if (lineInfos.isEmpty()) {
+                continue;
+            }
+            int[] expected = LineFeatures.runCrfTags(TensorflowManager.LINE_CRF_TABLE, lineInfos, false);
+            int[] actual = LineFeatures.runCrfTags(TensorflowManager.LINE_CRF_TABLE, lineInfos, true);
+            if (!Arrays.equals(expected, actual)) {
+                throw new IllegalStateException("CRF tags mismatch on page " + page.getPageNumber());
+            }
+            pageLines.add(lineInfos);
+        }
+    }
+
+    @Benchmark
+    public void crfTags(Blackhole blackhole) {
+        for (List<TrainDataWriter.LineInfo> lineInfos : pageLines) {
+            blackhole.consume(LineFeatures.runCrfTags(TensorflowManager.LINE_CRF_TABLE, lineInfos, dense));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n%s: %d pages%n", input, pageLines.size());
+    }
+}
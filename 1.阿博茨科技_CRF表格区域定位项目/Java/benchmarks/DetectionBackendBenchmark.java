@@ -0,0 +1,75 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.algorithm.DetectionBackend;
+import com.abcft.pdfextract.core.algorithm.LocalDetectionBackend;
+import com.abcft.pdfextract.core.chart.ChartClassify;
+import com.abcft.pdfextract.core.chart.DetectEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 位图 Chart 检测每个页面的耗时 ({@link DetectEngine#detectChartInfos(BufferedImage)}, 包括区域检测和区域分类)。
+ * <p>
+ * {@code stub} 用 {@link StubDetectionBackend} 模拟远程服务 (PNG 编码 + {@code rttMillis} 的往返时间);
+ * {@code local} 用 {@link LocalDetectionBackend} 在进程内运行 TF 模型, 需要配置好 Chart 检测和分类模型,
+ * 否则跳过。页面图片在 Trial 开始前渲染好, 每次调用处理一个页面。
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DetectionBackendBenchmark {
+
+    @Param({"stub", "local"})
+    public String backend;
+
+    @Param({"20"})
+    public long rttMillis;
+
+    private final List<BufferedImage> pageImages = new ArrayList<>();
+    private DetectionBackend detectionBackend;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        if ("local".equals(backend)) {
+            if (!LocalDetectionBackend.isAvailable()) {
+                throw new IllegalStateException("Local chart detection models aren't configured, skip");
+            }
+            detectionBackend = new LocalDetectionBackend();
+        } else {
+            detectionBackend = new StubDetectionBackend(rttMillis, 4);
+        }
+        DetectEngine.setDetectionBackend(detectionBackend);
+        ChartClassify.setClassifyBackend(detectionBackend);
+
+        for (PdfFixture.Sample sample : fixture.samples) {
+            for (int i = 0; i < sample.pages.size(); i++) {
+                BufferedImage image = DetectEngine.getOneShutPageImage(sample.document.getDocument(), i, 72);
+                if (image != null) {
+                    pageImages.add(image);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DetectEngine.setDetectionBackend(null);
+        ChartClassify.setClassifyBackend(null);
+        if (detectionBackend instanceof StubDetectionBackend) {
+            ((StubDetectionBackend) detectionBackend).close();
+        }
+        pageImages.clear();
+    }
+
+    @Benchmark
+    public Object detectPage() {
+        BufferedImage image = pageImages.get(next);
+        next = (next + 1) % pageImages.size();
+        return DetectEngine.detectChartInfos(image);
+    }
+}
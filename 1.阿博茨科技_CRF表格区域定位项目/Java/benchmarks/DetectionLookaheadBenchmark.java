@@ -0,0 +1,76 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.ExtractContext;
+import com.abcft.pdfextract.core.algorithm.DetectionLookahead;
+import com.abcft.pdfextract.core.chart.DetectEngine;
+import com.abcft.pdfextract.spi.algorithm.ImageDetectResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 位图表格检测的跨页面请求 ({@link DetectionLookahead}) 对整个文档耗时的影响。
+ * <p>
+ * 每次调用按顺序处理样本中的所有页面: 取得页面的检测结果, 再用 {@code pageWork} 模拟页面的解析。
+ * 检测用 {@link StubDetectionBackend} 模拟远程服务 (PNG 编码 + {@code rttMillis} 的往返时间),
+ * {@code lookahead} 为 0 时每个页面只提交自己的请求。页面图片在 Trial 开始前渲染好。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DetectionLookaheadBenchmark {
+
+    @Param({"0", "2"})
+    public int lookahead;
+
+    @Param({"20"})
+    public long rttMillis;
+
+    @Param({"2000000"})
+    public long pageWork;
+
+    private final List<BufferedImage> pageImages = new ArrayList<>();
+    private StubDetectionBackend backend;
+    private PdfFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        this.fixture = fixture;
+        System.setProperty(DetectionLookahead.LOOKAHEAD_PROPERTY, String.valueOf(lookahead));
+        backend = new StubDetectionBackend(rttMillis, 4);
+        for (PdfFixture.Sample sample : fixture.samples) {
+            for (int i = 0; i < sample.pages.size(); i++) {
+                BufferedImage image = DetectEngine.getOneShutPageImage(sample.document.getDocument(), i, 72);
+                if (image != null) {
+                    pageImages.add(image);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty(DetectionLookahead.LOOKAHEAD_PROPERTY);
+        backend.close();
+        pageImages.clear();
+    }
+
+    @Benchmark
+    public void detectDocument(Blackhole blackhole) {
+        // 每次调用是一个新文档
+        ExtractContext<?> context = ExtractContext.create(fixture.samples.get(0).document);
+        DetectionLookahead<List<ImageDetectResult>> detections = DetectionLookahead.of(context, "benchmark");
+        int lastPageIndex = pageImages.size() - 1;
+        for (int i = 0; i <= lastPageIndex; i++) {
+            CompletableFuture<List<ImageDetectResult>> future = detections.take(i, lastPageIndex,
+                    index -> backend.detectObjects(pageImages.get(index)));
+            blackhole.consume(future.join());
+            Blackhole.consumeCPU(pageWork);
+        }
+    }
+}
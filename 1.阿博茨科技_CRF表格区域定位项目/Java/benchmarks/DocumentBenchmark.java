@@ -0,0 +1,71 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.DocumentFactory;
+import com.abcft.pdfextract.core.ExtractContext;
+import com.abcft.pdfextract.core.ExtractorFactory;
+import com.abcft.pdfextract.core.chart.ChartExtractParameters;
+import com.abcft.pdfextract.core.content.ContentExtractParameters;
+import com.abcft.pdfextract.core.table.TableExtractParameters;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整个文档的解析 (正文 + 图表 + 表格), 和线上 {@link ExtractorFactory#processPDF} 的调用方式一致。
+ * 每次调用都重新加载文档, 避免页面缓存影响结果。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class DocumentBenchmark {
+
+    @Param({"ruled", "gridless", "chart", "cjk"})
+    public String category;
+
+    private List<File> files;
+    private final List<DocumentFactory.PDFDocument> documents = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void listFiles() {
+        files = PdfFixture.listSamples(category);
+    }
+
+    @Setup(Level.Invocation)
+    public void loadDocuments() throws Exception {
+        for (File file : files) {
+            documents.add((DocumentFactory.PDFDocument) DocumentFactory.load(file));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDocuments() throws Exception {
+        for (DocumentFactory.PDFDocument document : documents) {
+            document.getDocument().close();
+        }
+        documents.clear();
+    }
+
+    @Benchmark
+    public void extractDocument() throws Throwable {
+        for (DocumentFactory.PDFDocument document : documents) {
+            ExtractContext<PDDocument> context = ExtractContext.create(document);
+            ChartExtractParameters chartParams = new ChartExtractParameters.Builder().setContext(context).build();
+            TableExtractParameters tableParams = new TableExtractParameters.Builder().setContext(context).build();
+            ContentExtractParameters contentParams = new ContentExtractParameters.Builder().setContext(context).build();
+            Throwable error = ExtractorFactory.getInstance().processPDF(document,
+                    Pair.of(chartParams, NoopCallbacks.CHART),
+                    Pair.of(tableParams, NoopCallbacks.TABLE),
+                    Pair.of(contentParams, NoopCallbacks.CONTENT));
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.ExtractorUtil;
+import com.abcft.pdfextract.core.model.FontCache;
+import com.abcft.pdfextract.core.model.FontUtils;
+import com.abcft.pdfextract.util.ClosureInt;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.*;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个页面的字体准备耗时: 字体预检查, 解析页面资源中的字体, 获取字体名称和空格宽度, 字体事后检查。
+ * <p>
+ * {@code document} 使用文档级别的 {@link FontCache}, {@code default} 使用 PDFBox 默认的软引用缓存并每次重新计算字体信息。
+ * 报告可以通过 {@code -Dbenchmark.report=<pdf>} 指定, 默认由程序生成一个 500 页、所有页面共用几个字体的报告。
+ * 使用 -prof gc 查看每次 (整个文档) 的内存分配。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FontCacheBenchmark {
+
+    @Param({"500"})
+    public int pages;
+
+    @Param({"document", "default"})
+    public String cache;
+
+    private byte[] report;
+    private PDDocument document;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String path = System.getProperty("benchmark.report");
+        report = path != null ? FileUtils.readFileToByteArray(new File(path)) : createReport(pages);
+    }
+
+    private static byte[] createReport(int pages) throws IOException {
+        PDFont[] fonts = { PDType1Font.HELVETICA, PDType1Font.HELVETICA_BOLD, PDType1Font.TIMES_ROMAN };
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                    for (int line = 0; line < 40; line++) {
+                        stream.beginText();
+                        stream.setFont(fonts[line % fonts.length], 10);
+                        stream.newLineAtOffset(50, 750 - line * 16);
+                        stream.showText("Page " + (i + 1) + " line " + line + " revenue 1,234.56");
+                        stream.endText();
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws IOException {
+        document = PDDocument.load(report);
+        if ("document".equals(cache)) {
+            FontCache.of(document);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public void prepareFonts(Blackhole blackhole) throws IOException {
+        FontCache fontCache = "document".equals(cache) ? FontCache.of(document) : null;
+        for (PDPage page : document.getPages()) {
+            ExtractorUtil.pdfPreCheckFonts(document, page);
+            PDResources resources = page.getResources();
+            for (COSName name : resources.getFontNames()) {
+                PDFont font = resources.getFont(name);
+                if (fontCache != null) {
+                    FontCache.FontInfo info = fontCache.getFontInfo(font);
+                    blackhole.consume(info.getFontName());
+                    blackhole.consume(info.getSpaceWidthText());
+                    blackhole.consume(info.getUnicode(font, 'a'));
+                } else {
+                    blackhole.consume(FontUtils.getFontName(font, new ClosureInt()));
+                    blackhole.consume(font.getSpaceWidth());
+                    blackhole.consume(FontUtils.getUnicode(font, 'a'));
+                }
+            }
+            ExtractorUtil.pdfPostCheckFonts(document, page);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.ContentGroupImageDrawer;
+import com.abcft.pdfextract.core.model.ContentGroup;
+import com.abcft.pdfextract.core.model.ContentGroupDrawable;
+import com.abcft.pdfextract.core.util.ImageEncoder;
+import com.abcft.pdfextract.core.util.ImageIOEncoder;
+import com.abcft.pdfextract.core.util.PngEncoder;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 快照的 PNG 编码 ({@link ImageEncoder}), 每次调用编码所有页面的快照, 每张图片的耗时是结果除以结束时打印的图片数。
+ * <p>
+ * 页面用 {@link ContentGroupImageDrawer} 绘制, 长边不超过 {@value #MAX_SIZE} 像素。
+ * {@code imageio}: ImageIO 默认参数; {@code level1}/{@code level4}: {@link PngEncoder} 对应的压缩级别, 单线程, 不输出调色板;
+ * {@code parallel}: 压缩级别 4, 4 块并行; {@code palette}: 压缩级别 4, 颜色不超过 256 种时输出调色板。
+ * Trial 开始前用 ImageIO 解码每种编码的输出并检查像素和原图一致, 结束时打印每张图片的平均字节数。
+ * 使用 -p category=chart。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ImageEncoderBenchmark {
+
+    private static final int MAX_SIZE = 2048;
+
+    @Param({"imageio", "level1", "level4", "parallel", "palette"})
+    public String impl;
+
+    private final List<BufferedImage> images = new ArrayList<>();
+    private ImageEncoder encoder;
+    private long totalBytes;
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) throws IOException {
+        for (PdfFixture.Sample sample : fixture.samples) {
+            for (int i = 0; i < sample.pages.size(); i++) {
+                images.add(render(sample.pages.get(i), sample.contentGroups.get(i)));
+            }
+        }
+        encoder = createEncoder(impl);
+        totalBytes = 0;
+        for (int i = 0; i < images.size(); i++) {
+            BufferedImage image = images.get(i);
+            byte[] data = encode(encoder, image);
+            totalBytes += data.length;
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(data));
+            if (decoded == null || !Arrays.equals(pixels(image), pixels(decoded))) {
+                throw new IllegalStateException("Encoded image mismatch on page " + i);
+            }
+        }
+    }
+
+    private static ImageEncoder createEncoder(String impl) {
+        PngEncoder.Builder builder = new PngEncoder.Builder()
+                .setStrategy(Deflater.FILTERED)
+                .setFilter(PngEncoder.Filter.ADAPTIVE)
+                .setPalette(false)
+                .setParallelism(1);
+        switch (impl) {
+            case "imageio":
+                return new ImageIOEncoder();
+            case "level1":
+                return builder.setLevel(1).build();
+            case "level4":
+                return builder.setLevel(4).build();
+            case "parallel":
+                return builder.setLevel(4).setParallelism(4).build();
+            case "palette":
+                return builder.setLevel(4).setPalette(true).build();
+            default:
+                throw new IllegalArgumentException("Unknown encoder " + impl);
+        }
+    }
+
+    private static BufferedImage render(PDPage page, ContentGroup contentGroup) throws IOException {
+        PDRectangle cropBox = page.getCropBox();
+        Rectangle2D area = new Rectangle2D.Double(cropBox.getLowerLeftX(), cropBox.getLowerLeftY(),
+                cropBox.getWidth(), cropBox.getHeight());
+        float scale = (float) (MAX_SIZE / Math.max(area.getWidth(), area.getHeight()));
+        int widthPx = (int) Math.floor(area.getWidth() * scale);
+        int heightPx = (int) Math.floor(area.getHeight() * scale);
+        int rotation = page.getRotation();
+        BufferedImage image = rotation == 90 || rotation == 270
+                ? new BufferedImage(heightPx, widthPx, BufferedImage.TYPE_INT_RGB)
+                : new BufferedImage(widthPx, heightPx, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setBackground(Color.WHITE);
+        graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
+        ContentGroupImageDrawer drawer = new ContentGroupImageDrawer(page, new ContentGroupDrawable() {
+            @Override
+            public ContentGroup getContentGroup() {
+                return contentGroup;
+            }
+
+            @Override
+            public Rectangle2D getDrawArea() {
+                return area;
+            }
+        });
+        drawer.renderToGraphics(graphics, scale);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(ImageEncoder encoder, BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!encoder.write(image, "png", out, 0, -1f)) {
+            throw new IllegalStateException("Failed to encode image");
+        }
+        return out.toByteArray();
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) throws IOException {
+        for (BufferedImage image : images) {
+            blackhole.consume(encode(encoder, image));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n%s: %d images, %d bytes per image%n",
+                impl, images.size(), images.isEmpty() ? 0 : totalBytes / images.size());
+    }
+}
@@ -0,0 +1,93 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.model.InferenceService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InferenceService} 合并请求的吞吐, 8 个线程模拟 8 个并发解析的文档。
+ * <p>
+ * 模型用一个模拟的 {@link InferenceService.BatchRunner} 代替: 每次调用有固定开销 {@code callCost}, 每个请求再有
+ * {@code itemCost} 的开销, 调用之间互斥 (一次 session.run 已经占满 TF 的计算线程池)。{@code direct} 是原来每个文档
+ * 直接调用模型的方式, {@code batched} 经过推理服务。每次调用都会校验结果和输入一一对应, 用来检查并发下的正确性。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@State(Scope.Benchmark)
+public class InferenceServiceBenchmark {
+
+    private static final Object MODEL_LOCK = new Object();
+
+    @Param({"200000"})
+    public long callCost;
+
+    @Param({"5000"})
+    public long itemCost;
+
+    /**
+     * 每个文档一次提交的请求数, 例如一页里需要分类的表格数。
+     */
+    @Param({"1", "4"})
+    public int requestsPerDocument;
+
+    private InferenceService.BatchRunner<Integer, Integer> runner;
+    private InferenceService<Integer, Integer> service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runner = (session, inputs) -> {
+            synchronized (MODEL_LOCK) {
+                Blackhole.consumeCPU(callCost + itemCost * inputs.size());
+            }
+            List<Integer> outputs = new ArrayList<>(inputs.size());
+            for (Integer input : inputs) {
+                outputs.add(input * 2);
+            }
+            return outputs;
+        };
+        service = new InferenceService<>("benchmark", null, runner, 32, 2, TimeUnit.MILLISECONDS, 1024, 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Document {
+        private int next;
+        List<Integer> inputs;
+
+        @Setup(Level.Invocation)
+        public void setup(InferenceServiceBenchmark benchmark) {
+            inputs = new ArrayList<>(benchmark.requestsPerDocument);
+            for (int i = 0; i < benchmark.requestsPerDocument; i++) {
+                inputs.add(next++);
+            }
+        }
+    }
+
+    private static List<Integer> verify(List<Integer> inputs, List<Integer> outputs) {
+        for (int i = 0; i < inputs.size(); i++) {
+            if (outputs.get(i) != inputs.get(i) * 2) {
+                throw new IllegalStateException("Result mismatch at " + i + ": " + inputs.get(i) + " -> " + outputs.get(i));
+            }
+        }
+        return outputs;
+    }
+
+    @Benchmark
+    public List<Integer> direct(Document document) throws Exception {
+        return verify(document.inputs, runner.run(null, document.inputs));
+    }
+
+    @Benchmark
+    public List<Integer> batched(Document document) {
+        return verify(document.inputs, service.runAll(document.inputs));
+    }
+}
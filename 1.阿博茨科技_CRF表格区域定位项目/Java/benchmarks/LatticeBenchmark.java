@@ -0,0 +1,243 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.model.Rectangle;
+import com.abcft.pdfextract.core.table.Cell;
+import com.abcft.pdfextract.core.table.PointComparator;
+import com.abcft.pdfextract.core.table.Ruling;
+import com.abcft.pdfextract.core.table.RulingGrid;
+import com.abcft.pdfextract.core.util.NumberUtil;
+import com.abcft.pdfextract.util.FloatUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有线表格的单元格和表格区域查找 ({@link RulingGrid#findCells(Map)}, {@link RulingGrid#findAreas(List)})。
+ * <p>
+ * 页面由程序生成: 两个 {@code rows} x {@code cols} 的网格表格, 其中一部分单元格是合并单元格。
+ * {@code legacy} 是改为网格索引之前的实现, Trial 开始前会检查两种实现找到的单元格 (包括顺序) 和表格区域完全一致。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LatticeBenchmark {
+
+    @Param({"100"})
+    public int rows;
+
+    @Param({"30"})
+    public int cols;
+
+    @Param({"grid", "legacy"})
+    public String impl;
+
+    private Map<Point2D, Ruling[]> intersectionPoints;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<Ruling> horizontals = new ArrayList<>();
+        List<Ruling> verticals = new ArrayList<>();
+        addTable(40.f, 50.f, horizontals, verticals);
+        addTable(40.f + cols * 16.f + 30.f, 50.f, horizontals, verticals);
+        intersectionPoints = Ruling.findIntersections(horizontals, verticals);
+
+        List<Cell> expectedCells = LegacyLattice.findCells(intersectionPoints);
+        List<Cell> actualCells = RulingGrid.findCells(intersectionPoints);
+        if (!expectedCells.equals(actualCells)) {
+            throw new IllegalStateException(String.format("Cells mismatch: legacy %d, grid %d",
+                    expectedCells.size(), actualCells.size()));
+        }
+        List<Rectangle> expectedAreas = LegacyLattice.findAreas(copy(expectedCells));
+        List<Rectangle> actualAreas = RulingGrid.findAreas(copy(actualCells));
+        NumberUtil.sortByReadingOrder(expectedAreas);
+        NumberUtil.sortByReadingOrder(actualAreas);
+        if (!expectedAreas.equals(actualAreas)) {
+            throw new IllegalStateException("Areas mismatch: legacy " + expectedAreas + ", grid " + actualAreas);
+        }
+    }
+
+    /**
+     * 生成一个网格表格的表格线, 每隔几行有一个跨两列的合并单元格 (去掉一段竖线)
+     */
+    private void addTable(float left, float top, List<Ruling> horizontals, List<Ruling> verticals) {
+        float cellWidth = 16.f;
+        float cellHeight = 12.f;
+        float width = cols * cellWidth;
+        for (int r = 0; r <= rows; r++) {
+            horizontals.add(new Ruling(top + r * cellHeight, left, width, 0));
+        }
+        for (int c = 0; c <= cols; c++) {
+            float x = left + c * cellWidth;
+            if (c == 0 || c == cols || c % 5 != 2) {
+                verticals.add(new Ruling(top, x, 0, rows * cellHeight));
+                continue;
+            }
+            // 第 3, 8, 13... 条竖线在每 7 行中断开一行
+            float y = top;
+            for (int r = 0; r < rows; r++) {
+                if (r % 7 == 3) {
+                    verticals.add(new Ruling(y, x, 0, top + r * cellHeight - y));
+                    y = top + (r + 1) * cellHeight;
+                }
+            }
+            verticals.add(new Ruling(y, x, 0, top + rows * cellHeight - y));
+        }
+    }
+
+    private static List<Cell> copy(List<Cell> cells) {
+        List<Cell> copies = new ArrayList<>(cells.size());
+        for (Cell cell : cells) {
+            copies.add(new Cell(cell.getLeft(), cell.getTop(), cell.getRight() - cell.getLeft(), cell.getBottom() - cell.getTop()));
+        }
+        return copies;
+    }
+
+    @Benchmark
+    public void findCellsAndAreas(Blackhole blackhole) {
+        if ("legacy".equals(impl)) {
+            List<Cell> cells = LegacyLattice.findCells(intersectionPoints);
+            blackhole.consume(LegacyLattice.findAreas(cells));
+        } else {
+            List<Cell> cells = RulingGrid.findCells(intersectionPoints);
+            blackhole.consume(RulingGrid.findAreas(cells));
+        }
+    }
+
+    /**
+     * 改为网格索引之前的实现, 用来对比结果和耗时
+     */
+    static final class LegacyLattice {
+
+        static List<Cell> findCells(Map<Point2D, Ruling[]> intersectionPoints) {
+            List<Cell> cellsFound = new ArrayList<>();
+            List<Point2D> intersectionPointsList = new ArrayList<>(intersectionPoints.keySet());
+            intersectionPointsList.sort(PointComparator.Y_FIRST);
+            boolean doBreak;
+
+            for (int i = 0; i < intersectionPointsList.size(); i++) {
+                Point2D topLeft = intersectionPointsList.get(i);
+                Ruling[] hv = intersectionPoints.get(topLeft);
+                doBreak = false;
+
+                List<Point2D> xPoints = new ArrayList<>();
+                List<Point2D> yPoints = new ArrayList<>();
+
+                for (Point2D p : intersectionPointsList.subList(i, intersectionPointsList.size())) {
+                    if (p.getX() == topLeft.getX() && p.getY() > topLeft.getY()) {
+                        xPoints.add(p);
+                    }
+                    if (p.getY() == topLeft.getY() && p.getX() > topLeft.getX()) {
+                        yPoints.add(p);
+                    }
+                }
+                outer:
+                for (Point2D xPoint : xPoints) {
+                    if (doBreak) {
+                        break;
+                    }
+                    if (!hv[1].equals(intersectionPoints.get(xPoint)[1])) {
+                        continue;
+                    }
+                    for (Point2D yPoint : yPoints) {
+                        if (!hv[0].equals(intersectionPoints.get(yPoint)[0])) {
+                            continue;
+                        }
+                        Point2D btmRight = new Point2D.Float((float) yPoint.getX(), (float) xPoint.getY());
+                        if (intersectionPoints.containsKey(btmRight)
+                                && intersectionPoints.get(btmRight)[0].equals(intersectionPoints.get(xPoint)[0])
+                                && intersectionPoints.get(btmRight)[1].equals(intersectionPoints.get(yPoint)[1])) {
+                            cellsFound.add(new Cell(topLeft, btmRight));
+                            doBreak = true;
+                            break outer;
+                        }
+                    }
+                }
+            }
+            return cellsFound;
+        }
+
+        static List<Rectangle> findAreas(List<? extends Rectangle> cells) {
+            List<Rectangle> rectangles = new ArrayList<>();
+            Set<Point2D> pointSet = new HashSet<>();
+            Map<Point2D, Point2D> edgesH = new HashMap<>();
+            Map<Point2D, Point2D> edgesV = new HashMap<>();
+            int i = 0;
+
+            cells = new ArrayList<>(new HashSet<Rectangle>(cells));
+            NumberUtil.sortByReadingOrder(cells);
+            for (Rectangle cell : cells) {
+                cell.round();
+                for (Point2D pt : cell.getPoints()) {
+                    if (!pointSet.remove(pt)) {
+                        pointSet.add(pt);
+                    }
+                }
+            }
+
+            List<Point2D> pointsSortX = new ArrayList<>(pointSet);
+            pointsSortX.sort(PointComparator.X_FIRST);
+            List<Point2D> pointsSortY = new ArrayList<>(pointSet);
+            pointsSortY.sort(PointComparator.Y_FIRST);
+
+            while (i < pointSet.size()) {
+                float currY = (float) pointsSortY.get(i).getY();
+                while (i < pointSet.size() && FloatUtils.feq(pointsSortY.get(i).getY(), currY)) {
+                    edgesH.put(pointsSortY.get(i), pointsSortY.get(i + 1));
+                    edgesH.put(pointsSortY.get(i + 1), pointsSortY.get(i));
+                    i += 2;
+                }
+            }
+            i = 0;
+            while (i < pointSet.size()) {
+                float currX = (float) pointsSortX.get(i).getX();
+                while (i < pointSet.size() && FloatUtils.feq(pointsSortX.get(i).getX(), currX)) {
+                    edgesV.put(pointsSortX.get(i), pointsSortX.get(i + 1));
+                    edgesV.put(pointsSortX.get(i + 1), pointsSortX.get(i));
+                    i += 2;
+                }
+            }
+
+            // 多边形的顶点, 水平边和竖直边交替
+            List<List<Point2D>> polygons = new ArrayList<>();
+            while (!edgesH.isEmpty()) {
+                List<Point2D> polygon = new ArrayList<>();
+                Point2D first = edgesH.keySet().iterator().next();
+                polygon.add(first);
+                edgesH.remove(first);
+                boolean horizontal = true;
+                while (true) {
+                    Point2D curr = polygon.get(polygon.size() - 1);
+                    Point2D next = horizontal ? edgesV.remove(curr) : edgesH.remove(curr);
+                    horizontal = !horizontal;
+                    if (next == null || next.equals(first)) {
+                        break;
+                    }
+                    polygon.add(next);
+                }
+                for (Point2D vertex : polygon) {
+                    edgesH.remove(vertex);
+                    edgesV.remove(vertex);
+                }
+                polygons.add(polygon);
+            }
+
+            for (List<Point2D> poly : polygons) {
+                float top = Float.MAX_VALUE;
+                float left = Float.MAX_VALUE;
+                float bottom = Float.MIN_VALUE;
+                float right = Float.MIN_VALUE;
+                for (Point2D pt : poly) {
+                    top = (float) Math.min(top, pt.getY());
+                    left = (float) Math.min(left, pt.getX());
+                    bottom = (float) Math.max(bottom, pt.getY());
+                    right = (float) Math.max(right, pt.getX());
+                }
+                rectangles.add(new Rectangle(left, top, right - left, bottom - top));
+            }
+            return rectangles;
+        }
+    }
+}
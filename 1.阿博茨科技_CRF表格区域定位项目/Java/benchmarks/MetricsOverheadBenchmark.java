@@ -0,0 +1,56 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.util.ExtractMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExtractMetrics} 计时的额外开销。
+ * <p>
+ * 工作负载是排序 4096 个 double, 和一次 {@code ContentGroup} 内小阶段的耗时在一个量级;
+ * {@code timed} 相对 {@code baseline} 的差值就是每个计时范围的开销, 要求低于 1%。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class MetricsOverheadBenchmark {
+
+    private final ExtractMetrics metrics = new ExtractMetrics();
+    private double[] source;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        source = new double[4096];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextDouble();
+        }
+        ExtractMetrics.bind(metrics);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ExtractMetrics.unbind();
+    }
+
+    private double[] work() {
+        double[] data = source.clone();
+        Arrays.sort(data);
+        return data;
+    }
+
+    @Benchmark
+    public double[] baseline() {
+        return work();
+    }
+
+    @Benchmark
+    public double[] timed() {
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_TABLE)) {
+            return work();
+        }
+    }
+}
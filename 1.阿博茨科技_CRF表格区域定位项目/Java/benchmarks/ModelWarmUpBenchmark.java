@@ -0,0 +1,134 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.DocumentFactory;
+import com.abcft.pdfextract.core.ExtractContext;
+import com.abcft.pdfextract.core.ExtractorFactory;
+import com.abcft.pdfextract.core.PageCallback;
+import com.abcft.pdfextract.core.chart.ChartExtractParameters;
+import com.abcft.pdfextract.core.content.ContentExtractParameters;
+import com.abcft.pdfextract.core.table.TableExtractParameters;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型预热 ({@link ExtractorFactory#warmUpModels()}) 对冷启动后第一批文档的影响。
+ * <p>
+ * 每个 fork 是一个新的 JVM, 只执行一次: {@code documents} 个文档并发解析 (和 {@link DocumentBenchmark} 的调用方式一致)。
+ * {@code eager} 在 Trial 开始前预热所有模型 (相当于服务启动阶段, 不计入结果), {@code lazy} 设置
+ * {@link ExtractorFactory#WARM_UP_PROPERTY} 为 false, 模型在第一次使用时加载。
+ * 结束时打印第一个页面完成的时间 (time-to-first-result) 和页面耗时的 p50/p99, 页面耗时是同一个文档中相邻两页完成的间隔。
+ * 需要配置 tensorflow.model_dir。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(5)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@State(Scope.Benchmark)
+public class ModelWarmUpBenchmark {
+
+    @Param({"eager", "lazy"})
+    public String warmup;
+
+    @Param({"ruled"})
+    public String category;
+
+    @Param({"4"})
+    public int documents;
+
+    private List<File> files;
+    private ExecutorService executor;
+    private final List<DocumentFactory.PDFDocument> loaded = new ArrayList<>();
+    private final List<Long> pageLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong firstResult = new AtomicLong(Long.MAX_VALUE);
+    private long warmUpMillis;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        files = PdfFixture.listSamples(category);
+        executor = Executors.newFixedThreadPool(documents);
+        ExtractorFactory.setDocumentWorkers(documents);
+        if ("lazy".equals(warmup)) {
+            System.setProperty(ExtractorFactory.WARM_UP_PROPERTY, "false");
+        } else {
+            long start = System.currentTimeMillis();
+            ExtractorFactory.warmUpModels().join();
+            warmUpMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void loadDocuments() throws Exception {
+        for (int i = 0; i < documents; i++) {
+            loaded.add((DocumentFactory.PDFDocument) DocumentFactory.load(files.get(i % files.size())));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDocuments() throws Exception {
+        for (DocumentFactory.PDFDocument document : loaded) {
+            document.getDocument().close();
+        }
+        loaded.clear();
+    }
+
+    @Benchmark
+    public void concurrentDocuments() throws Throwable {
+        long start = System.nanoTime();
+        List<Future<Throwable>> futures = new ArrayList<>();
+        for (DocumentFactory.PDFDocument document : loaded) {
+            futures.add(executor.submit(() -> extract(document, start)));
+        }
+        for (Future<Throwable> future : futures) {
+            Throwable error = future.get();
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private Throwable extract(DocumentFactory.PDFDocument document, long start) {
+        ExtractContext<PDDocument> context = ExtractContext.create(document);
+        ChartExtractParameters chartParams = new ChartExtractParameters.Builder().setContext(context).build();
+        TableExtractParameters tableParams = new TableExtractParameters.Builder().setContext(context).build();
+        ContentExtractParameters contentParams = new ContentExtractParameters.Builder().setContext(context).build();
+        long[] last = {start};
+        PageCallback pageCallback = (pageContext, pdPage, pageIndex, page, charts, tables) -> {
+            long now = System.nanoTime();
+            pageLatencies.add(now - last[0]);
+            last[0] = now;
+            firstResult.accumulateAndGet(now - start, Math::min);
+        };
+        return ExtractorFactory.getInstance().processPDF(document,
+                Pair.of(chartParams, NoopCallbacks.CHART),
+                Pair.of(tableParams, NoopCallbacks.TABLE),
+                Pair.of(contentParams, NoopCallbacks.CONTENT),
+                pageCallback);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        executor.shutdown();
+        List<Long> latencies = new ArrayList<>(pageLatencies);
+        if (latencies.isEmpty()) {
+            return;
+        }
+        Collections.sort(latencies);
+        System.out.printf("%n%s: warm-up %dms, first result %.1fms, page p50 %.1fms, p99 %.1fms (%d pages)%n",
+                warmup, warmUpMillis, firstResult.get() / 1e6,
+                latencies.get(latencies.size() / 2) / 1e6,
+                latencies.get(Math.min(latencies.size() - 1, (int) Math.ceil(latencies.size() * 0.99) - 1)) / 1e6,
+                latencies.size());
+    }
+}
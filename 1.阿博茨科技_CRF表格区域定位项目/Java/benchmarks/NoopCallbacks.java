@@ -0,0 +1,71 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.chart.ChartCallback;
+import com.abcft.pdfextract.core.chart.ChartExtractionResult;
+import com.abcft.pdfextract.core.content.ContentExtractorCallback;
+import com.abcft.pdfextract.core.content.Fulltext;
+import com.abcft.pdfextract.core.table.TableCallback;
+import com.abcft.pdfextract.core.table.TableExtractionResult;
+
+/**
+ * 不做任何处理的回调, 基准测试只关心解析本身的耗时。
+ */
+final class NoopCallbacks {
+
+    static final ChartCallback CHART = new ChartCallback() {
+        @Override
+        public void onExtractionError(Throwable e) {
+        }
+
+        @Override
+        public void onLoadError(Throwable e) {
+        }
+
+        @Override
+        public void onFatalError(Throwable e) {
+        }
+
+        @Override
+        public void onFinished(ChartExtractionResult result) {
+        }
+    };
+
+    static final TableCallback TABLE = new TableCallback() {
+        @Override
+        public void onExtractionError(Throwable e) {
+        }
+
+        @Override
+        public void onLoadError(Throwable e) {
+        }
+
+        @Override
+        public void onFatalError(Throwable e) {
+        }
+
+        @Override
+        public void onFinished(TableExtractionResult result) {
+        }
+    };
+
+    static final ContentExtractorCallback CONTENT = new ContentExtractorCallback() {
+        @Override
+        public void onExtractionError(Throwable e) {
+        }
+
+        @Override
+        public void onLoadError(Throwable e) {
+        }
+
+        @Override
+        public void onFatalError(Throwable e) {
+        }
+
+        @Override
+        public void onFinished(Fulltext result) {
+        }
+    };
+
+    private NoopCallbacks() {
+    }
+}
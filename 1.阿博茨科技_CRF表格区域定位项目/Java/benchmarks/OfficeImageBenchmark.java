@@ -0,0 +1,136 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.office.Image;
+import com.abcft.pdfextract.core.office.ImageRegistry;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.poi.sl.usermodel.PictureData;
+import org.apache.poi.xslf.usermodel.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Office 文档图片的转换和输出: 遍历每个幻灯片的图片, 判断大小后输出。
+ * <p>
+ * {@code registry} 使用文档级的 {@link ImageRegistry} (按内容去重, 矢量图只转换一次), {@code direct} 每次调用
+ * {@link Image#toImage(byte[], String)}。程序生成一个每页都带相同模板图片和 logo 的幻灯片,
+ * 模板图片默认是 PNG, 可以通过 {@code -Dbenchmark.template=<emf/wmf>} 指定矢量图 (需要对应的转换工具)。
+ * Trial 结束时打印去重和转换次数。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class OfficeImageBenchmark {
+
+    @Param({"200"})
+    public int slides;
+
+    @Param({"registry", "direct"})
+    public String impl;
+
+    private byte[] deck;
+    private ImageRegistry lastRegistry;
+    private int lastConversions;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String path = System.getProperty("benchmark.template");
+        byte[] template;
+        PictureData.PictureType templateType;
+        if (path != null) {
+            template = FileUtils.readFileToByteArray(new File(path));
+            templateType = path.toLowerCase().endsWith(".wmf") ? PictureData.PictureType.WMF : PictureData.PictureType.EMF;
+        } else {
+            template = createPng(800, 600, 1);
+            templateType = PictureData.PictureType.PNG;
+        }
+        deck = createDeck(slides, template, templateType);
+    }
+
+    private static byte[] createPng(int width, int height, long seed) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(seed);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < 40; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            int h = random.nextInt(height / 2);
+            g.fillRect(20 + i * (width - 40) / 40, height - 20 - h, (width - 40) / 50, h);
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] createDeck(int slides, byte[] template, PictureData.PictureType templateType) throws IOException {
+        try (XMLSlideShow show = new XMLSlideShow()) {
+            XSLFPictureData templateData = show.addPicture(template, templateType);
+            XSLFPictureData logoData = show.addPicture(createPng(200, 200, 0), PictureData.PictureType.PNG);
+            for (int i = 0; i < slides; i++) {
+                XSLFSlide slide = show.createSlide();
+                slide.createPicture(templateData).setAnchor(new Rectangle(0, 0, 720, 540));
+                slide.createPicture(logoData).setAnchor(new Rectangle(620, 10, 80, 80));
+                XSLFPictureData chartData = show.addPicture(createPng(400, 300, i + 2), PictureData.PictureType.PNG);
+                slide.createPicture(chartData).setAnchor(new Rectangle(100, 100, 400, 300));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            show.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public void writeImages(Blackhole blackhole) throws IOException {
+        ImageRegistry registry = "registry".equals(impl) ? new ImageRegistry() : null;
+        int conversions = 0;
+        try (XMLSlideShow show = new XMLSlideShow(new ByteArrayInputStream(deck))) {
+            for (XSLFSlide slide : show.getSlides()) {
+                for (XSLFShape shape : slide.getShapes()) {
+                    if (!(shape instanceof XSLFPictureShape)) {
+                        continue;
+                    }
+                    XSLFPictureData data = ((XSLFPictureShape) shape).getPictureData();
+                    String ext = data.getType().extension;
+                    Image image;
+                    if (registry != null) {
+                        image = registry.toImage(data.getData(), ext);
+                    } else {
+                        image = Image.toImage(data.getData(), ext);
+                        if (ext.endsWith("wmf") || ext.endsWith("emf")) {
+                            conversions++;
+                        }
+                    }
+                    if (image == null || image.isTooSmall(200, 200, 2500)) {
+                        continue;
+                    }
+                    image.write(NullOutputStream.NULL_OUTPUT_STREAM);
+                    blackhole.consume(image);
+                }
+            }
+        }
+        lastRegistry = registry;
+        lastConversions = registry != null ? registry.getConversionCount() : conversions;
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        if (lastRegistry != null) {
+            System.out.printf("%nimages: %d requested, %d distinct, %d conversions%n",
+                    lastRegistry.getRequestCount(), lastRegistry.getDistinctCount(), lastConversions);
+        } else {
+            System.out.printf("%nimages: %d conversions%n", lastConversions);
+        }
+    }
+}
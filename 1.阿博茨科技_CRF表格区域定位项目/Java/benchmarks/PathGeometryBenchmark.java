@@ -0,0 +1,158 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.chart.ChartPathInfosParser;
+import com.abcft.pdfextract.core.model.ContentGroup;
+import com.abcft.pdfextract.core.model.PathGeometry;
+import com.abcft.pdfextract.core.model.PathItem;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图表解析中对路径的常用判断 (点数, 关键点, 竖直线, 柱状矩形, 扇形), 每次调用处理样本中所有页面的路径。
+ * <p>
+ * {@code geometry} 使用 {@link PathItem#getGeometry()} 缓存的解码结果和形状特征, {@code path} 每次判断都重新遍历 {@link GeneralPath}。
+ * Trial 开始前检查 {@link PathGeometry} 的点数和关键点和原来直接遍历 {@link PathIterator} 的结果完全一致,
+ * 并且 {@link PathGeometry#isArcShape()} 排除的路径都不是扇形。使用 -p category=chart。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PathGeometryBenchmark {
+
+    @Param({"geometry", "path"})
+    public String impl;
+
+    private final List<PathItem> pathItems = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        for (PdfFixture.Sample sample : fixture.samples) {
+            for (ContentGroup group : sample.contentGroups) {
+                pathItems.addAll(group.getAllPathItems());
+            }
+        }
+        for (PathItem pathItem : pathItems) {
+            GeneralPath path = pathItem.getItem();
+            PathGeometry geometry = pathItem.getGeometry();
+            List<Double> xs = new ArrayList<>();
+            List<Double> ys = new ArrayList<>();
+            List<Integer> types = new ArrayList<>();
+            geometry.getKeyPoints(xs, ys, types);
+            List<Double> expectedXs = new ArrayList<>();
+            List<Double> expectedYs = new ArrayList<>();
+            List<Integer> expectedTypes = new ArrayList<>();
+            Legacy.getPathKeyPtsInfo(path, expectedXs, expectedYs, expectedTypes);
+            if (!xs.equals(expectedXs) || !ys.equals(expectedYs) || !types.equals(expectedTypes)) {
+                throw new IllegalStateException("Key points mismatch: " + pathItem);
+            }
+            if (geometry.getPointCount() != Legacy.getPtsSizeOfPath(path)
+                    || !geometry.getBounds2D().equals(path.getBounds2D())) {
+                throw new IllegalStateException("Point count or bounds mismatch: " + pathItem);
+            }
+            if (!geometry.isArcShape() && ChartPathInfosParser.isPathArc(path, new ChartPathInfosParser.ArcObject())) {
+                throw new IllegalStateException("Arc excluded by shape flags: " + pathItem);
+            }
+        }
+    }
+
+    @Benchmark
+    public void predicates(Blackhole blackhole) {
+        boolean useGeometry = "geometry".equals(impl);
+        for (PathItem pathItem : pathItems) {
+            List<Double> xs = new ArrayList<>();
+            List<Double> ys = new ArrayList<>();
+            if (useGeometry) {
+                PathGeometry geometry = pathItem.getGeometry();
+                blackhole.consume(ChartPathInfosParser.getPtsSizeOfPath(geometry));
+                blackhole.consume(geometry.getBounds2D());
+                blackhole.consume(ChartPathInfosParser.isVerticalLine(geometry));
+                blackhole.consume(ChartPathInfosParser.judgePathContainColumnAndGetPts(geometry, xs, ys));
+                blackhole.consume(ChartPathInfosParser.isPathArc(pathItem, new ChartPathInfosParser.ArcObject()));
+            } else {
+                GeneralPath path = pathItem.getItem();
+                blackhole.consume(Legacy.getPtsSizeOfPath(path));
+                blackhole.consume(path.getBounds2D());
+                blackhole.consume(ChartPathInfosParser.isVerticalLine(path));
+                blackhole.consume(ChartPathInfosParser.judgePathContainColumnAndGetPts(path, xs, ys));
+                blackhole.consume(ChartPathInfosParser.isPathArc(path, new ChartPathInfosParser.ArcObject()));
+            }
+        }
+    }
+
+    /**
+     * 改为 {@link PathGeometry} 之前的实现, 用来对比结果
+     */
+    static final class Legacy {
+
+        static int getPtsSizeOfPath(GeneralPath path) {
+            PathIterator iter = path.getPathIterator(null);
+            double[] coords = new double[12];
+            int num = 0;
+            while (!iter.isDone()) {
+                switch (iter.currentSegment(coords)) {
+                    case PathIterator.SEG_MOVETO:
+                    case PathIterator.SEG_LINETO:
+                    case PathIterator.SEG_CLOSE:
+                        num++;
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        num += 3;
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        num += 4;
+                        break;
+                    default:
+                        break;
+                }
+                iter.next();
+            }
+            return num;
+        }
+
+        static void getPathKeyPtsInfo(GeneralPath path, List<Double> xs, List<Double> ys, List<Integer> types) {
+            PathIterator iter = path.getPathIterator(null);
+            double[] coords = new double[12];
+            double x = 0, y = 0;
+            while (!iter.isDone()) {
+                int type = iter.currentSegment(coords);
+                switch (type) {
+                    case PathIterator.SEG_MOVETO:
+                        xs.add(coords[0]);
+                        ys.add(coords[1]);
+                        x = coords[0];
+                        y = coords[1];
+                        types.add(type);
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        xs.add(coords[0]);
+                        ys.add(coords[1]);
+                        types.add(type);
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        xs.add(coords[4]);
+                        ys.add(coords[5]);
+                        types.add(type);
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        xs.add(coords[2]);
+                        ys.add(coords[3]);
+                        types.add(type);
+                        break;
+                    case PathIterator.SEG_CLOSE:
+                        xs.add(x);
+                        ys.add(y);
+                        types.add(type);
+                    default:
+                        break;
+                }
+                iter.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.ContentGroupRenderer;
+import com.abcft.pdfextract.core.DocumentFactory;
+import com.abcft.pdfextract.core.ExtractContext;
+import com.abcft.pdfextract.core.ExtractParameters;
+import com.abcft.pdfextract.core.PdfExtractContext;
+import com.abcft.pdfextract.core.model.ContentGroup;
+import com.abcft.pdfextract.core.table.ContentGroupPage;
+import com.abcft.pdfextract.core.table.ContentGroupTableExtractor;
+import com.abcft.pdfextract.core.table.TableExtractParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基准测试使用的 PDF 样本。
+ * <p>
+ * 样本按类别放在 {@code data/<category>/*.pdf} 下, 数据目录可以通过系统属性 {@value #DATA_DIR_PROPERTY} 指定。
+ * 每个类别下的所有 PDF 都会被加载, 每个页面的 {@link ContentGroup} 在 Trial 开始前预先解析好,
+ * 这样各个算法的基准测试不会把页面渲染的时间算进去。
+ */
+@State(Scope.Benchmark)
+public class PdfFixture {
+
+    public static final String DATA_DIR_PROPERTY = "benchmark.data";
+
+    /**
+     * ruled: 有线表格; gridless: 无线表格; chart: 矢量图表; cjk: 中文正文为主的页面。
+     */
+    @Param({"ruled", "gridless", "chart", "cjk"})
+    public String category;
+
+    public final List<Sample> samples = new ArrayList<>();
+
+    public static File getDataDirectory() {
+        return new File(System.getProperty(DATA_DIR_PROPERTY, "data"));
+    }
+
+    public static List<File> listSamples(String category) {
+        File dir = new File(getDataDirectory(), category);
+        File[] files = dir.listFiles((d, name) -> name.toLowerCase().endsWith(".pdf"));
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("No benchmark samples found in " + dir.getAbsolutePath());
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        for (File file : listSamples(category)) {
+            samples.add(new Sample(file));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        for (Sample sample : samples) {
+            sample.document.getDocument().close();
+        }
+        samples.clear();
+    }
+
+    public List<ContentGroupPage> buildTablePages(ExtractParameters.Builder<TableExtractParameters> builder) {
+        List<ContentGroupPage> pages = new ArrayList<>();
+        for (Sample sample : samples) {
+            TableExtractParameters params = builder.setContext(sample.context).build();
+            for (int i = 0; i < sample.pages.size(); i++) {
+                ContentGroup contentGroup = sample.contentGroups.get(i);
+                if (contentGroup == null) {
+                    continue;
+                }
+                pages.add(ContentGroupTableExtractor.createPage(i + 1, sample.pages.get(i), contentGroup, params));
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * 单个 PDF 样本和预先解析好的页面内容。
+     */
+    public static final class Sample {
+
+        public final File file;
+        public final DocumentFactory.PDFDocument document;
+        public final PdfExtractContext context;
+        public final List<PDPage> pages = new ArrayList<>();
+        public final List<ContentGroup> contentGroups = new ArrayList<>();
+
+        Sample(File file) throws Exception {
+            this.file = file;
+            this.document = (DocumentFactory.PDFDocument) DocumentFactory.load(file);
+            this.context = (PdfExtractContext) ExtractContext.create(document);
+            PDDocument pdf = document.getDocument();
+            ContentGroupRenderer renderer = new ContentGroupRenderer(pdf);
+            for (PDPage page : pdf.getPages()) {
+                pages.add(page);
+                contentGroups.add(renderer.processPage(page, Collections.emptyMap()));
+            }
+        }
+    }
+}
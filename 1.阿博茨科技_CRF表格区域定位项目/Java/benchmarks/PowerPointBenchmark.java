@@ -0,0 +1,115 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.office.Chart;
+import com.abcft.pdfextract.core.office.OfficeDocument;
+import com.abcft.pdfextract.core.office.Paragraph;
+import com.abcft.pdfextract.core.office.PowerPointDocument;
+import org.apache.commons.io.FileUtils;
+import org.apache.poi.xslf.usermodel.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整个幻灯片文档的解析 ({@link PowerPointDocument#process()}), 比较不同的预处理并发数 ({@link OfficeDocument#PARALLELISM_PROPERTY})。
+ * <p>
+ * 默认由程序生成一个 200 页、每页都有组合形状和自由形状 (需要渲染为位图图表) 的幻灯片, 也可以通过
+ * {@code -Dbenchmark.pptx=<pptx>} 指定真实文档。Trial 开始前检查并发处理和顺序处理输出的图表和段落完全一致。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class PowerPointBenchmark {
+
+    @Param({"200"})
+    public int slides;
+
+    @Param({"1", "8"})
+    public int parallelism;
+
+    private byte[] deck;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String path = System.getProperty("benchmark.pptx");
+        deck = path != null ? FileUtils.readFileToByteArray(new File(path)) : createDeck(slides);
+
+        System.setProperty(OfficeDocument.PARALLELISM_PROPERTY, "1");
+        List<String> expected = describe(process());
+        System.setProperty(OfficeDocument.PARALLELISM_PROPERTY, String.valueOf(parallelism));
+        List<String> actual = describe(process());
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Output mismatch with parallelism " + parallelism);
+        }
+    }
+
+    private static byte[] createDeck(int slides) throws IOException {
+        try (XMLSlideShow show = new XMLSlideShow()) {
+            for (int i = 0; i < slides; i++) {
+                XSLFSlide slide = show.createSlide();
+                XSLFTextBox title = slide.createTextBox();
+                title.setAnchor(new Rectangle(40, 20, 640, 40));
+                title.setText("图" + (i + 1) + " 营业收入及增速");
+
+                XSLFGroupShape group = slide.createGroup();
+                group.setAnchor(new Rectangle(40, 80, 300, 240));
+                group.setInteriorAnchor(new Rectangle(40, 80, 300, 240));
+                for (int bar = 0; bar < 12; bar++) {
+                    XSLFAutoShape shape = group.createAutoShape();
+                    int height = 20 + (bar * 37 + i * 11) % 180;
+                    shape.setAnchor(new Rectangle(50 + bar * 24, 300 - height, 16, height));
+                    shape.setFillColor(new Color(0x2F, 0x55, 0x97));
+                }
+
+                XSLFFreeformShape line = slide.createFreeform();
+                Path2D.Double path = new Path2D.Double();
+                path.moveTo(0, 200);
+                for (int x = 1; x <= 50; x++) {
+                    path.lineTo(x * 6, 200 - (x * 13 + i * 7) % 180);
+                }
+                line.setPath(path);
+                line.setAnchor(new Rectangle(380, 80, 300, 240));
+                line.setLineColor(Color.RED);
+
+                XSLFTextBox source = slide.createTextBox();
+                source.setAnchor(new Rectangle(40, 340, 640, 30));
+                source.setText("资料来源: 公司公告");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            show.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private PowerPointDocument process() throws IOException {
+        PowerPointDocument document = new PowerPointDocument(new XMLSlideShow(new ByteArrayInputStream(deck)));
+        document.process();
+        return document;
+    }
+
+    private static List<String> describe(PowerPointDocument document) {
+        List<String> items = new ArrayList<>();
+        for (Chart chart : document.getCharts()) {
+            items.add(String.format("chart %d/%d/%d %s %s", chart.getPageIndex(), chart.getItemIndex(), chart.getIndex(),
+                    chart.getType(), chart.getTitle()));
+        }
+        for (Paragraph paragraph : document.getParagraphs()) {
+            items.add(String.format("paragraph %d %s", paragraph.getPageIndex(), paragraph.getParagraphText()));
+        }
+        return items;
+    }
+
+    @Benchmark
+    public void process(Blackhole blackhole) throws IOException {
+        blackhole.consume(process().getCharts());
+    }
+}
@@ -0,0 +1,83 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.util.RasterPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 临时位图的租用 ({@link RasterPool}), 模拟图表快照: 租用位图, 填充后编码前检查内容。
+ * <p>
+ * {@code pool} 从缓冲池租用, {@code alloc} 每次新建 {@link BufferedImage}。4 个线程并发运行, 每个线程用自己的颜色填充,
+ * 读取前让出 CPU 并检查整张图都是自己的颜色, 出现其他线程的颜色说明位图被共用, 直接抛异常。
+ * GC 压力看默认开启的 -prof gc 的 gc.alloc.rate.norm。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@State(Scope.Thread)
+public class RasterPoolBenchmark {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    @Param({"pool", "alloc"})
+    public String impl;
+
+    @Param({"1200"})
+    public int width;
+
+    @Param({"900"})
+    public int height;
+
+    private RasterPool pool;
+    private Color color;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pool = RasterPool.getDefault();
+        // 同时运行的线程颜色不同
+        color = new Color(0x10 + THREAD_COUNTER.getAndIncrement() % 8 * 0x20, 0x40, 0x80);
+    }
+
+    @Benchmark
+    public void render(Blackhole blackhole) {
+        if ("pool".equals(impl)) {
+            try (RasterPool.Lease lease = pool.lease(width, height, BufferedImage.TYPE_INT_RGB)) {
+                blackhole.consume(fillAndCheck(lease.getImage()));
+            }
+        } else {
+            blackhole.consume(fillAndCheck(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)));
+        }
+    }
+
+    private int fillAndCheck(BufferedImage image) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setBackground(color);
+        graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.dispose();
+        Thread.yield();
+        int[] row = new int[image.getWidth()];
+        int expected = color.getRGB();
+        for (int y = 0; y < image.getHeight(); y += 64) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int rgb : row) {
+                if (rgb != expected) {
+                    throw new IllegalStateException(String.format("Image aliased: expected %08x, got %08x", expected, rgb));
+                }
+            }
+        }
+        return row[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        if ("pool".equals(impl)) {
+            System.out.printf("%nraster pool: %d leases, %d allocations, %d idle bytes%n",
+                    pool.getLeaseCount(), pool.getAllocationCount(), pool.getIdleBytes());
+        }
+    }
+}
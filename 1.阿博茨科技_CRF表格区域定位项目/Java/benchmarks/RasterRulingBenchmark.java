@@ -0,0 +1,237 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.table.RasterRulingDetector;
+import com.abcft.pdfextract.core.table.Ruling;
+import com.abcft.pdfextract.core.util.DebugHelper;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.rendering.ImageType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 位图表格线检测 ({@link RasterRulingDetector}): 去掉文字后的页面渲染, 以及在灰度图上查找水平线和竖直线。
+ * <p>
+ * {@code legacy} 是原来 NurminenDetectionAlgorithm 中的实现 (改写内容流去掉文字, 用 {@link Raster#getPixel} 逐像素扫描),
+ * Trial 开始前会检查两种实现在每个页面的同一张灰度图上找到的线完全一致。使用 -p category=ruled。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class RasterRulingBenchmark {
+
+    private static final int IMAGE_DPI = 72;
+
+    @Param({"detector", "legacy"})
+    public String impl;
+
+    private final RasterRulingDetector detector = new RasterRulingDetector();
+    private final List<PDPage> pages = new ArrayList<>();
+    private final List<BufferedImage> grayImages = new ArrayList<>();
+    private final List<BufferedImage> noTextImages = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) throws IOException {
+        for (PdfFixture.Sample sample : fixture.samples) {
+            pages.addAll(sample.pages);
+        }
+        for (PDPage page : pages) {
+            BufferedImage grayImage = RasterRulingDetector.renderGray(page, IMAGE_DPI, false);
+            BufferedImage noTextImage = RasterRulingDetector.renderGray(page, IMAGE_DPI, true);
+            grayImages.add(grayImage);
+            noTextImages.add(noTextImage);
+
+            check("horizontal", Legacy.getHorizontalRulings(grayImage), detector.getHorizontalRulings(grayImage));
+            check("vertical", Legacy.getVerticalRulings(noTextImage), detector.getVerticalRulings(noTextImage));
+        }
+    }
+
+    private static void check(String name, List<Ruling> expected, List<Ruling> actual) {
+        if (expected.size() != actual.size()) {
+            throw new IllegalStateException(String.format("%s rulings mismatch: legacy %d, detector %d",
+                    name, expected.size(), actual.size()));
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Ruling e = expected.get(i);
+            Ruling a = actual.get(i);
+            if (!e.getP1().equals(a.getP1()) || !e.getP2().equals(a.getP2())) {
+                throw new IllegalStateException(name + " rulings mismatch: legacy " + e + ", detector " + a);
+            }
+        }
+    }
+
+    @Benchmark
+    public void findRulings(Blackhole blackhole) {
+        boolean legacy = "legacy".equals(impl);
+        for (int i = 0; i < grayImages.size(); i++) {
+            if (legacy) {
+                blackhole.consume(Legacy.getHorizontalRulings(grayImages.get(i)));
+                blackhole.consume(Legacy.getVerticalRulings(noTextImages.get(i)));
+            } else {
+                blackhole.consume(detector.getHorizontalRulings(grayImages.get(i)));
+                blackhole.consume(detector.getVerticalRulings(noTextImages.get(i)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void renderNoText(Blackhole blackhole) throws IOException {
+        boolean legacy = "legacy".equals(impl);
+        for (PDPage page : pages) {
+            blackhole.consume(legacy ? Legacy.removeText(page) : RasterRulingDetector.renderGray(page, IMAGE_DPI, true));
+        }
+    }
+
+    /**
+     * 改为 {@link RasterRulingDetector} 之前的实现, 用来对比结果和耗时
+     */
+    static final class Legacy {
+
+        private static final int GRAYSCALE_INTENSITY_THRESHOLD = 25;
+        private static final int HORIZONTAL_EDGE_WIDTH_MINIMUM = 50;
+        private static final int VERTICAL_EDGE_HEIGHT_MINIMUM = 10;
+
+        static List<Ruling> getHorizontalRulings(BufferedImage image) {
+            ArrayList<Ruling> horizontalRulings = new ArrayList<>();
+            Raster r = image.getRaster();
+            int width = r.getWidth();
+            int height = r.getHeight();
+            for (int x = 0; x < width; x++) {
+                int[] lastPixel = r.getPixel(x, 0, (int[]) null);
+                for (int y = 1; y < height - 1; y++) {
+                    int[] currPixel = r.getPixel(x, y, (int[]) null);
+                    int diff = Math.abs(currPixel[0] - lastPixel[0]);
+                    if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
+                        boolean alreadyChecked = false;
+                        for (Ruling line : horizontalRulings) {
+                            if (y == line.getY1() && x >= line.getX1() && x <= line.getX2()) {
+                                alreadyChecked = true;
+                                break;
+                            }
+                        }
+                        if (alreadyChecked) {
+                            lastPixel = currPixel;
+                            continue;
+                        }
+                        int lineX = x + 1;
+                        while (lineX < width) {
+                            int[] linePixel = r.getPixel(lineX, y, (int[]) null);
+                            int[] abovePixel = r.getPixel(lineX, y - 1, (int[]) null);
+                            if (Math.abs(linePixel[0] - abovePixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
+                                    || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
+                                break;
+                            }
+                            lineX++;
+                        }
+                        int endX = lineX - 1;
+                        if (endX - x > HORIZONTAL_EDGE_WIDTH_MINIMUM) {
+                            horizontalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(endX, y)));
+                        }
+                    }
+                    lastPixel = currPixel;
+                }
+            }
+            return horizontalRulings;
+        }
+
+        static List<Ruling> getVerticalRulings(BufferedImage image) {
+            ArrayList<Ruling> verticalRulings = new ArrayList<>();
+            Raster r = image.getRaster();
+            int width = r.getWidth();
+            int height = r.getHeight();
+            for (int y = 0; y < height; y++) {
+                int[] lastPixel = r.getPixel(0, y, (int[]) null);
+                for (int x = 1; x < width - 1; x++) {
+                    int[] currPixel = r.getPixel(x, y, (int[]) null);
+                    int diff = Math.abs(currPixel[0] - lastPixel[0]);
+                    if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
+                        boolean alreadyChecked = false;
+                        for (Ruling line : verticalRulings) {
+                            if (x == line.getX1() && y >= line.getY1() && y <= line.getY2()) {
+                                alreadyChecked = true;
+                                break;
+                            }
+                        }
+                        if (alreadyChecked) {
+                            lastPixel = currPixel;
+                            continue;
+                        }
+                        int lineY = y + 1;
+                        while (lineY < height) {
+                            int[] linePixel = r.getPixel(x, lineY, (int[]) null);
+                            int[] leftPixel = r.getPixel(x - 1, lineY, (int[]) null);
+                            if (Math.abs(linePixel[0] - leftPixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
+                                    || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
+                                break;
+                            }
+                            lineY++;
+                        }
+                        int endY = lineY - 1;
+                        if (endY - y > VERTICAL_EDGE_HEIGHT_MINIMUM) {
+                            verticalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(x, endY)));
+                        }
+                    }
+                    lastPixel = currPixel;
+                }
+            }
+            return verticalRulings;
+        }
+
+        static BufferedImage removeText(PDPage page) throws IOException {
+            PDFStreamParser parser = new PDFStreamParser(page);
+            parser.parse();
+            List<Object> tokens = parser.getTokens();
+            List<Object> newTokens = new ArrayList<>();
+            for (Object token : tokens) {
+                if (token instanceof Operator) {
+                    Operator op = (Operator) token;
+                    if (op.getName().equals("TJ") || op.getName().equals("Tj")) {
+                        newTokens.remove(newTokens.size() - 1);
+                        continue;
+                    }
+                }
+                newTokens.add(token);
+            }
+
+            COSDictionary pageObj = page.getCOSObject();
+            COSBase contents = pageObj.getDictionaryObject(COSName.CONTENTS);
+
+            PDDocument document = new PDDocument();
+            document.addPage(page);
+
+            PDStream newContents = new PDStream(document);
+            OutputStream os = newContents.createOutputStream();
+            ContentStreamWriter writer = new ContentStreamWriter(os);
+            writer.writeTokens(newTokens);
+            os.close();
+            page.setContents(newContents);
+
+            BufferedImage noTextImage;
+            try {
+                noTextImage = DebugHelper.pageConvertToImage(page, IMAGE_DPI, ImageType.GRAY);
+                document.close();
+            } catch (Exception e) {
+                noTextImage = null;
+            }
+
+            pageObj.setItem(COSName.CONTENTS, contents);
+            return noTextImage;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.table.ContentGroupPage;
+import com.abcft.pdfextract.core.table.Ruling;
+import com.abcft.pdfextract.core.table.TableExtractParameters;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Ruling#findIntersections(List, List)} 的基准测试, 每次调用处理样本中的所有页面。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RulingBenchmark {
+
+    private final List<List<Ruling>> horizontals = new ArrayList<>();
+    private final List<List<Ruling>> verticals = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        for (ContentGroupPage page : fixture.buildTablePages(new TableExtractParameters.Builder())) {
+            horizontals.add(new ArrayList<>(page.getHorizontalRulings()));
+            verticals.add(new ArrayList<>(page.getVerticalRulings()));
+        }
+    }
+
+    @Benchmark
+    public void findIntersections(Blackhole blackhole) {
+        for (int i = 0; i < horizontals.size(); i++) {
+            blackhole.consume(Ruling.findIntersections(horizontals.get(i), verticals.get(i)));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.algorithm.DetectedRegion;
+import com.abcft.pdfextract.core.algorithm.DetectionBackend;
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
+import com.abcft.pdfextract.core.chart.DetectEngine;
+import com.abcft.pdfextract.spi.algorithm.ImageDetectResult;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 模拟远程算法服务的检测后端, 用来在没有 GRPC 服务的环境里测试和对比。
+ * <p>
+ * 和 GRPC 后端一样在后台线程里把位图编码成 PNG, 然后等待 {@code rttMillis} 模拟网络和服务端的耗时。
+ * Chart 检测固定返回一个覆盖图片中间区域的 Chart, 分类固定返回折线图, 表格检测返回空结果。
+ */
+class StubDetectionBackend implements DetectionBackend {
+
+    private final long rttMillis;
+    private final ExecutorService executor;
+
+    StubDetectionBackend(long rttMillis, int concurrency) {
+        this.rttMillis = rttMillis;
+        this.executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "stub-detect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    private <T> CompletableFuture<T> call(BufferedImage image, Supplier<T> response) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (DetectEngine.bufferedImageToByteString(image) == null) {
+                throw new IllegalArgumentException("Failed to encode image");
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(rttMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return response.get();
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<DetectedRegion>> detectCharts(BufferedImage image) {
+        return call(image, () -> {
+            int w = image.getWidth();
+            int h = image.getHeight();
+            Rectangle2D bound = new Rectangle2D.Double(w * 0.25, h * 0.25, w * 0.5, h * 0.25);
+            return Collections.singletonList(new DetectedRegion(DetectedRegion.TYPE_CHART, "chart", 0.99f, bound));
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<ImageClassification>> classifyImage(BufferedImage image) {
+        return call(image, () -> Collections.singletonList(
+                new ImageClassification(ImageClassification.typeOf("LINE_CHART"), 0.99f)));
+    }
+
+    @Override
+    public CompletableFuture<List<ImageDetectResult>> detectObjects(BufferedImage image) {
+        return call(image, Collections::emptyList);
+    }
+}
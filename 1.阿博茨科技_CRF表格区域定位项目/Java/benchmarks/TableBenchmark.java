@@ -0,0 +1,93 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.content.Page;
+import com.abcft.pdfextract.core.model.Rectangle;
+import com.abcft.pdfextract.core.model.TensorflowManager;
+import com.abcft.pdfextract.core.table.ContentGroupPage;
+import com.abcft.pdfextract.core.table.TableExtractParameters;
+import com.abcft.pdfextract.core.table.detectors.TableRegionCrfAlgorithm;
+import com.abcft.pdfextract.core.table.extractors.LayoutAnalysisAlgorithm;
+import com.abcft.pdfextract.core.util.TrainDataWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表格相关热点的基准测试: 版面分析和 CRF 表格区域后处理。
+ * <p>
+ * CRF 的标注结果在 Trial 开始前用 {@link TensorflowManager#LINE_CRF_TABLE} 模型预先算好,
+ * 所以 {@link #tableRegionCrf(Blackhole)} 只统计 {@link TableRegionCrfAlgorithm} 自身的耗时。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TableBenchmark {
+
+    private List<ContentGroupPage> pages;
+    private final List<CrfInput> crfInputs = new ArrayList<>();
+
+    private static final class CrfInput {
+        final ContentGroupPage page;
+        final List<Rectangle> layoutAreas;
+        final List<TrainDataWriter.LineInfo> lineInfos;
+        final int[] tags;
+
+        CrfInput(ContentGroupPage page, List<Rectangle> layoutAreas, List<TrainDataWriter.LineInfo> lineInfos, int[] tags) {
+            this.page = page;
+            this.layoutAreas = layoutAreas;
+            this.lineInfos = lineInfos;
+            this.tags = tags;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        pages = fixture.buildTablePages(new TableExtractParameters.Builder().setLayoutAnalysis(true));
+        if (!TensorflowManager.INSTANCE.isModelAvailable(TensorflowManager.LINE_CRF_TABLE)) {
+            return;
+        }
+        for (ContentGroupPage page : pages) {
+            List<Rectangle> layoutAreas = page.getTableLayoutAnalysis();
+            List<TrainDataWriter.LineInfo> lineInfos = new ArrayList<>();
+            for (Rectangle rc : layoutAreas) {
+                Page.TextGroup textGroup = new Page.TextGroup(rc);
+                textGroup.addTexts(page.getMutableTextChunks(rc));
+                lineInfos.addAll(TrainDataWriter.buildLineInfosForLayout(page, null, textGroup));
+            }
+            if (lineInfos.isEmpty()) {
+                continue;
+            }
+            int[] tags = TensorflowManager.INSTANCE.runCrfTags(TensorflowManager.LINE_CRF_TABLE,
+                    TrainDataWriter.buildExample(lineInfos).toByteArray());
+            if (tags.length != lineInfos.size()) {
+                continue;
+            }
+            crfInputs.add(new CrfInput(page, layoutAreas, lineInfos, tags));
+        }
+    }
+
+    @Benchmark
+    public void layoutAnalysis(Blackhole blackhole) {
+        for (ContentGroupPage page : pages) {
+            List<Rectangle> tableAreas = new ArrayList<>();
+            List<Rectangle> contentAreas = new ArrayList<>();
+            LayoutAnalysisAlgorithm.detect(page, tableAreas, contentAreas);
+            blackhole.consume(tableAreas);
+            blackhole.consume(contentAreas);
+        }
+    }
+
+    @Benchmark
+    public void tableRegionCrf(Blackhole blackhole) {
+        if (crfInputs.isEmpty()) {
+            throw new IllegalStateException("Model " + TensorflowManager.LINE_CRF_TABLE + " is required by this benchmark");
+        }
+        for (CrfInput input : crfInputs) {
+            TableRegionCrfAlgorithm.layoutAnalysisRectList = input.layoutAreas;
+            blackhole.consume(TableRegionCrfAlgorithm.tableCrfAccuracy(input.page, input.lineInfos, input.tags));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.abcft.pdfextract.benchmarks;
+
+import com.abcft.pdfextract.core.model.Rectangle;
+import com.abcft.pdfextract.core.model.TextBlock;
+import com.abcft.pdfextract.core.table.ContentGroupPage;
+import com.abcft.pdfextract.core.table.TableExtractParameters;
+import com.abcft.pdfextract.core.table.TextMerger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表格检测中区域内文本行的计算 ({@link ContentGroupPage#getTextRows(Rectangle)})。
+ * <p>
+ * 每个页面取版面分析的区域和整个页面, 每个区域查询 {@code repeat} 次 (模拟多个检测算法查询同一个区域)。
+ * {@code page}: 打开 {@link ContentGroupPage#PAGE_TEXT_BLOCKS_PROPERTY}, 使用页面的文本块模型;
+ * {@code recompute}: 每次 collectByRows(groupByBlock(getMutableTextChunks(区域)))。
+ * 每次测量前重新创建页面。Trial 开始前打印使用页面文本块的区域比例 (其余区域切断了文本块, 重新合并),
+ * 有任何区域的结果和重新合并不一致 (文本, 位置或文本块数不同) 时失败, 这时不能打开这个选项。
+ * 使用 -p category=gridless,ruled 或文本较多的页面。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@State(Scope.Benchmark)
+public class TextRowsBenchmark {
+
+    @Param({"page", "recompute"})
+    public String impl;
+
+    @Param({"3"})
+    public int repeat;
+
+    private PdfFixture fixture;
+    private List<ContentGroupPage> pages;
+    private final List<List<Rectangle>> pageAreas = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup(PdfFixture fixture) {
+        this.fixture = fixture;
+        System.setProperty(ContentGroupPage.PAGE_TEXT_BLOCKS_PROPERTY, "true");
+        buildPages();
+        int areas = 0;
+        int wholeBlocks = 0;
+        int mismatches = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            ContentGroupPage page = pages.get(i);
+            for (Rectangle area : pageAreas.get(i)) {
+                areas++;
+                if (page.isWholeTextBlocks(page.getTextChunks(area))) {
+                    wholeBlocks++;
+                }
+                if (!sameRows(recompute(page, area), page.getTextRows(area))) {
+                    mismatches++;
+                    System.out.printf("Text rows mismatch on page %d %s%n", page.getPageNumber(), area);
+                }
+            }
+        }
+        System.out.printf("%n%d areas, %d (%.1f%%) served from page blocks, %d differ from recompute%n",
+                areas, wholeBlocks, areas > 0 ? 100.0 * wholeBlocks / areas : 0, mismatches);
+        if (mismatches > 0) {
+            throw new IllegalStateException(mismatches + " areas differ from recompute");
+        }
+        System.setProperty(ContentGroupPage.PAGE_TEXT_BLOCKS_PROPERTY, String.valueOf("page".equals(impl)));
+    }
+
+    @Setup(Level.Iteration)
+    public void buildPages() {
+        pages = fixture.buildTablePages(new TableExtractParameters.Builder().setLayoutAnalysis(true));
+        pageAreas.clear();
+        for (ContentGroupPage page : pages) {
+            List<Rectangle> areas = new ArrayList<>(page.getTableLayoutAnalysis());
+            areas.add(new Rectangle(page.getLeft(), page.getTop(), page.getWidth(), page.getHeight()));
+            pageAreas.add(areas);
+        }
+    }
+
+    private static List<TextBlock> recompute(ContentGroupPage page, Rectangle area) {
+        return TextMerger.collectByRows(TextMerger.groupByBlock(page.getMutableTextChunks(area),
+                page.getHorizontalRulings(), page.getVerticalRulings()));
+    }
+
+    private static boolean sameRows(List<TextBlock> expected, List<TextBlock> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            TextBlock a = expected.get(i);
+            TextBlock b = actual.get(i);
+            if (!a.getText().equals(b.getText()) || !a.getBounds2D().equals(b.getBounds2D())
+                    || a.getElements().size() != b.getElements().size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public void textRows(Blackhole blackhole) {
+        for (int i = 0; i < pages.size(); i++) {
+            ContentGroupPage page = pages.get(i);
+            for (int n = 0; n < repeat; n++) {
+                for (Rectangle area : pageAreas.get(i)) {
+                    blackhole.consume("page".equals(impl) ? page.getTextRows(area) : recompute(page, area));
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.abcft.pdfextract.core;
 
 import com.abcft.pdfextract.core.model.ContentGroup;
 import com.abcft.pdfextract.core.model.ContentGroupDrawable;
+import com.abcft.pdfextract.core.util.GraphicsUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.pdfbox.contentstream.PDContentStream;
@@ -39,11 +40,17 @@ public class ContentGroupImageDrawer extends PageDrawer {
 
     private static Logger logger = LogManager.getLogger(ContentGroupImageDrawer.class);
 
+    // 和绘制区域比较时向外扩展的距离, 避免抗锯齿的边缘被去掉
+    private static final double CULL_MARGIN = 2;
+
     private ContentGroupDrawable drawable;
     private List<Object> tokens = new ArrayList<>();
     private PDRectangle cropBox;
     private boolean baseOnForm;
     private boolean drawText = true;
+    // 页面显示坐标系下的绘制区域, 不相交的路径不需要绘制
+    private Rectangle2D cullArea;
+    private boolean cullPaths = true;
 
 
     /**
@@ -63,6 +70,14 @@ public class ContentGroupImageDrawer extends PageDrawer {
         this.drawText = drawText;
     }
 
+    /**
+     * 是否跳过和绘制区域不相交的路径, 默认开启
+     * @param cullPaths
+     */
+    public void setCullPaths(boolean cullPaths) {
+        this.cullPaths = cullPaths;
+    }
+
     /**
      * 基于虚拟Form内容的方式绘制图片
      * @param form
@@ -145,20 +160,20 @@ public class ContentGroupImageDrawer extends PageDrawer {
         }
 
         long startTime = System.currentTimeMillis(), endTime = 0;
+        // 参数列表在处理完操作后清空重用, 操作不会保留参数列表本身
         List<COSBase> arguments = new ArrayList<COSBase>();
         tokens.clear();
         ContentGroup contentGroup = drawable.getContentGroup();
         if (contentGroup != null) {
-            tokens = contentGroup.getAllContentAndGraphicsStateObject(baseOnForm);
+            Rectangle2D drawArea = null;
+            if (cullPaths && cullArea != null && contentGroup.getPageTransform() != null) {
+                drawArea = contentGroup.getPageTransform().createTransformedShape(cullArea).getBounds2D();
+                GraphicsUtil.extendRect(drawArea, CULL_MARGIN);
+            }
+            tokens = contentGroup.getAllContentAndGraphicsStateObject(baseOnForm, drawArea);
         }
         for (Object token : tokens)
         {
-            // 计算当前计算耗时  如果保存图片操作时间超过 30s 则抛异常
-            endTime = System.currentTimeMillis();
-            if (endTime - startTime > 1000 * 30) {
-                logger.info("page process time overtime 30s");
-                throw new InterruptedIOException("page process time overtime 30s");
-            }
             // 重新设置颜色状态
             if (token instanceof PDGraphicsState) {
                 Stack<PDGraphicsState> states = saveGraphicsStack();
@@ -172,8 +187,14 @@ public class ContentGroupImageDrawer extends PageDrawer {
             }
             else if (token instanceof Operator)
             {
+                // 计算当前计算耗时  如果保存图片操作时间超过 30s 则抛异常
+                endTime = System.currentTimeMillis();
+                if (endTime - startTime > 1000 * 30) {
+                    logger.info("page process time overtime 30s");
+                    throw new InterruptedIOException("page process time overtime 30s");
+                }
                 processOperator((Operator) token, arguments);
-                arguments = new ArrayList<COSBase>();
+                arguments.clear();
             }
             else
             {
@@ -190,6 +211,7 @@ public class ContentGroupImageDrawer extends PageDrawer {
         resetPageResources(page);
 
         Rectangle2D rect = drawable.getDrawArea();
+        cullArea = rect;
         cropBox = page.getCropBox();
         page.setCropBox(new PDRectangle((float)rect.getX(), (float)rect.getY(),
                 (float)rect.getWidth(), (float)rect.getHeight()));
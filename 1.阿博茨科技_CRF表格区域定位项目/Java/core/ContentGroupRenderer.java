@@ -1,10 +1,12 @@
 package com.abcft.pdfextract.core;
 
+import com.abcft.pdfextract.core.content.PaginationModel;
 import com.abcft.pdfextract.core.content.ParagraphMerger;
 import com.abcft.pdfextract.core.content.TextChunkMerger;
 import com.abcft.pdfextract.core.content.TextUtils;
 import com.abcft.pdfextract.core.model.*;
 import com.abcft.pdfextract.core.model.Rectangle;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.abcft.pdfextract.core.util.GraphicsUtil;
 import com.abcft.pdfextract.core.util.TrainDataWriter;
 import com.abcft.pdfextract.util.ClosureInt;
@@ -67,6 +69,14 @@ public class ContentGroupRenderer extends PDFRenderer {
     private static final long PAGE_PROCESS_TIMEOUT = 60L * 1000L;
 
     private final AtomicLong elementId = new AtomicLong();
+    // 文档级别的页眉页脚模型, 在各个页面之间共用
+    private final PaginationModel paginationModel = new PaginationModel();
+
+    private final FontCache fontCache;
+
+    // 页眉页脚检测直接套用版式和完整分析的页数, 记录在当前文档的 ExtractMetrics 中
+    static final String COUNT_PAGINATION_FAST = ExtractMetrics.STAGE_CONTENT_GROUP + ".pagination.fast";
+    static final String COUNT_PAGINATION_FULL = ExtractMetrics.STAGE_CONTENT_GROUP + ".pagination.full";
 
     /**
      * Creates a new PDFRenderer.
@@ -75,6 +85,7 @@ public class ContentGroupRenderer extends PDFRenderer {
      */
     public ContentGroupRenderer(PDDocument document) {
         super(document);
+        this.fontCache = document != null ? FontCache.of(document) : new FontCache();
     }
 
     private PageStructTree collectStructTreeInfo(PDDocument document, PDPage page) {
@@ -431,7 +442,7 @@ public class ContentGroupRenderer extends PDFRenderer {
             PageStructTree structTree = collectStructTreeInfo(document, page);
             int pageIndex = document.getPages().indexOf(page);
             ContentGroupPageDrawer drawer = new ContentGroupPageDrawer(parameters,
-                    structTree != null ? structTree.mcidMap : null, pageIndex);
+                    structTree != null ? structTree.mcidMap : null, pageIndex, fontCache);
             drawer.drawPage(graphics, page.getCropBox());
             ExtractorUtil.pdfPostCheckFonts(document, page);
             ContentGroup contentGroup = drawer.pageContentGroup;
@@ -522,11 +533,35 @@ public class ContentGroupRenderer extends PDFRenderer {
             }
         }
         List<TextChunk> textChunks = contentGroup.getAllTextChunks();
+        // 预设了页眉页脚 (如来自结构树) 的页面需要完整分析, 也不参与学习; 必须在下面的分析设置页眉页脚之前判断
+        boolean presetPagination = hasPresetPagination(textChunks);
         if (null == leftWing) {
             leftWing = contentLeft;
         } else {
             contentGroup.addTag(Tags.PAGINATION_LEFT_LINE, leftWing);
         }
+        if (null == rightWing) {
+            rightWing = contentRight;
+        } else {
+            contentGroup.addTag(Tags.PAGINATION_RIGHT_LINE, rightWing);
+        }
+        Float lineHeaderTop = headerTop;
+        Float lineFooterBottom = footerBottom;
+        if (lineHeaderTop != null) {
+            contentGroup.addTag(Tags.PAGINATION_TOP_LINE, lineHeaderTop);
+        }
+        if (lineFooterBottom != null) {
+            contentGroup.addTag(Tags.PAGINATION_BOTTOM_LINE, lineFooterBottom);
+        }
+
+        // 先尝试用前面页面学到的页眉页脚版式
+        if (!presetPagination
+                && applyPaginationModel(contentGroup, textChunks, leftWing, rightWing, lineHeaderTop, lineFooterBottom)) {
+            ExtractMetrics.count(COUNT_PAGINATION_FAST);
+            return;
+        }
+        ExtractMetrics.count(COUNT_PAGINATION_FULL);
+
         if (null == headerTop) {
             TextChunk header = textChunks.stream().filter(TextChunk::isPageHeader)
                     .filter(TextChunk::isHorizontal)
@@ -552,13 +587,6 @@ public class ContentGroupRenderer extends PDFRenderer {
                     headerTop = contentTop;
                 }
             }
-        } else {
-            contentGroup.addTag(Tags.PAGINATION_TOP_LINE, headerTop);
-        }
-        if (null == rightWing) {
-            rightWing = contentRight;
-        } else {
-            contentGroup.addTag(Tags.PAGINATION_RIGHT_LINE, rightWing);
         }
         if (null == footerBottom) {
             // 没有页脚线, 通过文字来判断
@@ -582,34 +610,16 @@ public class ContentGroupRenderer extends PDFRenderer {
                     footerBottom = contentBottom;
                 }
             }
-        } else {
-            contentGroup.addTag(Tags.PAGINATION_BOTTOM_LINE, footerBottom);
         }
 
         Rectangle paginationFrame = new Rectangle(leftWing, headerTop,
                 rightWing - leftWing, footerBottom - headerTop);
 
-        List<TextChunk> textChunkList = new ArrayList<>();
-        contentGroup.forEachRecursive(TextChunkItem.class, textChunkItem -> {
-            TextChunk textChunk = textChunkItem.getItem();
-            if (!textChunk.isVisible() || textChunk.isPagination()) {
-                return;
-            }
-
-            if (FloatUtils.flte(textChunk.getBottom(), paginationFrame.getTop(), 5.)
-                    && (textChunk.isHorizontal() || textChunk.getDirection() == TextDirection.UNKNOWN)) {
-                textChunkList.add(textChunk);
-            } else if (FloatUtils.fgte(textChunk.getTop(), paginationFrame.getBottom(),3.)
-                    && (textChunk.isHorizontal() || textChunk.getDirection() == TextDirection.UNKNOWN)) {
-                textChunkList.add(textChunk);
-            } else if (textChunk.getRight() < paginationFrame.getMinX() && textChunk.isVertical()) {
-                // 设置左侧翼属性
-                textChunk.setPaginationType(PaginationType.LEFT_WING);
-            } else if (textChunk.getLeft() > paginationFrame.getMaxX() && textChunk.isVertical()) {
-                // 设置右侧翼属性
-                textChunk.setPaginationType(PaginationType.RIGHT_WING);
-            }
-        });
+        List<TextChunk> headerCandidates = new ArrayList<>();
+        List<TextChunk> footerCandidates = new ArrayList<>();
+        collectPaginationCandidates(contentGroup, paginationFrame, headerCandidates, footerCandidates);
+        List<TextChunk> textChunkList = new ArrayList<>(headerCandidates);
+        textChunkList.addAll(footerCandidates);
 
         List<TextChunk> tempTextChunks = new TextChunkMerger().merge(textChunkList);
         tempTextChunks.removeIf(textChunk -> !textChunk.isHorizontal());
@@ -644,6 +654,135 @@ public class ContentGroupRenderer extends PDFRenderer {
                     }
                 });
         contentGroup.addTag(Tags.PAGINATION_FRAME, paginationFrame);
+
+        // 记录本页的页眉页脚版式, 供后面的页面使用; 预设了页眉页脚的页面不参与
+        if (!presetPagination) {
+            paginationModel.learnHeader(lineHeaderTop != null, headerTop, headerCandidates,
+                    (int) headerCandidates.stream().filter(TextChunk::isPageHeader).count());
+            paginationModel.learnFooter(lineFooterBottom != null, footerBottom, footerCandidates,
+                    (int) footerCandidates.stream().filter(TextChunk::isPageFooter).count());
+        }
+    }
+
+    /**
+     * 收集页眉页脚区域内的候选文字, 同时设置左右侧翼属性
+     */
+    private static void collectPaginationCandidates(ContentGroup contentGroup, Rectangle paginationFrame,
+                                                    List<TextChunk> headerCandidates, List<TextChunk> footerCandidates) {
+        List<TextChunk> textChunks = collectPaginationChunks(contentGroup);
+        for (TextChunk textChunk : textChunks) {
+            if (isHeaderCandidate(textChunk, paginationFrame.getTop())) {
+                headerCandidates.add(textChunk);
+            } else if (isFooterCandidate(textChunk, paginationFrame.getBottom())) {
+                footerCandidates.add(textChunk);
+            }
+        }
+        markPaginationWings(textChunks, paginationFrame);
+    }
+
+    /**
+     * 收集可能是页眉页脚或者侧翼的文字 (可见并且还没有页眉页脚属性), 和区域的边界无关, 每个页面只需要遍历一次
+     */
+    private static List<TextChunk> collectPaginationChunks(ContentGroup contentGroup) {
+        List<TextChunk> textChunks = new ArrayList<>();
+        contentGroup.forEachRecursive(TextChunkItem.class, textChunkItem -> {
+            TextChunk textChunk = textChunkItem.getItem();
+            if (textChunk.isVisible() && !textChunk.isPagination()) {
+                textChunks.add(textChunk);
+            }
+        });
+        return textChunks;
+    }
+
+    private static boolean isHeaderCandidate(TextChunk textChunk, float headerTop) {
+        return FloatUtils.flte(textChunk.getBottom(), headerTop, 5.)
+                && (textChunk.isHorizontal() || textChunk.getDirection() == TextDirection.UNKNOWN);
+    }
+
+    private static boolean isFooterCandidate(TextChunk textChunk, float footerBottom) {
+        return FloatUtils.fgte(textChunk.getTop(), footerBottom, 3.)
+                && (textChunk.isHorizontal() || textChunk.getDirection() == TextDirection.UNKNOWN);
+    }
+
+    /**
+     * 设置左右侧翼属性, 侧翼是竖排的文字, 不会同时是页眉页脚的候选文字
+     */
+    private static void markPaginationWings(List<TextChunk> textChunks, Rectangle paginationFrame) {
+        for (TextChunk textChunk : textChunks) {
+            if (!textChunk.isVertical()) {
+                continue;
+            }
+            if (textChunk.getRight() < paginationFrame.getMinX()) {
+                // 设置左侧翼属性
+                textChunk.setPaginationType(PaginationType.LEFT_WING);
+            } else if (textChunk.getLeft() > paginationFrame.getMaxX()) {
+                // 设置右侧翼属性
+                textChunk.setPaginationType(PaginationType.RIGHT_WING);
+            }
+        }
+    }
+
+    private static boolean hasPresetPagination(List<TextChunk> textChunks) {
+        for (TextChunk textChunk : textChunks) {
+            if (textChunk.isPageHeaderOrFooter()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 用前面页面学到的页眉页脚版式判断当前页面, 页眉页脚区域内的文字和记录的指纹一致时直接套用记录的结果
+     * 调用者需要先排除预设了页眉页脚的页面
+     * @return 是否成功套用, 失败时需要做完整的分析
+     */
+    private boolean applyPaginationModel(ContentGroup contentGroup, List<TextChunk> textChunks,
+                                         float leftWing, float rightWing, Float lineHeaderTop, Float lineFooterBottom) {
+        List<PaginationModel.Band> headerBands = paginationModel.getStableHeaders(lineHeaderTop != null);
+        List<PaginationModel.Band> footerBands = paginationModel.getStableFooters(lineFooterBottom != null);
+        if (headerBands.isEmpty() || footerBands.isEmpty()) {
+            return false;
+        }
+        // 候选文字只收集一次, 每种版式的区域在内存中过滤
+        List<TextChunk> paginationChunks = collectPaginationChunks(contentGroup);
+        List<TextChunk> headerCandidates = new ArrayList<>();
+        List<TextChunk> footerCandidates = new ArrayList<>();
+        for (PaginationModel.Band headerBand : headerBands) {
+            float headerTop = lineHeaderTop != null ? lineHeaderTop : headerBand.edge;
+            headerCandidates.clear();
+            for (TextChunk textChunk : paginationChunks) {
+                if (isHeaderCandidate(textChunk, headerTop)) {
+                    headerCandidates.add(textChunk);
+                }
+            }
+            if (!headerBand.fingerprint.equals(PaginationModel.fingerprint(headerCandidates))) {
+                continue;
+            }
+            for (PaginationModel.Band footerBand : footerBands) {
+                float footerBottom = lineFooterBottom != null ? lineFooterBottom : footerBand.edge;
+                footerCandidates.clear();
+                for (TextChunk textChunk : paginationChunks) {
+                    if (!isHeaderCandidate(textChunk, headerTop) && isFooterCandidate(textChunk, footerBottom)) {
+                        footerCandidates.add(textChunk);
+                    }
+                }
+                if (!footerBand.fingerprint.equals(PaginationModel.fingerprint(footerCandidates))) {
+                    continue;
+                }
+                Rectangle paginationFrame = new Rectangle(leftWing, headerTop,
+                        rightWing - leftWing, footerBottom - headerTop);
+                if (headerBand.marked) {
+                    headerCandidates.forEach(textChunk -> textChunk.setPaginationType(PaginationType.HEADER));
+                }
+                if (footerBand.marked) {
+                    footerCandidates.forEach(textChunk -> textChunk.setPaginationType(PaginationType.FOOTER));
+                }
+                markPaginationWings(paginationChunks, paginationFrame);
+                contentGroup.addTag(Tags.PAGINATION_FRAME, paginationFrame);
+                return true;
+            }
+        }
+        return false;
     }
 
     private static final class PageStructTree {
@@ -669,6 +808,9 @@ public class ContentGroupRenderer extends PDFRenderer {
         private static final Logger LOGGER = LogManager.getLogger();
         private final Map<Integer, PDStructureElement> structTreeInfo;
         private final int pageIndex;
+        private final FontCache fontCache;
+        private PDFont lastFont;
+        private FontCache.FontInfo lastFontInfo;
         private Stack<Operator> operatorStack = new Stack<>();
         private ContentGroup pageContentGroup;
         private ContentGroup currentContentGroup;
@@ -698,16 +840,28 @@ public class ContentGroupRenderer extends PDFRenderer {
          *
          * @param parameters Parameters for page drawing.
          * @param structTreeInfo
+         * @param fontCache 文档的字体缓存
          * @throws IOException If there is an error loading properties from the file.
          */
         public ContentGroupPageDrawer(PageDrawerParameters parameters,
-                                      Map<Integer, PDStructureElement> structTreeInfo, int pageIndex) throws IOException {
+                                      Map<Integer, PDStructureElement> structTreeInfo, int pageIndex,
+                                      FontCache fontCache) throws IOException {
             super(parameters);
             addOperator(new BeginMarkedContentSequenceWithProperties());
             addOperator(new BeginMarkedContentSequence());
             addOperator(new EndMarkedContentSequence());
             this.structTreeInfo = structTreeInfo;
             this.pageIndex = pageIndex;
+            this.fontCache = fontCache;
+        }
+
+        private FontCache.FontInfo getFontInfo(PDFont font) {
+            // 连续的字符通常使用同一个字体
+            if (font != lastFont) {
+                lastFontInfo = fontCache.getFontInfo(font);
+                lastFont = font;
+            }
+            return lastFontInfo;
         }
 
         @Override
@@ -1088,19 +1242,14 @@ public class ContentGroupRenderer extends PDFRenderer {
         }
 
         private TextElement createTextElement(Matrix textRenderingMatrix, PDFont font, int code, String unicode, Vector displacement) throws IOException {
-            unicode = FontUtils.getUnicode(font, code);
+            FontCache.FontInfo fontInfo = getFontInfo(font);
+            unicode = fontInfo.getUnicode(font, code);
             if (StringUtils.isEmpty(unicode)) {
                 return null;
             }
 
             Matrix textMatrix = getTextMatrix();
-            BoundingBox bbox = FontUtils.getFontBBox(font);
-            //BoundingBox bbox = font.getBoundingBox();
-            if (bbox.getLowerLeftY() < Short.MIN_VALUE) {
-                // PDFBOX-2158 and PDFBOX-3130
-                // files by Salmat eSolutions / ClibPDF Library
-                bbox.setLowerLeftY(-(bbox.getLowerLeftY() + 65536));
-            }
+            BoundingBox bbox = fontInfo.getBoundingBox();
             // advance width, bbox height (glyph space)
             float xadvance = font.getWidth(code);
             float bboxHeight = bbox.getHeight();
@@ -1176,27 +1325,7 @@ public class ContentGroupRenderer extends PDFRenderer {
             // Text or Disp to represent if the values are in text or disp units (no glyph units are
             // saved).
 
-            float glyphSpaceToTextSpaceFactor = 1 / 1000f;
-            if (font instanceof PDType3Font) {
-                glyphSpaceToTextSpaceFactor = font.getFontMatrix().getScaleX();
-            }
-
-            float spaceWidthText = 0;
-            try {
-                // to avoid crash as described in PDFBOX-614, see what the space displacement should be
-                spaceWidthText = font.getSpaceWidth() * glyphSpaceToTextSpaceFactor;
-            } catch (Throwable exception) {
-                LOGGER.warn(exception, exception);
-            }
-
-            if (spaceWidthText == 0) {
-                spaceWidthText = font.getAverageFontWidth() * glyphSpaceToTextSpaceFactor;
-                // the average space width appears to be higher than necessary so make it smaller
-                spaceWidthText *= .80f;
-            }
-            if (spaceWidthText == 0) {
-                spaceWidthText = 1.0f; // if could not find font, use a generic value
-            }
+            float spaceWidthText = fontInfo.getSpaceWidthText();
 
             // the space width has to be transformed into display units
             float spaceWidthDisplay = Math.abs(spaceWidthText * textRenderingMatrix.getScalingFactorX());
@@ -1211,8 +1340,8 @@ public class ContentGroupRenderer extends PDFRenderer {
             PDGraphicsState state = getGraphicsState();
             PDTextState textState = state.getTextState();
             PDColor color = state.getNonStrokingColor();
-            ClosureInt textStyle = new ClosureInt(0);
-            String fontName = FontUtils.getFontName(font, textStyle);
+            ClosureInt textStyle = new ClosureInt(fontInfo.getFontStyle());
+            String fontName = fontInfo.getFontName();
             // 正常字体渲染为粗体时，往往需要把整体笔画变粗、描边变细确保字体清晰
             if (RenderingMode.FILL_STROKE == textState.getRenderingMode() && state.getLineWidth() < 1) {
                 textStyle.bitOr(TextElement.TEXT_STYLE_BOLD);
@@ -1,5 +1,6 @@
 package com.abcft.pdfextract.core;
 
+import com.abcft.pdfextract.core.model.FontCache;
 import com.abcft.pdfextract.core.office.ExcelDocument;
 import com.abcft.pdfextract.core.office.PowerPointDocument;
 import com.abcft.pdfextract.core.office.WordDocument;
@@ -83,6 +84,10 @@ public class DocumentFactory {
 
         private PDFDocument(PDDocument document) {
             this.document = document;
+            if (document != null) {
+                // 在访问页面之前安装, 页面的资源会使用文档当时的 ResourceCache
+                FontCache.of(document);
+            }
         }
 
         @Override
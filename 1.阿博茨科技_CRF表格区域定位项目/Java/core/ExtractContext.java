@@ -2,6 +2,7 @@ package com.abcft.pdfextract.core;
 
 import com.abcft.pdfextract.core.chart.Chart;
 import com.abcft.pdfextract.core.table.Table;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.abcft.pdfextract.spi.Document;
 import com.abcft.pdfextract.util.Taggable;
 import com.google.gson.JsonObject;
@@ -41,6 +42,8 @@ public class ExtractContext<T> implements Taggable {
 
     private final Map<String, Object> tags = new HashMap<>();  // 辅助标记信息
 
+    private final ExtractMetrics metrics = new ExtractMetrics();  // 文档级别的耗时统计
+
     public ExtractContext(Document<T> document) {
         this.document = document;
     }
@@ -53,6 +56,15 @@ public class ExtractContext<T> implements Taggable {
         return document.getDocument();
     }
 
+    /**
+     * 获取此文档的解析指标统计。
+     *
+     * @return 文档级别的 {@link ExtractMetrics}。
+     */
+    public ExtractMetrics getMetrics() {
+        return metrics;
+    }
+
     public void addCharts(List<Chart> charts) {
         if (charts == null || charts.isEmpty()) {
             return;
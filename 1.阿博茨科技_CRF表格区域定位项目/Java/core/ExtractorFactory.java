@@ -8,23 +8,31 @@ import com.abcft.pdfextract.core.content.Paragraph;
 import com.abcft.pdfextract.core.html.HtmlChartExtractor;
 import com.abcft.pdfextract.core.html.HtmlContentExtractor;
 import com.abcft.pdfextract.core.html.HtmlTableExtractor;
+import com.abcft.pdfextract.core.model.TensorflowManager;
 import com.abcft.pdfextract.core.office.*;
 import com.abcft.pdfextract.core.table.*;
 import com.abcft.pdfextract.core.table.Table;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.abcft.pdfextract.spi.AlgorithmVersion;
 import com.abcft.pdfextract.spi.Document;
 import com.abcft.pdfextract.spi.ExtractType;
 import com.abcft.pdfextract.spi.FileType;
-import com.google.common.base.Stopwatch;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.math3.util.FastMath;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageTree;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Factory used to create PDF extractors.
@@ -33,8 +41,16 @@ import java.util.concurrent.TimeUnit;
  */
 public class ExtractorFactory implements AlgorithmVersion {
 
+    private static final Logger logger = LogManager.getLogger(ExtractorFactory.class);
     private static final Object LOCK = new Object();
     private static ExtractorFactory instance;
+    private static CompletableFuture<Map<String, Boolean>> warmUpFuture;
+
+    /**
+     * 设为 {@code false} 时不自动预热模型, 模型在第一次使用时加载。
+     * 为 {@code true} 时, 在创建 {@link ExtractorFactory} 和同时处理的文档数都确定后预热, 见 {@link #warmUpModels()}。
+     */
+    public static final String WARM_UP_PROPERTY = "pdfextract.models.warmup";
 
     /**
      * Retrieve the only instance of {@link ExtractorFactory}.
@@ -46,12 +62,88 @@ public class ExtractorFactory implements AlgorithmVersion {
             synchronized (LOCK) {
                 if (null == instance) {
                     instance = new ExtractorFactory();
+                    warmUpIfReady();
                 }
             }
         }
         return instance;
     }
 
+    /**
+     * Loads all configured TensorFlow models concurrently and runs a dummy inference on each of them,
+     * so that the first document doesn't pay for model loading and graph optimization.
+     * <p>
+     * Unless {@value #WARM_UP_PROPERTY} is {@code false}, it is started automatically once the factory is created
+     * and the number of concurrent documents is known ({@link #setDocumentWorkers(int)} or
+     * {@code tensorflow.session.document_workers}), because the sessions created by the warm-up are sized for that number.
+     * Calling it explicitly before the number is known sizes the sessions for a single document.
+     * Documents can be processed while warming up, they just wait for the models they use.
+     * Only the first call starts the warm-up, later calls return the same future.
+     *
+     * @return a future completed when all models are ready, with the readiness of each model.
+     */
+    public static CompletableFuture<Map<String, Boolean>> warmUpModels() {
+        synchronized (LOCK) {
+            if (warmUpFuture == null) {
+                try {
+                    warmUpFuture = startWarmUp();
+                } catch (Throwable e) {
+                    logger.error("Failed to warm up models", e);
+                    warmUpFuture = CompletableFuture.completedFuture(new LinkedHashMap<>());
+                }
+            }
+            return warmUpFuture;
+        }
+    }
+
+    private static void warmUpIfReady() {
+        synchronized (LOCK) {
+            if (instance == null || warmUpFuture != null
+                    || !Boolean.parseBoolean(System.getProperty(WARM_UP_PROPERTY, "true"))) {
+                return;
+            }
+            if (!TensorflowManager.INSTANCE.isDocumentWorkersKnown()) {
+                logger.info("Model warm-up deferred until the number of concurrent documents is set");
+                return;
+            }
+            warmUpModels();
+        }
+    }
+
+    private static CompletableFuture<Map<String, Boolean>> startWarmUp() {
+        long start = System.currentTimeMillis();
+        AtomicInteger id = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "model-warmup-" + id.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, CompletableFuture<Boolean>> futures = new LinkedHashMap<>();
+        futures.putAll(TensorflowManager.INSTANCE.warmUp(executor));
+        futures.putAll(TensorflowMode.warmUp(executor));
+        executor.shutdown();
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).handle((ignored, e) -> {
+            Map<String, Boolean> readiness = new LinkedHashMap<>();
+            futures.forEach((name, future) -> readiness.put(name, !future.isCompletedExceptionally() && future.join()));
+            logger.info("Models warmed up in {}ms: {}", System.currentTimeMillis() - start, readiness);
+            return readiness;
+        });
+    }
+
+    /**
+     * Set the number of documents processed concurrently, usually the size of the caller's worker pool.
+     * TensorFlow sessions split the CPU cores among them, and the automatic warm-up waits for it,
+     * so call it before the first document is processed.
+     * Without it (and without {@code tensorflow.session.document_workers}), models are not warmed up automatically
+     * and the peak number of concurrent {@code processPDF} calls seen when a model is loaded is used.
+     *
+     * @param workers the number of concurrent documents.
+     */
+    public static void setDocumentWorkers(int workers) {
+        TensorflowManager.INSTANCE.setDocumentWorkers(workers);
+        warmUpIfReady();
+    }
+
     protected ExtractorFactory() {
         registerExtractorInternal(FileType.PDF, ExtractType.CHART, new ChartExtractor());
         registerExtractorInternal(FileType.PDF, ExtractType.TABLE, new TableExtractor());
@@ -111,6 +203,7 @@ public class ExtractorFactory implements AlgorithmVersion {
                            Pair<TableExtractParameters, ? extends TableCallback> tableExtractPair,
                            Pair<ContentExtractParameters, ? extends ContentExtractorCallback> contentExtractPair
     ) {
+        TensorflowManager.INSTANCE.documentStarted();
         try {
             PageByPageExtractor extractor = new PageByPageExtractor(this, document,
                     chartExtractPair, tableExtractPair, contentExtractPair, null);
@@ -118,6 +211,8 @@ public class ExtractorFactory implements AlgorithmVersion {
             return null;
         } catch (Throwable e) {
             return e;
+        } finally {
+            TensorflowManager.INSTANCE.documentFinished();
         }
     }
 
@@ -136,6 +231,7 @@ public class ExtractorFactory implements AlgorithmVersion {
                                 Pair<ContentExtractParameters, ? extends ContentExtractorCallback> contentExtractPair,
                                 PageCallback pageCallback
     ) {
+        TensorflowManager.INSTANCE.documentStarted();
         try {
             PageByPageExtractor extractor = new PageByPageExtractor(this, document,
                     chartExtractPair, tableExtractPair, contentExtractPair, pageCallback);
@@ -143,6 +239,8 @@ public class ExtractorFactory implements AlgorithmVersion {
             return null;
         } catch (Throwable e) {
             return e;
+        } finally {
+            TensorflowManager.INSTANCE.documentFinished();
         }
     }
 
@@ -402,52 +500,56 @@ public class ExtractorFactory implements AlgorithmVersion {
 
             PDPageTree pages = document.getPages();
 
-
-            Stopwatch contentGroupStopwatch = Stopwatch.createUnstarted();
-            Stopwatch chartStopwatch = Stopwatch.createUnstarted();
-            Stopwatch tableStopwatch = Stopwatch.createUnstarted();
-            Stopwatch contentStopwatch = Stopwatch.createUnstarted();
-            for(int i = startPageIndex; i <= endPageIndex; ++i) {
-                PDPage page = ExtractorUtil.getPdfPage(pages, i);
-                if (null == page) {
-                    continue;
+            ExtractMetrics metrics = extractContext.getMetrics();
+            ExtractMetrics previousMetrics = ExtractMetrics.bind(metrics);
+            try {
+                for (int i = startPageIndex; i <= endPageIndex; ++i) {
+                    PDPage page = ExtractorUtil.getPdfPage(pages, i);
+                    if (null == page) {
+                        continue;
+                    }
+                    PdfExtractContext.PageContext pageContext;
+                    try (ExtractMetrics.Scope ignored = metrics.startScope(ExtractMetrics.STAGE_CONTENT_GROUP)) {
+                        pageContext = extractContext.getPageContext(page, true);
+                    }
+                    // 先解析正文和段落，方便后续段落搜索
+                    if (canProcessContent && !pageContext.timeout()) {
+                        try (ExtractMetrics.Scope ignored = metrics.startScope(ExtractMetrics.STAGE_CONTENT)) {
+                            contentExtractor.processPage(document, i, page, contentParams, contentCallback.result, contentCallback);
+                        }
+                    }
+                    if (canProcessChart && !pageContext.timeout()) {
+                        try (ExtractMetrics.Scope ignored = metrics.startScope(ExtractMetrics.STAGE_CHART)) {
+                            chartExtractor.processPage(document, i, page, chartParams, chartCallback.result, chartCallback);
+                        }
+                    }
+                    if (canProcessTable && !pageContext.timeout()) {
+                        try (ExtractMetrics.Scope ignored = metrics.startScope(ExtractMetrics.STAGE_TABLE)) {
+                            tableExtractor.processPage(document, i, page, tableParams, tableCallback.result, tableCallback);
+                        }
+                    }
+                    if (pageCallback != null) {
+                        pageCallback.onPageFinished(pageContext, page, i,
+                                contentCallback.result.getPage(i),
+                                chartCallback.result.getItemsByPage(i),
+                                tableCallback.result.getItemsByPage(i)
+                        );
+                    }
                 }
-                contentGroupStopwatch.start();
-                PdfExtractContext.PageContext pageContext = extractContext.getPageContext(page, true);
-                contentGroupStopwatch.stop();
-                // 先解析正文和段落，方便后续段落搜索
-                if (canProcessContent && !pageContext.timeout()) {
-                    contentStopwatch.start();
-                    contentExtractor.processPage(document, i, page, contentParams, contentCallback.result, contentCallback);
-                    contentStopwatch.stop();
+                extractContext.setContentGroupDuration(
+                        metrics.getTotalTime(ExtractMetrics.STAGE_CONTENT_GROUP, TimeUnit.MILLISECONDS));
+                if (canProcessChart) {
+                    finish(chartExtractor, document, chartParams, chartCallback, metrics, ExtractMetrics.STAGE_CHART);
                 }
-                if (canProcessChart && !pageContext.timeout()) {
-                    chartStopwatch.start();
-                    chartExtractor.processPage(document, i, page, chartParams, chartCallback.result, chartCallback);
-                    chartStopwatch.stop();
+                if (canProcessTable) {
+                    finish(tableExtractor, document, tableParams, tableCallback, metrics, ExtractMetrics.STAGE_TABLE);
                 }
-                if (canProcessTable && !pageContext.timeout()) {
-                    tableStopwatch.start();
-                    tableExtractor.processPage(document, i, page, tableParams, tableCallback.result, tableCallback);
-                    tableStopwatch.stop();
+                if (canProcessContent) {
+                    finish(contentExtractor, document, contentParams, contentCallback, metrics, ExtractMetrics.STAGE_CONTENT);
                 }
-                if (pageCallback != null) {
-                    pageCallback.onPageFinished(pageContext, page, i,
-                            contentCallback.result.getPage(i),
-                            chartCallback.result.getItemsByPage(i),
-                            tableCallback.result.getItemsByPage(i)
-                    );
-                }
-            }
-            extractContext.setContentGroupDuration(contentGroupStopwatch.elapsed(TimeUnit.MILLISECONDS));
-            if (canProcessChart) {
-                finish(chartExtractor, document, chartParams, chartCallback, chartStopwatch);
-            }
-            if (canProcessTable) {
-                finish(tableExtractor, document, tableParams, tableCallback, tableStopwatch);
-            }
-            if (canProcessContent) {
-                finish(contentExtractor, document, contentParams, contentCallback, contentStopwatch);
+            } finally {
+                ExtractMetrics.bind(previousMetrics);
+                logger.info("Extract metrics: {}", metrics);
             }
         }
 
@@ -459,13 +561,14 @@ public class ExtractorFactory implements AlgorithmVersion {
                 PDDocument document,
                 TParams params,
                 ExtractCallbackWrapper<TItem, TResult, TCallback> wrapper,
-                Stopwatch stopwatch
+                ExtractMetrics metrics,
+                String stage
         ) {
             TResult result = wrapper.result;
-            stopwatch.start();
-            extractor.postProcessing(document, params, result, wrapper.callback);
-            stopwatch.stop();
-            long duration = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            try (ExtractMetrics.Scope ignored = metrics.startScope(stage)) {
+                extractor.postProcessing(document, params, result, wrapper.callback);
+            }
+            long duration = metrics.getTotalTime(stage, TimeUnit.MILLISECONDS);
             result.setExtractDuration(duration);
             wrapper.notifyOnFinished();
         }
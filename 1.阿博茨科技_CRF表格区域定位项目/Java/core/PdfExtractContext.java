@@ -96,6 +96,9 @@ public class PdfExtractContext extends ExtractContext<PDDocument> {
         if (!feedback.has("content_group_duration") && contentGroupDuration > 0) {
             feedback.addProperty("content_group_duration", contentGroupDuration);
         }
+        if (!feedback.has("metrics")) {
+            feedback.add("metrics", getMetrics().toJson());
+        }
         COSDictionary trailer = getNativeDocument().getDocument().getTrailer();
         int fontFlags = trailer.getInt(ExtractorUtil.FONT_FLAGS, 0);
         if (fontFlags != 0) {
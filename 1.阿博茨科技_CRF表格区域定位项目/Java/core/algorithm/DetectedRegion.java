@@ -0,0 +1,35 @@
+package com.abcft.pdfextract.core.algorithm;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * 位图检测得到的一个区域。
+ */
+public final class DetectedRegion {
+
+    /**
+     * Chart 区域, 和检测服务返回的类型编号一致。
+     */
+    public static final int TYPE_CHART = 1;
+    public static final int TYPE_OTHER = 0;
+
+    public final int type;
+    public final String label;
+    public final float score;
+    /**
+     * 区域在图片中的位置, 单位为像素, 原点在左上角。
+     */
+    public final Rectangle2D bound;
+
+    public DetectedRegion(int type, String label, float score, Rectangle2D bound) {
+        this.type = type;
+        this.label = label;
+        this.score = score;
+        this.bound = bound;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DetectedRegion{type=%d, label=%s, score=%.3f, bound=%s}", type, label, score, bound);
+    }
+}
@@ -0,0 +1,64 @@
+package com.abcft.pdfextract.core.algorithm;
+
+import com.abcft.pdfextract.spi.algorithm.ImageDetectResult;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 位图检测/分类的后端。
+ * <p>
+ * 目前有两种实现: {@link GrpcDetectionBackend} 通过 GRPC 调用远程的算法服务, {@link LocalDetectionBackend}
+ * 在进程内直接用 TF 模型处理位图。所有的方法都是异步的, 调用者可以一次提交多个请求再统一等待结果。
+ * 执行失败时返回的 future 以异常结束, 不支持的操作以 {@link UnsupportedOperationException} 结束。
+ */
+public interface DetectionBackend {
+
+    String getName();
+
+    /**
+     * 检测图片中的 Chart 区域。
+     *
+     * @param image 页面或者区域的位图。
+     * @return 检测到的区域, 位置相对 image。
+     */
+    CompletableFuture<List<DetectedRegion>> detectCharts(BufferedImage image);
+
+    /**
+     * 位图分类。
+     *
+     * @param image 要分类的位图。
+     * @return 分类结果, 可能有多个类型。
+     */
+    CompletableFuture<List<ImageClassification>> classifyImage(BufferedImage image);
+
+    /**
+     * 对一组位图分类, 返回和 images 一一对应的 future。
+     * 默认实现逐个调用 {@link #classifyImage(BufferedImage)}, 是否并发由其实现决定;
+     * 实现也可以合并成一个批次, 如 {@link LocalDetectionBackend} 在调用线程上同步批量推理。
+     */
+    default List<CompletableFuture<List<ImageClassification>>> classifyImages(List<BufferedImage> images) {
+        List<CompletableFuture<List<ImageClassification>>> futures = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            futures.add(classifyImage(image));
+        }
+        return futures;
+    }
+
+    /**
+     * 检测图片中的表格等对象 (位图表格解析使用)。
+     *
+     * @param image 页面的位图。
+     * @return 检测到的对象。
+     */
+    CompletableFuture<List<ImageDetectResult>> detectObjects(BufferedImage image);
+
+    /**
+     * 是否支持 {@link #detectObjects}, 不支持时调用者应该改用其他方式或者跳过。
+     */
+    default boolean canDetectObjects() {
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.abcft.pdfextract.core.algorithm;
+
+import com.abcft.pdfextract.core.ExtractContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+/**
+ * 跨页面提交的检测请求。
+ * <p>
+ * 文档的页面是按顺序处理的, 每个页面都等待自己的检测结果时, 远程服务的往返时间会逐页累加。处理一个页面时,
+ * 同时提交后面 {@value #LOOKAHEAD_PROPERTY} 个页面 (默认 2, 0 表示不提前提交) 的请求, 这些请求在后端的线程池中
+ * 和当前页面的解析并行执行, 处理到这些页面时直接取结果。
+ * <p>
+ * 只适合每个页面都会调用的检测 (如位图表格检测), 否则提前提交的请求可能用不到。提交请求的函数在调用线程上执行,
+ * 可以访问文档 (如渲染页面)。每个文档的每种检测一个实例, 保存在文档的 {@link ExtractContext} 中。
+ *
+ * @param <T> 检测结果的类型。
+ */
+public final class DetectionLookahead<T> {
+
+    public static final String LOOKAHEAD_PROPERTY = "pdfextract.grpc.lookahead";
+
+    private static final String CONTEXT_TAG_PREFIX = "algorithm.detection_lookahead.";
+
+    // 已经提交还没有取走的请求, 按页码 (从 0 开始)
+    private final Map<Integer, CompletableFuture<T>> pending = new HashMap<>();
+
+    private DetectionLookahead() {
+    }
+
+    /**
+     * 取得文档的一种检测的实例。
+     *
+     * @param context 文档的 context, 为 null 时返回 null。
+     * @param name 检测的名称, 区分同一个文档的不同检测。
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DetectionLookahead<T> of(ExtractContext<?> context, String name) {
+        if (context == null) {
+            return null;
+        }
+        String tag = CONTEXT_TAG_PREFIX + name;
+        synchronized (context) {
+            DetectionLookahead<T> lookahead = (DetectionLookahead<T>) context.getTag(tag);
+            if (lookahead == null) {
+                lookahead = new DetectionLookahead<>();
+                context.addTag(tag, lookahead);
+            }
+            return lookahead;
+        }
+    }
+
+    /**
+     * 提前提交请求的页面数。
+     */
+    public static int getLookahead() {
+        return Math.max(0, Integer.getInteger(LOOKAHEAD_PROPERTY, 2));
+    }
+
+    /**
+     * 取得页面的检测请求, 还没有提交时现在提交, 同时提交后面的页面的请求。
+     *
+     * @param pageIndex 当前页面的页码, 从 0 开始。
+     * @param lastPageIndex 最后一个会处理的页面的页码, 不会为超过它的页面提交请求。
+     * @param submit 提交一个页面的请求, 在调用线程上执行, 页面不能检测时返回 null。
+     * @return 当前页面的请求, 可能为 null。
+     */
+    public synchronized CompletableFuture<T> take(int pageIndex, int lastPageIndex,
+                                                  IntFunction<CompletableFuture<T>> submit) {
+        CompletableFuture<T> current = pending.remove(pageIndex);
+        if (current == null) {
+            current = submit.apply(pageIndex);
+        }
+        // 跳过的页面 (如超时) 不会再来取结果
+        pending.keySet().removeIf(index -> index < pageIndex);
+        int last = Math.min(lastPageIndex, pageIndex + getLookahead());
+        for (int index = pageIndex + 1; index <= last; index++) {
+            if (!pending.containsKey(index)) {
+                CompletableFuture<T> future = submit.apply(index);
+                if (future != null) {
+                    pending.put(index, future);
+                }
+            }
+        }
+        return current;
+    }
+}
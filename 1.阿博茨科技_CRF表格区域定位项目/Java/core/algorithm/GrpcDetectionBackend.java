@@ -0,0 +1,106 @@
+package com.abcft.pdfextract.core.algorithm;
+
+import com.abcft.pdfextract.core.chart.DetectEngine;
+import com.abcft.pdfextract.spi.algorithm.AlgorithmGrpcClient;
+import com.abcft.pdfextract.spi.algorithm.ChartDetectResult;
+import com.abcft.pdfextract.spi.algorithm.ImageDetectResult;
+import com.google.protobuf.ByteString;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 通过 GRPC 调用远程算法服务的检测后端。
+ * <p>
+ * 位图的 PNG 编码和 GRPC 调用都在后台线程里执行, 调用者可以一次提交一个页面的所有区域, 这些请求会并发发送,
+ * 最大并发数通过系统属性 {@value #CONCURRENCY_PROPERTY} 配置 (默认 4), 所有实例共用一个线程池。
+ * 每个页面都要调用的检测可以通过 {@link DetectionLookahead} 提前提交后面页面的请求。
+ */
+public class GrpcDetectionBackend implements DetectionBackend {
+
+    public static final String CONCURRENCY_PROPERTY = "pdfextract.grpc.concurrency";
+
+    private static volatile ExecutorService executor;
+
+    private final AlgorithmGrpcClient client;
+
+    public GrpcDetectionBackend(AlgorithmGrpcClient client) {
+        this.client = client;
+    }
+
+    public AlgorithmGrpcClient getClient() {
+        return client;
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (GrpcDetectionBackend.class) {
+                if (executor == null) {
+                    int concurrency = Integer.getInteger(CONCURRENCY_PROPERTY, 4);
+                    AtomicInteger id = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+                        Thread thread = new Thread(r, "grpc-detect-" + id.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public String getName() {
+        return "grpc";
+    }
+
+    private <T> CompletableFuture<T> call(BufferedImage image, Function<ByteString, T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            ByteString bytes = DetectEngine.bufferedImageToByteString(image);
+            if (bytes == null) {
+                throw new IllegalArgumentException("Failed to encode image");
+            }
+            return request.apply(bytes);
+        }, getExecutor());
+    }
+
+    @Override
+    public CompletableFuture<List<DetectedRegion>> detectCharts(BufferedImage image) {
+        return call(image, client::chartDetect).thenApply(results -> {
+            if (results == null) {
+                return null;
+            }
+            List<DetectedRegion> regions = new ArrayList<>(results.size());
+            for (ChartDetectResult result : results) {
+                Rectangle2D bound = new Rectangle2D.Double(result.imgBound.getMinX(), result.imgBound.getMinY(),
+                        result.imgBound.getMaxX() - result.imgBound.getMinX(),
+                        result.imgBound.getMaxY() - result.imgBound.getMinY());
+                String label = result.type == DetectedRegion.TYPE_CHART ? "chart" : null;
+                regions.add(new DetectedRegion(result.type, label, result.score, bound));
+            }
+            return regions;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<ImageClassification>> classifyImage(BufferedImage image) {
+        return call(image, client::imageClassify).thenApply(ImageClassification::ofAll);
+    }
+
+    @Override
+    public CompletableFuture<List<ImageDetectResult>> detectObjects(BufferedImage image) {
+        return call(image, client::imageDetect);
+    }
+
+    @Override
+    public String toString() {
+        return "GrpcDetectionBackend{" + client + "}";
+    }
+}
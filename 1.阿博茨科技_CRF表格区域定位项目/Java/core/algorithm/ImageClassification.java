@@ -0,0 +1,70 @@
+package com.abcft.pdfextract.core.algorithm;
+
+import com.abcft.pdfextract.spi.algorithm.ImageClassifyResult;
+import com.abcft.pdfextract.spi.algorithm.ImageType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 位图分类的结果, 类型编号和 {@link ImageType} 一致。
+ */
+public final class ImageClassification {
+
+    private static final Map<String, Integer> TYPE_CODES = buildTypeCodes();
+
+    public final int type;
+    public final float score;
+
+    public ImageClassification(int type, float score) {
+        this.type = type;
+        this.score = score;
+    }
+
+    public static ImageClassification of(ImageClassifyResult result) {
+        return new ImageClassification(result.type, result.score);
+    }
+
+    public static List<ImageClassification> ofAll(List<ImageClassifyResult> results) {
+        if (results == null) {
+            return null;
+        }
+        List<ImageClassification> classifications = new ArrayList<>(results.size());
+        for (ImageClassifyResult result : results) {
+            classifications.add(of(result));
+        }
+        return classifications;
+    }
+
+    /**
+     * 根据类型名称 (和 {@link ImageType#desc(int)} 一致, 如 LINE_CHART) 查找类型编号, 本地模型的标签使用的是名称。
+     *
+     * @return 类型编号, 没有对应的类型时返回 -1。
+     */
+    public static int typeOf(String name) {
+        Integer code = TYPE_CODES.get(name);
+        return code != null ? code : -1;
+    }
+
+    private static Map<String, Integer> buildTypeCodes() {
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < 256; i++) {
+            try {
+                String desc = ImageType.desc(i);
+                if (desc != null) {
+                    codes.putIfAbsent(desc, i);
+                }
+            } catch (RuntimeException ignored) {
+                // 无效的编号
+            }
+        }
+        return codes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%.3f)", ImageType.desc(type), score);
+    }
+}
@@ -0,0 +1,94 @@
+package com.abcft.pdfextract.core.algorithm;
+
+import com.abcft.pdfextract.core.chart.TFDetectChartTable;
+import com.abcft.pdfextract.core.chart.TFDetectChartType;
+import com.abcft.pdfextract.core.chart.TFModelConfig;
+import com.abcft.pdfextract.spi.algorithm.ImageDetectResult;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 进程内的检测后端, 直接用 TF 模型处理位图, 不需要 PNG 编码和网络调用, 也方便离线测试。
+ * <p>
+ * Chart 区域检测使用 {@link TFDetectChartTable} 的模型, 位图分类使用 {@link TFDetectChartType} 的模型,
+ * 模型文件由 {@link TFModelConfig} 配置。位图表格检测目前没有可以在本地运行的模型, {@link #canDetectObjects()}
+ * 返回 false, {@link #detectObjects} 返回以 {@link UnsupportedOperationException} 结束的 future。
+ * <p>
+ * 推理在调用线程里执行, 返回的 future 都已经完成。一组位图的分类合并成批次推理 (需要模型支持批量输入)。
+ */
+public class LocalDetectionBackend implements DetectionBackend {
+
+    /**
+     * 位图分类的概率阀值, 和 {@link TFDetectChartType#predictImageChartType(Object)} 一致。
+     */
+    private static final float CLASSIFY_PROB_THRESHOLD = 0.65f;
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    /**
+     * 判断本地模型是否可用。
+     */
+    public static boolean isAvailable() {
+        TFModelConfig config = TFModelConfig.getInstance();
+        return config.isDCTInfoConfigValid() && config.isDCTConfigValid();
+    }
+
+    private static <T> CompletableFuture<T> run(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            T result = supplier.get();
+            if (result == null) {
+                future.completeExceptionally(new IllegalStateException("Local model isn't available"));
+            } else {
+                future.complete(result);
+            }
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<List<DetectedRegion>> detectCharts(BufferedImage image) {
+        return run(() -> TFDetectChartTable.getInstance().detectRegions(image));
+    }
+
+    @Override
+    public CompletableFuture<List<ImageClassification>> classifyImage(BufferedImage image) {
+        return run(() -> TFDetectChartType.getInstance().classifyImage(image, CLASSIFY_PROB_THRESHOLD));
+    }
+
+    /**
+     * 在调用线程上合并成批次推理, 返回时所有的 future 都已完成。
+     */
+    @Override
+    public List<CompletableFuture<List<ImageClassification>>> classifyImages(List<BufferedImage> images) {
+        CompletableFuture<List<List<ImageClassification>>> batch =
+                run(() -> TFDetectChartType.getInstance().classifyImages(images, CLASSIFY_PROB_THRESHOLD));
+        List<CompletableFuture<List<ImageClassification>>> futures = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            int index = i;
+            futures.add(batch.thenCompose(results -> run(() -> results.get(index))));
+        }
+        return futures;
+    }
+
+    @Override
+    public CompletableFuture<List<ImageDetectResult>> detectObjects(BufferedImage image) {
+        CompletableFuture<List<ImageDetectResult>> future = new CompletableFuture<>();
+        future.completeExceptionally(new UnsupportedOperationException("Bitmap table detection isn't available locally"));
+        return future;
+    }
+
+    @Override
+    public boolean canDetectObjects() {
+        return false;
+    }
+}
@@ -10,7 +10,7 @@ import com.abcft.pdfextract.core.model.Rectangle;
 import com.abcft.pdfextract.core.model.TextChunk;
 import com.abcft.pdfextract.core.util.FileId;
 import com.abcft.pdfextract.core.util.GraphicsUtil;
-import com.abcft.pdfextract.spi.algorithm.ImageClassifyResult;
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
 import com.abcft.pdfextract.util.Confident;
 import com.abcft.pdfextract.spi.BaseChart;
 import com.abcft.pdfextract.spi.ChartType;
@@ -368,7 +368,7 @@ public class Chart implements BaseChart, ExtractedItem, ContentGroupDrawable, Co
     @SerializedName("subtypes")
     public List<ChartType> subTypes = new ArrayList<>();                // 复合图包含的子类型集 下一步细分复合类型
 
-    public List<ImageClassifyResult> imageClassifyTypes = new ArrayList<>();      // 调用位图分类服务得到的类型信息
+    public List<ImageClassification> imageClassifyTypes = new ArrayList<>();      // 调用位图分类服务得到的类型信息
 
     AxisLegendTextGroupInfo groupInfo = new AxisLegendTextGroupInfo();  // Chart内刻度和图例的TextElement的组号状态信息
 
@@ -1,10 +1,12 @@
 package com.abcft.pdfextract.core.chart;
 
+import com.abcft.pdfextract.core.algorithm.DetectionBackend;
+import com.abcft.pdfextract.core.algorithm.GrpcDetectionBackend;
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.abcft.pdfextract.spi.ChartType;
 import com.abcft.pdfextract.spi.algorithm.AlgorithmGrpcClient;
-import com.abcft.pdfextract.spi.algorithm.ImageClassifyResult;
 import com.abcft.pdfextract.spi.algorithm.ImageType;
-import com.google.protobuf.ByteString;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -13,22 +15,26 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by myyang on 17-12-14.
  */
 public class ChartClassify {
     private static Logger logger = LogManager.getLogger();
-    private static AlgorithmGrpcClient client = null;
-    private static long imageClassifyTime = 0L;
-    private static long renderPageImageTime = 0L;
-    private static long imageClassifyCount = 0L;
-    private static long renderPageImageCount = 0L;
-    //public static long savePageImageTime = 0L;
-    //public static long savePageImageCount = 0L;
+    private static DetectionBackend backend = null;
 
     public static void setChartClassifyClient(AlgorithmGrpcClient client) {
-        ChartClassify.client = client;
+        ChartClassify.backend = client != null ? new GrpcDetectionBackend(client) : null;
+    }
+
+    /**
+     * 设置位图分类使用的后端, 为 null 时不做位图分类
+     * @param backend
+     */
+    public static void setClassifyBackend(DetectionBackend backend) {
+        ChartClassify.backend = backend;
     }
 
     /**
@@ -51,29 +57,24 @@ public class ChartClassify {
     }
 
     /**
-     * grpc方式调用位图分类服务
+     * 调用位图分类服务
      * @param image
      * @return
      */
-    public static List<ImageClassifyResult> getImageClassifyResult(BufferedImage image) {
+    public static List<ImageClassification> getImageClassification(BufferedImage image) {
         // 判断数据有效性
-        if (client == null || image == null) {
+        DetectionBackend backend = ChartClassify.backend;
+        if (backend == null || image == null) {
             return null;
         }
 
-        // 将BufferedImage对象转换为BytesString对象
-        ByteString bytes = DetectEngine.bufferedImageToByteString(image);
-        if (bytes == null) {
+        // 分类 位图Chart
+        List<ImageClassification> objs = null;
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_CHART_CLASSIFY)) {
+            objs = backend.classifyImage(image).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
-        }
-
-        // 通过GRPC方式调用　分类 位图Chart
-        List<ImageClassifyResult> objs = null;
-        try {
-            long start = System.currentTimeMillis();
-            objs = client.imageClassify(bytes);
-            long costTime = System.currentTimeMillis() - start;
-            logger.info("grpc image classify costs {}ms", costTime);
         } catch (Exception e) {
             logger.info("image classify failure");
             return null;
@@ -85,7 +86,41 @@ public class ChartClassify {
         return objs;
     }
 
-    public static String imageClassifyString(ImageClassifyResult obj) {
+    /**
+     * 对一组位图分类, 所有请求一次提交, 并发执行
+     * @param images
+     * @return 和 images 一一对应的分类结果, 单个分类失败时对应的结果为 null; 没有可用的分类后端时返回 null
+     */
+    public static List<List<ImageClassification>> classifyImages(List<BufferedImage> images) {
+        // 判断数据有效性
+        DetectionBackend backend = ChartClassify.backend;
+        if (backend == null || images == null) {
+            return null;
+        }
+
+        List<List<ImageClassification>> res = new ArrayList<>(images.size());
+        if (images.isEmpty()) {
+            return res;
+        }
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_CHART_CLASSIFY)) {
+            List<CompletableFuture<List<ImageClassification>>> futures = backend.classifyImages(images);
+            for (CompletableFuture<List<ImageClassification>> future : futures) {
+                List<ImageClassification> objs = null;
+                try {
+                    objs = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                } catch (Exception e) {
+                    logger.info("image classify failure");
+                }
+                res.add(objs == null || objs.isEmpty() ? null : objs);
+            }
+        }
+        return res;
+    }
+
+    public static String imageClassifyString(ImageClassification obj) {
         if (obj == null) {
             return null;
         }
@@ -97,14 +132,14 @@ public class ChartClassify {
      * @param objs
      * @return
      */
-    public static boolean isImageValid(List<ImageClassifyResult> objs) {
+    public static boolean isImageValid(List<ImageClassification> objs) {
         if (objs == null || objs.isEmpty()) {
             return false;
         }
 
         // 遍历判断
         for (int i = 0; i < objs.size(); i++) {
-            ImageClassifyResult obj = objs.get(i);
+            ImageClassification obj = objs.get(i);
             String typeValue = ImageType.desc(obj.type);
             //logger.info(typeValue);
             if (isValidImageType(typeValue)) {
@@ -115,14 +150,14 @@ public class ChartClassify {
     }
 
     public static List<ChartType> imageClassifyToChartTypes(
-            List<ImageClassifyResult> objs) {
+            List<ImageClassification> objs) {
         if (objs == null) {
             return null;
         }
 
         List<ChartType> types = new ArrayList<>();
         for (int i = 0; i < objs.size(); i++) {
-            ImageClassifyResult obj = objs.get(i);
+            ImageClassification obj = objs.get(i);
             ChartType type = imageClassifyToChartType(obj);
             if (type == ChartType.UNKNOWN_CHART) {
                 types.clear();
@@ -136,7 +171,7 @@ public class ChartClassify {
         return types;
     }
 
-    public static ChartType imageClassifyToChartType(ImageClassifyResult obj) {
+    public static ChartType imageClassifyToChartType(ImageClassification obj) {
         String typeValue = ImageType.desc(obj.type);
         ChartType type = ChartType.UNKNOWN_CHART;
         if (ImageType.imageTypeIsChart(obj.type)) {
@@ -189,7 +224,7 @@ public class ChartClassify {
      */
     public static List<ChartType> chartClassifyInfos(BufferedImage image) {
         // 通过GRPC方式调用　分类 位图Chart
-        List<ImageClassifyResult> objs = getImageClassifyResult(image);
+        List<ImageClassification> objs = getImageClassification(image);
         return imageClassifyToChartTypes(objs);
     }
 
@@ -200,10 +235,10 @@ public class ChartClassify {
      * @param pathBoxes
      * @return
      */
-    public static List<List<ImageClassifyResult>> pathBoxImageClassify(
+    public static List<List<ImageClassification>> pathBoxImageClassify(
             PDDocument document, int pageIndex, List<PathBox> pathBoxes) {
         // 判断参数有效性
-        if  (client == null || document == null || pageIndex < 0 || pathBoxes == null || pathBoxes.isEmpty()) {
+        if  (backend == null || document == null || pageIndex < 0 || pathBoxes == null || pathBoxes.isEmpty()) {
             return null;
         }
 
@@ -214,7 +249,7 @@ public class ChartClassify {
         }
 
         // 调用位图分类服务
-        List<List<ImageClassifyResult>> res = pageSubAreaClassify(document, pageIndex, areas);
+        List<List<ImageClassification>> res = pageSubAreaClassify(document, pageIndex, areas);
         if (res == null || res.isEmpty() || res.size() != areas.size() ||
                 res.stream().anyMatch(re -> re == null)) {
             return null;
@@ -224,16 +259,19 @@ public class ChartClassify {
         }
     }
 
-    public static List<List<ImageClassifyResult>> pageSubAreaClassify(
+    public static List<List<ImageClassification>> pageSubAreaClassify(
             PDDocument document, int pageIndex, List<Rectangle2D> areas) {
         // 判断参数有效性
-        if  (client == null || document == null || pageIndex < 0 || areas == null || areas.isEmpty()) {
+        if  (backend == null || document == null || pageIndex < 0 || areas == null || areas.isEmpty()) {
             return null;
         }
 
         // 渲染page 尽量调用缓存中的图片
         float scale = 1.0f;
-        BufferedImage imageFile = DetectEngine.getOneShutPageImage(document, pageIndex,  72);
+        BufferedImage imageFile;
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(DetectEngine.STAGE_RENDER_PAGE)) {
+            imageFile = DetectEngine.getOneShutPageImage(document, pageIndex, 72);
+        }
         if (imageFile == null) {
             return null;
         }
@@ -241,14 +279,14 @@ public class ChartClassify {
         int w = imageFile.getWidth();
         int h = imageFile.getHeight();
         // 遍历区域
-        List<List<ImageClassifyResult>> res = new ArrayList<>();
+        List<List<ImageClassification>> res = new ArrayList<>();
         for (Rectangle2D area : areas) {
             List<Integer> subRange = resetSubImageRange(w, h, area, scale);
             // 获取区域图片
             BufferedImage subImage = imageFile.getSubimage(
                     subRange.get(0), subRange.get(1), subRange.get(2), subRange.get(3));
             // 分类
-            List<ImageClassifyResult> objs = getImageClassifyResult(subImage);
+            List<ImageClassification> objs = getImageClassification(subImage);
             if (objs == null) {
                 res.clear();
                 break;
@@ -267,14 +305,14 @@ public class ChartClassify {
      */
     public static List<List<ChartType>> pageChartsClassifyInfos(
             PDDocument document, int pageIndex, List<Rectangle2D> areas) {
-        List<List<ImageClassifyResult>> res = pageSubAreaClassify(document, pageIndex, areas);
+        List<List<ImageClassification>> res = pageSubAreaClassify(document, pageIndex, areas);
         if (res == null || res.isEmpty() || res.size() != areas.size() ||
                 res.stream().anyMatch(re -> re == null)) {
             return null;
         }
 
         List<List<ChartType>> types = new ArrayList<>();
-        for (List<ImageClassifyResult> result : res) {
+        for (List<ImageClassification> result : res) {
             List<ChartType> type = imageClassifyToChartTypes(result);
             types.add(type);
         } // end for area
@@ -299,7 +337,17 @@ public class ChartClassify {
     }
 
     public static void outTimeLog() {
-        if (imageClassifyCount >= 1 && imageClassifyCount > 0 && renderPageImageCount > 0) {
+        ExtractMetrics metrics = ExtractMetrics.current();
+        if (metrics == null) {
+            return;
+        }
+        ExtractMetrics.Timer classifyTimer = metrics.getTimer(ExtractMetrics.STAGE_CHART_CLASSIFY);
+        ExtractMetrics.Timer renderTimer = metrics.getTimer(DetectEngine.STAGE_RENDER_PAGE);
+        long imageClassifyCount = classifyTimer.getCount();
+        long renderPageImageCount = renderTimer.getCount();
+        if (imageClassifyCount > 0 && renderPageImageCount > 0) {
+            long imageClassifyTime = TimeUnit.NANOSECONDS.toMillis(classifyTimer.getTotalNanos());
+            long renderPageImageTime = TimeUnit.NANOSECONDS.toMillis(renderTimer.getTotalNanos());
             logger.info("image classify time :");
             logger.info(imageClassifyTime);
             logger.info("image count :  ");
@@ -313,16 +361,5 @@ public class ChartClassify {
             logger.info("mean time :");
             logger.info(renderPageImageTime / renderPageImageCount);
         }
-        /*
-        if (savePageImageTime > 0 && savePageImageCount >= 1) {
-            logger.info("save page image time :");
-            logger.info(savePageImageTime);
-            logger.info("page count :  ");
-            logger.info(savePageImageCount);
-            logger.info("mean time :");
-            logger.info(savePageImageTime / savePageImageCount);
-        }
-        */
     }
 }
-
@@ -7,8 +7,9 @@ import com.abcft.pdfextract.core.chart.parser.BarParser;
 import com.abcft.pdfextract.core.model.*;
 import com.abcft.pdfextract.core.model.Rectangle;
 import com.abcft.pdfextract.core.util.GraphicsUtil;
+import com.abcft.pdfextract.core.util.RasterPool;
 import com.abcft.pdfextract.spi.ChartType;
-import com.abcft.pdfextract.spi.algorithm.ImageClassifyResult;
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.apache.commons.io.FileUtils;
@@ -234,7 +235,7 @@ public class ChartContentDetector {
                 // 初步判断是否包含矩形对象 并 取出内部点 做进一步的判断
                 List<Double> xs = new ArrayList<>();
                 List<Double> ys = new ArrayList<>();
-                if (ChartPathInfosParser.judgePathContainColumnAndGetPts(pathItem.getItem(), xs, ys)) {
+                if (ChartPathInfosParser.judgePathContainColumnAndGetPts(pathItem.getGeometry(), xs, ys)) {
                     if (xs.size() == 4) {
                         if (h * w > 0.1 * height * width) {
                             continue;
@@ -382,7 +383,7 @@ public class ChartContentDetector {
         }
 
         // 调用位图Chart分类服务 得到类型信息
-        List<List<ImageClassifyResult>> res = ChartClassify.pageSubAreaClassify(context.getNativeDocument(), pageIndex, areas);
+        List<List<ImageClassification>> res = ChartClassify.pageSubAreaClassify(context.getNativeDocument(), pageIndex, areas);
         if (res == null || res.isEmpty() || res.size() != areas.size() ||
                 res.stream().anyMatch(re -> re == null)) {
             return;
@@ -390,7 +391,7 @@ public class ChartContentDetector {
 
         // 判断分类的结果　如果是表格　正文　二维码　Logo other等类型　则设置为无效类型
         for (int i = 0; i < res.size(); i++) {
-            List<ImageClassifyResult> result = res.get(i);
+            List<ImageClassification> result = res.get(i);
             Chart chart = needClassCharts.get(i);
             if (result != null && result.size() == 1) {
                 String typeValue = ChartClassify.imageClassifyString(result.get(0));
@@ -3385,7 +3386,7 @@ public class ChartContentDetector {
                 // 初步判断是否包含矩形对象 并 取出内部点 做进一步的判断
                 List<Double> xs = new ArrayList<>();
                 List<Double> ys = new ArrayList<>();
-                if (ChartPathInfosParser.judgePathContainColumnAndGetPts(pathItem.getItem(), xs, ys)) {
+                if (ChartPathInfosParser.judgePathContainColumnAndGetPts(pathItem.getGeometry(), xs, ys)) {
                     if (xs.size() == 4) {
                         // 去掉面积过大的
                         double w = itemArea.getWidth();
@@ -3770,10 +3771,10 @@ public class ChartContentDetector {
         }
 
         //long start = System.currentTimeMillis();
-        List<List<ImageClassifyResult>> res = ChartClassify.pathBoxImageClassify(context.getNativeDocument(), pageIndex, boxes);
+        List<List<ImageClassification>> res = ChartClassify.pathBoxImageClassify(context.getNativeDocument(), pageIndex, boxes);
         if (res != null && !res.isEmpty() && res.size() == boxes.size()) {
             for (int i = 0; i < res.size(); i++) {
-                List<ImageClassifyResult> result = res.get(i);
+                List<ImageClassification> result = res.get(i);
                 PathBox box = boxes.get(i);
                 box.types = result;
                 if (!ChartClassify.isImageValid(result)) {
@@ -5094,7 +5095,7 @@ public class ChartContentDetector {
         chart.contentGroup = chartContentGroup;
 
         // OCR模块开发中暂时没有使用
-        OCREngine.parserOCRInfos(chart, ocrs, false);
+        OCREngine.parserOCRInfos(chart, ocrs, false, OCRShapeCache.of(context));
 
         // 从内容和结构信息判断chart是否无效
         if (isInValidChart()) {
@@ -6263,7 +6264,7 @@ public class ChartContentDetector {
         }
 
         // 判断是否为虚拟垂直直线对象
-        if (ChartPathInfosParser.isVerticalLine(pathItem.getItem())) {
+        if (ChartPathInfosParser.isVerticalLine(pathItem.getGeometry())) {
             return true;
         }
 
@@ -6340,8 +6341,8 @@ public class ChartContentDetector {
      */
     private boolean isHorizonMeanLine(PathItem pathItem, PathInfo.PathType type) {
         // 判断是否为水平方向的长直线
-        GeneralPath path = (GeneralPath) pathItem.getItem().clone();
-        if (ChartPathInfosParser.isHorizonLongLine(path, chart)) {
+        if (ChartPathInfosParser.isHorizonLongLine(pathItem.getGeometry(), chart)) {
+            GeneralPath path = (GeneralPath) pathItem.getItem().clone();
             ChartPathInfosParser.savePathIntoPathInfo(path, type, pathItem.getColor(), null, pathInfos);
             //ChartPathInfosParser.savePathIntoPathInfo(path, type, pathItem.getColor(), null, specialPathInfos);
             return true;
@@ -6505,7 +6506,7 @@ public class ChartContentDetector {
         if (isSimpleAxisScaleLine(pathItem)) {
             // 如果是单个坐标轴轴标线对象
         }
-        else if (ChartPathInfosParser.isAxisScaleInChart(path, chart)) {
+        else if (ChartPathInfosParser.isAxisScaleInChart(pathItem.getGeometry(), chart)) {
             // 如果是刻度线　暂时不需要作相应的处理 后续精确抽取数据时　再改进
         }
         else if (ChartPathInfosParser.isAxisGridInChart(path, chart)) {
@@ -8119,7 +8120,7 @@ public class ChartContentDetector {
                 continue;
             }
 
-            boolean pathIsArc = ChartPathInfosParser.isPathArc(path, arcobj);
+            boolean pathIsArc = ChartPathInfosParser.isPathArc(pathItem, arcobj);
             if (pathIsArc) {
                 arcobj.color = color;
                 arcobj.path = (GeneralPath) path.clone();
@@ -8313,7 +8314,8 @@ class Grid {
     // 给定Path和类型信息 添加进网格中
     void addPath(PathItem item, BaseContent content) {
         // 过滤页眉页脚
-        Rectangle2D box = item.getItem().getBounds2D();
+        PathGeometry geometry = item.getGeometry();
+        Rectangle2D box = geometry.getBounds2D();
         if (box.getMaxY() < 0.1 * height ||
                 box.getMinY() > 0.9 * height) {
             return;
@@ -8323,8 +8325,7 @@ class Grid {
         List<Double> xs = new ArrayList<>();
         List<Double> ys = new ArrayList<>();
         List<Integer> types = new ArrayList<>();
-        GeneralPath path = item.getItem();
-        if (!PathUtils.getPathKeyPtsInfo(path, xs, ys, types)) {
+        if (!PathUtils.getPathKeyPtsInfo(geometry, xs, ys, types)) {
             return;
         }
         int type = 0;
@@ -8384,13 +8385,13 @@ class Grid {
         // 如果给定文件夹不存在　则尝试建立　如果不成功　则返回 false
         File myFolderPath = new File(dir);
         FileOutputStream output = null;
-        try {
+        try (RasterPool.Lease lease = GraphicsUtil.leaseImageRGB(nColumn, nLine)) {
             if (!myFolderPath.exists()) {
                 myFolderPath.mkdir();
             }
             File saveFile = new File(dir, filename);
             output = new FileOutputStream(saveFile);
-            BufferedImage chartImage = GraphicsUtil.getBufferedImageRGB(nColumn, nLine);
+            BufferedImage chartImage = lease.getImage();
             for (int i = 0; i < nLine; i++) {
                 for (int j = 0; j < nColumn; j++) {
                     GridContent ele = get(i, j);
@@ -8414,7 +8415,7 @@ class PathBox {
     public Rectangle2D box = null;
     public List<Integer> items = new ArrayList<>();
     public List<TextChunk> chunks = new ArrayList<>();
-    public List<ImageClassifyResult> types = new ArrayList<>();
+    public List<ImageClassification> types = new ArrayList<>();
     public TextChunk nearTitle = null;
     public TextChunk nearSource = null;
     public boolean extendTitle = false;
@@ -496,8 +496,11 @@ public class ChartPathInfosParser {
         }
 
         // 计算当前包围框
-        GeneralPath path = pathItem.getItem();
-        Rectangle2D box = path.getBounds2D();
+        PathGeometry geometry = pathItem.getGeometry();
+        if (!geometry.isCircleShape()) {
+            return false;
+        }
+        Rectangle2D box = geometry.getBounds2D();
         if (box.getWidth() < 20.0 && box.getHeight() < 20.0) {
             return false;
         }
@@ -526,7 +529,7 @@ public class ChartPathInfosParser {
         List<Double> curveXs = new ArrayList<>();
         List<Double> curveYs = new ArrayList<>();
         List<Integer> types = new ArrayList<>();
-        if (!PathUtils.getRingPathPts(path, xs, ys, curveXs, curveYs, types)) {
+        if (!PathUtils.getRingPathPts(geometry, xs, ys, curveXs, curveYs, types)) {
             return false;
         }
         // 判断点集类型是否合适
@@ -574,8 +577,11 @@ public class ChartPathInfosParser {
             ArcObject arcobj,
             List<ArcObject> arcs,
             List<List<ArcObject>> pies) {
-        GeneralPath path = pathItem.getItem();
-        Rectangle2D box = path.getBounds2D();
+        PathGeometry geometry = pathItem.getGeometry();
+        if (!geometry.isRingShape()) {
+            return false;
+        }
+        Rectangle2D box = geometry.getBounds2D();
         if (box.getWidth() < 20.0 && box.getHeight() < 20.0) {
             return false;
         }
@@ -584,7 +590,7 @@ public class ChartPathInfosParser {
         List<Double> curveXs = new ArrayList<>();
         List<Double> curveYs = new ArrayList<>();
         List<Integer> types = new ArrayList<>();
-        if (!PathUtils.getRingPathPts(path, xs, ys, curveXs, curveYs, types)) {
+        if (!PathUtils.getRingPathPts(geometry, xs, ys, curveXs, curveYs, types)) {
             return false;
         }
 
@@ -1102,6 +1108,13 @@ public class ChartPathInfosParser {
         return pathIsArc;
     }
 
+    /**
+     * 同 {@link #isPathArc(GeneralPath, ArcObject)}, 先用 {@link PathGeometry#isArcShape()} 排除不可能是扇形的路径
+     */
+    public static boolean isPathArc(PathItem pathItem, ArcObject arcobj) {
+        return pathItem.getGeometry().isArcShape() && isPathArc(pathItem.getItem(), arcobj);
+    }
+
     public static ArcObject parseArc(GeneralPath path) {
         ArcObject arcObj = new ArcObject();
         boolean isArc = isPathArc(path, arcObj);
@@ -1469,6 +1482,13 @@ public class ChartPathInfosParser {
         return count;
     }
 
+    /**
+     * 同 {@link #getPtsSizeOfPath(GeneralPath)}, 使用已经解码的路径
+     */
+    public static int getPtsSizeOfPath(PathGeometry geometry) {
+        return geometry.getPointCount();
+    }
+
     /**
      * 测试　给定组合segmentsPath 是否能和PathInfos合并
      * 即其起始点和同color的PathInfo的终点近似相同
@@ -1798,6 +1818,20 @@ public class ChartPathInfosParser {
         List<Double> xs = new ArrayList<>();
         List<Double> ys = new ArrayList<>();
         PathUtils.getPathPts(path, xs, ys);
+        return isVerticalLine(xs, ys);
+    }
+
+    /**
+     * 同 {@link #isVerticalLine(GeneralPath)}, 使用已经解码的路径
+     */
+    public static boolean isVerticalLine(PathGeometry geometry) {
+        List<Double> xs = new ArrayList<>();
+        List<Double> ys = new ArrayList<>();
+        geometry.getPoints(xs, ys);
+        return isVerticalLine(xs, ys);
+    }
+
+    private static boolean isVerticalLine(List<Double> xs, List<Double> ys) {
         int n = ys.size();
         if (n <= 1) {
             return false;
@@ -1822,6 +1856,20 @@ public class ChartPathInfosParser {
         List<Double> xs = new ArrayList<>();
         List<Double> ys = new ArrayList<>();
         PathUtils.getPathPts(path, xs, ys);
+        return isHorizonLongLine(xs, ys, chart);
+    }
+
+    /**
+     * 同 {@link #isHorizonLongLine(GeneralPath, Chart)}, 使用已经解码的路径
+     */
+    public static boolean isHorizonLongLine(PathGeometry geometry, Chart chart) {
+        List<Double> xs = new ArrayList<>();
+        List<Double> ys = new ArrayList<>();
+        geometry.getPoints(xs, ys);
+        return isHorizonLongLine(xs, ys, chart);
+    }
+
+    private static boolean isHorizonLongLine(List<Double> xs, List<Double> ys, Chart chart) {
         int n = ys.size();
         if (n <= 1) {
             return false;
@@ -2229,8 +2277,18 @@ public class ChartPathInfosParser {
      * @return 如果检测为坐标刻度线　则返回 true
      */
     public static boolean isAxisScaleInChart(GeneralPath path, Chart chart) {
+        return isAxisScaleInChart(path.getBounds2D(), path.getPathIterator(null), chart);
+    }
+
+    /**
+     * 同 {@link #isAxisScaleInChart(GeneralPath, Chart)}, 使用已经解码的路径
+     */
+    public static boolean isAxisScaleInChart(PathGeometry geometry, Chart chart) {
+        return isAxisScaleInChart(geometry.getBounds2D(), geometry.getPathIterator(), chart);
+    }
+
+    private static boolean isAxisScaleInChart(Rectangle2D rect, PathIterator iter, Chart chart) {
         // 判断 path 的矩形框的长宽范围是否有效
-        Rectangle2D rect = path.getBounds2D();
         double pw = rect.getWidth();
         double cw = chart.getWidth();
         double ph = rect.getHeight();
@@ -2242,7 +2300,6 @@ public class ChartPathInfosParser {
             return false;
 
         // 遍历path的点集 判断有效性
-        PathIterator iter = path.getPathIterator(null);
         double[] coords = new double[12];
         double lenBefore = 0.0, len = 0.0;
         int count = 0, istart = 0, idiff = 0;
@@ -2886,8 +2943,18 @@ public class ChartPathInfosParser {
      * @return
      */
     public static boolean judgePathContainColumnAndGetPts(GeneralPath path, List<Double> xs, List<Double> ys) {
+        return judgePathContainColumnAndGetPts(path.getPathIterator(null), xs, ys);
+    }
+
+    /**
+     * 同 {@link #judgePathContainColumnAndGetPts(GeneralPath, List, List)}, 使用已经解码的路径
+     */
+    public static boolean judgePathContainColumnAndGetPts(PathGeometry geometry, List<Double> xs, List<Double> ys) {
+        return judgePathContainColumnAndGetPts(geometry.getPathIterator(), xs, ys);
+    }
+
+    private static boolean judgePathContainColumnAndGetPts(PathIterator iter, List<Double> xs, List<Double> ys) {
         // 遍历path的点集 判断有效性
-        PathIterator iter = path.getPathIterator(null);
         double[] coords = new double[12];
         double w = 0.0, wnew = 0.0;
         double h = 0.0, hnew = 0.0;
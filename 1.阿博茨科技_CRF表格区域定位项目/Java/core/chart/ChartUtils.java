@@ -5,6 +5,7 @@ import com.abcft.pdfextract.core.model.*;
 import com.abcft.pdfextract.core.chart.model.PathInfo;
 import com.abcft.pdfextract.core.model.Rectangle;
 import com.abcft.pdfextract.core.util.GraphicsUtil;
+import com.abcft.pdfextract.core.util.RasterPool;
 import com.abcft.pdfextract.core.util.NumberUtil;
 import com.abcft.pdfextract.spi.ChartType;
 import com.abcft.pdfextract.util.JsonUtil;
@@ -44,7 +45,6 @@ import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.*;
@@ -219,6 +219,17 @@ public class ChartUtils {
     }
 
     public static BufferedImage saveChartToImage(Chart chart) {
+        BufferedImage chartImage = getBitmapChartImage(chart);
+        if (chartImage != null) {
+            return chartImage;
+        }
+        // 返回的位图由调用者持有, 不使用缓冲池
+        Dimension size = getChartImageSize(chart);
+        chartImage = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        return renderChartToImage(chart, chartImage) ? chartImage : null;
+    }
+
+    private static BufferedImage getBitmapChartImage(Chart chart) {
         BufferedImage chartImage = null;
         if (chart.type == ChartType.BITMAP_CHART) {
             try {
@@ -234,45 +245,44 @@ public class ChartUtils {
                 chartImage = null;
             }
         }
-        if (chartImage != null) {
-            return chartImage;
-        }
+        return chartImage;
+    }
 
+    private static double getChartImageScale(Chart chart) {
         Rectangle2D cropbBox = chart.getDrawArea();
-        double widthPt = cropbBox.getWidth();
-        double heightPt = cropbBox.getHeight();
-
         // 适当调整比例尺寸 使图片长宽都不超过 2048
-        double adaptScale = Math.min(2048 / widthPt, 2048 / heightPt);
-        adaptScale = Math.min(adaptScale, SCALE);
-        int widthPx = (int) Math.round(widthPt * adaptScale);
-        int heightPx = (int) Math.round(heightPt * adaptScale);
+        double adaptScale = Math.min(2048 / cropbBox.getWidth(), 2048 / cropbBox.getHeight());
+        return Math.min(adaptScale, SCALE);
+    }
+
+    private static Dimension getChartImageSize(Chart chart) {
+        Rectangle2D cropbBox = chart.getDrawArea();
+        double adaptScale = getChartImageScale(chart);
+        int widthPx = (int) Math.round(cropbBox.getWidth() * adaptScale);
+        int heightPx = (int) Math.round(cropbBox.getHeight() * adaptScale);
+        int rotationAngle = chart.page.getRotation();
+        if (rotationAngle == 90 || rotationAngle == 270) {
+            //noinspection SuspiciousNameCombination
+            return new Dimension(heightPx, widthPx);
+        } else {
+            return new Dimension(widthPx, heightPx);
+        }
+    }
 
+    private static boolean renderChartToImage(Chart chart, BufferedImage chartImage) {
         try {
-            int rotationAngle = chart.page.getRotation();
-            if (rotationAngle == 90 || rotationAngle == 270)
-            {
-                chartImage = GraphicsUtil.getBufferedImageRGB(heightPx, widthPx);
-            }
-            else
-            {
-                chartImage = GraphicsUtil.getBufferedImageRGB(widthPx, heightPx);
-            }
-            if (chartImage == null) {
-                return null;
-            }
             // use a transparent background if the imageType supports alpha
             Graphics2D graphics = chartImage.createGraphics();
             graphics.setBackground(Color.WHITE);
             graphics.clearRect(0, 0, chartImage.getWidth(), chartImage.getHeight());
-            renderChartToGraphics(chart, graphics, (float) adaptScale);
+            renderChartToGraphics(chart, graphics, (float) getChartImageScale(chart));
 
             graphics.dispose();
+            return true;
         } catch (Exception e) {
             logger.warn("render chart failed", e);
-            chartImage = null;
+            return false;
         }
-        return chartImage;
     }
 
     /**
@@ -724,7 +734,7 @@ public class ChartUtils {
                 // TODO:有可能OutOfMemory要注意
                 image = xObject.getImage();
             }
-            return ImageIO.write(image, formatName, output);
+            return GraphicsUtil.encodeImage(image, formatName, output);
 
         } catch (Exception ignored) {
         }
@@ -748,7 +758,6 @@ public class ChartUtils {
     }
 
     public static boolean saveChartToStream(Chart chart, OutputStream output, String formatName) {
-        boolean result = false;
         BufferedImage chartImage = null;
         // 处理位图
         //if (chart.type == ChartType.BITMAP_CHART && chart.image != null) {
@@ -759,14 +768,26 @@ public class ChartUtils {
         } else if (chart.getOfficeChart() != null) {
             return saveOfficeChartToStream(chart.getOfficeChart(), output, formatName);
         } else {
-            chartImage = saveChartToImage(chart);
+            chartImage = getBitmapChartImage(chart);
         }
         if (chartImage == null) {
-            IOUtils.closeQuietly(output);
-            return false;
+            // 矢量图表渲染到租用的位图, 编码后归还
+            Dimension size = getChartImageSize(chart);
+            try (RasterPool.Lease lease = GraphicsUtil.leaseImageRGB(size.width, size.height)) {
+                if (!renderChartToImage(chart, lease.getImage())) {
+                    IOUtils.closeQuietly(output);
+                    return false;
+                }
+                return writeChartImage(lease.getImage(), output, formatName);
+            }
         }
+        return writeChartImage(chartImage, output, formatName);
+    }
+
+    private static boolean writeChartImage(BufferedImage chartImage, OutputStream output, String formatName) {
+        boolean result = false;
         try {
-            result = ImageIO.write(chartImage, formatName, output);
+            result = GraphicsUtil.encodeImage(chartImage, formatName, output);
             if (!result) {
                 logger.warn("saveChartToStream failed");
             }
@@ -2335,17 +2356,17 @@ public class ChartUtils {
         // 获取path关键点信息
         ContentItem item = group.getAllItems().get(0);
         PathItem pathItem = (PathItem) item;
-        GeneralPath path = pathItem.getItem();
+        PathGeometry geometry = pathItem.getGeometry();
         List<Double> xs = new ArrayList<>();
         List<Double> ys = new ArrayList<>();
         List<Integer> types = new ArrayList<>();
         List<Double> cxs = new ArrayList<>();
         List<Double> cys = new ArrayList<>();
         List<Integer> ctypes = new ArrayList<>();
-        if (!PathUtils.getPathKeyPtsInfo(path, xs, ys, types)) {
+        if (!PathUtils.getPathKeyPtsInfo(geometry, xs, ys, types)) {
             return PathInfo.PathGroupType.OTHER;
         }
-        Rectangle2D box = path.getBounds2D();
+        Rectangle2D box = geometry.getBounds2D();
 
         // 如果是饼图
         if (type == ChartType.PIE_CHART) {
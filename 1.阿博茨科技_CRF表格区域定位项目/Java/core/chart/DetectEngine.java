@@ -1,10 +1,13 @@
 package com.abcft.pdfextract.core.chart;
 
-import com.abcft.pdfextract.core.table.TableUtils;
+import com.abcft.pdfextract.core.algorithm.DetectedRegion;
+import com.abcft.pdfextract.core.algorithm.DetectionBackend;
+import com.abcft.pdfextract.core.algorithm.GrpcDetectionBackend;
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
 import com.abcft.pdfextract.core.util.DebugHelper;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.abcft.pdfextract.spi.ChartType;
 import com.abcft.pdfextract.spi.algorithm.AlgorithmGrpcClient;
-import com.abcft.pdfextract.spi.algorithm.ChartDetectResult;
 import com.google.protobuf.ByteString;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
@@ -20,49 +23,58 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by myyang on 17-12-14.
  */
 public class DetectEngine {
     private static Logger logger = LogManager.getLogger();
-    private static AlgorithmGrpcClient client = null;
+    private static DetectionBackend backend = null;
 
-    // 统计分析各模块耗时  测试用
-    private static long renderImageTime = 0L;
-    private static long detectChartTime = 0L;
-    private static long detectPageImage = 0L;
+    // 统计分析各模块耗时, 记录在当前文档的 ExtractMetrics 中
+    static final String STAGE_RENDER_PAGE = ExtractMetrics.STAGE_CHART_DETECT + ".render";
+    static final String COUNT_DETECT_PAGE = ExtractMetrics.STAGE_CHART_DETECT + ".pages";
 
     public static void setDetectClient(AlgorithmGrpcClient client) {
-        DetectEngine.client = client;
+        DetectEngine.backend = client != null ? new GrpcDetectionBackend(client) : null;
     }
 
     /**
-     * 使用GRPC检测图片中Chart区域服务 检测给定PDF Page图片内的Chart区域信息
+     * 设置Chart区域检测使用的后端, 为 null 时不使用位图检测
+     * @param backend
+     */
+    public static void setDetectionBackend(DetectionBackend backend) {
+        DetectEngine.backend = backend;
+    }
+
+    public static DetectionBackend getDetectionBackend() {
+        return backend;
+    }
+
+    /**
+     * 使用检测后端检测给定PDF Page图片内的Chart区域信息
      * @param document
      * @param pageIndex
      * @return
      */
     public static List<DetectedObjectTF> detectChartInfos(PDDocument document, int pageIndex) {
-        if  (client == null || document == null || pageIndex < 0) {
+        if  (backend == null || document == null || pageIndex < 0) {
             return null;
         }
 
-        //long startTime = System.currentTimeMillis();
         //BufferedImage imageFile = savePageImage(document, pageIndex, 72.0f);
-        BufferedImage imageFile = getOneShutPageImage(document, pageIndex, 72);
+        BufferedImage imageFile;
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(STAGE_RENDER_PAGE)) {
+            imageFile = getOneShutPageImage(document, pageIndex, 72);
+        }
         if (imageFile == null) {
             return null;
         }
-        //long endTime = System.currentTimeMillis();
-        //long renderTime = endTime - startTime;
-        //renderImageTime += renderTime;
 
         // 调用检测图片方法
         List<DetectedObjectTF> results = detectChartInfos(imageFile);
-        //long detectTime = System.currentTimeMillis() - endTime;
-        //detectChartTime += detectTime;
-        detectPageImage++;
+        ExtractMetrics.count(COUNT_DETECT_PAGE);
         return results;
     }
 
@@ -118,28 +130,26 @@ public class DetectEngine {
     }
 
     /**
-     * 使用GRPC检测图片中Chart区域服务 检测给定图片内的Chart区域信息
+     * 使用检测后端检测给定图片内的Chart区域信息
      * @param image
      * @return
      */
     public static List<DetectedObjectTF> detectChartInfos(BufferedImage image) {
         // 判断数据有效性
-        if (client == null || image == null) {
+        DetectionBackend backend = DetectEngine.backend;
+        if (backend == null || image == null) {
             return null;
         }
 
-        // 将BufferedImage对象转换为BytesString对象
-        ByteString bytes = bufferedImageToByteString(image);
-        if (bytes == null) {
+        // 从图片中检测Chart对象区域
+        List<DetectedRegion> objs = null;
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_CHART_DETECT)) {
+            objs = backend.detectCharts(image).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
-        }
-
-        // 通过GRPC方式调用　从图片中检测Chart对象区域
-        List<ChartDetectResult> objs = null;
-        try {
-            objs = client.chartDetect(bytes);
         } catch (Exception e) {
-            logger.info("chart detect failure");
+            logger.info("chart detect failure", e);
             return null;
         }
 
@@ -149,11 +159,12 @@ public class DetectEngine {
 
         int width = image.getWidth();
         int height = image.getHeight();
-        List<DetectedObjectTF> detectedObjects = new ArrayList<>();
+        List<DetectedChartTableTF> detectedObjects = new ArrayList<>();
+        List<BufferedImage> subImages = new ArrayList<>();
         for (int i = 0; i < objs.size(); i++) {
-            ChartDetectResult obj = objs.get(i);
+            DetectedRegion obj = objs.get(i);
             // 过滤掉非Chart类型的检测对象
-            if (obj.type != 1) {
+            if (obj.type != DetectedRegion.TYPE_CHART) {
                 continue;
             }
             // 过滤掉检测得分小于等于 0.9 的检测对象
@@ -161,12 +172,12 @@ public class DetectEngine {
                 continue;
             }
 
-            // 将ChartDetectResult转换胃 DetectedObjectTF对象
+            // 将DetectedRegion转换为 DetectedObjectTF对象
             DetectedChartTableTF tBox = new DetectedChartTableTF();
-            tBox.box[0] = (int)(obj.imgBound.getMinX());
-            tBox.box[2] = (int)(obj.imgBound.getMaxX());
-            tBox.box[1] = (int)((height - obj.imgBound.getMaxY()));
-            tBox.box[3] = (int)((height - obj.imgBound.getMinY()));
+            tBox.box[0] = (int)(obj.bound.getMinX());
+            tBox.box[2] = (int)(obj.bound.getMaxX());
+            tBox.box[1] = (int)((height - obj.bound.getMaxY()));
+            tBox.box[3] = (int)((height - obj.bound.getMinY()));
             tBox.label = "chart";
             tBox.score = obj.score;
             tBox.byChartDetectModel = true;
@@ -177,9 +188,15 @@ public class DetectEngine {
 
             // 裁剪图片
             tBox.setCropSubImage(image);
+            detectedObjects.add(tBox);
+            subImages.add(tBox.subImage);
+        } // end for i
 
-            // 尝试调用位图Chart分类服务
-            tBox.chartClassify();
+        // 尝试调用位图Chart分类服务, 一次提交所有区域
+        List<List<ImageClassification>> imageTypes = ChartClassify.classifyImages(subImages);
+        for (int i = 0; i < detectedObjects.size(); i++) {
+            DetectedChartTableTF tBox = detectedObjects.get(i);
+            tBox.setImageTypes(imageTypes != null ? imageTypes.get(i) : null);
 
             // 如果不是有效Chart对象 直接跳过  (注:在调用了位图Chart分类服务后, 待测试准确率, 暂时关闭)
             //if (!tBox.isChart()) {
@@ -190,15 +207,20 @@ public class DetectEngine {
             //tBox.saveChartTypeInfos();
 
             tBox.transferLeftUpOriginPoint(height);
-            detectedObjects.add(tBox);
-        } // end for i
-        return detectedObjects;
+        }
+        return new ArrayList<>(detectedObjects);
     }
 
     /**
      * 输出位图检测Chart区域模块中渲染图片和GRPC调用检测服务的时间信息  测试用
      */
     public static void outRenderAndDetectTime() {
+        ExtractMetrics metrics = ExtractMetrics.current();
+        if (metrics == null) {
+            return;
+        }
+        long renderImageTime = metrics.getTotalTime(STAGE_RENDER_PAGE, TimeUnit.MILLISECONDS);
+        long detectChartTime = metrics.getTotalTime(ExtractMetrics.STAGE_CHART_DETECT, TimeUnit.MILLISECONDS);
         long allTime = renderImageTime  + detectChartTime;
         if (allTime != 0) {
             logger.info("renderImageTime:");
@@ -216,8 +238,12 @@ public class DetectEngine {
      * 输出调用位图检测次数　(优化减少调用位图检测模型次数)
      */
     public static void outputDetectPageImageStatus() {
+        ExtractMetrics metrics = ExtractMetrics.current();
+        if (metrics == null) {
+            return;
+        }
         logger.info("Chart Detect Engine detect page image number:");
-        logger.info(detectPageImage);
+        logger.info(metrics.getCount(COUNT_DETECT_PAGE));
     }
 }
 
@@ -1,5 +1,7 @@
 package com.abcft.pdfextract.core.chart;
 
+import com.abcft.pdfextract.core.model.PathGeometry;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.abcft.pdfextract.spi.ChartType;
 import com.abcft.pdfextract.spi.OCRClient;
 import com.google.common.collect.Lists;
@@ -35,6 +37,10 @@ public class OCREngine {
     private static Logger logger = LogManager.getLogger();
     private static OCRClient client = null;
 
+    // 实际送去识别的图片数和命中形状缓存的刻度数, 记录在当前文档的 ExtractMetrics 中
+    static final String COUNT_OCR_IMAGE = ExtractMetrics.STAGE_CHART + ".ocr.images";
+    static final String COUNT_OCR_CACHE_HIT = ExtractMetrics.STAGE_CHART + ".ocr.cache_hits";
+
     public static void setOCRClient(OCRClient client) {
         OCREngine.client = client;
     }
@@ -245,6 +251,19 @@ public class OCREngine {
      */
     public static boolean parserOCRInfos(
             Chart chart, List<OCRPathInfo> ocrs, boolean saveErrorImage) {
+        return parserOCRInfos(chart, ocrs, saveErrorImage, null);
+    }
+
+    /**
+     * 使用指定的OCR引擎识别从Chart内解析出来斜着的刻度信息, 形状相同的刻度优先使用缓存中的识别结果
+     * @param chart
+     * @param ocrs
+     * @param saveErrorImage
+     * @param shapeCache 文档级别的形状缓存, 为 null 时不使用缓存
+     * @return
+     */
+    public static boolean parserOCRInfos(
+            Chart chart, List<OCRPathInfo> ocrs, boolean saveErrorImage, OCRShapeCache shapeCache) {
         // 初始化斜着刻度信息
         if (!initChartOCRInfos(chart, ocrs)) {
             return false;
@@ -265,45 +284,75 @@ public class OCREngine {
         // 计算Path应该放大的合理倍数　方便OCR解析
         float coef = PathUtils.getOCRPathCoef(chart);
 
-        // 遍历生成 ocr.path 对应的图片 保存到 List 中
+        // 遍历生成 ocr.path 对应的图片 保存到 List 中, 缓存中已有相同形状的直接使用缓存的内容
+        int n = chart.ocrs.size();
+        String[] texts = new String[n];
+        Long[] keys = new Long[n];
+        List<Integer> imageIndexes = new ArrayList<>();
         List<BufferedImage> images = new ArrayList<>();
-        for (int i = 0; i < chart.ocrs.size(); i++) {
+        int cacheHits = 0;
+        for (int i = 0; i < n; i++) {
             OCRPathInfo ocr = chart.ocrs.get(i);
             ocr.path.setWindingRule(ocr.windingRule);
 
+            if (shapeCache != null) {
+                keys[i] = OCRShapeCache.shapeKey(ocr.path, ocr.windingRule, ocr.ccw);
+                texts[i] = keys[i] != null ? shapeCache.get(keys[i]) : null;
+                if (texts[i] != null) {
+                    cacheHits++;
+                    continue;
+                }
+            }
+
             // 将路径Path转换为 BufferedImage
             BufferedImage image = PathUtils.generalPathToImage(ocr.path, !ocr.ccw, coef);
             images.add(image);
+            imageIndexes.add(i);
         } // end for i
 
         // 批量式传输　远程访问OCR引擎服务 提升效率
         long start = System.currentTimeMillis();
-        List<String> textes = client.ocr(images);
+        List<String> textes = images.isEmpty() ? new ArrayList<>() : client.ocr(images);
         long costTime = System.currentTimeMillis()-start;
-        logger.info("ocr {} images costs {}ms", images.size(), costTime);
+        logger.info("ocr {} images costs {}ms, {} cached", images.size(), costTime, cacheHits);
+        ExtractMetrics.count(COUNT_OCR_IMAGE, images.size());
+        ExtractMetrics.count(COUNT_OCR_CACHE_HIT, cacheHits);
+
+        boolean ocrValid = textes != null && images.size() == textes.size();
+        if (ocrValid) {
+            for (int j = 0; j < imageIndexes.size(); j++) {
+                int i = imageIndexes.get(j);
+                texts[i] = textes.get(j);
+                if (keys[i] != null) {
+                    shapeCache.put(keys[i], texts[i]);
+                }
+            }
+        }
 
         chart.ocrEngineInfo.addProperty("ocrClient", "Valid");
-        chart.ocrEngineInfo.addProperty("detectOCRImageNumber", chart.ocrs.size());
+        chart.ocrEngineInfo.addProperty("detectOCRImageNumber", n);
+        chart.ocrEngineInfo.addProperty("ocrCacheHitNumber", cacheHits);
         if (textes != null) {
-            chart.ocrEngineInfo.addProperty("ocrTextsNumber", textes.size());
+            chart.ocrEngineInfo.addProperty("ocrTextsNumber", textes.size() + cacheHits);
         }
         else {
-            chart.ocrEngineInfo.addProperty("ocrTextsNumber", 0);
+            chart.ocrEngineInfo.addProperty("ocrTextsNumber", cacheHits);
         }
         chart.ocrEngineInfo.addProperty("grpcOCRCostTime", costTime);
 
-        // 将远程解析得到的字符串信息 传递给Chart.ocrs 的内容中
-        if (textes != null && images.size() == textes.size()) {
-            for (int i = 0; i < chart.ocrs.size(); i++) {
-                OCRPathInfo ocr = chart.ocrs.get(i);
-                ocr.text = textes.get(i);
+        // 将解析得到的字符串信息 传递给Chart.ocrs 的内容中
+        for (int i = 0; i < n; i++) {
+            if (texts[i] != null) {
+                chart.ocrs.get(i).text = texts[i];
+            }
+        } // end for i
 
-                // 输出图片　方便存储解析出错的图片　方便后续调试
-                if (saveErrorImage) {
-                    String filename = id + "." + i + ".png";
-                    PathUtils.savePathToPng(images.get(i), "/tmp/chartocrpics/", filename);
-                }
-            } // end for i
+        // 输出图片　方便存储解析出错的图片　方便后续调试
+        if (saveErrorImage && ocrValid) {
+            for (int j = 0; j < imageIndexes.size(); j++) {
+                String filename = id + "." + imageIndexes.get(j) + ".png";
+                PathUtils.savePathToPng(images.get(j), "/tmp/chartocrpics/", filename);
+            }
         }
         return true;
     }
@@ -558,6 +607,13 @@ class PathUtils {
         getPathPtsInfo(path, xs, ys);
     }
 
+    /**
+     * 同 {@link #getPathPts(GeneralPath, List, List)}, 使用已经解码的路径
+     */
+    public static void getPathPts(PathGeometry geometry, List<Double> xs, List<Double> ys) {
+        geometry.getPoints(xs, ys);
+    }
+
     /**
      * 获得给定Path的有效点数目
      * @param path
@@ -706,6 +762,18 @@ class PathUtils {
         return true;
     }
 
+    /**
+     * 同 {@link #getPathKeyPtsInfo(GeneralPath, List, List, List)}, 使用已经解码的路径
+     */
+    public static boolean getPathKeyPtsInfo(
+            PathGeometry geometry, List<Double> xs, List<Double> ys, List<Integer> types) {
+        if (geometry == null || xs == null || ys == null || types == null) {
+            return false;
+        }
+        geometry.getKeyPoints(xs, ys, types);
+        return true;
+    }
+
     public static boolean getPathAllPtsInfo(
             GeneralPath path, List<Double> xs, List<Double> ys, List<Integer> types) {
         if (path == null || xs == null || ys == null || types == null) {
@@ -814,6 +882,13 @@ class PathUtils {
         return num;
     }
 
+    /**
+     * 同 {@link #getPathPtsInfo(GeneralPath, List, List)}, 使用已经解码的路径
+     */
+    public static int getPathPtsInfo(PathGeometry geometry, List<Double> xs, List<Double> ys) {
+        return geometry.getPoints(xs, ys);
+    }
+
 
     /**
      * 获得给定环形对象Path的所有有效点集信息
@@ -831,10 +906,32 @@ class PathUtils {
             List<Double> curveXs,
             List<Double> curveYs,
             List<Integer> types) {
+        return getRingPathPts(path.getPathIterator(null), xs, ys, curveXs, curveYs, types);
+    }
+
+    /**
+     * 同 {@link #getRingPathPts(GeneralPath, List, List, List, List, List)}, 使用已经解码的路径
+     */
+    public static boolean getRingPathPts(
+            PathGeometry geometry,
+            List<Double> xs,
+            List<Double> ys,
+            List<Double> curveXs,
+            List<Double> curveYs,
+            List<Integer> types) {
+        return getRingPathPts(geometry.getPathIterator(), xs, ys, curveXs, curveYs, types);
+    }
+
+    private static boolean getRingPathPts(
+            PathIterator iter,
+            List<Double> xs,
+            List<Double> ys,
+            List<Double> curveXs,
+            List<Double> curveYs,
+            List<Integer> types) {
         xs.clear();
         ys.clear();
         types.clear();
-        PathIterator iter = path.getPathIterator(null);
         double[] coords = new double[12];
         double x = 0.0, y = 0.0;
         int count = 0;
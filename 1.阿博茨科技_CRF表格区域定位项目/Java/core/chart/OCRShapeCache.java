@@ -0,0 +1,242 @@
+package com.abcft.pdfextract.core.chart;
+
+import com.abcft.pdfextract.core.ExtractContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 轮廓文字 (用填充路径绘制的刻度, 图例等) 的 OCR 结果缓存。
+ * <p>
+ * 同一份研报里各个 Chart 的刻度 ("0", "%", "2018", "亿元" 等) 大量重复, 绘制它们的路径只是位置和大小不同。
+ * 这里把路径按 {@link PathUtils#splitSubPath} 拆成单个字形的子路径, 每个子路径按自身的外框归一化后量化,
+ * 再加上子路径在整个标签中量化后的相对位置, 计算出一个和平移、缩放无关的形状哈希, 相同形状的标签只识别一次。
+ * <p>
+ * 缓存的作用域是文档 (保存在 {@link ExtractContext} 的 tag 中), 设置系统属性 {@value #PERSIST_FILE_PROPERTY}
+ * 后, 识别结果还会追加到指定的文件中, 下次启动时加载, 在多个文档之间共用。
+ */
+public class OCRShapeCache {
+    private static Logger logger = LogManager.getLogger(OCRShapeCache.class);
+
+    public static final String PERSIST_FILE_PROPERTY = "pdfextract.chart.ocr_cache";
+
+    private static final String CONTEXT_TAG = "chart.ocr.shape_cache";
+
+    // 量化的精度, 坐标归一化到 [0, 1] 后按 1/QUANTIZATION 取整
+    private static final int QUANTIZATION = 64;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static volatile Map<Long, String> persistentCache;
+
+    private final Map<Long, String> cache = new HashMap<>();
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * 取得给定文档的缓存, 第一次调用时创建。
+     */
+    public static OCRShapeCache of(ExtractContext<?> context) {
+        if (context == null) {
+            return null;
+        }
+        OCRShapeCache cache = (OCRShapeCache) context.getTag(CONTEXT_TAG);
+        if (cache == null) {
+            cache = new OCRShapeCache();
+            context.addTag(CONTEXT_TAG, cache);
+        }
+        return cache;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * 查找给定形状的识别结果, 没有时返回 null。
+     */
+    public String get(long key) {
+        String text = cache.get(key);
+        if (text == null) {
+            Map<Long, String> persistent = getPersistentCache();
+            if (persistent != null) {
+                text = persistent.get(key);
+                if (text != null) {
+                    cache.put(key, text);
+                }
+            }
+        }
+        if (text != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return text;
+    }
+
+    public void put(long key, String text) {
+        if (text == null) {
+            return;
+        }
+        cache.put(key, text);
+        Map<Long, String> persistent = getPersistentCache();
+        if (persistent != null && persistent.putIfAbsent(key, text) == null) {
+            appendPersistent(key, text);
+        }
+    }
+
+    /**
+     * 计算路径的形状哈希, 和路径的位置、大小无关。
+     *
+     * @param path 标签的路径
+     * @param windingRule 填充规则
+     * @param ccw 时针方向, 影响生成图片时的旋转方向
+     * @return 形状哈希; 路径无效时返回 null
+     */
+    public static Long shapeKey(GeneralPath path, int windingRule, boolean ccw) {
+        if (path == null) {
+            return null;
+        }
+        Rectangle2D bound = path.getBounds2D();
+        double scale = Math.max(bound.getWidth(), bound.getHeight());
+        if (scale <= 0) {
+            return null;
+        }
+        List<GeneralPath> glyphs = PathUtils.splitSubPath(path, true);
+        if (glyphs.isEmpty()) {
+            return null;
+        }
+
+        long hash = FNV_OFFSET;
+        hash = mix(hash, windingRule);
+        hash = mix(hash, ccw ? 1 : 0);
+        hash = mix(hash, quantize(bound.getWidth() / scale));
+        hash = mix(hash, quantize(bound.getHeight() / scale));
+        hash = mix(hash, glyphs.size());
+        double[] coords = new double[6];
+        for (GeneralPath glyph : glyphs) {
+            // 字形在标签中的相对位置和大小
+            Rectangle2D glyphBound = glyph.getBounds2D();
+            hash = mix(hash, quantize((glyphBound.getMinX() - bound.getMinX()) / scale));
+            hash = mix(hash, quantize((glyphBound.getMinY() - bound.getMinY()) / scale));
+            double glyphScale = Math.max(glyphBound.getWidth(), glyphBound.getHeight());
+            hash = mix(hash, quantize(glyphScale / scale));
+            if (glyphScale <= 0) {
+                glyphScale = 1.0;
+            }
+
+            // 字形按自身外框归一化后的轮廓
+            PathIterator iter = glyph.getPathIterator(null);
+            while (!iter.isDone()) {
+                int type = iter.currentSegment(coords);
+                hash = mix(hash, type);
+                int nPts = segmentPoints(type);
+                for (int i = 0; i < nPts; i++) {
+                    hash = mix(hash, quantize((coords[2 * i] - glyphBound.getMinX()) / glyphScale));
+                    hash = mix(hash, quantize((coords[2 * i + 1] - glyphBound.getMinY()) / glyphScale));
+                }
+                iter.next();
+            }
+        }
+        return hash;
+    }
+
+    private static int segmentPoints(int type) {
+        switch (type) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 1;
+            case PathIterator.SEG_QUADTO:
+                return 2;
+            case PathIterator.SEG_CUBICTO:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    private static int quantize(double value) {
+        return (int) Math.round(value * QUANTIZATION);
+    }
+
+    private static long mix(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static Map<Long, String> getPersistentCache() {
+        String file = System.getProperty(PERSIST_FILE_PROPERTY);
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        if (persistentCache == null) {
+            synchronized (OCRShapeCache.class) {
+                if (persistentCache == null) {
+                    persistentCache = loadPersistent(new File(file));
+                }
+            }
+        }
+        return persistentCache;
+    }
+
+    /**
+     * 加载持久化的缓存, 每行为 "十六进制哈希\t文本"
+     */
+    private static Map<Long, String> loadPersistent(File file) {
+        Map<Long, String> map = new ConcurrentHashMap<>();
+        if (!file.exists()) {
+            return map;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                try {
+                    map.put(Long.parseUnsignedLong(line.substring(0, tab), 16), line.substring(tab + 1));
+                } catch (NumberFormatException ignored) {
+                    // 跳过损坏的行
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to load OCR shape cache {}", file, e);
+        }
+        return map;
+    }
+
+    private static synchronized void appendPersistent(long key, String text) {
+        // 文本中的换行和制表符会破坏文件格式, 这样的结果只保存在内存中
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0 || text.indexOf('\t') >= 0) {
+            return;
+        }
+        File file = new File(System.getProperty(PERSIST_FILE_PROPERTY));
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(Long.toHexString(key));
+            writer.write('\t');
+            writer.write(text);
+            writer.write('\n');
+        } catch (IOException e) {
+            logger.warn("Failed to save OCR shape cache {}", file, e);
+        }
+    }
+}
@@ -9,8 +9,9 @@ import java.io.OutputStream;
 import java.util.*;
 import java.util.List;
 
+import com.abcft.pdfextract.core.algorithm.DetectedRegion;
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
 import com.abcft.pdfextract.spi.ChartType;
-import com.abcft.pdfextract.spi.algorithm.ImageClassifyResult;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -60,14 +61,50 @@ public class TFDetectChartTable extends TensorflowMode {
         if (!isTFModelReady() || imageFile == null) {
             return null;
         }
+        if (imageFile instanceof BufferedImage) {
+            // 位图直接使用像素数据, 不再编码成 JPG 再解码
+            BufferedImage bufferedImage = (BufferedImage) imageFile;
+            try (Tensor image = constructRasterImage(bufferedImage, true)) {
+                return executeDetectChartTableGraph(image, bufferedImage.getWidth(), bufferedImage.getHeight());
+            }
+        }
         try (Tensor image = constructImage(imageFile, DataType.UINT8, true, false)) {
             if (image == null) {
                 return null;
             }
-            return executeDetectChartTableGraph(image);
+            return executeDetectChartTableGraph(image, width, height);
         }
     }
 
+    /**
+     * 检测给定位图内部的Chart和Table区域 (供进程内的检测后端使用)
+     * @param image
+     * @return 检测到的区域, 位置相对 image, 原点在左上角; 模型不可用时返回 null
+     */
+    public List<DetectedRegion> detectRegions(BufferedImage image) {
+        if (!isTFModelReady() || image == null) {
+            return null;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        List<DetectedObjectTF> objects;
+        try (Tensor tensor = constructRasterImage(image, true)) {
+            objects = executeDetectChartTableGraph(tensor, w, h, 0.0);
+        }
+        if (objects == null) {
+            return null;
+        }
+        List<DetectedRegion> regions = new ArrayList<>(objects.size());
+        for (DetectedObjectTF obj : objects) {
+            // 模型输出的 box 原点在左下角
+            Rectangle2D bound = new Rectangle2D.Double(obj.box[0], h - obj.box[3],
+                    obj.box[2] - obj.box[0], obj.box[3] - obj.box[1]);
+            int type = "chart".equals(obj.label) ? DetectedRegion.TYPE_CHART : DetectedRegion.TYPE_OTHER;
+            regions.add(new DetectedRegion(type, obj.label, obj.score, bound));
+        }
+        return regions;
+    }
+
     /**
      * 检测给定图片对象集内部所含Chart和Table信息集
      * @param imageFiles
@@ -196,7 +233,11 @@ public class TFDetectChartTable extends TensorflowMode {
      * @param image
      * @return
      */
-    private List<DetectedObjectTF> executeDetectChartTableGraph(Tensor image) {
+    private List<DetectedObjectTF> executeDetectChartTableGraph(Tensor image, int width, int height) {
+        return executeDetectChartTableGraph(image, width, height, 0.03);
+    }
+
+    private List<DetectedObjectTF> executeDetectChartTableGraph(Tensor image, int width, int height, double extendCoef) {
         List<Tensor<?>> res = new ArrayList<>();
         List<DetectedObjectTF> detectedObjects = new ArrayList<>();
         try {
@@ -218,7 +259,7 @@ public class TFDetectChartTable extends TensorflowMode {
                 tBox.box[1] = (int)((1.0 - boxesF[i][2]) * height);
                 tBox.box[2] = (int)(boxesF[i][3] * width);
                 tBox.box[3] = (int)((1.0 - boxesF[i][0]) * height);
-                tBox.extendDetectBox(width, height, 0.03);
+                tBox.extendDetectBox(width, height, extendCoef);
                 //extendDetectBox(tBox, 0.03);
                 int id = (int)classesF[i];
                 tBox.label = labels.get(id);
@@ -270,7 +311,7 @@ public class TFDetectChartTable extends TensorflowMode {
 class DetectedChartTableTF extends DetectedObjectTF {
     public Rectangle2D area = null;
     public List<ChartType> types = new ArrayList<>();
-    public List<ImageClassifyResult> imageTypes = new ArrayList<>();
+    public List<ImageClassification> imageTypes = new ArrayList<>();
     public boolean byChartDetectModel = false;
     public boolean byHintArea = false;
     public boolean byRecallArea = false;
@@ -328,8 +369,15 @@ class DetectedChartTableTF extends DetectedObjectTF {
      */
     public void chartClassify() {
         // 获取分类类别
-        imageTypes = ChartClassify.getImageClassifyResult(subImage);
-        // 转换为ChartType
+        setImageTypes(ChartClassify.getImageClassification(subImage));
+    }
+
+    /**
+     * 设置位图分类得到的类别 并转换为ChartType
+     * @param imageTypes
+     */
+    public void setImageTypes(List<ImageClassification> imageTypes) {
+        this.imageTypes = imageTypes;
         types = ChartClassify.imageClassifyToChartTypes(imageTypes);
     }
 
@@ -1,15 +1,23 @@
 package com.abcft.pdfextract.core.chart;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.util.*;
 
+import com.abcft.pdfextract.core.algorithm.ImageClassification;
 import com.abcft.pdfextract.spi.ChartType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.tensorflow.DataType;
+import org.tensorflow.Operation;
+import org.tensorflow.Shape;
 import org.tensorflow.Tensor;
 
+import javax.imageio.ImageIO;
+
 /**
  * Created by myyang on 17-7-17.
  */
@@ -18,6 +26,9 @@ public class TFDetectChartType extends TensorflowMode {
 
     private static final TFDetectChartType instance = new TFDetectChartType();          // 饿汉单例模式的实例对象
 
+    private static final String BATCH_INPUT = "batch_images";   // 批量输入 [N, H, W, 3], 需要用 export_chart_classify.py 重新导出模型
+    private static final int MAX_BATCH_SIZE = 8;                // 每次推理的最大图片数
+
     private TFDetectChartType() { }
 
     /**
@@ -77,6 +88,8 @@ public class TFDetectChartType extends TensorflowMode {
     }
 
     /**
+     * 模型支持批量输入时在 Java 中缩放并按批次推理: 文件用 ImageIO 解码 (不是 TF 的 JPEG 解码),
+     * BufferedImage 不再经过 JPEG 编码, 所以概率和逐个推理的结果可能略有不同。
      * @param imageFiles 位图绝对路径名称 或 BufferedImage 集
      * @param probThreshold 概率阀值 在区间(0, 1) 不宜太小太大
      * @param <T>
@@ -92,6 +105,19 @@ public class TFDetectChartType extends TensorflowMode {
             return null;
         }
         List<Map<ChartType, Float>> imagesTypes = new ArrayList<>();
+        if (isBatchInputSupported()) {
+            // 在 Java 中缩放位图, 按批次推理
+            List<BufferedImage> images = new ArrayList<>(imageFiles.size());
+            for (T imageFile : imageFiles) {
+                images.add(readImage(imageFile));
+            }
+            List<float[]> probabilities = executeInceptionGraph(images);
+            for (int i = 0; i < images.size(); i++) {
+                float[] labelProbabilities = probabilities != null ? probabilities.get(i) : null;
+                imagesTypes.add(labelProbabilities != null ? getBestLabel(labelProbabilities, probThreshold) : null);
+            }
+            return imagesTypes;
+        }
         for (T imageFile : imageFiles) {
             try (Tensor image = constructImage(imageFile, DataType.FLOAT, false, false)) {
                 if (image == null) {
@@ -111,6 +137,83 @@ public class TFDetectChartType extends TensorflowMode {
         return imagesTypes;
     }
 
+    /**
+     * 用 Tensorflow 模型对位图分类 (供进程内的检测后端使用), 位图直接使用像素数据, 不经过图片编码
+     * @param image
+     * @param probThreshold 概率阀值 没有类别超过阀值时返回概率最大的类别
+     * @return 分类结果 类型编号和位图分类服务一致; 模型不可用时返回 null
+     */
+    public List<ImageClassification> classifyImage(BufferedImage image, float probThreshold) {
+        if (!isTFModelReady() || image == null) {
+            return null;
+        }
+        float[] labelProbabilities;
+        try (Tensor image3d = constructRasterFloatImage(image, false)) {
+            labelProbabilities = executeInceptionGraph(image3d);
+        }
+        if (labelProbabilities == null) {
+            return null;
+        }
+        return toClassifications(labelProbabilities, probThreshold);
+    }
+
+    /**
+     * 对一组位图分类, 模型支持批量输入时合并成批次推理, 否则逐个调用 {@link #classifyImage(BufferedImage, float)}
+     * @param images
+     * @param probThreshold 概率阀值 没有类别超过阀值时返回概率最大的类别
+     * @return 和 images 一一对应的分类结果, 位图为 null 或推理失败时对应的结果为 null; 模型不可用时返回 null
+     */
+    public List<List<ImageClassification>> classifyImages(List<BufferedImage> images, float probThreshold) {
+        if (!isTFModelReady() || images == null) {
+            return null;
+        }
+        List<List<ImageClassification>> results = new ArrayList<>(images.size());
+        if (!isBatchInputSupported()) {
+            for (BufferedImage image : images) {
+                results.add(classifyImage(image, probThreshold));
+            }
+            return results;
+        }
+        List<float[]> probabilities = executeInceptionGraph(images);
+        for (int i = 0; i < images.size(); i++) {
+            float[] labelProbabilities = probabilities != null ? probabilities.get(i) : null;
+            results.add(labelProbabilities != null ? toClassifications(labelProbabilities, probThreshold) : null);
+        }
+        return results;
+    }
+
+    /**
+     * 判断模型是否有批量输入 (用 export_chart_classify.py 重新导出的模型)
+     * @return
+     */
+    public boolean isBatchInputSupported() {
+        return graph != null && graph.operation(BATCH_INPUT) != null;
+    }
+
+    private List<ImageClassification> toClassifications(float[] labelProbabilities, float probThreshold) {
+        List<ImageClassification> results = new ArrayList<>();
+        int best = 0;
+        for (int i = 0; i < labelProbabilities.length; i++) {
+            if (labelProbabilities[i] > labelProbabilities[best]) {
+                best = i;
+            }
+            if (labelProbabilities[i] > probThreshold) {
+                addClassification(results, i, labelProbabilities[i]);
+            }
+        }
+        if (results.isEmpty()) {
+            addClassification(results, best, labelProbabilities[best]);
+        }
+        return results;
+    }
+
+    private void addClassification(List<ImageClassification> results, int labelId, float prob) {
+        int type = ImageClassification.typeOf(labels.get(labelId));
+        if (type >= 0) {
+            results.add(new ImageClassification(type, prob));
+        }
+    }
+
     private ChartType tfPredictLabelToChartType(int labelId) {
         String res = labels.get(labelId);
         if (res.equals("LINE_CHART")) {
@@ -146,6 +249,68 @@ public class TFDetectChartType extends TensorflowMode {
         return labelMap;
     }
 
+    private static BufferedImage readImage(Object imageFile) {
+        if (imageFile instanceof BufferedImage) {
+            return (BufferedImage) imageFile;
+        }
+        else if (imageFile instanceof String) {
+            try {
+                return ImageIO.read(new File((String) imageFile));
+            }
+            catch (IOException e) {
+                logger.error("Failed to read [" + imageFile + "]: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将一组位图缩放到模型输入的尺寸, 每 {@link #MAX_BATCH_SIZE} 个写入一个连续的 float 数组, 按批次代入模型预测结果
+     * @param images
+     * @return 和 images 一一对应的类别概率, 位图为 null 时对应的结果为 null; 模型的输出不符合要求时返回 null
+     */
+    private List<float[]> executeInceptionGraph(List<BufferedImage> images) {
+        Operation input = graph.operation(BATCH_INPUT);
+        Shape shape = input.output(0).shape();
+        int h = (int) shape.size(1);
+        int w = (int) shape.size(2);
+        List<BufferedImage> valid = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            if (image != null) {
+                valid.add(image);
+            }
+        }
+
+        List<float[]> probabilities = new ArrayList<>(valid.size());
+        for (int start = 0; start < valid.size(); start += MAX_BATCH_SIZE) {
+            List<BufferedImage> batch = valid.subList(start, Math.min(start + MAX_BATCH_SIZE, valid.size()));
+            FloatBuffer buffer = FloatBuffer.allocate(batch.size() * h * w * 3);
+            for (BufferedImage image : batch) {
+                putResizedRasterImage(image, h, w, buffer);
+            }
+            buffer.rewind();
+            try (Tensor<Float> batchImages = Tensor.create(new long[] {batch.size(), h, w, 3}, buffer);
+                 Tensor<Float> result = session.runner().feed(BATCH_INPUT, batchImages)
+                         .fetch("final_result").run().get(0).expect(Float.class)) {
+                final long[] rshape = result.shape();
+                if (result.numDimensions() != 2 || rshape[0] != batch.size()) {
+                    logger.error("Expected model to produce a [" + batch.size() + " N] shaped tensor");
+                    return null;
+                }
+                int nlabels = (int) rshape[1];
+                Collections.addAll(probabilities, result.copyTo(new float[batch.size()][nlabels]));
+            }
+        }
+
+        // 按原来的位置放回结果
+        List<float[]> results = new ArrayList<>(images.size());
+        Iterator<float[]> it = probabilities.iterator();
+        for (BufferedImage image : images) {
+            results.add(image != null ? it.next() : null);
+        }
+        return results;
+    }
+
     /**
      * 将图片解码后的Tensor对象 代入模型 预测结果
      * @param image
@@ -1,6 +1,8 @@
 package com.abcft.pdfextract.core.chart;
 
 import java.awt.image.BufferedImage;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.*;
 
 import com.abcft.pdfextract.spi.OCRClient;
@@ -19,6 +21,9 @@ public class TFDetectOCRText extends TensorflowMode implements OCRClient {
     private static final TFDetectOCRText instance = new TFDetectOCRText();          // 饿汉单例模式的实例对象
 
     private Map<Integer, String> imgTextMap = new HashMap<>();
+    private Map<Integer, ConstantFeeds> constantFeeds = new HashMap<>();    // 按 batch 大小缓存的常量输入
+    private FloatBuffer imageBuffer;                                        // 合并 Bucket 内图片数据的缓冲区
+    private FloatBuffer zeroBuffer;                                         // zero_paddings 的缓冲区
 
     private TFDetectOCRText() { }
 
@@ -45,40 +50,45 @@ public class TFDetectOCRText extends TensorflowMode implements OCRClient {
         return predictImageOCRTexts(images);
     }
 
-    public <T> List<String> predictImageOCRTexts(List<T> imageFiles) {
+    public synchronized <T> List<String> predictImageOCRTexts(List<T> imageFiles) {
         //logger.info("predict images's inner texts ");
         imgTextMap.clear();
         if (!isTFModelReady() || imageFiles.isEmpty()) {
             return null;
         }
 
-        List<String> imagesTexts = new ArrayList<>();
-        List<Tensor> imgs = new ArrayList<>();
+        // 预处理后的图片直接拷贝成 float 数组, Tensor 立即释放, 不在整个识别过程中占用 native 内存
+        List<ImageData> imgs = new ArrayList<>();
         List<Integer> ids = new ArrayList<>();
-        try {
-            for (int i = 0; i < imageFiles.size(); i++) {
-                Tensor image = constructImage(imageFiles.get(i), DataType.FLOAT, true, true);
+        for (int i = 0; i < imageFiles.size(); i++) {
+            try (Tensor image = constructImage(imageFiles.get(i), DataType.FLOAT, true, true)) {
                 if (image == null) {
                     continue;
                 }
-                imgs.add(image);
+                imgs.add(new ImageData(image));
                 ids.add(i);
             }
-            setImagesBucketAndExecuteGraph(imgs, ids, 16);
-            imgTextMap.values().stream().forEach(text -> imagesTexts.add(text));
-        }
-        finally {
-            imgs.stream().forEach(img -> img.close());
         }
+        setImagesBucketAndExecuteGraph(imgs, ids, 16);
+        List<String> imagesTexts = new ArrayList<>();
+        imgTextMap.values().stream().forEach(text -> imagesTexts.add(text));
         return imagesTexts;
     }
 
-    private void setImagesBucketAndExecuteGraph(List<Tensor> imgs, List<Integer> ids, int bucketMaxImage) {
+    @Override
+    public void resetTFModeEnv() {
+        super.resetTFModeEnv();
+        if (constantFeeds != null) {
+            constantFeeds.values().forEach(ConstantFeeds::close);
+            constantFeeds.clear();
+        }
+    }
+
+    private void setImagesBucketAndExecuteGraph(List<ImageData> imgs, List<Integer> ids, int bucketMaxImage) {
         Map<Integer, ImagesBucket> buckets = new HashMap<>();
         for (int i = 0; i < imgs.size(); i++) {
-            Tensor img = imgs.get(i);
-            long[] shape = img.shape();
-            int id = getBucketId(ImagesBucket.BucketSizes, (int)shape[3],2);
+            ImageData img = imgs.get(i);
+            int id = getBucketId(ImagesBucket.BucketSizes, img.width,2);
             ImagesBucket b = buckets.get(id);
             if (b == null) {
                 b = new ImagesBucket();
@@ -98,12 +108,49 @@ public class TFDetectOCRText extends TensorflowMode implements OCRClient {
         }
     }
 
+    /**
+     * 取得给定 batch 大小的常量输入, decoder/weight/encoder_mask 的取值只和 batch 大小有关, 缓存起来重复使用
+     */
+    private ConstantFeeds getConstantFeeds(int n) {
+        if (constantFeeds == null) {
+            constantFeeds = new HashMap<>();
+        }
+        ConstantFeeds feeds = constantFeeds.get(n);
+        if (feeds == null) {
+            feeds = new ConstantFeeds(n);
+            constantFeeds.put(n, feeds);
+        }
+        return feeds;
+    }
+
+    /**
+     * 取得长度至少为 size 的缓冲区, 缓冲区在多次调用之间复用, position 为 0, limit 为 size
+     */
+    private static FloatBuffer leaseBuffer(FloatBuffer buffer, int size) {
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = FloatBuffer.allocate(size);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
     private void executeTextOCRGraph(ImagesBucket b) {
         if (b.isEmpty()) {
             return;
         }
-        try (Tensor image = b.mergeData();
-             Tensor zero_paddings = b.getZeroPaddingData()) {
+        imageBuffer = leaseBuffer(imageBuffer, b.getMergedSize());
+        b.mergeData(imageBuffer);
+        imageBuffer.rewind();
+        Tensor zero_paddings = null;
+        if (b.paddLen > 0) {
+            // zeroBuffer 只读不写, 内容始终为 0
+            int size = b.n * b.paddLen * ImagesBucket.ZeroPaddingDim;
+            zeroBuffer = leaseBuffer(zeroBuffer, size);
+            zero_paddings = Tensor.create(new long[] {b.n, b.paddLen, ImagesBucket.ZeroPaddingDim}, zeroBuffer);
+        }
+        try (Tensor image = Tensor.create(b.getMergedShape(), imageBuffer)) {
+            ConstantFeeds feeds = getConstantFeeds(b.n);
             int encoderInputLen = ImagesBucket.BucketSizes[b.id][0];
             int decoderInputLen = ImagesBucket.BucketSizes[b.id][1];
             //Session.Runner runner = session.runner().feed("img_data:0", image).feed("zero_paddings:0", zero_paddings);
@@ -114,19 +161,24 @@ public class TFDetectOCRText extends TensorflowMode implements OCRClient {
             for (int i = 0; i < decoderInputLen; i++) {
                 String nameInput = "decoder" + i + ":0";
                 String nameWeight = "weight" + i + ":0";
-                runner.feed(nameInput, Tensor.create(b.getDecoder(i)));
-                runner.feed(nameWeight, Tensor.create(b.getWeight(i)));
+                runner.feed(nameInput, feeds.getDecoder(i));
+                runner.feed(nameWeight, feeds.getWeight(i));
             }
             for (int i = 0; i < encoderInputLen; i++) {
                 String name = "encoder_mask" + i + ":0";
-                runner.feed(name, Tensor.create(b.getEncoderMask(i)));
+                runner.feed(name, feeds.getEncoderMask(i < b.realLen));
             }
             String nameInput = "decoder" + decoderInputLen + ":0";
-            runner.feed(nameInput, Tensor.create(b.getDecoder(decoderInputLen)));
+            runner.feed(nameInput, feeds.getDecoder(decoderInputLen));
 
             String resultName = "bucket_output_" + b.id + ":0";
             runTFSession(runner, resultName, b.imgsIDs);
         } // end try
+        finally {
+            if (zero_paddings != null) {
+                zero_paddings.close();
+            }
+        }
     }
 
     private void runTFSession(Session.Runner runner, String resultName, List<Integer> imgsIDs) {
@@ -185,137 +237,144 @@ public class TFDetectOCRText extends TensorflowMode implements OCRClient {
     }
 }
 
+/**
+ * 预处理后的单张图片数据, shape 为 [1, H, W]
+ */
+class ImageData {
+    public final int height;
+    public final int width;
+    public final float[] data;
+
+    ImageData(Tensor<?> img) {
+        long[] shape = img.shape();
+        height = (int)shape[2];
+        width = (int)shape[3];
+        data = new float[height * width];
+        img.writeTo(FloatBuffer.wrap(data));
+    }
+}
+
+/**
+ * 和 batch 大小相关的常量输入 Tensor
+ */
+class ConstantFeeds {
+    private final Tensor<Integer> decoderStart;       // decoder0 为 1
+    private final Tensor<Integer> decoderEnd;         // decoder1 为 2
+    private final Tensor<Integer> decoderZero;        // 其他 decoder 为 0
+    private final Tensor<Float> weightOne;            // weight0 为 1
+    private final Tensor<Float> weightZero;           // 其他 weight 为 0
+    private final Tensor<Float> maskOne;              // 有效长度内的 encoder_mask 为 1
+    private final Tensor<Float> maskZero;             // 填充部分的 encoder_mask 为 0
+
+    ConstantFeeds(int n) {
+        decoderStart = createInt(new long[] {n}, n, 1);
+        decoderEnd = createInt(new long[] {n}, n, 2);
+        decoderZero = createInt(new long[] {n}, n, 0);
+        weightOne = createFloat(new long[] {n}, n, 1.0f);
+        weightZero = createFloat(new long[] {n}, n, 0.0f);
+        maskOne = createFloat(new long[] {n, 1}, n, 1.0f);
+        maskZero = createFloat(new long[] {n, 1}, n, 0.0f);
+    }
+
+    private static Tensor<Integer> createInt(long[] shape, int n, int value) {
+        int[] data = new int[n];
+        Arrays.fill(data, value);
+        return Tensor.create(shape, IntBuffer.wrap(data));
+    }
+
+    private static Tensor<Float> createFloat(long[] shape, int n, float value) {
+        float[] data = new float[n];
+        Arrays.fill(data, value);
+        return Tensor.create(shape, FloatBuffer.wrap(data));
+    }
+
+    public Tensor<Integer> getDecoder(int ith) {
+        if (ith == 0) {
+            return decoderStart;
+        }
+        else if (ith == 1) {
+            return decoderEnd;
+        }
+        return decoderZero;
+    }
+
+    public Tensor<Float> getWeight(int ith) {
+        return ith == 0 ? weightOne : weightZero;
+    }
+
+    public Tensor<Float> getEncoderMask(boolean valid) {
+        return valid ? maskOne : maskZero;
+    }
+
+    public void close() {
+        decoderStart.close();
+        decoderEnd.close();
+        decoderZero.close();
+        weightOne.close();
+        weightZero.close();
+        maskOne.close();
+        maskZero.close();
+    }
+}
+
 class ImagesBucket {
     public static int [][] BucketSizes = {{16, 32}, {40, 32}, {64, 32}, {88, 32}, {128, 32}};
+    public static final int ZeroPaddingDim = 1024;
+    // 右侧填充的像素值 (白色)
+    private static final float PaddingValue = 255.0f;
 
     public int id = -1;
     public int n = 0;
+    public int height = 0;
     public int maxWidth = 0;
     public int realLen = 0;
     public int paddLen = 0;
-    public List<ImageDataArray> datas = new ArrayList<>();
+    public List<ImageData> datas = new ArrayList<>();
     public List<Integer> imgsIDs = new ArrayList<>();
 
     ImagesBucket() {}
 
-    public void add(Tensor img, int imageID) {
-        datas.add(new ImageDataArray(img));
+    public void add(ImageData img, int imageID) {
+        datas.add(img);
         imgsIDs.add(imageID);
         setInnerDataLen();
     }
 
-    private static class ImageDataArray {
-        public int n1, n2, n3;
-        public float [][][] data = null;
-        ImageDataArray(Tensor<Float> img) {
-            n1 = 1;
-            long[] shape = img.shape();
-            n2 = (int)shape[2];
-            n3 = (int)shape[3];
-            data = img.copyTo(new float[1][n1][n2][n3])[0];
-        }
-        public void expandWidth(int width) {
-            if (width == n3) {
-                return;
-            }
-            int n3old = n3;
-            n3 = width;
-            float [][][] dataNew = new float[n1][n2][n3];
-            setData(dataNew, 255.0f);
-            for (int i = 0; i < n1; i++) {
-                for (int j = 0; j < n2; j++) {
-                    for (int k = 0; k < n3old; k++) {
-                        dataNew[i][j][k] = data[i][j][k];
-                    }
-                }
-            }
-            data = dataNew;
-        }
-        public void setData(float[][][] data, float value) {
-            for (int i = 0; i < n1; i++) {
-                for (int j = 0; j < n2; j++) {
-                    for (int k = 0; k < n3; k++) {
-                        data[i][j][k] = value;
-                    }
-                }
-            }
-        }
-    }
-
     public boolean isEmpty() {
         return datas.isEmpty();
     }
 
-    public Tensor mergeData() {
-        datas.stream().forEach(data -> data.expandWidth(maxWidth));
-        ImageDataArray img = datas.get(0);
-        float [][][][] dataMerge = new float[n][img.n1][img.n2][img.n3];
-        for (int ii = 0; ii < n; ii++) {
-            ImageDataArray idata = datas.get(ii);
-            for (int i = 0; i < idata.n1; i++) {
-                for (int j = 0; j < idata.n2; j++) {
-                    for (int k = 0; k < idata.n3; k++) {
-                        dataMerge[ii][i][j][k] = idata.data[i][j][k];
-                    }
+    public long[] getMergedShape() {
+        return new long[] {n, 1, height, maxWidth};
+    }
+
+    public int getMergedSize() {
+        return n * height * maxWidth;
+    }
+
+    /**
+     * 将 Bucket 内的图片按行写入 buffer, 组成 [n, 1, H, W] 的数据, 宽度不足的部分在右侧填充白色
+     * @param buffer 剩余空间至少为 {@link #getMergedSize()}
+     */
+    public void mergeData(FloatBuffer buffer) {
+        for (ImageData img : datas) {
+            for (int j = 0; j < height; j++) {
+                buffer.put(img.data, j * img.width, img.width);
+                for (int k = img.width; k < maxWidth; k++) {
+                    buffer.put(PaddingValue);
                 }
             }
         }
-        return Tensor.create(dataMerge);
     }
 
     public void setInnerDataLen() {
         n = datas.size();
-        datas.stream().forEach(data -> maxWidth = Math.max(maxWidth, data.n3));
+        datas.stream().forEach(data -> maxWidth = Math.max(maxWidth, data.width));
+        height = datas.get(0).height;
         realLen = Math.max((int)(Math.floor(maxWidth / 4.0)) - 1, 0);
         paddLen = BucketSizes[id][0] - realLen;
     }
 
-    public Tensor getZeroPaddingData() {
-        if (paddLen == 0) {
-            return null;
-        }
-        else {
-            float [][][] zeroPaddingData = new float[n][paddLen][1024];
-            return Tensor.create(zeroPaddingData);
-        }
-    }
-
-    public float[][] getEncoderMask(int ith) {
-        float value = ith < realLen ? 1.0f : 0.0f;
-        float [][] encoderMask = new float[n][1];
-        for (int i = 0; i < n; i++) {
-            encoderMask[i][0] = value;
-        }
-        return encoderMask;
-    }
-
-    public int[] getDecoder(int ith) {
-        int [] decoder = new int[n];
-        int value = 0;
-        if (ith == 0) {
-            value = 1;
-        }
-        else if (ith == 1) {
-            value = 2;
-        }
-        for (int i = 0; i < n; i++) {
-            decoder[i] = value;
-        }
-        return decoder;
-    }
-
-    public float[] getWeight(int ith) {
-        float [] weight = new float[n];
-        float value = 0.0f;
-        if (ith == 0) {
-            value = 1.0f;
-        }
-        for (int i = 0; i < n; i++) {
-            weight[i] = value;
-        }
-        return weight;
-    }
-
     public void reset() {
         datas.clear();
         imgsIDs.clear();
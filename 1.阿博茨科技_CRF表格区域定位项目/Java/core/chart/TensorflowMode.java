@@ -11,13 +11,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import com.abcft.pdfextract.core.model.TensorflowManager;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import javax.imageio.ImageIO;
 
 import org.tensorflow.*;
-import org.tensorflow.framework.GPUOptions;
 import org.tensorflow.types.UInt8;
 
 /**
@@ -37,6 +41,58 @@ public class TensorflowMode {
 
     protected TensorflowMode() { }
 
+    /**
+     * 并发加载已配置的冻结图模型 (Chart 类型分类, Chart 区域检测, OCR), 并用空白图片执行一次推理。
+     * @param executor 加载模型的线程池
+     * @return 每个模型的 future, 值表示模型是否可用
+     */
+    public static Map<String, CompletableFuture<Boolean>> warmUp(Executor executor) {
+        Map<String, CompletableFuture<Boolean>> futures = new HashMap<>();
+        TFModelConfig tfConfig = TFModelConfig.getInstance();
+        if (tfConfig.isDCTConfigValid()) {
+            futures.put(tfConfig.dctModelName, warmUp(tfConfig.dctModelName, executor, TFDetectChartType::getInstance,
+                    model -> model.classifyImage(new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB), 0.65f)));
+        }
+        if (tfConfig.isDCTInfoConfigValid()) {
+            futures.put(tfConfig.dctiModelName, warmUp(tfConfig.dctiModelName, executor, TFDetectChartTable::getInstance,
+                    model -> model.detectRegions(new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB))));
+        }
+        if (tfConfig.isOCRConfigValid()) {
+            futures.put(tfConfig.ocrModelName, warmUp(tfConfig.ocrModelName, executor, TFDetectOCRText::getInstance,
+                    model -> model.ocr(Collections.singletonList(new BufferedImage(100, 32, BufferedImage.TYPE_INT_RGB)))));
+        }
+        return futures;
+    }
+
+    /**
+     * 加载模型并执行一次推理, 加载失败, 模型没有准备好或者推理失败时返回 {@code false}。
+     */
+    private static <M extends TensorflowMode> CompletableFuture<Boolean> warmUp(String name, Executor executor,
+                                                                              Supplier<M> loader, Consumer<M> inference) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            M model;
+            try {
+                model = loader.get();
+            } catch (Exception e) {
+                logger.error("Failed to load model {}", name, e);
+                return false;
+            }
+            if (model == null || !model.isTFModelReady()) {
+                logger.warn("Model {} isn't ready after loading", name);
+                return false;
+            }
+            try {
+                inference.accept(model);
+            } catch (Exception e) {
+                logger.warn("Warm-up inference of model {} failed", name, e);
+                return false;
+            }
+            logger.info("Model {} ready in {}ms", name, System.currentTimeMillis() - start);
+            return true;
+        }, executor);
+    }
+
     /**
      * 判断当前模型环境是否准备好 如果准备好则可以对给定图片对象进行预测类别
      * @return
@@ -69,7 +125,7 @@ public class TensorflowMode {
      * @param labelsFile
      * @return
      */
-    public boolean setTFModelEnv(String modelDir, String modeFile, String labelsFile) {
+    public synchronized boolean setTFModelEnv(String modelDir, String modeFile, String labelsFile) {
         // 判断给定的模型及其相关文件信息是否已经在使用中 如果是 则不用再次导入
         if (!modelInfos.isEmpty()) {
             boolean isUsed = modelInfos.stream().anyMatch(info -> info.equals(modelDir)) &&
@@ -90,14 +146,12 @@ public class TensorflowMode {
             return false;
         }
 
-        // 设置 CPU 或 GPU 相关参数
+        // 设置 CPU 或 GPU 相关参数, 线程数按模型配置 (模型名是去掉扩展名的文件名)
         try {
             graph = new Graph();
             graph.importGraphDef(graphDef);
-            org.tensorflow.framework.ConfigProto.Builder configBuilder = org.tensorflow.framework
-                    .ConfigProto.newBuilder().setAllowSoftPlacement(true)
-                    .setGpuOptions(GPUOptions.newBuilder().setAllowGrowth(true));
-            byte[] sessionConfig = configBuilder.build().toByteArray();
+            String name = modeFile.endsWith(".pb") ? modeFile.substring(0, modeFile.length() - 3) : modeFile;
+            byte[] sessionConfig = TensorflowManager.INSTANCE.newSessionConfig(name).build().toByteArray();
             session = new Session(graph, sessionConfig);
         }
         catch (Exception e) {
@@ -177,6 +231,96 @@ public class TensorflowMode {
         }
     }
 
+    /**
+     * 直接用位图的像素构建 RGB 的 uint8 Tensor, 不经过图片的编码和解码
+     * @param bufferedImage
+     * @param expandDim 是否增加 batch 维度, 为 true 时 shape 为 [1, H, W, 3], 否则为 [H, W, 3]
+     * @return
+     */
+    public static Tensor<UInt8> constructRasterImage(BufferedImage bufferedImage, boolean expandDim) {
+        int w = bufferedImage.getWidth();
+        int h = bufferedImage.getHeight();
+        int[] rgb = bufferedImage.getRGB(0, 0, w, h, null, 0, w);
+        ByteBuffer buffer = ByteBuffer.allocate(rgb.length * 3);
+        for (int pixel : rgb) {
+            buffer.put((byte) (pixel >> 16));
+            buffer.put((byte) (pixel >> 8));
+            buffer.put((byte) pixel);
+        }
+        buffer.rewind();
+        return Tensor.create(UInt8.class, rasterShape(w, h, expandDim), buffer);
+    }
+
+    /**
+     * 直接用位图的像素构建 RGB 的 float Tensor (取值 0~255), 不经过图片的编码和解码
+     * @param bufferedImage
+     * @param expandDim 是否增加 batch 维度
+     * @return
+     */
+    public static Tensor<Float> constructRasterFloatImage(BufferedImage bufferedImage, boolean expandDim) {
+        int w = bufferedImage.getWidth();
+        int h = bufferedImage.getHeight();
+        int[] rgb = bufferedImage.getRGB(0, 0, w, h, null, 0, w);
+        FloatBuffer buffer = FloatBuffer.allocate(rgb.length * 3);
+        for (int pixel : rgb) {
+            buffer.put((pixel >> 16) & 0xFF);
+            buffer.put((pixel >> 8) & 0xFF);
+            buffer.put(pixel & 0xFF);
+        }
+        buffer.rewind();
+        return Tensor.create(rasterShape(w, h, expandDim), buffer);
+    }
+
+    /**
+     * 把位图缩放到给定尺寸, RGB 像素 (取值 0~255) 依次写入 dst。
+     * 按 TF 的 ResizeBilinear (align_corners=false) 的插值方式计算, 和模型里的缩放可能有浮点误差。
+     * @param bufferedImage
+     * @param outH 目标高度
+     * @param outW 目标宽度
+     * @param dst 至少还有 outH * outW * 3 个空位
+     */
+    public static void putResizedRasterImage(BufferedImage bufferedImage, int outH, int outW, FloatBuffer dst) {
+        int w = bufferedImage.getWidth();
+        int h = bufferedImage.getHeight();
+        int[] rgb = bufferedImage.getRGB(0, 0, w, h, null, 0, w);
+        float scaleX = (float) w / outW;
+        float scaleY = (float) h / outH;
+        int[] left = new int[outW];
+        int[] right = new int[outW];
+        float[] lerpX = new float[outW];
+        for (int x = 0; x < outW; x++) {
+            float in = x * scaleX;
+            left[x] = (int) in;
+            right[x] = Math.min(left[x] + 1, w - 1);
+            lerpX[x] = in - left[x];
+        }
+        for (int y = 0; y < outH; y++) {
+            float in = y * scaleY;
+            int top = (int) in;
+            int bottom = Math.min(top + 1, h - 1);
+            float lerpY = in - top;
+            for (int x = 0; x < outW; x++) {
+                int topLeft = rgb[top * w + left[x]];
+                int topRight = rgb[top * w + right[x]];
+                int bottomLeft = rgb[bottom * w + left[x]];
+                int bottomRight = rgb[bottom * w + right[x]];
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    float tl = (topLeft >> shift) & 0xFF;
+                    float tr = (topRight >> shift) & 0xFF;
+                    float bl = (bottomLeft >> shift) & 0xFF;
+                    float br = (bottomRight >> shift) & 0xFF;
+                    float t = tl + (tr - tl) * lerpX[x];
+                    float b = bl + (br - bl) * lerpX[x];
+                    dst.put(t + (b - t) * lerpY);
+                }
+            }
+        }
+    }
+
+    private static long[] rasterShape(int w, int h, boolean expandDim) {
+        return expandDim ? new long[] {1, h, w, 3} : new long[] {h, w, 3};
+    }
+
     /**
      * 给定字节码数组和目标尺寸信息 将图片内容解码 (不同模型输入图片对象要求不同)
      * @param imageBytes
@@ -205,15 +349,19 @@ public class TensorflowMode {
                             b.constant("size", new int[] {size[0], size[1]}), type);
             try (Session s = new Session(g)) {
                 Tensor image = s.runner().fetch(output.op().name()).run().get(0);
+                // 中间结果的 Tensor 用完立即释放
                 if (normalImage) {
-                    Tensor tmp = cutOneDim(image, false);
-                    return expandOneDim(tmp);
+                    try (Tensor src = image; Tensor tmp = cutOneDim(src, false)) {
+                        return tmp != null ? expandOneDim(tmp) : null;
+                    }
                 }
                 else if (expandDim) {
                     return image;
                 }
                 else {
-                    return cutOneDim(image, true);
+                    try (Tensor src = image) {
+                        return cutOneDim(src, true);
+                    }
                 }
             }
         }
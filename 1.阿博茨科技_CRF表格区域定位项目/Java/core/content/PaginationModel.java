@@ -0,0 +1,178 @@
+package com.abcft.pdfextract.core.content;
+
+import com.abcft.pdfextract.core.model.TextChunk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 文档级别的页眉页脚模型。
+ * <p>
+ * 同一文档的页眉页脚通常在每页的同一位置重复出现, 只有页码等数字不同。前面的页面做完整的页眉页脚分析后,
+ * 把页眉/页脚区域内候选文字的指纹 (数字归一化后的文字) 和区域的边界记录下来; 同样的指纹在至少
+ * {@value #MIN_OCCURRENCES} 个页面中出现后, 后面的页面只要区域内文字的指纹一致, 就直接使用记录的结果,
+ * 不再做文字合并和逐行判断。指纹不一致 (版式变化) 时回退到完整的分析, 并继续学习。
+ */
+public class PaginationModel {
+
+    /**
+     * 同样的页眉/页脚至少出现的页数, 达到后才会用来判断后面的页面
+     */
+    public static final int MIN_OCCURRENCES = 2;
+    // 每个区域最多记录的版式数
+    private static final int MAX_ENTRIES = 8;
+    // 由文字确定的区域边界允许的误差
+    private static final float EDGE_TOLERANCE = 2.f;
+
+    /**
+     * 页眉或页脚区域的一种版式
+     */
+    public static final class Band {
+        /**
+         * 区域边界是否由页眉/页脚线确定, 这时边界使用当前页面的线, 不使用记录的值
+         */
+        public final boolean fromLine;
+        /**
+         * 区域边界, 页眉为页眉区域的下边界, 页脚为页脚区域的上边界
+         */
+        public final float edge;
+        /**
+         * 区域内候选文字的指纹
+         */
+        public final String fingerprint;
+        /**
+         * 区域内的候选文字是否都是页眉/页脚
+         */
+        public final boolean marked;
+        private int count;
+
+        Band(boolean fromLine, float edge, String fingerprint, boolean marked) {
+            this.fromLine = fromLine;
+            this.edge = edge;
+            this.fingerprint = fingerprint;
+            this.marked = marked;
+            this.count = 1;
+        }
+
+        boolean matches(boolean fromLine, float edge, String fingerprint, boolean marked) {
+            return this.fromLine == fromLine && this.marked == marked
+                    && (fromLine || Math.abs(this.edge - edge) <= EDGE_TOLERANCE)
+                    && this.fingerprint.equals(fingerprint);
+        }
+
+        public boolean isStable() {
+            return count >= MIN_OCCURRENCES;
+        }
+    }
+
+    private final List<Band> headers = new ArrayList<>();
+    private final List<Band> footers = new ArrayList<>();
+
+    /**
+     * 计算一组文字的指纹: 去掉空白, 连续的数字替换成 #, 按文字排序后拼接, 和文字的顺序、页码无关。
+     */
+    public static String fingerprint(List<TextChunk> textChunks) {
+        if (textChunks.isEmpty()) {
+            return "";
+        }
+        List<String> texts = new ArrayList<>(textChunks.size());
+        for (TextChunk textChunk : textChunks) {
+            texts.add(normalize(textChunk.getText()));
+        }
+        Collections.sort(texts);
+        return String.join("|", texts);
+    }
+
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean inDigits = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                continue;
+            }
+            if (Character.isDigit(c)) {
+                if (!inDigits) {
+                    sb.append('#');
+                    inDigits = true;
+                }
+                continue;
+            }
+            inDigits = false;
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 取得已经稳定的页眉版式
+     * @param fromLine 当前页面是否有页眉线
+     */
+    public synchronized List<Band> getStableHeaders(boolean fromLine) {
+        return getStable(headers, fromLine);
+    }
+
+    /**
+     * 取得已经稳定的页脚版式
+     * @param fromLine 当前页面是否有页脚线
+     */
+    public synchronized List<Band> getStableFooters(boolean fromLine) {
+        return getStable(footers, fromLine);
+    }
+
+    private static List<Band> getStable(List<Band> bands, boolean fromLine) {
+        List<Band> stable = new ArrayList<>();
+        for (Band band : bands) {
+            if (band.fromLine == fromLine && band.isStable()) {
+                stable.add(band);
+            }
+        }
+        return stable;
+    }
+
+    /**
+     * 记录一个完整分析过的页面的页眉区域
+     * @param fromLine 区域边界是否由页眉线确定
+     * @param edge 页眉区域的下边界
+     * @param candidates 区域内的候选文字
+     * @param headers 其中被判断为页眉的文字数
+     */
+    public synchronized void learnHeader(boolean fromLine, float edge, List<TextChunk> candidates, int headers) {
+        learn(this.headers, fromLine, edge, candidates, headers);
+    }
+
+    /**
+     * 记录一个完整分析过的页面的页脚区域
+     * @param fromLine 区域边界是否由页脚线确定
+     * @param edge 页脚区域的上边界
+     * @param candidates 区域内的候选文字
+     * @param footers 其中被判断为页脚的文字数
+     */
+    public synchronized void learnFooter(boolean fromLine, float edge, List<TextChunk> candidates, int footers) {
+        learn(this.footers, fromLine, edge, candidates, footers);
+    }
+
+    private static void learn(List<Band> bands, boolean fromLine, float edge, List<TextChunk> candidates, int markedCount) {
+        // 只有区域内的文字全是或全不是页眉/页脚时, 结果才能直接套用到其他页面
+        if (markedCount != 0 && markedCount != candidates.size()) {
+            return;
+        }
+        // 区域内没有文字时指纹为空, 任何同样没有文字的页面都能匹配, 而完整分析中还会根据页面顶部/底部的文字
+        // 确定区域边界, 只有边界由页眉/页脚线确定时才可以直接套用
+        if (candidates.isEmpty() && !fromLine) {
+            return;
+        }
+        boolean marked = markedCount > 0;
+        String fingerprint = fingerprint(candidates);
+        for (Band band : bands) {
+            if (band.matches(fromLine, edge, fingerprint, marked)) {
+                band.count++;
+                return;
+            }
+        }
+        if (bands.size() < MAX_ENTRIES) {
+            bands.add(new Band(fromLine, edge, fingerprint, marked));
+        }
+    }
+}
@@ -3,13 +3,11 @@ package com.abcft.pdfextract.core.content;
 
 import com.abcft.pdfextract.core.model.*;
 import com.abcft.pdfextract.core.table.ContentGroupPage;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
+import com.abcft.pdfextract.core.util.LineFeatures;
 import com.abcft.pdfextract.core.util.TrainDataWriter;
 import com.abcft.pdfextract.util.FloatUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.tensorflow.SavedModelBundle;
-import org.tensorflow.Session;
-import org.tensorflow.Tensor;
-import org.tensorflow.example.Example;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -125,19 +123,12 @@ public class ParagraphMerger {
     private static List<TextBlock> mergeLinesByCRF(Page page, Page.TextGroup textGroup, ContentGroupPage contentGroupPage) {
 //        Example example = TrainDataWriter.buildPageExample(
 //                page, lineChunks);
-        Example example = TrainDataWriter.buildPageExample(contentGroupPage,
+        List<TrainDataWriter.LineInfo> lineInfos = TrainDataWriter.buildLineInfosForLayout(contentGroupPage,
                 page, textGroup);
-        Tensor exampleTensor = Tensor.create(example.toByteArray());
-
-        SavedModelBundle savedModelBundle = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.PARAGRAPH);
-        Session session = savedModelBundle.session();
-        Tensor<?> crfTags = session.runner()
-                .feed("serialized_example", exampleTensor)
-                .fetch("crf_tags")
-                .run()
-                .get(0);
-        int length = (int) crfTags.shape()[1];
-        int[] tags = crfTags.copyTo(new int[1][length])[0];
+        int[] tags;
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.timeModel(TensorflowManager.PARAGRAPH)) {
+            tags = LineFeatures.runCrfTags(TensorflowManager.PARAGRAPH, lineInfos);
+        }
         List<TrainDataWriter.LineTag> lineTags = Arrays.stream(tags).mapToObj(tag -> TrainDataWriter.LineTag.values()[tag]).collect(Collectors.toList());
         List<TextBlock> merged = new ArrayList<>();
         TextBlock prev = null;
@@ -233,18 +233,22 @@ public class TextChunkMerger {
         }
 
         //单独将竖直方向的chunk进行合并
-        List<TextChunk> textChunks1 = merged.stream()
-                .filter(textChunk -> textChunk.getDirection() == TextDirection.UNKNOWN)
-                .filter(textChunk -> !textChunk.isBlank())
-                .collect(Collectors.toList());
+        // 被合并的chunk只做标记, 最后统一压缩, 避免在循环中从列表里删除
+        int n = merged.size();
+        boolean[] removed = new boolean[n];
         TextChunk prevTextVertical = null;
-        for (TextChunk textChunk : textChunks1) {
+        for (int i = 0; i < n; i++) {
+            TextChunk textChunk = merged.get(i);
+            // chunk只会在被访问之后才可能被合并修改, 所以这里的判断和先过滤再合并是一样的
+            if (textChunk.getDirection() != TextDirection.UNKNOWN || textChunk.isBlank()) {
+                continue;
+            }
             if (textChunk.isDeleted()) {
                 continue;
             }
             if (prevTextVertical != null && canMergeVertical(prevTextVertical, textChunk)) {
                 prevTextVertical.merge(textChunk);
-                merged.remove(textChunk);
+                removed[i] = true;
             } else {
                 // PDF里面有很多空白的字符块, 这些字符块出现可能不是连续的
                 if (StringUtils.isNotBlank(textChunk.getText())) {
@@ -254,19 +258,32 @@ public class TextChunkMerger {
 
         }
 
-        for (TextChunk textChunk : merged) {
+        // 压缩, 同时设置方向和拆分
+        List<TextChunk> targetChunks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            TextChunk textChunk = merged.get(i);
             if (textChunk.getDirection() == TextDirection.UNKNOWN) {
                 textChunk.setDirection(TextDirection.LTR);
             }
+            if (StringUtils.isBlank(textChunk.getText())) {
+                continue;
+            }
+            addSplitTextChunks(textChunk, targetChunks);
         }
-        merged.removeIf(textChunk -> StringUtils.isBlank(textChunk.getText()));
+        return targetChunks;
+    }
 
-        List<TextChunk> targetChunks = new ArrayList<>();
-        for (TextChunk chunk : merged) {
-            targetChunks.addAll(getSplitTextChunks(chunk));
+    private static void addSplitTextChunks(TextChunk candidatechunk, List<TextChunk> targetChunks) {
+        // 大部分文字块不需要拆分, 先做简单的判断, 避免复制和排序
+        List<TextElement> elements = candidatechunk.getElements();
+        if (elements.size() < 3 || candidatechunk.getDirection() != TextDirection.LTR) {
+            targetChunks.add(candidatechunk);
+            return;
         }
-        merged = targetChunks;
-        return merged;
+        targetChunks.addAll(getSplitTextChunks(candidatechunk));
     }
 
     private static List<TextChunk> getSplitTextChunks(TextChunk candidatechunk) {
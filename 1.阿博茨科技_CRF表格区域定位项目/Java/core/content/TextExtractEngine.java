@@ -233,49 +233,51 @@ public class TextExtractEngine {
 
         Rectangle leftWingRect = new Rectangle(0f, 0f,0.1, (float)pageHeight);
         Rectangle rightWingRect = new Rectangle(pageWidth - 0.1, 0, 0.1, pageHeight);
-        textChunks.stream()
-                .filter(TextChunk::isVertical)
-                .filter(textChunk -> !TextUtils.isDigitalAndBlankOrAlphabet(textChunk.getText()))
-                .filter(textChunk -> FloatUtils.flte(textChunk.getRight(), 65.))
-                .forEach(textChunk -> textChunk.setPaginationType(PaginationType.LEFT_WING));
-        textChunks.stream()
-                .filter(TextChunk::isVertical)
-                .filter(textChunk -> !TextUtils.isDigitalAndBlankOrAlphabet(textChunk.getText()))
-                .filter(textChunk -> FloatUtils.fgte(textChunk.getLeft(), pageWidth - 65.))
-                .forEach(textChunk -> textChunk.setPaginationType(PaginationType.RIGHT_WING));
-        List<TextChunk> headers = textChunks.stream()
-                .filter(TextChunk::isPageHeader)
-                .filter(TextChunk::isHorizontal)
-                .collect(Collectors.toList());
+        // 每个文字块的判断只和自身有关, 一次遍历完成侧翼的设置和页眉页脚侧翼的收集
+        List<TextChunk> headers = new ArrayList<>();
+        List<TextChunk> footers = new ArrayList<>();
+        List<TextChunk> leftWings = new ArrayList<>();
+        List<TextChunk> rightWings = new ArrayList<>();
+        for (TextChunk textChunk : textChunks) {
+            if (textChunk.isVertical()) {
+                if (TextUtils.isDigitalAndBlankOrAlphabet(textChunk.getText())) {
+                    continue;
+                }
+                if (FloatUtils.flte(textChunk.getRight(), 65.)) {
+                    textChunk.setPaginationType(PaginationType.LEFT_WING);
+                }
+                if (FloatUtils.fgte(textChunk.getLeft(), pageWidth - 65.)) {
+                    textChunk.setPaginationType(PaginationType.RIGHT_WING);
+                }
+                if (textChunk.isPageLeftWing()) {
+                    leftWings.add(textChunk);
+                } else if (textChunk.isPageRightWing()) {
+                    rightWings.add(textChunk);
+                }
+            } else if (textChunk.isHorizontal()) {
+                if (textChunk.isPageHeader()) {
+                    headers.add(textChunk);
+                } else if (textChunk.isPageFooter()) {
+                    footers.add(textChunk);
+                }
+            }
+        }
+
         for (TextChunk header : headers) {
             headerRect.merge(header);
         }
         page.setHeader(createColumn(headerRect, headers));
 
-        List<TextChunk> footers = textChunks.stream()
-                .filter(TextChunk::isPageFooter)
-                .filter(TextChunk::isHorizontal)
-                .collect(Collectors.toList());
         for (TextChunk footer : footers) {
             footerRect.merge(footer);
         }
         page.setFooter(createColumn(footerRect, footers));
 
-        List<TextChunk> leftWings = textChunks.stream()
-                .filter(TextChunk::isPageLeftWing)
-                .filter(TextChunk::isVertical)
-                .filter(textChunk -> !TextUtils.isDigitalAndBlankOrAlphabet(textChunk.getText()))
-                .collect(Collectors.toList());
         for(TextChunk leftWing : leftWings) {
             leftWingRect.merge(leftWing);
         }
         page.setLeftWing(createColumn(leftWingRect, leftWings));
 
-        List<TextChunk> rightWings = textChunks.stream()
-                .filter(TextChunk::isPageRightWing)
-                .filter(TextChunk::isVertical)
-                .filter(textChunk -> !TextUtils.isDigitalAndBlankOrAlphabet(textChunk.getText()))
-                .collect(Collectors.toList());
         for(TextChunk rightWing : rightWings) {
             rightWingRect.merge(rightWing);
         }
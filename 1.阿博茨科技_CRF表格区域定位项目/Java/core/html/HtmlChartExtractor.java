@@ -10,6 +10,7 @@ import org.jsoup.helper.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -62,76 +63,29 @@ public class HtmlChartExtractor implements HtmlExtractor<ChartExtractParameters,
         return parent;
     }
 
+    /**
+     * 在 {@link HtmlExtractEngine} 的遍历中收集所有的 img 元素, 见 {@link HtmlDocumentExtractor}。
+     */
+    static final class ChartVisitor implements HtmlExtractEngine.ElementVisitor {
+
+        private final List<Element> images = new ArrayList<>();
+
+        @Override
+        public void head(Element element, int depth) {
+            if ("img".equals(element.nodeName())) {
+                images.add(element);
+            }
+        }
+    }
+
     private ChartExtractionResult extractChart(Document document, ChartExtractParameters parameters, Writer writer, ChartCallback callback) {
         ChartExtractionResult result = new ChartExtractionResult();
         try {
             if (callback != null) {
                 callback.onStart(document);
             }
-            int index = 0;
-            Map<String, Integer> imageUrlCount = new HashMap<>();
-            List<Chart> charts = new ArrayList<>();
-            CRC32 crc32 = new CRC32();
-            for (Element element : document.select("img")) {
-                String src = absUrl(element, "src");
-                if (StringUtils.isEmpty(src)) {
-                    src = absUrl(element, "data-src");
-                }
-
-                if (StringUtils.isEmpty(src)) {
-                    continue;
-                }
-                imageUrlCount.compute(src, (k, v) -> v == null ? 1 : v + 1);
-                Chart chart = new Chart();
-                chart.imageUrl = src;
-                chart.type = ChartType.BITMAP_CHART;
-                chart.pageIndex = 0;
-                chart.setChartIndex(index++);
-                crc32.reset();
-                crc32.update(src.getBytes("utf-8"));
-                chart.setName(Long.toHexString(crc32.getValue()));
-                Element titleElement = element.previousElementSibling();
-                if (titleElement == null) {
-                    titleElement = element.parent().previousElementSibling();
-                }
-                if (titleElement != null) {
-                    chart.title = titleElement.text().trim();
-                }
-                if (StringUtils.isBlank(chart.title)) {
-                    // 处理img在table里面的情况
-                    Element tr = findParentByNodeName(element, "tr");
-                    if (tr != null) {
-                        Element prevTr = tr.previousElementSibling();
-                        if (prevTr != null) {
-                            List<String> titles = prevTr.select("td").eachText().stream()
-                                    .filter(StringUtils::isNotBlank)
-                                    .collect(Collectors.toList());
-                            int imageIndex = tr.select("img").indexOf(element);
-                            if (imageIndex >= 0 && imageIndex < titles.size()) {
-                                chart.title = titles.get(imageIndex).trim();
-                            } else if (titles.size() == 1) {
-                                chart.title = titles.get(0).trim();
-                            }
-                        }
-                    }
-                }
-                // 过滤标题
-                if (StringUtils.endsWithAny(chart.title, ".", "。")
-                        || (chart.title != null && chart.title.length() > 50)) {
-                    chart.title = null;
-                }
-                charts.add(chart);
-            }
-            // 删除多次出现的图片, 可能是logo一类的图
-            charts.removeIf(chart -> imageUrlCount.getOrDefault(chart.imageUrl, 0) > 2);
-            if (callback != null) {
-                for (Chart chart : charts) {
-                    callback.onItemExtracted(chart);
-                }
-            }
-            // 删除保存失败的位图
-            charts.removeIf(chart -> chart.getImageFile() == null);
-            result.addCharts(charts);
+            ChartVisitor visitor = HtmlDocumentExtractor.of(parameters != null ? parameters.context : null, document).chartVisitor;
+            buildCharts(visitor, result, callback);
             if (callback != null) {
                 callback.onFinished(result);
             }
@@ -143,4 +97,71 @@ public class HtmlChartExtractor implements HtmlExtractor<ChartExtractParameters,
         }
         return null;
     }
+
+    void buildCharts(ChartVisitor visitor, ChartExtractionResult result, ChartCallback callback) throws UnsupportedEncodingException {
+        int index = 0;
+        Map<String, Integer> imageUrlCount = new HashMap<>();
+        List<Chart> charts = new ArrayList<>();
+        CRC32 crc32 = new CRC32();
+        for (Element element : visitor.images) {
+            String src = absUrl(element, "src");
+            if (StringUtils.isEmpty(src)) {
+                src = absUrl(element, "data-src");
+            }
+
+            if (StringUtils.isEmpty(src)) {
+                continue;
+            }
+            imageUrlCount.compute(src, (k, v) -> v == null ? 1 : v + 1);
+            Chart chart = new Chart();
+            chart.imageUrl = src;
+            chart.type = ChartType.BITMAP_CHART;
+            chart.pageIndex = 0;
+            chart.setChartIndex(index++);
+            crc32.reset();
+            crc32.update(src.getBytes("utf-8"));
+            chart.setName(Long.toHexString(crc32.getValue()));
+            Element titleElement = element.previousElementSibling();
+            if (titleElement == null) {
+                titleElement = element.parent().previousElementSibling();
+            }
+            if (titleElement != null) {
+                chart.title = titleElement.text().trim();
+            }
+            if (StringUtils.isBlank(chart.title)) {
+                // 处理img在table里面的情况
+                Element tr = findParentByNodeName(element, "tr");
+                if (tr != null) {
+                    Element prevTr = tr.previousElementSibling();
+                    if (prevTr != null) {
+                        List<String> titles = prevTr.select("td").eachText().stream()
+                                .filter(StringUtils::isNotBlank)
+                                .collect(Collectors.toList());
+                        int imageIndex = tr.select("img").indexOf(element);
+                        if (imageIndex >= 0 && imageIndex < titles.size()) {
+                            chart.title = titles.get(imageIndex).trim();
+                        } else if (titles.size() == 1) {
+                            chart.title = titles.get(0).trim();
+                        }
+                    }
+                }
+            }
+            // 过滤标题
+            if (StringUtils.endsWithAny(chart.title, ".", "。")
+                    || (chart.title != null && chart.title.length() > 50)) {
+                chart.title = null;
+            }
+            charts.add(chart);
+        }
+        // 删除多次出现的图片, 可能是logo一类的图
+        charts.removeIf(chart -> imageUrlCount.getOrDefault(chart.imageUrl, 0) > 2);
+        if (callback != null) {
+            for (Chart chart : charts) {
+                callback.onItemExtracted(chart);
+            }
+        }
+        // 删除保存失败的位图
+        charts.removeIf(chart -> chart.getImageFile() == null);
+        result.addCharts(charts);
+    }
 }
@@ -6,17 +6,16 @@ import com.abcft.pdfextract.core.chart.ChartExtractor;
 import com.abcft.pdfextract.core.content.*;
 import com.abcft.pdfextract.core.model.TextElement;
 import com.abcft.pdfextract.spi.FileType;
-import com.abcft.pdfextract.util.ClosureInt;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,11 +41,11 @@ public class HtmlContentExtractor implements HtmlExtractor<ContentExtractParamet
         return processDocument(document, parameters, null, callback);
     }
 
-    private Paragraph parseParagraph(int pageNumber, Element element, ContentExtractParameters parameters) {
-        Map<String, String> style = parseStyle(element.attr("style"));
+    private static Paragraph parseParagraph(int pageNumber, Element element, Map<String, String> style,
+                                            ContentExtractParameters parameters) {
         String text =  (parameters != null && parameters.htmlWholeText) ? element.wholeText() : element.text();
         Element font = element.getElementsByTag("font").first();
-        Map<String, String> fontStyle = parseStyle(font != null ? font.attr("style") : "");
+        Map<String, String> fontStyle = font != null ? HtmlExtractEngine.parseStyle(font.attr("style")) : new HashMap<>();
         if (StringUtils.isNoneBlank(text)) {
             Paragraph paragraph = new Paragraph(pageNumber, text, 0, 0, 0, 0);
             int textStyle = 0;
@@ -91,77 +90,89 @@ public class HtmlContentExtractor implements HtmlExtractor<ContentExtractParamet
         }
     }
 
-    private static Map<String, String> parseStyle(String style) {
-        Map<String, String> attrs = new HashMap<>();
-        if (StringUtils.isBlank(style)) {
-            return attrs;
+    /**
+     * 在 {@link HtmlExtractEngine} 的遍历中按顺序收集段落元素和分页, 见 {@link HtmlDocumentExtractor}。
+     * <p>
+     * 块级元素 ({@link #BLOCK_TAGS}) 整体作为一个段落, 不再处理它的子元素。
+     * 收集时不依赖解析参数, 段落在 {@link #finishFulltext} 中按参数生成。
+     */
+    static final class ContentVisitor implements HtmlExtractEngine.ElementVisitor {
+
+        /**
+         * 一个段落元素, 或者 element 为 null 时表示从这里开始新的一页
+         */
+        private static final class Block {
+            final int pageNumber;
+            final Element element;
+            final Map<String, String> style;
+
+            Block(int pageNumber, Element element, Map<String, String> style) {
+                this.pageNumber = pageNumber;
+                this.element = element;
+                this.style = style;
+            }
         }
-        String[] array = style.split(";");
-        for (String s : array) {
-            if (StringUtils.isBlank(s)) {
-                continue;
+
+        private final List<Block> blocks = new ArrayList<>();
+        private int pageNumber = 1;
+        // 当前所在的块级元素的深度, -1 表示不在块级元素内
+        private int blockDepth = -1;
+
+        @Override
+        public void head(Element element, int depth) {
+            if (depth == 0 || blockDepth >= 0) {
+                return;
+            }
+            Map<String, String> style = HtmlExtractEngine.parseStyle(element.attr("style"));
+            String nodeName = element.nodeName();
+            if (BLOCK_TAGS.contains(nodeName)) {
+                blocks.add(new Block(pageNumber, element, style));
+                blockDepth = depth;
+            }
+            if (StringUtils.equals(style.get("page-break-after"), "always")) {
+                pageNumber++;
+                blocks.add(new Block(pageNumber, null, null));
+            }
+            if (element.hasAttr("data-page")) {
+                int dataPage = Integer.parseInt(element.attr("data-page"));
+                if (dataPage != pageNumber) {
+                    pageNumber = dataPage;
+                    blocks.add(new Block(pageNumber, null, null));
+                }
             }
-            String[] keyValue = s.split(":");
-            if (keyValue.length == 2) {
-                attrs.put(keyValue[0].trim(), keyValue[1].trim());
+        }
+
+        @Override
+        public void tail(Element element, int depth) {
+            if (depth == blockDepth) {
+                blockDepth = -1;
             }
         }
-        return attrs;
     }
 
     private Fulltext extractFulltext(com.abcft.pdfextract.spi.Document<Document> htmlDocument, ContentExtractParameters parameters, Writer outputStream, ContentExtractorCallback callback) {
-        Fulltext fulltext = new Fulltext(htmlDocument);
+        ContentVisitor visitor = HtmlDocumentExtractor.of(parameters != null ? parameters.context : null,
+                htmlDocument.getDocument()).contentVisitor;
+        return finishFulltext(htmlDocument, visitor, parameters, outputStream, callback);
+    }
+
+    Fulltext finishFulltext(com.abcft.pdfextract.spi.Document<Document> htmlDocument, ContentVisitor visitor,
+                            ContentExtractParameters parameters, Writer outputStream, ContentExtractorCallback callback) {
         Document document = htmlDocument.getDocument();
-        final ClosureInt pageNumber = new ClosureInt(1);
-        Page page = new Page(pageNumber.get());
-        Element body = document.select("body").first();
+        Fulltext fulltext = new Fulltext(htmlDocument);
         StringBuilder builder = new StringBuilder();
-        Node node = body;
-        int depth = 0;
-        boolean goToChild = true;
-        while(node != null) {
-            if (depth > 0 && node instanceof Element) {
-                Element element = (Element)node;
-                Map<String, String> style = parseStyle(element.attr("style"));
-                String nodeName = element.nodeName();
-                if (BLOCK_TAGS.contains(nodeName)) {
-                    Paragraph paragraph = parseParagraph(pageNumber.get(), element, parameters);
-                    if (paragraph != null) {
-                        builder.append(paragraph.getText()).append("\n");
-                        page.addParagraph(paragraph);
-                    }
-                    goToChild = false;
-                } else {
-                    goToChild = true;
-                }
-                if (StringUtils.equals(style.get("page-break-after"), "always")) {
-                    pageNumber.increment();
-                    fulltext.addPage(page);
-                    page = new Page(pageNumber.get());
-                    builder.append("\n\n");
-                }
-                if (element.hasAttr("data-page")) {
-                    int dataPage = Integer.parseInt(element.attr("data-page"));
-                    if (dataPage != pageNumber.get()) {
-                        fulltext.addPage(page);
-                        pageNumber.set(dataPage);
-                        page = new Page(pageNumber.get());
-                        builder.append("\n\n");
-                    }
-                }
+        Page page = new Page(1);
+        for (ContentVisitor.Block block : visitor.blocks) {
+            if (block.element == null) {
+                fulltext.addPage(page);
+                page = new Page(block.pageNumber);
+                builder.append("\n\n");
+                continue;
             }
-            if(goToChild && node.childNodeSize() > 0) {
-                node = node.childNode(0);
-                ++depth;
-            } else {
-                while(node.nextSibling() == null && depth > 0) {
-                    node = node.parentNode();
-                    --depth;
-                }
-                if(node == body) {
-                    break;
-                }
-                node = node.nextSibling();
+            Paragraph paragraph = parseParagraph(block.pageNumber, block.element, block.style, parameters);
+            if (paragraph != null) {
+                builder.append(paragraph.getText()).append("\n");
+                page.addParagraph(paragraph);
             }
         }
         fulltext.addPage(page);
@@ -0,0 +1,45 @@
+package com.abcft.pdfextract.core.html;
+
+import com.abcft.pdfextract.core.ExtractContext;
+import org.jsoup.nodes.Document;
+
+/**
+ * HTML 文档的单次遍历, 图表、表格和正文解析共用。
+ * <p>
+ * {@link HtmlChartExtractor}, {@link HtmlTableExtractor} 和 {@link HtmlContentExtractor} 分别被调用,
+ * 第一个解析器遍历文档, 同时收集三种解析需要的节点, 结果保存在文档的 {@link ExtractContext} 中,
+ * 其他解析器直接使用。没有 ExtractContext 时每次都遍历。
+ */
+final class HtmlDocumentExtractor {
+
+    private static final String CONTEXT_TAG = "html.document_traversal";
+
+    private final Document document;
+    final HtmlChartExtractor.ChartVisitor chartVisitor = new HtmlChartExtractor.ChartVisitor();
+    final HtmlTableExtractor.TableVisitor tableVisitor = new HtmlTableExtractor.TableVisitor();
+    final HtmlContentExtractor.ContentVisitor contentVisitor = new HtmlContentExtractor.ContentVisitor();
+
+    private HtmlDocumentExtractor(Document document) {
+        this.document = document;
+        new HtmlExtractEngine().traverse(document, chartVisitor, tableVisitor, contentVisitor);
+    }
+
+    /**
+     * 取得文档的遍历结果, 同一个 context 中的同一个文档只遍历一次。
+     */
+    static HtmlDocumentExtractor of(ExtractContext<?> context, Document document) {
+        if (context == null) {
+            return new HtmlDocumentExtractor(document);
+        }
+        // 三种解析可能在不同的线程中同时调用
+        synchronized (context) {
+            Object tag = context.getTag(CONTEXT_TAG);
+            if (tag instanceof HtmlDocumentExtractor && ((HtmlDocumentExtractor) tag).document == document) {
+                return (HtmlDocumentExtractor) tag;
+            }
+            HtmlDocumentExtractor traversal = new HtmlDocumentExtractor(document);
+            context.addTag(CONTEXT_TAG, traversal);
+            return traversal;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.abcft.pdfextract.core.html;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HTML 文档的单次遍历引擎。
+ * <p>
+ * 正文、表格、图表解析各自实现一个 {@link ElementVisitor}, 在一次深度优先遍历里同时收集各自需要的节点,
+ * 避免每个解析器分别遍历或 select 整棵 DOM 树。
+ * <p>
+ * 这个类不是线程安全的, 每个文档使用一个新的实例。
+ */
+public final class HtmlExtractEngine {
+
+    /**
+     * 遍历 body 下的元素节点, 顺序与 {@link Element#select(String)} 相同 (先序)。
+     */
+    interface ElementVisitor {
+
+        /**
+         * 进入一个元素时调用。
+         *
+         * @param element 当前元素。
+         * @param depth 相对 body 的深度, body 本身为 0。
+         */
+        void head(Element element, int depth);
+
+        /**
+         * 离开一个元素 (子节点都已经访问完) 时调用。
+         */
+        default void tail(Element element, int depth) {
+        }
+    }
+
+    static Map<String, String> parseStyle(String style) {
+        Map<String, String> attrs = new HashMap<>();
+        if (StringUtils.isBlank(style)) {
+            return attrs;
+        }
+        String[] array = style.split(";");
+        for (String s : array) {
+            if (StringUtils.isBlank(s)) {
+                continue;
+            }
+            String[] keyValue = s.split(":");
+            if (keyValue.length == 2) {
+                attrs.put(keyValue[0].trim(), keyValue[1].trim());
+            }
+        }
+        return attrs;
+    }
+
+    /**
+     * 遍历文档的 body, 把每个元素分发给所有的 visitor。
+     *
+     * @param document 要遍历的文档。
+     * @param visitors 参与本次遍历的 visitor, 按顺序调用。
+     */
+    void traverse(Document document, ElementVisitor... visitors) {
+        Element body = document.select("body").first();
+        if (body == null) {
+            return;
+        }
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof Element) {
+                    for (ElementVisitor visitor : visitors) {
+                        visitor.head((Element) node, depth);
+                    }
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node instanceof Element) {
+                    for (ElementVisitor visitor : visitors) {
+                        visitor.tail((Element) node, depth);
+                    }
+                }
+            }
+        }, body);
+    }
+}
@@ -39,15 +39,44 @@ public class HtmlTableExtractor implements HtmlExtractor<TableExtractParameters,
         return extractTable(document.getDocument(), parameters, null, callback);
     }
 
-    private static boolean inTable(Element element) {
-        Element parent = element.parent();
-        while (parent != null) {
-            if (parent.nodeName().equals("table")) {
-                return true;
+    /**
+     * 在 {@link HtmlExtractEngine} 的遍历中收集最外层、且不包含图片的 table 元素, 见 {@link HtmlDocumentExtractor}。
+     */
+    static final class TableVisitor implements HtmlExtractEngine.ElementVisitor {
+
+        private final List<Element> tables = new ArrayList<>();
+        private Element currentTable;
+        private boolean currentHasImage;
+        private int tableDepth = 0;
+
+        @Override
+        public void head(Element element, int depth) {
+            String nodeName = element.nodeName();
+            if ("table".equals(nodeName)) {
+                if (tableDepth == 0) {
+                    currentTable = element;
+                    currentHasImage = false;
+                }
+                tableDepth++;
+            } else if ("img".equals(nodeName) && tableDepth > 0) {
+                currentHasImage = true;
+            }
+        }
+
+        @Override
+        public void tail(Element element, int depth) {
+            if (!"table".equals(element.nodeName())) {
+                return;
+            }
+            tableDepth--;
+            if (tableDepth == 0) {
+                // 如果table内包含图片, 跳过
+                if (!currentHasImage) {
+                    tables.add(currentTable);
+                }
+                currentTable = null;
             }
-            parent = parent.parent();
         }
-        return false;
     }
 
     private static Elements findChildren(Element root, String... nodeNames) {
@@ -113,134 +142,132 @@ public class HtmlTableExtractor implements HtmlExtractor<TableExtractParameters,
             if (callback != null) {
                 callback.onStart(document);
             }
-            for (Element element : document.select("table")) {
-                if (inTable(element)) {
-                    continue;
-                }
-                // 如果table内包含图片, 跳过
-                if (!element.select("img").isEmpty()) {
-                    continue;
-                }
-                Table table = new Table();
-                table.setPageNumber(1);
-                table.setIndex(result.getItems().size());
-                table.setAlgorithmProperty(ALGORITHM_NAME, String.valueOf(getVersion()));
-                int row = 0;
-                boolean firstTr = true;
-                Elements tbody = findChildren(element, "thead", "tbody");
-                for (Element tr : findChildren(tbody, "tr")) {
-                    String text = tr.text();
-                    // 跳过空行对合并的列会出现问题, 不跳过
+            TableVisitor visitor = HtmlDocumentExtractor.of(parameters != null ? parameters.context : null, document).tableVisitor;
+            buildTables(visitor, result, callback);
+            if (callback != null) {
+                callback.onFinished(result);
+            }
+        } catch (Exception e) {
+            if (callback != null) {
+                callback.onFatalError(e);
+            }
+        }
+        return result;
+    }
+
+    void buildTables(TableVisitor visitor, TableExtractionResult result, TableCallback callback) {
+        for (Element element : visitor.tables) {
+            Table table = new Table();
+            table.setPageNumber(1);
+            table.setIndex(result.getItems().size());
+            table.setAlgorithmProperty(ALGORITHM_NAME, String.valueOf(getVersion()));
+            int row = 0;
+            boolean firstTr = true;
+            Elements tbody = findChildren(element, "thead", "tbody");
+            for (Element tr : findChildren(tbody, "tr")) {
+                String text = tr.text();
+                // 跳过空行对合并的列会出现问题, 不跳过
 //                    if (StringUtils.isBlank(text)) {
 //                        continue;
 //                    }
-                    if (firstTr) {
-                        if (text.startsWith("Table ")) {
-                            table.setTitle(text);
-                        }
-                        firstTr = false;
-                    }
-                    for (Element td : findChildren(tr, "td", "th")) {
-                        int colspan = 1;
-                        int rowspan = 1;
-                        if (td.hasAttr("colspan")) {
-                            colspan = Integer.parseInt(td.attr("colspan"));
-                        }
-                        if (td.hasAttr("rowspan")) {
-                            rowspan = Integer.parseInt(td.attr("rowspan"));
-                        }
-                        int col = findNextColByRow(table, row);
-                        Cell cell = new Cell(col, row, colspan, rowspan);
-                        cell.setText(getElementText(td));
-                        table.add(cell, row, col);
-                        if (rowspan > 1 || colspan > 1) {
-                            cell.setRowSpan(rowspan);
-                            cell.setColSpan(colspan);
-                            table.addMergedCell(cell, row, col, rowspan, colspan);
-                        }
+                if (firstTr) {
+                    if (text.startsWith("Table ")) {
+                        table.setTitle(text);
                     }
-                    row++;
+                    firstTr = false;
                 }
-                // 解析table测试集数据
-                if (element.hasAttr("data-rect") && element.hasAttr("id")) {
-                    String[] dataRect = element.attr("data-rect").split(",");
-                    String[] idParts = element.attr("id").split("_");
-                    String tableTypeText = null;
-                    if (element.hasAttr("data-table-type")) {
-                        tableTypeText = element.attr("data-table-type");
-                    } else if (element.hasAttr("table-type")) {
-                        // 兼容不规范的 HTML 标记数据
-                        tableTypeText = element.attr("table-type");
+                for (Element td : findChildren(tr, "td", "th")) {
+                    int colspan = 1;
+                    int rowspan = 1;
+                    if (td.hasAttr("colspan")) {
+                        colspan = Integer.parseInt(td.attr("colspan"));
                     }
-                    TableType tableType = EnumUtils.getEnum(TableType.class, tableTypeText);
-                    table.setTableType(tableType);
-
-                    table.setPageNumber(Integer.parseInt(idParts[1])+1);
-                    table.setIndex(Integer.parseInt(idParts[2]));
-                    table.setRect(Float.parseFloat(dataRect[0]), Float.parseFloat(dataRect[1]),
-                            Float.parseFloat(dataRect[2]), Float.parseFloat(dataRect[3]));
-                    Element prevElement = element.previousElementSibling();
-                    if (Objects.equals(prevElement.tag().toString(), "h4")) {
-                        String unit = prevElement.text();
-                        if (prevElement.hasClass("table-unit") || unit.startsWith("Unit:")) {
-                            unit = unit.substring("Unit:".length()).trim();
-                        }
-                        table.setUnit(unit, null);
-
-                        prevElement = prevElement.previousElementSibling();
+                    if (td.hasAttr("rowspan")) {
+                        rowspan = Integer.parseInt(td.attr("rowspan"));
                     }
-                    if (Objects.equals(prevElement.tag().toString(), "h4")) {
-                        String caps = prevElement.text();
-                        if (prevElement.hasClass("table-caps") || caps.startsWith("Caps:")) {
-                            caps = caps.substring("Caps:".length()).trim();
-                        }
-                        table.setCaps(caps);
-
-                        prevElement = prevElement.previousElementSibling();
+                    int col = findNextColByRow(table, row);
+                    Cell cell = new Cell(col, row, colspan, rowspan);
+                    cell.setText(getElementText(td));
+                    table.add(cell, row, col);
+                    if (rowspan > 1 || colspan > 1) {
+                        cell.setRowSpan(rowspan);
+                        cell.setColSpan(colspan);
+                        table.addMergedCell(cell, row, col, rowspan, colspan);
                     }
+                }
+                row++;
+            }
+            // 解析table测试集数据
+            if (element.hasAttr("data-rect") && element.hasAttr("id")) {
+                String[] dataRect = element.attr("data-rect").split(",");
+                String[] idParts = element.attr("id").split("_");
+                String tableTypeText = null;
+                if (element.hasAttr("data-table-type")) {
+                    tableTypeText = element.attr("data-table-type");
+                } else if (element.hasAttr("table-type")) {
+                    // 兼容不规范的 HTML 标记数据
+                    tableTypeText = element.attr("table-type");
+                }
+                TableType tableType = EnumUtils.getEnum(TableType.class, tableTypeText);
+                table.setTableType(tableType);
 
-                    if (Objects.equals(prevElement.tag().toString(), "h3")) {
-                        String title = prevElement.text();
-                        if (prevElement.hasClass("table-title") || title.startsWith("Table:")) {
-                            title = title.substring("Table:".length()).trim();
-                        }
-                        table.setTitle(title);
+                table.setPageNumber(Integer.parseInt(idParts[1])+1);
+                table.setIndex(Integer.parseInt(idParts[2]));
+                table.setRect(Float.parseFloat(dataRect[0]), Float.parseFloat(dataRect[1]),
+                        Float.parseFloat(dataRect[2]), Float.parseFloat(dataRect[3]));
+                Element prevElement = element.previousElementSibling();
+                if (Objects.equals(prevElement.tag().toString(), "h4")) {
+                    String unit = prevElement.text();
+                    if (prevElement.hasClass("table-unit") || unit.startsWith("Unit:")) {
+                        unit = unit.substring("Unit:".length()).trim();
                     }
+                    table.setUnit(unit, null);
 
-                    Element nextElement = element.nextElementSibling();
-                    if (Objects.equals(nextElement.tag().toString(), "h4")) {
-                        String shoes = nextElement.text();
-                        if (nextElement.hasClass("table-shoes") || shoes.startsWith("Shoes:")) {
-                            shoes = shoes.substring("Shoes:".length()).trim();
-                        }
-                        table.setShoes(shoes);
+                    prevElement = prevElement.previousElementSibling();
+                }
+                if (Objects.equals(prevElement.tag().toString(), "h4")) {
+                    String caps = prevElement.text();
+                    if (prevElement.hasClass("table-caps") || caps.startsWith("Caps:")) {
+                        caps = caps.substring("Caps:".length()).trim();
                     }
-                } else {
-                    if (table.getRowCount() <= 1 || table.getCellCount() <= 1) {
-                        continue;
+                    table.setCaps(caps);
+
+                    prevElement = prevElement.previousElementSibling();
+                }
+
+                if (Objects.equals(prevElement.tag().toString(), "h3")) {
+                    String title = prevElement.text();
+                    if (prevElement.hasClass("table-title") || title.startsWith("Table:")) {
+                        title = title.substring("Table:".length()).trim();
                     }
-                    if (StringUtils.isBlank(table.getTitle())) {
-                        // 从table标签上面找标题
-                        assignTableTitle(table, element);
+                    table.setTitle(title);
+                }
+
+                Element nextElement = element.nextElementSibling();
+                if (Objects.equals(nextElement.tag().toString(), "h4")) {
+                    String shoes = nextElement.text();
+                    if (nextElement.hasClass("table-shoes") || shoes.startsWith("Shoes:")) {
+                        shoes = shoes.substring("Shoes:".length()).trim();
                     }
-                    mergeColumn(table);
-                    table.setRight(table.getColumnCount());
-                    table.setBottom(table.getRowCount());
+                    table.setShoes(shoes);
+                }
+            } else {
+                if (table.getRowCount() <= 1 || table.getCellCount() <= 1) {
+                    continue;
                 }
-                result.addTable(table);
-                if (callback != null) {
-                    callback.onItemExtracted(table);
+                if (StringUtils.isBlank(table.getTitle())) {
+                    // 从table标签上面找标题
+                    assignTableTitle(table, element);
                 }
+                mergeColumn(table);
+                table.setRight(table.getColumnCount());
+                table.setBottom(table.getRowCount());
             }
+            result.addTable(table);
             if (callback != null) {
-                callback.onFinished(result);
-            }
-        } catch (Exception e) {
-            if (callback != null) {
-                callback.onFatalError(e);
+                callback.onItemExtracted(table);
             }
         }
-        return result;
     }
 
     private static boolean isCenterAlign(Element element) {
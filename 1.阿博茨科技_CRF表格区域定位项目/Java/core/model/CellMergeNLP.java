@@ -1,46 +1,109 @@
 package com.abcft.pdfextract.core.model;
 
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import org.apache.commons.lang3.tuple.Pair;
 import org.tensorflow.*;
 import org.tensorflow.Session.Runner;
 import org.apache.commons.lang3.StringUtils;
 import java.io.*;
+import java.nio.LongBuffer;
 import java.util.*;
 
 
 public class CellMergeNLP {
 
-    //入参是你想输入的多句话
-    public static List<Pair<Float, Long>> cellMergePredict(ArrayList<Pair<String, String>> rowCells) {
-        SavedModelBundle savedModelBundle = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.CELL_MERGE);
-        Session tfSession = savedModelBundle.session();
-        List<Pair<Float, Long>> result = new ArrayList<>();
+    private static volatile Boolean idInputSupported;
+
+    /**
+     * 单元格合并模型的批量执行逻辑, 一个请求是一对左右单元格的文本, 结果是 (score, class)。
+     */
+    private static final InferenceService.BatchRunner<Pair<String, String>, Pair<Float, Long>> CELL_MERGE_RUNNER =
+            (session, rowCells) -> runBatch(session, rowCells, isIdInputSupported());
+
+    /**
+     * 模型是否支持字符 id 输入 (导出时带有 use_ids 和 x_ids), 旧的模型只支持字符串输入。
+     */
+    public static boolean isIdInputSupported() {
+        if (idInputSupported == null) {
+            synchronized (CellMergeNLP.class) {
+                if (idInputSupported == null) {
+                    SavedModelBundle bundle = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.CELL_MERGE);
+                    idInputSupported = bundle != null
+                            && bundle.graph().operation("use_ids") != null
+                            && TensorflowManager.INSTANCE.getVocabulary(TensorflowManager.CELL_MERGE) != null;
+                }
+            }
+        }
+        return idInputSupported;
+    }
+
+    /**
+     * 执行一批请求。
+     *
+     * @param session 模型的会话
+     * @param rowCells 左右单元格的文本
+     * @param useIds 是否在 Java 中把字符转换成 id 后输入, 否则输入空格分隔的字符串, 由模型分割和查表
+     */
+    public static List<Pair<Float, Long>> runBatch(Session session, List<Pair<String, String>> rowCells, boolean useIds) {
         int batch_size = rowCells.size();
         float[] scores = new float[batch_size];
         long[] predicts = new long[batch_size];
 
         feed_data f = new feed_data();
-        f.create_feed_data(rowCells);
-
-        Runner run = tfSession.runner().feed("x_l", f.x_l).feed("x_r", f.x_r).feed("l", f.x_lenth);
-        List<Tensor<?>> output = run.fetch("scores").fetch("class").run();
-
-        output.get(0).copyTo(scores);
-        output.get(1).copyTo(predicts);
+        List<Tensor<?>> output = null;
+        try {
+            if (useIds) {
+                f.create_id_feed_data(rowCells, TensorflowManager.INSTANCE.getVocabulary(TensorflowManager.CELL_MERGE));
+            } else {
+                f.create_feed_data(rowCells, isIdInputSupported());
+            }
+            Runner run = session.runner().feed("x_l", f.x_l).feed("x_r", f.x_r).feed("l", f.x_lenth);
+            if (f.use_ids != null) {
+                run.feed("x_ids", f.x_ids).feed("use_ids", f.use_ids);
+            }
+            output = run.fetch("scores").fetch("class").run();
+            output.get(0).copyTo(scores);
+            output.get(1).copyTo(predicts);
+        } finally {
+            f.close();
+            if (output != null) {
+                output.forEach(Tensor::close);
+            }
+        }
 
+        List<Pair<Float, Long>> result = new ArrayList<>(batch_size);
         for (int i = 0; i < batch_size; i++){
             result.add(Pair.of(scores[i], predicts[i]));
         }
         return result;
     }
+
+    //入参是你想输入的多句话
+    public static List<Pair<Float, Long>> cellMergePredict(List<Pair<String, String>> rowCells) {
+        InferenceService<Pair<String, String>, Pair<Float, Long>> service =
+                TensorflowManager.INSTANCE.getInferenceService(TensorflowManager.CELL_MERGE, CELL_MERGE_RUNNER);
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.timeModel(TensorflowManager.CELL_MERGE)) {
+            return service.runAll(rowCells);
+        }
+    }
 }
 
-class feed_data {
+class feed_data implements AutoCloseable {
+    // 和模型中 vocab 查表的默认值一致
+    private static final int UNK_ID = 0;
+    // 左右单元格之间的连接符
+    private static final String JOIN_WORD = "<a>";
+    // 模型把字符串补齐时使用的词
+    private static final String PAD_WORD = "<PAD>";
+
     Tensor x_l;
     Tensor x_r;
     Tensor x_lenth;
-    // input是ArrayList主要是考虑到批量的单元格
-    public void create_feed_data(ArrayList<Pair<String, String>> rowCells) {
+    Tensor x_ids;
+    Tensor use_ids;
+
+    // input是List主要是考虑到批量的单元格
+    public void create_feed_data(List<Pair<String, String>> rowCells, boolean idInputSupported) {
         int batch_size = rowCells.size();
         long[] input_x_lenth = new long[batch_size];
         byte[][] x_l = new byte[batch_size][];
@@ -55,6 +118,75 @@ class feed_data {
         this.x_l = Tensor.create(x_l,String.class);
         this.x_r = Tensor.create(x_r,String.class);
         this.x_lenth = Tensor.create(input_x_lenth);
+        if (idInputSupported) {
+            this.x_ids = Tensor.create(new long[] {0, 0}, LongBuffer.allocate(0));
+            this.use_ids = Tensors.create(false);
+        }
+    }
+
+    /**
+     * 用词表把字符转换成 id, 每行为 左单元格的字符, {@value #JOIN_WORD}, 右单元格的字符, 右侧用 {@value #PAD_WORD} 补齐,
+     * 和模型中分割字符串后查表的结果一致。
+     */
+    public void create_id_feed_data(List<Pair<String, String>> rowCells, TensorflowManager.Vocabulary vocabulary) {
+        int batch_size = rowCells.size();
+        long[] input_x_lenth = new long[batch_size];
+        String[] lefts = new String[batch_size];
+        String[] rights = new String[batch_size];
+        int maxLength = 0;
+        for (int i = 0; i < batch_size; i++) {
+            lefts[i] = StringUtils.deleteWhitespace(rowCells.get(i).getLeft());
+            rights[i] = StringUtils.deleteWhitespace(rowCells.get(i).getRight());
+            input_x_lenth[i] = lefts[i].length() + rights[i].length() + 1;
+            maxLength = Math.max(maxLength, (int) input_x_lenth[i]);
+        }
+
+        int joinId = vocabulary.getId(JOIN_WORD, UNK_ID);
+        int padId = vocabulary.getId(PAD_WORD, UNK_ID);
+        // 字符串输入时单独的代理字符被编码成 '?'
+        int surrogateId = vocabulary.getCharId('?', UNK_ID);
+        LongBuffer ids = LongBuffer.allocate(batch_size * maxLength);
+        for (int i = 0; i < batch_size; i++) {
+            putCharIds(ids, lefts[i], vocabulary, surrogateId);
+            ids.put(joinId);
+            putCharIds(ids, rights[i], vocabulary, surrogateId);
+            for (long k = input_x_lenth[i]; k < maxLength; k++) {
+                ids.put(padId);
+            }
+        }
+        ids.rewind();
+
+        this.x_l = Tensor.create(new byte[0][], String.class);
+        this.x_r = Tensor.create(new byte[0][], String.class);
+        this.x_lenth = Tensor.create(input_x_lenth);
+        this.x_ids = Tensor.create(new long[] {batch_size, maxLength}, ids);
+        this.use_ids = Tensors.create(true);
+    }
+
+    private static void putCharIds(LongBuffer ids, String text, TensorflowManager.Vocabulary vocabulary, int surrogateId) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            ids.put(Character.isSurrogate(c) ? surrogateId : vocabulary.getCharId(c, UNK_ID));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (x_l != null) {
+            x_l.close();
+        }
+        if (x_r != null) {
+            x_r.close();
+        }
+        if (x_lenth != null) {
+            x_lenth.close();
+        }
+        if (x_ids != null) {
+            x_ids.close();
+        }
+        if (use_ids != null) {
+            use_ids.close();
+        }
     }
 
     //组装字符串
@@ -72,4 +204,3 @@ class feed_data {
         return StringUtils.join(newString," ");
     }
 }
-
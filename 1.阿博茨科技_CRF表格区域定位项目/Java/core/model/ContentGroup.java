@@ -565,21 +565,78 @@ public class ContentGroup implements Taggable {
      * @return
      */
     public List<Object> getAllContentAndGraphicsStateObject(boolean baseOnForm) {
+        return getAllContentAndGraphicsStateObject(baseOnForm, null);
+    }
+
+    /**
+     * 同 {@link #getAllContentAndGraphicsStateObject(boolean)}, 但是可见区域和 drawArea 不相交的组会去掉路径的构造和绘制操作,
+     * 只保留改变绘制状态的操作 (颜色, cm, q/Q, 文字等), 保证后面的内容绘制状态不变
+     * @param drawArea 页面显示坐标系下的绘制区域, 为 null 时不过滤
+     * @return
+     */
+    public List<Object> getAllContentAndGraphicsStateObject(boolean baseOnForm, Rectangle2D drawArea) {
         List<Object> basicObjects = new ArrayList<>();
+        collectContentAndGraphicsStateObject(basicObjects, baseOnForm, drawArea);
+        return basicObjects;
+    }
+
+    private void collectContentAndGraphicsStateObject(List<Object> basicObjects, boolean baseOnForm, Rectangle2D drawArea) {
         if (!baseOnForm || (!inForm() && !isPDFormXObject())) {
             basicObjects.add(graphicsState);
         }
+        boolean cull = drawArea != null && !isVisibleIn(drawArea) && canSkipPaths();
+        int operandStart = basicObjects.size();
         for (int i = 0; i < tokens.size(); i++) {
             Object token = tokens.get(i);
             if (token instanceof ContentGroup) {
                 ContentGroup child = (ContentGroup) token;
-                basicObjects.addAll(child.getAllContentAndGraphicsStateObject(baseOnForm));
+                child.collectContentAndGraphicsStateObject(basicObjects, baseOnForm, drawArea);
+                operandStart = basicObjects.size();
+            }
+            else if (token instanceof Operator) {
+                String opName = ((Operator) token).getName();
+                if (cull && (PDFOperator.PATH_CONSTRUCTION.contains(opName) || PDFOperator.PATH_PAINTING.contains(opName))) {
+                    // 去掉操作和它的参数
+                    basicObjects.subList(operandStart, basicObjects.size()).clear();
+                } else {
+                    basicObjects.add(token);
+                }
+                operandStart = basicObjects.size();
             }
             else {
                 basicObjects.add(token);
             }
         }
-        return basicObjects;
+    }
+
+    private boolean isVisibleIn(Rectangle2D drawArea) {
+        // 水平线或竖直线的宽度或高度为0, 不能用 Rectangle2D.intersects
+        return area.getMaxX() >= drawArea.getMinX() && area.getMinX() <= drawArea.getMaxX()
+                && area.getMaxY() >= drawArea.getMinY() && area.getMinY() <= drawArea.getMaxY();
+    }
+
+    /**
+     * 当前组 (不包括子组) 的路径是否可以整体跳过: 没有裁剪, 并且每个路径都在组内构造和绘制完
+     */
+    private boolean canSkipPaths() {
+        boolean constructing = false;
+        for (Object token : tokens) {
+            if (!(token instanceof Operator)) {
+                continue;
+            }
+            String opName = ((Operator) token).getName();
+            if (PDFOperator.PATH_CLIPPING.contains(opName)) {
+                return false;
+            } else if (PDFOperator.PATH_CONSTRUCTION.contains(opName)) {
+                constructing = true;
+            } else if (PDFOperator.PATH_PAINTING.contains(opName)) {
+                if (!constructing) {
+                    return false;
+                }
+                constructing = false;
+            }
+        }
+        return !constructing;
     }
 
     private void replaceChildItem(ContentGroup child) {
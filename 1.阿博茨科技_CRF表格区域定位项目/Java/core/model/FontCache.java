@@ -0,0 +1,206 @@
+package com.abcft.pdfextract.core.model;
+
+import com.abcft.pdfextract.util.ClosureInt;
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文档级别的字体缓存, 作为 {@link PDDocument} 的 {@link ResourceCache} 使用。
+ * <p>
+ * 字体按间接对象的 {@link COSObjectKey} 缓存并强引用, 整个文档中同一个字体对象只构造一次
+ * ({@link DefaultResourceCache} 使用软引用, 内存紧张时会重新解析字体, 并丢失 OCR 修复过的 ToUnicode CMap)。
+ * 同时为每个字体缓存 {@link FontInfo}: 字体名称和样式, 修正过的 BBox, 空格宽度和字符的 unicode,
+ * 内容、表格和图表的解析都从这里读取, 不必每个字符重新计算。
+ * 其他资源 (图片, 颜色空间等) 仍然使用 {@link DefaultResourceCache} 的行为。
+ */
+public class FontCache extends DefaultResourceCache {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final Map<COSObjectKey, PDFont> fonts = new ConcurrentHashMap<>();
+    // 直接定义在资源里的字体没有 COSObjectKey, 所以字体信息按字体字典的实例区分
+    private final Map<COSDictionary, FontInfo> fontInfos = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * 获取文档的字体缓存, 如果文档还没有使用 {@link FontCache} 则安装一个。
+     * <p>
+     * 安装之前已经创建的 {@link org.apache.pdfbox.pdmodel.PDPage} 仍然使用原来的缓存, 所以最好在加载文档后立即安装。
+     *
+     * @param document PDF 文档。
+     * @return 文档的字体缓存。
+     */
+    public static FontCache of(PDDocument document) {
+        synchronized (document) {
+            ResourceCache cache = document.getResourceCache();
+            if (cache instanceof FontCache) {
+                return (FontCache) cache;
+            }
+            FontCache fontCache = new FontCache();
+            document.setResourceCache(fontCache);
+            return fontCache;
+        }
+    }
+
+    @Override
+    public PDFont getFont(COSObject indirect) throws IOException {
+        return fonts.get(new COSObjectKey(indirect));
+    }
+
+    @Override
+    public void put(COSObject indirect, PDFont font) throws IOException {
+        fonts.put(new COSObjectKey(indirect), font);
+    }
+
+    /**
+     * 已经缓存的字体个数。
+     */
+    public int getFontCount() {
+        return fonts.size();
+    }
+
+    /**
+     * 获取字体的缓存信息, 第一次访问时计算。
+     *
+     * @param font 字体。
+     * @return 字体的缓存信息。
+     */
+    public FontInfo getFontInfo(PDFont font) {
+        COSDictionary dict = font.getCOSObject();
+        FontInfo info = fontInfos.get(dict);
+        if (info == null) {
+            info = new FontInfo(font);
+            fontInfos.put(dict, info);
+        }
+        return info;
+    }
+
+    /**
+     * 字体的派生信息, 每个字体计算一次。
+     */
+    public static final class FontInfo {
+
+        private final String fontName;
+        private final int fontStyle;
+        private final BoundingBox boundingBox;
+        private final float spaceWidthText;
+        // 字符编码到 unicode 的映射, 只缓存成功映射的结果, 没有映射的字符以后还可能通过 OCR 修复
+        private final Map<Integer, String> unicodes = new HashMap<>();
+
+        private FontInfo(PDFont font) {
+            ClosureInt style = new ClosureInt(0);
+            this.fontName = FontUtils.getFontName(font, style);
+            this.fontStyle = style.get();
+            this.boundingBox = loadBoundingBox(font);
+            this.spaceWidthText = loadSpaceWidth(font);
+        }
+
+        private static BoundingBox loadBoundingBox(PDFont font) {
+            BoundingBox bbox;
+            try {
+                bbox = FontUtils.getFontBBox(font);
+            } catch (Exception e) {
+                logger.warn("Failed to get font bbox: {}", font, e);
+                return new BoundingBox();
+            }
+            if (bbox.getLowerLeftY() < Short.MIN_VALUE) {
+                // PDFBOX-2158 and PDFBOX-3130
+                // files by Salmat eSolutions / ClibPDF Library
+                bbox.setLowerLeftY(-(bbox.getLowerLeftY() + 65536));
+            }
+            return bbox;
+        }
+
+        private static float loadSpaceWidth(PDFont font) {
+            float glyphSpaceToTextSpaceFactor = 1 / 1000f;
+            if (font instanceof PDType3Font) {
+                glyphSpaceToTextSpaceFactor = font.getFontMatrix().getScaleX();
+            }
+
+            float spaceWidthText = 0;
+            try {
+                // to avoid crash as described in PDFBOX-614, see what the space displacement should be
+                spaceWidthText = font.getSpaceWidth() * glyphSpaceToTextSpaceFactor;
+            } catch (Throwable exception) {
+                logger.warn(exception, exception);
+            }
+
+            if (spaceWidthText == 0) {
+                spaceWidthText = font.getAverageFontWidth() * glyphSpaceToTextSpaceFactor;
+                // the average space width appears to be higher than necessary so make it smaller
+                spaceWidthText *= .80f;
+            }
+            if (spaceWidthText == 0) {
+                spaceWidthText = 1.0f; // if could not find font, use a generic value
+            }
+            return spaceWidthText;
+        }
+
+        /**
+         * 规范化后的字体名称, 参见 {@link FontUtils#getFontName(PDFont, ClosureInt)}。
+         */
+        public String getFontName() {
+            return fontName;
+        }
+
+        /**
+         * 从字体名称和 FontDescriptor 得到的样式 ({@link TextElement#TEXT_STYLE_BOLD} 等)。
+         */
+        public int getFontStyle() {
+            return fontStyle;
+        }
+
+        /**
+         * 字体的 BBox (glyph space), 已经修正了 Type3 字体和 PDFBOX-2158 的问题。调用者不能修改。
+         */
+        public BoundingBox getBoundingBox() {
+            return boundingBox;
+        }
+
+        /**
+         * 空格的宽度 (text space), 找不到空格时使用平均宽度估算。
+         */
+        public float getSpaceWidthText() {
+            return spaceWidthText;
+        }
+
+        /**
+         * 获取字符编码对应的 unicode, 参见 {@link FontUtils#getUnicode(PDFont, int)}。
+         *
+         * @param font 此信息所属的字体。
+         * @param code 字符编码。
+         * @return 字符的 unicode, 无法映射时返回 null。
+         */
+        public String getUnicode(PDFont font, int code) {
+            synchronized (unicodes) {
+                String unicode = unicodes.get(code);
+                if (unicode != null) {
+                    return unicode;
+                }
+            }
+            String unicode = FontUtils.getUnicode(font, code, fontName);
+            if (unicode != null) {
+                synchronized (unicodes) {
+                    unicodes.put(code, unicode);
+                }
+            }
+            return unicode;
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.abcft.pdfextract.core.model;
 
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.abcft.pdfextract.util.ClosureInt;
 import com.abcft.pdfextract.util.TextUtils;
 import com.google.common.collect.Lists;
@@ -21,8 +22,8 @@ import org.apache.pdfbox.pdmodel.font.*;
 import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
-import org.tensorflow.Session;
 import org.tensorflow.Tensor;
+import org.tensorflow.Tensors;
 import org.tensorflow.types.UInt8;
 
 import java.awt.*;
@@ -32,10 +33,10 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.Normalizer;
 import java.util.*;
 import java.util.List;
@@ -363,6 +364,13 @@ public class FontUtils {
         if (font.getCOSObject().getBoolean(FONT_MAPPING_FIXED, false)) {
             return;
         }
+        ExtractMetrics.count(ExtractMetrics.STAGE_FONT_FIX);
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_FONT_FIX)) {
+            doFixFontUnicodeMap(font);
+        }
+    }
+
+    private static void doFixFontUnicodeMap(PDFont font) {
         logger.debug("fixFontUnicodeMap {} start...", font.getName());
         long tick1 = System.currentTimeMillis();
         List<Glyph> glyphs = null;
@@ -419,59 +427,84 @@ public class FontUtils {
     }
 
 
+    private static final int OCR_IMAGE_SIZE = 64;
+
+    /**
+     * 字体 OCR 模型的批量执行逻辑, 一个请求是一个 64x64 的灰度字形图片, 结果是 top3 的识别结果。
+     */
+    private static final InferenceService.BatchRunner<byte[], String[]> FONT_OCR_RUNNER = (session, images) -> {
+        int batch = images.size();
+        int imageBytes = OCR_IMAGE_SIZE * OCR_IMAGE_SIZE;
+        ByteBuffer byteBuffer = ByteBuffer.allocate(batch * imageBytes);
+        for (byte[] image : images) {
+            byteBuffer.put(image, 0, imageBytes);
+        }
+        byteBuffer.rewind();
+
+        byte[][][] predictions;
+        try (Tensor<UInt8> inputTensor = Tensor.create(UInt8.class, new long[] {batch, OCR_IMAGE_SIZE, OCR_IMAGE_SIZE, 1}, byteBuffer);
+             Tensor<String> imageBytesTensor = Tensors.create(new byte[0]);
+             Tensor<Boolean> useUint8Tensor = Tensors.create(true);
+             Tensor<?> result = session.runner()
+                     .feed("uint8_images", inputTensor)
+                     .feed("image_bytes", imageBytesTensor)
+                     .feed("use_uint8", useUint8Tensor)
+                     .fetch("top3_texts")
+                     .run()
+                     .get(0)) {
+            predictions = result.copyTo(new byte[batch][3][]);
+        }
+        List<String[]> top3TextsList = new ArrayList<>(batch);
+        for (int j = 0; j < batch; j++) {
+            String[] top3Texts = new String[3];
+            for (int k = 0; k < 3; k++) {
+                top3Texts[k] = new String(predictions[j][k], StandardCharsets.UTF_8);
+            }
+            top3TextsList.add(top3Texts);
+        }
+        return top3TextsList;
+    };
+
     private static void ocrGlyphs(List<Glyph> glyphs, Map<Integer, String> map) {
         long tick3 = System.currentTimeMillis();
-        int batchSize = 16;
-        int width = 64;
-        int height = 64;
-        Session session = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.FONT_OCR).session();
-
-        for (int i = 0; i < glyphs.size(); i+= batchSize) {
-            int batch = Math.min(batchSize, glyphs.size() - i);
-            ByteBuffer byteBuffer = ByteBuffer.allocate(batch * width * height);
-            for (int j = 0; j < batch; j++) {
-                Glyph glyph = glyphs.get(i + j);
-                byte[] bytes = ((DataBufferByte) glyph.image.getRaster().getDataBuffer()).getData();
-                byteBuffer.position(j * width * height);
-                byteBuffer.put(bytes);
+        List<Glyph> ocrGlyphs = new ArrayList<>(glyphs.size());
+        for (Glyph glyph : glyphs) {
+            if (glyph.bounds.isEmpty()) {
+                // 空白的字形不需要识别
+                glyph.unicode = " ";
+                map.put(glyph.code, glyph.unicode);
+            } else {
+                ocrGlyphs.add(glyph);
             }
-            byteBuffer.rewind();
-
-            Tensor inputTensor = Tensor.create(UInt8.class, new long[] {batch, width, height, 1}, byteBuffer);
-            List<Tensor<?>> result = session.runner()
-                    .feed("uint8_images", inputTensor)
-                    .feed("image_bytes", Tensor.create(new byte[0]))
-                    .feed("use_uint8", Tensor.create(true))
-                    .fetch("top3_texts")
-                    .run();
-            byte[][][] predictions = result.get(0).copyTo(new byte[batch][3][]);
-
-            for (int j = 0; j < batch; j++) {
-                Glyph glyph = glyphs.get(i + j);
-                if (glyph.bounds.isEmpty()) {
+        }
+        if (ocrGlyphs.isEmpty()) {
+            return;
+        }
+
+        List<byte[]> images = ocrGlyphs.stream()
+                .map(glyph -> ((DataBufferByte) glyph.image.getRaster().getDataBuffer()).getData())
+                .collect(Collectors.toList());
+        InferenceService<byte[], String[]> service =
+                TensorflowManager.INSTANCE.getInferenceService(TensorflowManager.FONT_OCR, FONT_OCR_RUNNER);
+        List<String[]> predictions;
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.timeModel(TensorflowManager.FONT_OCR)) {
+            predictions = service.runAll(images);
+        }
+
+        for (int j = 0; j < ocrGlyphs.size(); j++) {
+            Glyph glyph = ocrGlyphs.get(j);
+            String[] top3Texts = predictions.get(j);
+            if (StringUtils.isNoneBlank(glyph.unicode) && ArrayUtils.contains(top3Texts, glyph.unicode)) {
+                // 如果原始的字体里面有unicode信息, 而且在ocr识别出来的top3的结果里, 就使用这个结果
+                continue;
+            } else {
+                glyph.unicode = top3Texts[0];
+                // 模型返回的是<SPACE>需要替换成原始的空格
+                if (OCR_SPACE.equals(glyph.unicode)) {
                     glyph.unicode = " ";
-                } else {
-                    try {
-                        String[] top3Texts = new String[3];
-                        for (int k = 0; k < 3; k++) {
-                            top3Texts[k] = new String(predictions[j][k], "utf-8");
-                        }
-                        if (StringUtils.isNoneBlank(glyph.unicode) && ArrayUtils.contains(top3Texts, glyph.unicode)) {
-                            // 如果原始的字体里面有unicode信息, 而且在ocr识别出来的top3的结果里, 就使用这个结果
-                            continue;
-                        } else {
-                            glyph.unicode = top3Texts[0];
-                            // 模型返回的是<SPACE>需要替换成原始的空格
-                            if (OCR_SPACE.equals(glyph.unicode)) {
-                                glyph.unicode = " ";
-                            }
-                        }
-                    } catch (UnsupportedEncodingException e) {
-                        glyph.unicode = " ";
-                    }
                 }
-                map.put(glyph.code, glyph.unicode);
             }
+            map.put(glyph.code, glyph.unicode);
         }
         long tick4 = System.currentTimeMillis();
         logger.debug("orc glyphs costs {}ms", (tick4 - tick3));
@@ -556,8 +589,11 @@ public class FontUtils {
     }
 
     public static String getUnicode(PDFont font, int code) {
+        return getUnicode(font, code, getFontName(font, new ClosureInt()));
+    }
+
+    static String getUnicode(PDFont font, int code, String fontName) {
         String unicode = null;
-        String fontName = getFontName(font, new ClosureInt());
         boolean isWingdingsFont = StringUtils.contains(fontName, "Wingdings");
         if (isWingdingsFont) {
             unicode = getWingdingsFontUnicode(font, fontName, code);
@@ -0,0 +1,263 @@
+package com.abcft.pdfextract.core.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tensorflow.Session;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个模型的推理服务, 把并发的推理请求合并成批量执行。
+ * <p>
+ * 请求先进入一个有界队列 (队列满时 {@link #submit(Object)} 阻塞, 起到背压的作用), 工作线程每次从队列取出最多
+ * {@link BatchRunner#getMaxBatchSize()} 个请求, 如果不够一批, 最多再等待 maxDelay 时间凑批, 然后交给
+ * {@link BatchRunner} 一次执行。Tensor 的创建和释放都由 {@link BatchRunner} 负责, 调用者只接触 Java 对象。
+ * <p>
+ * 同一个文档里一次提交多个请求 ({@link #runAll(List)}) 时这些请求天然在同一批, 多个文档并发提交时也会被合并。
+ *
+ * @param <I> 单个请求的输入。
+ * @param <O> 单个请求的输出。
+ */
+public final class InferenceService<I, O> implements Closeable {
+
+    private static Logger logger = LogManager.getLogger();
+
+    /**
+     * 执行一批推理请求。实现者负责创建输入 Tensor, 并保证所有的输入/输出 Tensor 在返回前被 close。
+     */
+    public interface BatchRunner<I, O> {
+
+        /**
+         * 执行一批请求。
+         *
+         * @param session 模型的会话。
+         * @param inputs  一批请求的输入, 数量不超过 {@link #getMaxBatchSize()}。
+         * @return 与输入一一对应的输出。
+         */
+        List<O> run(Session session, List<I> inputs) throws Exception;
+
+        /**
+         * 模型单次能处理的最大请求数, 模型不支持 batch 时返回 1。
+         */
+        default int getMaxBatchSize() {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private static final class Request<I, O> {
+        final I input;
+        final CompletableFuture<O> future = new CompletableFuture<>();
+
+        Request(I input) {
+            this.input = input;
+        }
+    }
+
+    private final String name;
+    private final Session session;
+    private final BatchRunner<I, O> runner;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request<I, O>> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder requestCount = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * 创建推理服务并启动工作线程。
+     *
+     * @param name          模型名称, 用于线程名和日志。
+     * @param session       模型的会话, 由调用者管理生命周期。
+     * @param runner        批量执行逻辑。
+     * @param maxBatchSize  最大批量, 实际值不超过 {@link BatchRunner#getMaxBatchSize()}。
+     * @param maxDelay      凑批时最多等待的时间。
+     * @param unit          maxDelay 的时间单位。
+     * @param queueCapacity 等待队列的容量。
+     * @param workerCount   工作线程数。
+     */
+    public InferenceService(String name, Session session, BatchRunner<I, O> runner,
+                            int maxBatchSize, long maxDelay, TimeUnit unit, int queueCapacity, int workerCount) {
+        this.name = name;
+        this.session = session;
+        this.runner = runner;
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, runner.getMaxBatchSize()));
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, this.maxBatchSize));
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::workLoop, "inference-" + name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 提交一个推理请求。
+     *
+     * @param input 请求的输入。
+     * @return 推理结果, 执行失败时以异常结束。
+     */
+    public CompletableFuture<O> submit(I input) {
+        Request<I, O> request = new Request<>(input);
+        if (closed) {
+            request.future.completeExceptionally(new IllegalStateException("Inference service " + name + " is closed"));
+            return request.future;
+        }
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(e);
+        }
+        return request.future;
+    }
+
+    /**
+     * 提交一组请求并等待全部完成。
+     *
+     * @param inputs 请求的输入。
+     * @return 与输入一一对应的输出。
+     * @throws RuntimeException 任意一个请求失败时抛出。
+     */
+    public List<O> runAll(List<I> inputs) {
+        List<CompletableFuture<O>> futures = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            futures.add(submit(input));
+        }
+        List<O> outputs = new ArrayList<>(inputs.size());
+        for (CompletableFuture<O> future : futures) {
+            outputs.add(join(future));
+        }
+        return outputs;
+    }
+
+    /**
+     * 提交单个请求并等待完成。
+     */
+    public O run(I input) {
+        return join(submit(input));
+    }
+
+    private static <O> O join(CompletableFuture<O> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 平均每批执行的请求数, 用于观察合并的效果。
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.sum();
+        return batches == 0 ? 0 : (double) requestCount.sum() / batches;
+    }
+
+    private void workLoop() {
+        List<Request<I, O>> batch = new ArrayList<>(Math.min(maxBatchSize, 64));
+        while (!closed) {
+            try {
+                Request<I, O> first = queue.take();
+                batch.add(first);
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+            runBatch(batch);
+            batch.clear();
+        }
+        failPending(batch);
+    }
+
+    private void collectBatch(List<Request<I, O>> batch) throws InterruptedException {
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        if (batch.size() >= maxBatchSize || maxDelayNanos <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Request<I, O> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void runBatch(List<Request<I, O>> batch) {
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Request<I, O> request : batch) {
+            inputs.add(request.input);
+        }
+        batchCount.increment();
+        requestCount.add(batch.size());
+        try {
+            List<O> outputs = runner.run(session, inputs);
+            if (outputs == null || outputs.size() != batch.size()) {
+                throw new IllegalStateException(String.format("Model %s returned %d results for %d inputs",
+                        name, outputs == null ? 0 : outputs.size(), batch.size()));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(outputs.get(i));
+            }
+        } catch (Throwable e) {
+            logger.warn("Inference on model {} failed, batch size: {}", name, batch.size(), e);
+            for (Request<I, O> request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void failPending(List<Request<I, O>> batch) {
+        queue.drainTo(batch);
+        for (Request<I, O> request : batch) {
+            request.future.completeExceptionally(new CancellationException("Inference service " + name + " is closed"));
+        }
+        batch.clear();
+    }
+
+    /**
+     * 停止工作线程, 未执行的请求以 {@link CancellationException} 结束。会话不在这里关闭。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failPending(new ArrayList<>());
+        logger.debug("Inference service {} closed, average batch size: {}", name, getAverageBatchSize());
+    }
+}
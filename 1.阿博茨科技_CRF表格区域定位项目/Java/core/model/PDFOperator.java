@@ -21,4 +21,12 @@ public class PDFOperator {
     public static final Set<String> BEGIN_GROUP = Sets.newHashSet(BEGIN_TEXT_OBJECT, SAVE_GRAPHICS_STATE);
     public static final Set<String> END_GROUP = Sets.newHashSet(END_TEXT_OBJECT, RESTORE_GRAPHICS_STATE);
 
+    // 路径构造
+    public static final Set<String> PATH_CONSTRUCTION = Sets.newHashSet("m", "l", "c", "v", "y", "h", "re");
+    // 路径绘制 (包括不绘制的 n)
+    public static final Set<String> PATH_PAINTING = Sets.newHashSet(
+            "S", "s", "f", "F", "f*", "B", "B*", "b", "b*", "n");
+    // 路径裁剪
+    public static final Set<String> PATH_CLIPPING = Sets.newHashSet("W", "W*");
+
 }
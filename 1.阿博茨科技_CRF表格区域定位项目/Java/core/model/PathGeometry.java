@@ -0,0 +1,419 @@
+package com.abcft.pdfextract.core.model;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 路径的几何信息, 从路径解码一次后保存为基本类型的数组, 创建后不能修改。
+ * <p>
+ * 图表解析会对同一个路径做很多次判断 (点数, 包围框, 点集, 是否为矩形, 直线等), 每次都重新遍历 {@link PathIterator}
+ * 并重新计算包围框; 通过 {@link PathItem#getGeometry()} 可以共享同一份解码结果, 遍历时也不需要创建迭代器和装箱的点集。
+ * 只对一个路径判断一次时直接遍历路径更快, 解码本身也要遍历一次并复制坐标。
+ * <p>
+ * 只和线段类型有关的形状特征 ({@link #isRingShape()}, {@link #isCircleShape()}, {@link #isArcShape()})
+ * 在第一次访问时计算, 用来在提取点集和按容差判断之前排除不可能的路径。
+ */
+public final class PathGeometry {
+
+    /**
+     * 每个线段保存的坐标个数, 和 {@link PathIterator#currentSegment(double[])} 一致。
+     */
+    public static final int SEGMENT_COORDS = 6;
+
+    private final int windingRule;
+    private final byte[] types;
+    private final double[] coords;
+    private final int[] subPathStarts;
+    private final Rectangle2D bounds;
+    private final int pointCount;
+    private final int vertexCount;
+    private final boolean hasCurves;
+    private final boolean hasClose;
+    // 形状特征, 第一次访问时计算, 见 computeShapeFlags
+    private volatile int shapeFlags = -1;
+
+    private static final int SHAPE_RING = 1;
+    private static final int SHAPE_CIRCLE = 1 << 1;
+    private static final int SHAPE_ARC = 1 << 2;
+
+    private PathGeometry(int windingRule, byte[] types, double[] coords, int[] subPathStarts, Rectangle2D bounds) {
+        this.windingRule = windingRule;
+        this.types = types;
+        this.coords = coords;
+        this.subPathStarts = subPathStarts;
+        this.bounds = bounds;
+        int pointCount = 0;
+        int vertexCount = 0;
+        boolean hasCurves = false;
+        boolean hasClose = false;
+        for (byte type : types) {
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    pointCount++;
+                    vertexCount++;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    pointCount += 3;
+                    vertexCount += 3;
+                    hasCurves = true;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    // 和原来的统计方式一致, 二次曲线计为 4 个点
+                    pointCount += 4;
+                    vertexCount += 4;
+                    hasCurves = true;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    pointCount++;
+                    hasClose = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        this.pointCount = pointCount;
+        this.vertexCount = vertexCount;
+        this.hasCurves = hasCurves;
+        this.hasClose = hasClose;
+    }
+
+    /**
+     * 解码路径。
+     *
+     * @param path 路径
+     * @return 路径的几何信息
+     */
+    public static PathGeometry of(Shape path) {
+        PathIterator iter = path.getPathIterator(null);
+        int capacity = 16;
+        byte[] types = new byte[capacity];
+        double[] coords = new double[capacity * SEGMENT_COORDS];
+        int[] subPathStarts = new int[4];
+        int count = 0;
+        int subPathCount = 0;
+        double[] segment = new double[SEGMENT_COORDS];
+        while (!iter.isDone()) {
+            int type = iter.currentSegment(segment);
+            if (count == capacity) {
+                capacity *= 2;
+                types = Arrays.copyOf(types, capacity);
+                coords = Arrays.copyOf(coords, capacity * SEGMENT_COORDS);
+            }
+            if (type == PathIterator.SEG_MOVETO) {
+                if (subPathCount == subPathStarts.length) {
+                    subPathStarts = Arrays.copyOf(subPathStarts, subPathCount * 2);
+                }
+                subPathStarts[subPathCount++] = count;
+            }
+            types[count] = (byte) type;
+            System.arraycopy(segment, 0, coords, count * SEGMENT_COORDS, SEGMENT_COORDS);
+            count++;
+            iter.next();
+        }
+        return new PathGeometry(iter.getWindingRule(),
+                Arrays.copyOf(types, count),
+                Arrays.copyOf(coords, count * SEGMENT_COORDS),
+                Arrays.copyOf(subPathStarts, subPathCount),
+                path.getBounds2D());
+    }
+
+    public int getWindingRule() {
+        return windingRule;
+    }
+
+    /**
+     * 线段的个数 (包括 SEG_CLOSE)。
+     */
+    public int getSegmentCount() {
+        return types.length;
+    }
+
+    /**
+     * 第 index 个线段的类型, 同 {@link PathIterator#currentSegment(double[])}。
+     */
+    public int getSegmentType(int index) {
+        return types[index];
+    }
+
+    /**
+     * 获取第 index 个线段, 用法同 {@link PathIterator#currentSegment(double[])}。
+     *
+     * @param index 线段序号
+     * @param out 至少 {@value #SEGMENT_COORDS} 个元素的数组, 保存线段的坐标
+     * @return 线段的类型
+     */
+    public int getSegment(int index, double[] out) {
+        System.arraycopy(coords, index * SEGMENT_COORDS, out, 0, SEGMENT_COORDS);
+        return types[index];
+    }
+
+    /**
+     * 第 index 个线段的第 k 个坐标。
+     */
+    public double getCoord(int index, int k) {
+        return coords[index * SEGMENT_COORDS + k];
+    }
+
+    /**
+     * 子路径 (以 SEG_MOVETO 开始) 的个数。
+     */
+    public int getSubPathCount() {
+        return subPathStarts.length;
+    }
+
+    /**
+     * 第 index 个子路径的第一个线段 (SEG_MOVETO) 的序号。
+     */
+    public int getSubPathStart(int index) {
+        return subPathStarts[index];
+    }
+
+    /**
+     * 路径的包围框, 返回的是副本, 调用者可以修改。
+     */
+    public Rectangle2D getBounds2D() {
+        return (Rectangle2D) bounds.clone();
+    }
+
+    public double getMinX() {
+        return bounds.getMinX();
+    }
+
+    public double getMinY() {
+        return bounds.getMinY();
+    }
+
+    public double getMaxX() {
+        return bounds.getMaxX();
+    }
+
+    public double getMaxY() {
+        return bounds.getMaxY();
+    }
+
+    public double getWidth() {
+        return bounds.getWidth();
+    }
+
+    public double getHeight() {
+        return bounds.getHeight();
+    }
+
+    /**
+     * 路径的点数: SEG_MOVETO, SEG_LINETO 和 SEG_CLOSE 计为 1 个点, SEG_CUBICTO 计为 3 个点, SEG_QUADTO 计为 4 个点。
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * 路径的有效点数, 和 {@link #getPointCount()} 相同, 但是不计 SEG_CLOSE。
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * 是否包含曲线 (SEG_CUBICTO 或 SEG_QUADTO)。
+     */
+    public boolean hasCurves() {
+        return hasCurves;
+    }
+
+    /**
+     * 是否包含 SEG_CLOSE。
+     */
+    public boolean hasClose() {
+        return hasClose;
+    }
+
+    /**
+     * 是否可能是环形图的一块: 只有一个子路径, 包含 SEG_CUBICTO, 最多一个 SEG_CLOSE, 没有 SEG_QUADTO。
+     * 这是 {@code PathUtils.getRingPathPts} 成功并且包含曲线的条件。
+     */
+    public boolean isRingShape() {
+        return (getShapeFlags() & SHAPE_RING) != 0;
+    }
+
+    /**
+     * 是否可能是圆形: 满足 {@link #isRingShape()}, 并且除了起点和 SEG_CLOSE 都是 SEG_CUBICTO。
+     */
+    public boolean isCircleShape() {
+        return (getShapeFlags() & SHAPE_CIRCLE) != 0;
+    }
+
+    /**
+     * 是否可能是扇形: 包含 SEG_CUBICTO, 只有 SEG_MOVETO, SEG_LINETO, SEG_CUBICTO 和 SEG_CLOSE。
+     */
+    public boolean isArcShape() {
+        return (getShapeFlags() & SHAPE_ARC) != 0;
+    }
+
+    private int getShapeFlags() {
+        int flags = shapeFlags;
+        if (flags < 0) {
+            flags = computeShapeFlags();
+            shapeFlags = flags;
+        }
+        return flags;
+    }
+
+    private int computeShapeFlags() {
+        int lines = 0, cubics = 0, quads = 0, closes = 0;
+        for (byte type : types) {
+            switch (type) {
+                case PathIterator.SEG_LINETO:
+                    lines++;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    cubics++;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    quads++;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    closes++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (cubics == 0 || quads != 0) {
+            return 0;
+        }
+        int flags = SHAPE_ARC;
+        if (subPathStarts.length <= 1 && closes <= 1) {
+            flags |= SHAPE_RING;
+            if (lines == 0) {
+                flags |= SHAPE_CIRCLE;
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * 按顺序遍历线段, 用法同 {@link Shape#getPathIterator(java.awt.geom.AffineTransform)}, 不复制坐标。
+     */
+    public PathIterator getPathIterator() {
+        return new SegmentIterator();
+    }
+
+    private final class SegmentIterator implements PathIterator {
+
+        private int index;
+
+        @Override
+        public int getWindingRule() {
+            return windingRule;
+        }
+
+        @Override
+        public boolean isDone() {
+            return index >= types.length;
+        }
+
+        @Override
+        public void next() {
+            index++;
+        }
+
+        @Override
+        public int currentSegment(float[] out) {
+            int offset = index * SEGMENT_COORDS;
+            for (int k = 0; k < SEGMENT_COORDS; k++) {
+                out[k] = (float) coords[offset + k];
+            }
+            return types[index];
+        }
+
+        @Override
+        public int currentSegment(double[] out) {
+            return getSegment(index, out);
+        }
+    }
+
+    /**
+     * 获取所有有效点 (包括曲线的控制点, 不包括 SEG_CLOSE)。
+     *
+     * @param xs 保存点的 x, 为 null 时只计数
+     * @param ys 保存点的 y, 为 null 时只计数
+     * @return 有效点数, 同 {@link #getVertexCount()}
+     */
+    public int getPoints(List<Double> xs, List<Double> ys) {
+        if (xs != null && ys != null) {
+            for (int i = 0; i < types.length; i++) {
+                int offset = i * SEGMENT_COORDS;
+                switch (types[i]) {
+                    case PathIterator.SEG_MOVETO:
+                    case PathIterator.SEG_LINETO:
+                        xs.add(coords[offset]);
+                        ys.add(coords[offset + 1]);
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        xs.add(coords[offset]);
+                        ys.add(coords[offset + 1]);
+                        xs.add(coords[offset + 2]);
+                        ys.add(coords[offset + 3]);
+                        xs.add(coords[offset + 4]);
+                        ys.add(coords[offset + 5]);
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        xs.add(coords[offset]);
+                        ys.add(coords[offset + 1]);
+                        xs.add(coords[offset + 2]);
+                        ys.add(coords[offset + 3]);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return vertexCount;
+    }
+
+    /**
+     * 获取关键点: 每个线段的终点, SEG_CLOSE 使用当前子路径的起点。
+     *
+     * @param xs 保存点的 x
+     * @param ys 保存点的 y
+     * @param types 保存每个点的线段类型
+     */
+    public void getKeyPoints(List<Double> xs, List<Double> ys, List<Integer> types) {
+        double x = 0, y = 0;
+        for (int i = 0; i < this.types.length; i++) {
+            int offset = i * SEGMENT_COORDS;
+            int type = this.types[i];
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    x = coords[offset];
+                    y = coords[offset + 1];
+                    xs.add(x);
+                    ys.add(y);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    xs.add(coords[offset]);
+                    ys.add(coords[offset + 1]);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    xs.add(coords[offset + 4]);
+                    ys.add(coords[offset + 5]);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    xs.add(coords[offset + 2]);
+                    ys.add(coords[offset + 3]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    xs.add(x);
+                    ys.add(y);
+                    break;
+                default:
+                    continue;
+            }
+            types.add(type);
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class PathItem extends ContentItem<GeneralPath> {
     private List<PathInfo> pathInfos;
     private String shadingName;
     private Rectangle2D bounds;
+    private PathGeometry geometry;
 
     PathItem(GeneralPath item, Rectangle2D bounds, PDGraphicsState graphicsState, boolean isFill, Color color) {
         this(item, bounds, isFill, color, GraphicsUtil.getTransformedLineWidth(graphicsState), graphicsState.getLineDashPattern());
@@ -85,6 +86,16 @@ public class PathItem extends ContentItem<GeneralPath> {
         return pathInfos;
     }
 
+    /**
+     * 路径的几何信息, 第一次访问时解码, 参见 {@link PathGeometry}。
+     */
+    public PathGeometry getGeometry() {
+        if (null == geometry) {
+            geometry = PathGeometry.of(getItem());
+        }
+        return geometry;
+    }
+
     public void setShadingName(String shadingName) {
         this.shadingName = shadingName;
     }
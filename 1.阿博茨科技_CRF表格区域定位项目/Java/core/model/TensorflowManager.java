@@ -3,37 +3,96 @@ package com.abcft.pdfextract.core.model;
 import com.abcft.pdfextract.config.PropertiesConfig;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.ConfigProto;
+import org.tensorflow.framework.GPUOptions;
+import org.tensorflow.framework.MetaGraphDef;
+import org.tensorflow.framework.SignatureDef;
+import org.tensorflow.framework.TensorInfo;
+import org.tensorflow.framework.TensorShapeProto;
+import org.tensorflow.types.UInt8;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TensorflowManager {
 
     private static Logger logger = LogManager.getLogger();
-    public static final TensorflowManager INSTANCE = new TensorflowManager();
     public static final String FONT_OCR = "font-ocr";
     public static final String PARAGRAPH = "paragraph";
     public static final String LINE_CRF = "line-crf";
     public static final String LINE_CRF_TABLE = "line-crf-table";//与段落的CRF模型进行区分
     public static final String CELL_MERGE = "cell-merge";
     public static final String TABLE_CLASSIFY = "table_classify";//位图表格分类
+    public static final List<String> SAVED_MODELS = Collections.unmodifiableList(Arrays.asList(
+            FONT_OCR, PARAGRAPH, LINE_CRF, LINE_CRF_TABLE, CELL_MERGE, TABLE_CLASSIFY));
+    // 在 SAVED_MODELS 之后初始化, TensorflowConfig 的默认值会用到
+    public static final TensorflowManager INSTANCE = new TensorflowManager();
+
+    /**
+     * CRF 模型 ({@link #PARAGRAPH}, {@link #LINE_CRF}, {@link #LINE_CRF_TABLE}) 的执行逻辑,
+     * 输入是序列化的 tf.Example, 输出是每一行的 tag。模型的输入是单个 Example, 所以每批只有一个请求。
+     */
+    public static final InferenceService.BatchRunner<byte[], int[]> CRF_TAGS_RUNNER = new InferenceService.BatchRunner<byte[], int[]>() {
+        @Override
+        public List<int[]> run(org.tensorflow.Session session, List<byte[]> inputs) {
+            try (Tensor<?> exampleTensor = Tensor.create(inputs.get(0));
+                 Tensor<?> crfTags = session.runner()
+                         .feed("serialized_example", exampleTensor)
+                         .fetch("crf_tags")
+                         .run()
+                         .get(0)) {
+                int length = (int) crfTags.shape()[1];
+                return Collections.singletonList(crfTags.copyTo(new int[1][length])[0]);
+            }
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return 1;
+        }
+    };
 
     private final File modelDir;
-    private final Map<String, SavedModelBundle> savedModelBundleMap;
+    // 每个模型一个 future, 加载时只阻塞等待同一个模型的线程
+    private final Map<String, CompletableFuture<SavedModelBundle>> savedModelBundleMap;
     private final Map<String, Vocabulary> vocabularyMap;
+    // 按 (模型名称, 执行逻辑) 区分, 同一个模型的不同输入方式各有一个服务
+    private final Map<Pair<String, InferenceService.BatchRunner<?, ?>>, InferenceService<?, ?>> inferenceServiceMap;
     private final TensorflowConfig config;
+    // 调用方设置的同时处理的文档数, 0 表示未设置
+    private volatile int documentWorkers;
+    private final AtomicInteger activeDocuments = new AtomicInteger();
+    private final AtomicInteger peakDocuments = new AtomicInteger();
 
     private TensorflowManager() {
-        savedModelBundleMap = new HashMap<>();
+        savedModelBundleMap = new ConcurrentHashMap<>();
+        inferenceServiceMap = new ConcurrentHashMap<>();
         vocabularyMap = new HashMap<>();
         config = new TensorflowConfig();
         modelDir = config.getModelDirectory();
@@ -44,24 +103,314 @@ public class TensorflowManager {
         if (modelDir == null || !config.isEnabled()) {
             return false;
         }
-        File exportDir = new File(modelDir, name);
-        return exportDir.exists();
+        return getModelDirectory(name).exists();
     }
 
-    public SavedModelBundle getSavedModelBundle(String name) {
-        synchronized (savedModelBundleMap) {
-            SavedModelBundle bundle = savedModelBundleMap.get(name);
-            if (bundle != null) {
-                return bundle;
+    /**
+     * 取得模型的目录。按配置的 {@code tensorflow.model.variant} 优先使用 export_optimized.py 导出的
+     * {@code <name>.quantized} 或 {@code <name>.optimized}, 都不存在时使用原来的 {@code <name>}。
+     */
+    public File getModelDirectory(String name) {
+        for (String suffix : config.getModelVariantSuffixes()) {
+            File exportDir = new File(modelDir, name + suffix);
+            if (exportDir.exists()) {
+                return exportDir;
             }
-            File exportDir = new File(modelDir, name);
+        }
+        return new File(modelDir, name);
+    }
+
+    /**
+     * 取得模型, 第一次调用时加载。不同模型可以同时加载, 同一个模型只加载一次, 其他线程等待加载完成。
+     *
+     * @param name 模型名称。
+     * @return 模型, 模型不存在时返回 {@code null}。
+     */
+    public SavedModelBundle getSavedModelBundle(String name) {
+        CompletableFuture<SavedModelBundle> future = savedModelBundleMap.get(name);
+        if (future == null) {
+            File exportDir = getModelDirectory(name);
             if (!exportDir.exists()) {
                 return null;
             }
-            bundle = SavedModelBundle.load(exportDir.getPath(), "serve");
-            savedModelBundleMap.put(name, bundle);
-            return bundle;
+            CompletableFuture<SavedModelBundle> loading = new CompletableFuture<>();
+            future = savedModelBundleMap.putIfAbsent(name, loading);
+            if (future == null) {
+                future = loading;
+                try {
+                    loading.complete(loadSavedModelBundle(name, exportDir));
+                } catch (RuntimeException | Error e) {
+                    // 加载失败时移除, 下次调用重新加载
+                    savedModelBundleMap.remove(name, loading);
+                    loading.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 模型是否已经加载完成。
+     */
+    public boolean isModelReady(String name) {
+        CompletableFuture<SavedModelBundle> future = savedModelBundleMap.get(name);
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    private SavedModelBundle loadSavedModelBundle(String name, File exportDir) {
+        long start = System.currentTimeMillis();
+        SavedModelBundle bundle = SavedModelBundle.loader(exportDir.getPath())
+                .withTags("serve")
+                .withConfigProto(newSessionConfig(name).build().toByteArray())
+                .load();
+        logger.info("Loaded model {} from {} in {}ms", name, exportDir.getName(), System.currentTimeMillis() - start);
+        return bundle;
+    }
+
+    /**
+     * 设置同时处理的文档数 (调用方文档线程池的大小), 需要在模型加载前调用, 已经创建的会话不受影响。
+     */
+    public void setDocumentWorkers(int workers) {
+        this.documentWorkers = Math.max(0, workers);
+    }
+
+    /**
+     * 同时处理的文档数是否已经由配置或者 {@link #setDocumentWorkers(int)} 确定。
+     */
+    public boolean isDocumentWorkersKnown() {
+        return config.getDocumentWorkers() > 0 || documentWorkers > 0;
+    }
+
+    /**
+     * 同时处理的文档数, 优先使用配置的 {@code tensorflow.session.document_workers}, 其次是
+     * {@link #setDocumentWorkers(int)} 设置的值, 都没有时使用到目前为止观察到的最大并发文档数。
+     */
+    public int getDocumentWorkers() {
+        if (config.getDocumentWorkers() > 0) {
+            return config.getDocumentWorkers();
+        }
+        if (documentWorkers > 0) {
+            return documentWorkers;
+        }
+        return Math.max(1, peakDocuments.get());
+    }
+
+    /**
+     * 开始处理一个文档, 和 {@link #documentFinished()} 成对调用, 用来统计并发的文档数。
+     */
+    public void documentStarted() {
+        int active = activeDocuments.incrementAndGet();
+        peakDocuments.accumulateAndGet(active, Math::max);
+    }
+
+    public void documentFinished() {
+        activeDocuments.decrementAndGet();
+    }
+
+    /**
+     * 创建模型会话的配置, 按 {@link TensorflowConfig#getIntraOpThreads(String, int)} 和
+     * {@link TensorflowConfig#getInterOpThreads(String, int)} 限制线程数, 避免多个文档并发时 CPU 超额使用。
+     * 冻结图 (chart 包中的 TensorflowMode) 也使用这个配置。
+     *
+     * @param name 模型名称, 冻结图使用去掉扩展名的文件名。
+     * @return 会话配置。
+     */
+    public ConfigProto.Builder newSessionConfig(String name) {
+        int workers = getDocumentWorkers();
+        logger.debug("Session of model {} sized for {} concurrent documents", name, workers);
+        return ConfigProto.newBuilder()
+                .setIntraOpParallelismThreads(config.getIntraOpThreads(name, workers))
+                .setInterOpParallelismThreads(config.getInterOpThreads(name, workers))
+                .setAllowSoftPlacement(true)
+                .setGpuOptions(GPUOptions.newBuilder().setAllowGrowth(true));
+    }
+
+    /**
+     * 并发加载 {@link TensorflowConfig#getWarmUpModels()} 中存在的模型, 并用全 0 的输入执行一次推理,
+     * 让 TF 在处理第一个文档前完成图的优化和内存分配。
+     *
+     * @param executor 加载模型的线程池。
+     * @return 每个模型的 future, 模型加载完成后完成, 值表示模型是否可用 (加载或推理失败时为 {@code false})。
+     */
+    public Map<String, CompletableFuture<Boolean>> warmUp(Executor executor) {
+        Map<String, CompletableFuture<Boolean>> futures = new HashMap<>();
+        if (modelDir == null || !config.isEnabled()) {
+            return futures;
+        }
+        for (String name : config.getWarmUpModels()) {
+            if (name.isEmpty() || !isModelAvailable(name)) {
+                continue;
+            }
+            futures.put(name, CompletableFuture.supplyAsync(() -> {
+                long start = System.currentTimeMillis();
+                SavedModelBundle bundle;
+                try {
+                    bundle = getSavedModelBundle(name);
+                } catch (Exception e) {
+                    logger.error("Failed to load model {}", name, e);
+                    return false;
+                }
+                if (bundle == null) {
+                    return false;
+                }
+                long loaded = System.currentTimeMillis();
+                if (config.isWarmUpInference() && !runDummyInference(name, bundle)) {
+                    return false;
+                }
+                logger.info("Model {} ready in {}ms (warm-up inference {}ms)",
+                        name, System.currentTimeMillis() - start, System.currentTimeMillis() - loaded);
+                return true;
+            }, executor));
+        }
+        return futures;
+    }
+
+    /**
+     * 按模型的 serving signature 构造全 0 (字符串为空) 的输入执行一次推理, 不支持的输入类型跳过推理。
+     *
+     * @return 推理失败时返回 {@code false}, 成功或跳过时返回 {@code true}。
+     */
+    private static boolean runDummyInference(String name, SavedModelBundle bundle) {
+        List<Tensor<?>> inputs = new ArrayList<>();
+        try {
+            MetaGraphDef metaGraphDef = MetaGraphDef.parseFrom(bundle.metaGraphDef());
+            Map<String, SignatureDef> signatures = metaGraphDef.getSignatureDefMap();
+            SignatureDef signature = signatures.containsKey("serving_default")
+                    ? signatures.get("serving_default")
+                    : signatures.values().stream().findFirst().orElse(null);
+            if (signature == null || signature.getOutputsCount() == 0) {
+                logger.debug("Model {} has no signature, skip warm-up inference", name);
+                return true;
+            }
+            Session.Runner runner = bundle.session().runner();
+            for (TensorInfo info : signature.getInputsMap().values()) {
+                Tensor<?> tensor = createZeroTensor(info);
+                if (tensor == null) {
+                    logger.debug("Unsupported input {} of model {}, skip warm-up inference", info.getName(), name);
+                    return true;
+                }
+                inputs.add(tensor);
+                runner.feed(operationName(info), outputIndex(info), tensor);
+            }
+            for (TensorInfo info : signature.getOutputsMap().values()) {
+                runner.fetch(operationName(info), outputIndex(info));
+            }
+            for (Tensor<?> output : runner.run()) {
+                output.close();
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn("Warm-up inference of model {} failed: {}", name, e.getMessage());
+            return false;
+        } finally {
+            for (Tensor<?> input : inputs) {
+                input.close();
+            }
+        }
+    }
+
+    // TensorInfo 的名称是 "op:index" 的形式
+    private static String operationName(TensorInfo info) {
+        int colon = info.getName().lastIndexOf(':');
+        return colon >= 0 ? info.getName().substring(0, colon) : info.getName();
+    }
+
+    private static int outputIndex(TensorInfo info) {
+        int colon = info.getName().lastIndexOf(':');
+        return colon >= 0 ? Integer.parseInt(info.getName().substring(colon + 1)) : 0;
+    }
+
+    private static Tensor<?> createZeroTensor(TensorInfo info) {
+        TensorShapeProto shapeProto = info.getTensorShape();
+        if (shapeProto.getUnknownRank()) {
+            return null;
+        }
+        // 不定长的维度取 1
+        long[] shape = new long[shapeProto.getDimCount()];
+        int size = 1;
+        for (int i = 0; i < shape.length; i++) {
+            long dim = shapeProto.getDim(i).getSize();
+            shape[i] = dim > 0 ? dim : 1;
+            size *= shape[i];
+        }
+        switch (info.getDtype()) {
+            case DT_FLOAT:
+                return Tensor.create(shape, FloatBuffer.allocate(size));
+            case DT_DOUBLE:
+                return Tensor.create(shape, DoubleBuffer.allocate(size));
+            case DT_INT32:
+                return Tensor.create(shape, IntBuffer.allocate(size));
+            case DT_INT64:
+                return Tensor.create(shape, LongBuffer.allocate(size));
+            case DT_UINT8:
+                return Tensor.create(UInt8.class, shape, ByteBuffer.allocate(size));
+            case DT_STRING:
+                return shape.length == 0 ? Tensor.create(new byte[0]) : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 获取模型的推理服务, 同一个模型和执行逻辑的所有调用者共享一个服务, 并发的请求会被合并成批量执行。
+     *
+     * @param name 模型名称。
+     * @param runner 模型的批量执行逻辑, 同一种输入方式应该始终传入同一个实例, 不同的实例会创建不同的服务。
+     * @return 推理服务, 模型不存在时返回 {@code null}。
+     */
+    @SuppressWarnings("unchecked")
+    public <I, O> InferenceService<I, O> getInferenceService(String name, InferenceService.BatchRunner<I, O> runner) {
+        Pair<String, InferenceService.BatchRunner<?, ?>> key = Pair.of(name, runner);
+        InferenceService<I, O> service = (InferenceService<I, O>) inferenceServiceMap.get(key);
+        if (service != null) {
+            return service;
+        }
+        // 在锁外加载模型, 不阻塞其他模型的服务
+        SavedModelBundle bundle = getSavedModelBundle(name);
+        if (bundle == null) {
+            return null;
+        }
+        synchronized (inferenceServiceMap) {
+            service = (InferenceService<I, O>) inferenceServiceMap.get(key);
+            if (service != null) {
+                return service;
+            }
+            service = new InferenceService<>(name, bundle.session(), runner,
+                    config.getBatchMaxSize(), config.getBatchMaxDelayMicros(), TimeUnit.MICROSECONDS,
+                    config.getBatchQueueCapacity(), config.getBatchWorkers());
+            inferenceServiceMap.put(key, service);
+            return service;
+        }
+    }
+
+    /**
+     * 使用 CRF 模型预测一个序列的 tag, 直接输入行特征见 {@link com.abcft.pdfextract.core.util.LineFeatures}。
+     *
+     * @param name 模型名称。
+     * @param serializedExample 序列化的 tf.Example。
+     * @return 每一行的 tag。
+     */
+    public int[] runCrfTags(String name, byte[] serializedExample) {
+        InferenceService<byte[], int[]> service = getInferenceService(name, CRF_TAGS_RUNNER);
+        if (service == null) {
+            throw new IllegalStateException("Model " + name + " isn't available");
         }
+        return service.run(serializedExample);
+    }
+
+    /**
+     * CRF 模型支持时是否直接输入行特征 (tensorflow.crf.dense_input), 默认是 true。
+     */
+    public boolean isCrfDenseInput() {
+        return config.isCrfDenseInput();
     }
 
     public Vocabulary getVocabulary(String name) {
@@ -70,7 +419,7 @@ public class TensorflowManager {
             if (vocabulary != null) {
                 return vocabulary;
             }
-            File vocabFile = Paths.get(modelDir.getPath(), name, "assets", "vocab.txt").toFile();
+            File vocabFile = Paths.get(getModelDirectory(name).getPath(), "assets", "vocab.txt").toFile();
             if (!vocabFile.exists()) {
                 return null;
             }
@@ -83,11 +432,24 @@ public class TensorflowManager {
     public static class Vocabulary {
         private Map<String, Integer> strToIdMap;
         private Map<Integer, String> idToStrMap;
+        // 单个字符的词的 id, 按字符下标, 不在词表中的为 -1
+        private int[] charIds;
 
         Vocabulary(File file) {
             strToIdMap = new HashMap<>();
             idToStrMap = new HashMap<>();
             load(file);
+            buildCharIds();
+        }
+
+        private void buildCharIds() {
+            charIds = new int[Character.MAX_VALUE + 1];
+            Arrays.fill(charIds, -1);
+            for (Map.Entry<String, Integer> entry : strToIdMap.entrySet()) {
+                if (entry.getKey().length() == 1) {
+                    charIds[entry.getKey().charAt(0)] = entry.getValue();
+                }
+            }
         }
 
         public void load(File file) {
@@ -116,6 +478,18 @@ public class TensorflowManager {
             return strToIdMap.get(word);
         }
 
+        public int getId(String word, int defaultId) {
+            return strToIdMap.getOrDefault(word, defaultId);
+        }
+
+        /**
+         * 取得单个字符的 id, 不用创建字符串和查 Map。
+         */
+        public int getCharId(char c, int defaultId) {
+            int id = charIds[c];
+            return id >= 0 ? id : defaultId;
+        }
+
     }
 
 
@@ -123,12 +497,40 @@ public class TensorflowManager {
 
         private final boolean enabled;
         private final File modelDir;
+        private final List<String> modelVariantSuffixes;
+        private final int batchMaxSize;
+        private final long batchMaxDelayMicros;
+        private final int batchQueueCapacity;
+        private final int batchWorkers;
+        private final int documentWorkers;
+        private final List<String> warmUpModels;
+        private final boolean warmUpInference;
+        private final boolean crfDenseInput;
 
         public TensorflowConfig() {
             super("abcft.tensorflow", "tensorflow.properties");
             Properties props = getProperties();
             this.enabled = BooleanUtils.toBoolean(props.getProperty("tensorflow.enabled", "true"));
             this.modelDir = new File(props.getProperty("tensorflow.model_dir", "/home/jhqiu/git/pdfextract/tf-models"));
+            // original: 只用原始模型; optimized: 优先用优化后的模型; quantized: 优先用权重量化的模型
+            String variant = props.getProperty("tensorflow.model.variant", "optimized");
+            if ("quantized".equals(variant)) {
+                this.modelVariantSuffixes = Arrays.asList(".quantized", ".optimized");
+            } else if ("optimized".equals(variant)) {
+                this.modelVariantSuffixes = Collections.singletonList(".optimized");
+            } else {
+                this.modelVariantSuffixes = Collections.emptyList();
+            }
+            this.batchMaxSize = Integer.parseInt(props.getProperty("tensorflow.batch.max_size", "32"));
+            this.batchMaxDelayMicros = Long.parseLong(props.getProperty("tensorflow.batch.max_delay_us", "2000"));
+            this.batchQueueCapacity = Integer.parseInt(props.getProperty("tensorflow.batch.queue_capacity", "1024"));
+            this.batchWorkers = Integer.parseInt(props.getProperty("tensorflow.batch.workers", "2"));
+            // 同时处理的文档数, 用来计算每个模型会话的线程数, 0 表示按调用方设置或者观察到的并发数
+            this.documentWorkers = Math.max(0, Integer.parseInt(props.getProperty("tensorflow.session.document_workers", "0")));
+            this.warmUpModels = Arrays.asList(props.getProperty("tensorflow.warmup.models",
+                    String.join(",", SAVED_MODELS)).split("\\s*,\\s*"));
+            this.warmUpInference = BooleanUtils.toBoolean(props.getProperty("tensorflow.warmup.inference", "true"));
+            this.crfDenseInput = BooleanUtils.toBoolean(props.getProperty("tensorflow.crf.dense_input", "true"));
         }
 
         public boolean isEnabled() {
@@ -138,5 +540,70 @@ public class TensorflowManager {
         public File getModelDirectory() {
             return modelDir;
         }
+
+        public List<String> getModelVariantSuffixes() {
+            return modelVariantSuffixes;
+        }
+
+        public int getBatchMaxSize() {
+            return batchMaxSize;
+        }
+
+        public long getBatchMaxDelayMicros() {
+            return batchMaxDelayMicros;
+        }
+
+        public int getBatchQueueCapacity() {
+            return batchQueueCapacity;
+        }
+
+        public int getBatchWorkers() {
+            return batchWorkers;
+        }
+
+        /**
+         * 配置的同时处理的文档数, 未配置时是 0, 由 {@link TensorflowManager#getDocumentWorkers()} 决定。
+         */
+        public int getDocumentWorkers() {
+            return documentWorkers;
+        }
+
+        /**
+         * 模型会话单个操作内的线程数, 优先使用 {@code tensorflow.session.<name>.intra_op_threads},
+         * 其次是 {@code tensorflow.session.intra_op_threads}, 默认是 CPU 核数除以同时处理的文档数。
+         */
+        public int getIntraOpThreads(String name, int documentWorkers) {
+            int defaultThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, documentWorkers));
+            return getSessionThreads(name, "intra_op_threads", defaultThreads);
+        }
+
+        /**
+         * 模型会话并行执行的操作数, 配置方式同 {@link #getIntraOpThreads(String, int)}, 默认是 2。
+         */
+        public int getInterOpThreads(String name, int documentWorkers) {
+            return getSessionThreads(name, "inter_op_threads", Math.min(2, getIntraOpThreads(name, documentWorkers)));
+        }
+
+        private int getSessionThreads(String name, String key, int defaultThreads) {
+            Properties props = getProperties();
+            String value = props.getProperty("tensorflow.session." + name + "." + key,
+                    props.getProperty("tensorflow.session." + key));
+            return value != null ? Integer.parseInt(value.trim()) : defaultThreads;
+        }
+
+        /**
+         * 启动时预热的模型, 默认是所有的 SavedModel ({@link #SAVED_MODELS})。
+         */
+        public List<String> getWarmUpModels() {
+            return warmUpModels;
+        }
+
+        public boolean isWarmUpInference() {
+            return warmUpInference;
+        }
+
+        public boolean isCrfDenseInput() {
+            return crfDenseInput;
+        }
     }
 }
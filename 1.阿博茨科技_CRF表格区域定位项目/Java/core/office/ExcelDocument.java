@@ -834,8 +834,9 @@ public class ExcelDocument extends OfficeDocument implements Document<ExcelDocum
             logger.warn("Empty Image");
             return;
         }
-        Image image = Image.toImage(data, ext);
-        if (image != null) {
+        Image image = this.toImage(data, ext);
+        // WMF/EMF 转换失败时跳过这张图片, Excel 不按大小过滤图片, 需要在这里转换
+        if (image != null && image.isConverted()) {
             image.setPageIndex(currentPageIndex);
             String shapeName = picture.getShapeName();
             if (shapeName != null) {
@@ -1,5 +1,6 @@
 package com.abcft.pdfextract.core.office;
 
+import com.abcft.pdfextract.core.util.GraphicsUtil;
 import net.arnx.wmf2svg.gdi.svg.SvgGdi;
 import net.arnx.wmf2svg.gdi.wmf.WmfParser;
 import org.apache.batik.transcoder.TranscoderException;
@@ -17,7 +18,6 @@ import org.freehep.graphicsio.emf.Emf2Png;
 import org.w3c.dom.Document;
 
 import javax.annotation.Nullable;
-import javax.imageio.ImageIO;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
@@ -36,6 +36,7 @@ public class Image {
     private static final int IMAGE_DATA = 2;
     private static final int IMAGE_STREAM = 3;
     private static final int IMAGE_BUFFERED = 4;
+    private static final int IMAGE_SOURCE = 5;
 
     private final int type;
     private final Object image;
@@ -70,6 +71,15 @@ public class Image {
         this.format = "png";
     }
 
+    /**
+     * 矢量图片 (WMF/EMF), 第一次需要时才转换为 PNG, 转换结果由同一文档中相同的图片共享。
+     */
+    Image(ImageRegistry.Source source) {
+        this.type = IMAGE_SOURCE;
+        this.image = source;
+        this.format = "png";
+    }
+
     @Override
     public String toString() {
         return String.format("[Image (type=%d) %s]", type, title);
@@ -165,11 +175,18 @@ public class Image {
                 return;
             case IMAGE_BUFFERED:
                 BufferedImage img = (BufferedImage) this.image;
-                boolean result = ImageIO.write(img, this.format, outputStream);
+                boolean result = GraphicsUtil.encodeImage(img, this.format, outputStream);
                 if (!result) {
                     throw new IOException("Failed to save image " + this.toString());
                 }
                 return;
+            case IMAGE_SOURCE:
+                byte[] png = ((ImageRegistry.Source) this.image).getPng();
+                if (png == null) {
+                    throw new IOException("Failed to convert image " + this.toString());
+                }
+                outputStream.write(png);
+                return;
             default:
                 logger.warn("TODO: Image write type={}", type);
                 throw new IOException("TODO: Image write type=" + type);
@@ -217,10 +234,24 @@ public class Image {
                 }
             }
             break;
+            case IMAGE_SOURCE: {
+                // 需要转换后才能判断
+                return ((ImageRegistry.Source) image).isTooSmall(width, height, length);
+            }
         }
         return false;
     }
 
+    /**
+     * 延迟转换的矢量图片在这里转换, 转换失败时返回 false; 其他图片总是返回 true。
+     */
+    boolean isConverted() {
+        if (type == IMAGE_SOURCE) {
+            return ((ImageRegistry.Source) image).isConverted();
+        }
+        return true;
+    }
+
 }
 
 final class ImageUtils {
@@ -0,0 +1,183 @@
+package com.abcft.pdfextract.core.office;
+
+import com.abcft.pdfextract.core.util.GraphicsUtil;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文档级别的图片登记表, 按图片原始数据的哈希去重。
+ * <p>
+ * Word/PPT 中的 logo、背景等模板图片会在每一页重复出现, 相同的图片在文档中只保留一份数据,
+ * WMF/EMF 也只转换一次; 转换推迟到第一次需要判断图片大小或者输出 ({@link Image#write}) 时。
+ */
+public final class ImageRegistry {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    private final Map<HashCode, byte[]> rasters = new ConcurrentHashMap<>();
+    private final Map<HashCode, Source> sources = new ConcurrentHashMap<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger conversionCount = new AtomicInteger();
+
+    /**
+     * 同 {@link Image#toImage(byte[], String)}, 相同的数据共享同一份数据和转换结果。
+     */
+    @Nullable
+    public Image toImage(byte[] data, String ext) {
+        ext = normalize(ext);
+        requestCount.incrementAndGet();
+        if (isVector(ext)) {
+            return new Image(getSource(data, ext));
+        }
+        return Image.toImage(rasters.computeIfAbsent(hash(data, ext), key -> data), ext);
+    }
+
+    /**
+     * 提前转换并编码矢量图片, 可以在后台线程中调用, 之后 {@link #toImage(byte[], String)} 直接使用转换结果。
+     * 位图不需要转换, 直接忽略; 不计入请求的图片个数。
+     */
+    public void prefetch(byte[] data, String ext) {
+        ext = normalize(ext);
+        if (isVector(ext)) {
+            getSource(data, ext).getPng();
+        }
+    }
+
+    private Source getSource(byte[] data, String format) {
+        return sources.computeIfAbsent(hash(data, format), key -> new Source(data, format, key, this));
+    }
+
+    private static String normalize(String ext) {
+        return ext.replaceAll("\\.", "").toLowerCase();
+    }
+
+    private static boolean isVector(String ext) {
+        return "wmf".equals(ext) || "emf".equals(ext);
+    }
+
+    private static HashCode hash(byte[] data, String ext) {
+        return Hashing.sha256().newHasher()
+                .putString(ext, StandardCharsets.US_ASCII)
+                .putBytes(data)
+                .hash();
+    }
+
+    /**
+     * 请求的图片个数 (包括重复的图片)。
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 不同的图片个数。
+     */
+    public int getDistinctCount() {
+        return rasters.size() + sources.size();
+    }
+
+    /**
+     * 实际执行的 WMF/EMF 转换次数。
+     */
+    public int getConversionCount() {
+        return conversionCount.get();
+    }
+
+    /**
+     * 需要转换的矢量图片, 在文档中共享。
+     */
+    static final class Source {
+
+        private final String format;
+        private final HashCode key;
+        private final ImageRegistry registry;
+        private byte[] data;
+        private boolean converted;
+        // 转换结果是位图时, 第一次输出之前保留位图, 输出后只保留 PNG 数据
+        private boolean rasterized;
+        private BufferedImage buffered;
+        private int width;
+        private int height;
+        private byte[] png;
+
+        private Source(byte[] data, String format, HashCode key, ImageRegistry registry) {
+            this.data = data;
+            this.format = format;
+            this.key = key;
+            this.registry = registry;
+        }
+
+        private void convert() {
+            if (converted) {
+                return;
+            }
+            converted = true;
+            registry.conversionCount.incrementAndGet();
+            Image image = Image.toImage(data, format);
+            data = null;
+            if (image == null) {
+                logger.warn("Failed to convert image {}", key);
+                return;
+            }
+            if (image.getImage() instanceof BufferedImage) {
+                rasterized = true;
+                buffered = (BufferedImage) image.getImage();
+                width = buffered.getWidth();
+                height = buffered.getHeight();
+            } else if (image.getImage() instanceof byte[]) {
+                png = (byte[]) image.getImage();
+            }
+        }
+
+        synchronized boolean isTooSmall(int width, int height, int length) {
+            convert();
+            if (rasterized) {
+                return this.width < width && this.height < height;
+            }
+            // 转换失败的图片也视为无效
+            return png == null || png.length < length;
+        }
+
+        /**
+         * 转换是否成功, 还没有转换时先转换。
+         */
+        synchronized boolean isConverted() {
+            convert();
+            return rasterized || png != null;
+        }
+
+        /**
+         * 转换后的 PNG 数据, 转换失败时返回 null。
+         */
+        synchronized byte[] getPng() {
+            convert();
+            if (png == null && buffered != null) {
+                try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                    if (GraphicsUtil.encodeImage(buffered, "png", out)) {
+                        png = out.toByteArray();
+                        buffered = null;
+                    }
+                } catch (IOException e) {
+                    logger.warn("Failed to encode image {}", key, e);
+                }
+            }
+            return png;
+        }
+
+        @Override
+        public String toString() {
+            return format + ":" + key;
+        }
+    }
+}
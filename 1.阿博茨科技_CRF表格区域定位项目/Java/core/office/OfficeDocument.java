@@ -1,26 +1,55 @@
 package com.abcft.pdfextract.core.office;
 
 import com.abcft.pdfextract.spi.Meta;
+import com.google.gson.JsonObject;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.POIXMLDocumentPart;
 import org.apache.poi.POIXMLProperties;
 import org.apache.poi.hpsf.DocumentSummaryInformation;
 import org.apache.poi.hpsf.SummaryInformation;
+import org.apache.poi.xddf.usermodel.chart.XDDFChart;
+import org.apache.poi.xwpf.usermodel.XWPFTheme;
 
+import javax.annotation.Nullable;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 
 public abstract class OfficeDocument {
 
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * 预处理 (幻灯片, 正文元素) 的并发数, 默认为 CPU 核数, 最多 8 个; 小于等于 1 时不使用后台线程。
+     */
+    public static final String PARALLELISM_PROPERTY = "pdfextract.office.parallelism";
+
+    private static volatile ExecutorService executor;
+
     protected final List<Table> tables = new ArrayList<>();
     protected final List<Image> images = new ArrayList<>();
     protected final List<Chart> charts = new ArrayList<>();
     protected final List<Paragraph> paragraphs = new ArrayList<>();
     private final TitleCandidates titleCandidates = new TitleCandidates();
+    private final ImageRegistry imageRegistry = new ImageRegistry();
     private int itemIndex = 0;
 
     protected String pdfPath;
@@ -45,6 +74,117 @@ public abstract class OfficeDocument {
         return this.paragraphs;
     }
 
+    /**
+     * 创建文档中的图片, 同一文档中相同的图片共享数据和转换结果, 参见 {@link ImageRegistry}。
+     */
+    protected Image toImage(byte[] data, String ext) {
+        return imageRegistry.toImage(data, ext);
+    }
+
+    public ImageRegistry getImageRegistry() {
+        return imageRegistry;
+    }
+
+    protected static int getParallelism() {
+        return Integer.getInteger(PARALLELISM_PROPERTY, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (OfficeDocument.class) {
+                if (executor == null) {
+                    AtomicInteger id = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(Math.max(1, getParallelism()), r -> {
+                        Thread thread = new Thread(r, "office-prepare-" + id.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 按顺序处理 items: prepare 在后台线程中并发执行, 只做耗时并且和处理顺序无关的计算 (图表数据, 形状渲染, 图片转换),
+     * 结果只属于当前的 item; merge 在当前线程中按原来的顺序执行, 分配序号, 查找标题。
+     * <p>
+     * 同时预处理的 item 最多为并发数的 2 倍; prepare 失败或者不使用后台线程时, merge 收到的结果为 null, 需要自己计算。
+     */
+    protected <S, R> void processInOrder(List<S> items, Function<S, R> prepare, BiConsumer<S, R> merge) {
+        processInOrder(items, Function.identity(), prepare, merge);
+    }
+
+    /**
+     * 同 {@link #processInOrder(List, Function, BiConsumer)}, 但是先在当前线程中用 locate 从 item 中取出预处理需要的对象,
+     * 后台线程中的 prepare 只访问这些对象。用于 item 共享同一个 XML 文档的情况 (如 Word 的正文), 并发遍历同一个文档
+     * 会在 XmlBeans 的文档锁上排队。
+     */
+    protected <S, L, R> void processInOrder(List<S> items, Function<S, L> locate, Function<L, R> prepare,
+                                            BiConsumer<S, R> merge) {
+        int parallelism = getParallelism();
+        if (parallelism <= 1 || items.size() <= 1) {
+            items.forEach(item -> merge.accept(item, null));
+            return;
+        }
+        int window = parallelism * 2;
+        Queue<Future<R>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        for (S item : items) {
+            while (next < items.size() && pending.size() < window) {
+                L located;
+                try {
+                    located = locate.apply(items.get(next++));
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to prepare office item", e);
+                    pending.add(CompletableFuture.completedFuture(null));
+                    continue;
+                }
+                pending.add(getExecutor().submit(() -> prepare.apply(located)));
+            }
+            merge.accept(item, getPrepared(pending.remove()));
+        }
+    }
+
+    private static <R> R getPrepared(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.warn("Failed to prepare office item", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * 一个 item (幻灯片, 正文元素) 的预处理结果, 每个结果只使用一次。
+     */
+    protected static final class Prepared {
+
+        private final Map<XDDFChart, JsonObject> chartData = new IdentityHashMap<>();
+
+        /**
+         * 如果 part 是图表, 生成图表数据。
+         */
+        void prepareChart(POIXMLDocumentPart part, XWPFTheme theme) {
+            if (part instanceof XDDFChart && !chartData.containsKey(part)) {
+                chartData.put((XDDFChart) part, XDDFChartUtils.handleXDDFChart((XDDFChart) part, theme));
+            }
+        }
+    }
+
+    /**
+     * 生成图表数据, 优先使用预处理的结果。
+     */
+    protected static JsonObject getChartData(@Nullable Prepared prepared, XDDFChart chart, XWPFTheme theme) {
+        if (prepared != null && prepared.chartData.containsKey(chart)) {
+            return prepared.chartData.remove(chart);
+        }
+        return XDDFChartUtils.handleXDDFChart(chart, theme);
+    }
+
     protected int getItemIndex() {
         int id = itemIndex;
         itemIndex += 1;
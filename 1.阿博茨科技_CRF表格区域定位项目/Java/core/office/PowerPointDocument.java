@@ -47,6 +47,8 @@ public class PowerPointDocument extends OfficeDocument implements Document<Power
     private boolean processed;
 
     private List<String> lastTexts = new ArrayList<>();
+    // 当前幻灯片的预处理结果, 只在处理线程中访问
+    private Prepared prepared;
 
     public PowerPointDocument(SlideShow slideShow, String pdfPath) {
         this.slideShow = slideShow;
@@ -138,14 +140,93 @@ public class PowerPointDocument extends OfficeDocument implements Document<Power
             return;
         }
         List<Slide> slides = this.slideShow.getSlides();
-        for (Slide slide : slides) {
+        processInOrder(slides, this::locateParts, this::prepare, (slide, slidePrepared) -> {
             resetIndex(slide.getSlideNumber() - 1);
+            this.prepared = slidePrepared;
             process(slide);
             this.cleanTitleCandidates();
-        }
+        });
+        this.prepared = null;
         this.processed = true;
     }
 
+    /**
+     * 在处理线程中取出幻灯片引用的图表和图片 part。
+     * 幻灯片共享版式、母版和主题, 渲染形状会访问这些共享对象中延迟初始化的状态, 不是线程安全的,
+     * 所以形状仍然在 {@link #process(Slide)} 中按顺序渲染, 后台线程只处理各自独立的 part。
+     */
+    @Nullable
+    private List<POIXMLDocumentPart> locateParts(Slide slide) {
+        // HSLF 的对象不是线程安全的, 只预处理 XSLF 的幻灯片
+        if (!(slide instanceof XSLFSlide)) {
+            return null;
+        }
+        List<POIXMLDocumentPart> parts = new ArrayList<>();
+        List<Shape> shapes = slide.getShapes();
+        if (shapes != null) {
+            for (Shape shape : shapes) {
+                locateParts(shape, parts);
+            }
+        }
+        return parts;
+    }
+
+    private void locateParts(Shape shape, List<POIXMLDocumentPart> parts) {
+        // 和 process(Slide) 中的分派顺序一致
+        if (shape instanceof XSLFGroupShape) {
+            XSLFGroupShape groupShape = (XSLFGroupShape) shape;
+            XmlObject[] xmlObjects = groupShape.getXmlObject().selectPath(XDDFChartUtils.GRAPHIC_DATA_PATH);
+            for (XmlObject xmlObject : xmlObjects) {
+                POIXMLDocumentPart part = XDDFChartUtils.handleCTGraphicObjectData((CTGraphicalObjectData) xmlObject, groupShape.getSheet());
+                if (part != null) {
+                    parts.add(part);
+                }
+            }
+        } else if (shape instanceof XSLFPictureShape) {
+            parts.add(((XSLFPictureShape) shape).getPictureData());
+        } else if (shape instanceof XSLFGraphicFrame) {
+            XSLFGraphicFrame graphicFrame = (XSLFGraphicFrame) shape;
+            CTGraphicalObjectData graphicData = ((CTGraphicalObjectFrame) graphicFrame.getXmlObject()).getGraphic().getGraphicData();
+            POIXMLDocumentPart part = XDDFChartUtils.handleCTGraphicObjectData(graphicData, graphicFrame.getSheet());
+            if (part != null) {
+                parts.add(part);
+            }
+            if (part instanceof XSLFObjectData && graphicFrame instanceof XSLFObjectShape) {
+                try {
+                    parts.add(((XSLFObjectShape) graphicFrame).getPictureData());
+                } catch (Exception e) {
+                    // 处理时会再尝试其他方式读取图片
+                }
+            }
+        }
+    }
+
+    /**
+     * 在后台线程中预处理一个幻灯片引用的 part: 生成图表的数据, 转换图片, 只访问各自的 part。
+     */
+    @Nullable
+    private Prepared prepare(@Nullable List<POIXMLDocumentPart> parts) {
+        if (parts == null || parts.isEmpty()) {
+            return null;
+        }
+        Prepared prepared = new Prepared();
+        for (POIXMLDocumentPart part : parts) {
+            if (part instanceof PictureData) {
+                preparePictureData((PictureData) part);
+            } else {
+                prepared.prepareChart(part, theme);
+            }
+        }
+        return prepared;
+    }
+
+    private void preparePictureData(PictureData pictureData) {
+        if (pictureData == null || pictureData.getData() == null) {
+            return;
+        }
+        this.getImageRegistry().prefetch(pictureData.getData(), Optional.ofNullable(pictureData.getType()).orElse(PictureData.PictureType.PNG).extension);
+    }
+
     private void process(Slide slide) {
         List<Shape> shapes = slide.getShapes();
         if (shapes == null) {
@@ -261,7 +342,7 @@ public class PowerPointDocument extends OfficeDocument implements Document<Power
                 handleShape(slide, textBox);
             }
         }
-        XmlObject[] xmlObjects = groupShape.getXmlObject().selectPath("declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' .//a:graphicData");
+        XmlObject[] xmlObjects = groupShape.getXmlObject().selectPath(XDDFChartUtils.GRAPHIC_DATA_PATH);
         for (XmlObject xmlObject : xmlObjects) {
             CTGraphicalObjectData graphicData = (CTGraphicalObjectData) xmlObject;
             POIXMLDocumentPart part = XDDFChartUtils.handleCTGraphicObjectData(graphicData, ((XSLFGroupShape) groupShape).getSheet());
@@ -270,7 +351,7 @@ public class PowerPointDocument extends OfficeDocument implements Document<Power
                 return;
             }
             if (part instanceof XDDFChart) {
-                JsonObject chartData = XDDFChartUtils.handleXDDFChart((XDDFChart) part, theme);
+                JsonObject chartData = getChartData(prepared, (XDDFChart) part, theme);
                 if (chartData != null) {
                     Chart chart = new Chart();
                     chart.setPageIndex(this.currentPageIndex);
@@ -330,7 +411,7 @@ public class PowerPointDocument extends OfficeDocument implements Document<Power
             logger.warn("Empty Image");
             return;
         }
-        Image image = Image.toImage(data, Optional.ofNullable(pictureData.getType()).orElse(PictureData.PictureType.PNG).extension);
+        Image image = this.toImage(data, Optional.ofNullable(pictureData.getType()).orElse(PictureData.PictureType.PNG).extension);
         if (image == null) {
             return;
         }
@@ -381,7 +462,7 @@ public class PowerPointDocument extends OfficeDocument implements Document<Power
             return;
         }
         if (part instanceof XDDFChart) {
-            JsonObject chartData = XDDFChartUtils.handleXDDFChart((XDDFChart) part, theme);
+            JsonObject chartData = getChartData(prepared, (XDDFChart) part, theme);
             List<POIXMLDocumentPart.RelationPart> relationParts = part.getRelationParts();
             if (chartData != null) {
                 Chart chart = new Chart();
@@ -293,7 +293,7 @@ public class WordHWPFDocument extends WordDocument {
             return -1;
         }
         String ext = picture.suggestFileExtension().toLowerCase();
-        Image image = Image.toImage(data, ext);
+        Image image = this.toImage(data, ext);
         if (image == null) {
             logger.warn("Empty Image {} {}", ext, title);
             return -1;
@@ -19,6 +19,7 @@ import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.CTAnchor
 import org.apache.xmlbeans.XmlObject;
 import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.CTInline;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
+import javax.annotation.Nullable;
 import javax.xml.namespace.QName;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
@@ -31,8 +32,16 @@ import java.util.regex.Pattern;
 public class WordXWPFDocument extends WordDocument {
     private static final Logger logger = LogManager.getLogger();
 
+    private static final String VML_IMAGEDATA_PATH = XDDFChartUtils.compilePath("declare namespace v='urn:schemas-microsoft-com:vml' .//v:imagedata");
+    private static final String PICT_PATH = XDDFChartUtils.compilePath("declare namespace w='http://schemas.openxmlformats.org/wordprocessingml/2006/main' .//w:pict");
+    private static final String FALLBACK_PATH = XDDFChartUtils.compilePath("declare namespace mc='http://schemas.openxmlformats.org/markup-compatibility/2006' .//mc:Fallback");
+    private static final String VML_TEXTBOX_PATH = XDDFChartUtils.compilePath("declare namespace v='urn:schemas-microsoft-com:vml' .//v:textbox");
+    private static final QName RELATIONSHIP_ID = new QName("http://schemas.openxmlformats.org/officeDocument/2006/relationships", "id");
+
     private XWPFDocument document;
     private XWPFTheme theme;
+    // 当前正文元素的预处理结果, 只在处理线程中访问
+    private Prepared prepared;
 
     WordXWPFDocument(XWPFDocument document) {
         this(document,null);
@@ -64,8 +73,72 @@ public class WordXWPFDocument extends WordDocument {
 
     private void processInternal() {
         List<IBodyElement> elements = this.document.getBodyElements();
-        for (IBodyElement bodyElement : elements) {
+        processInOrder(elements, this::locateParts, this::prepare, (bodyElement, elementPrepared) -> {
+            this.prepared = elementPrepared;
             handleBodyElement(bodyElement, true);
+        });
+        this.prepared = null;
+    }
+
+    /**
+     * 在处理线程中查找正文元素引用的图表和图片 part。
+     * 正文都在同一个 XML 中, 后台线程遍历正文会和处理线程争用 XmlBeans 的文档锁, 所以查找引用不放到后台线程。
+     */
+    @Nullable
+    private List<POIXMLDocumentPart> locateParts(IBodyElement bodyElement) {
+        XmlObject xmlObject;
+        if (bodyElement instanceof XWPFParagraph) {
+            xmlObject = ((XWPFParagraph) bodyElement).getCTP();
+        } else if (bodyElement instanceof XWPFTable) {
+            xmlObject = ((XWPFTable) bodyElement).getCTTbl();
+        } else {
+            return null;
+        }
+        List<POIXMLDocumentPart> parts = new ArrayList<>();
+        for (XmlObject graphicData : xmlObject.selectPath(XDDFChartUtils.GRAPHIC_DATA_PATH)) {
+            POIXMLDocumentPart part = XDDFChartUtils.handleCTGraphicObjectData((CTGraphicalObjectData) graphicData, this.document);
+            if (part != null) {
+                parts.add(part);
+            }
+        }
+        for (XmlObject vimagedata : xmlObject.selectPath(VML_IMAGEDATA_PATH)) {
+            XmlCursor c = vimagedata.newCursor();
+            String rid = c.getAttributeText(RELATIONSHIP_ID);
+            c.dispose();
+            if (rid != null) {
+                POIXMLDocumentPart part = this.document.getRelationById(rid);
+                if (part != null) {
+                    parts.add(part);
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * 在后台线程中预处理一个正文元素引用的 part: 生成图表的数据, 转换图片, 只访问各自的 part。
+     */
+    @Nullable
+    private Prepared prepare(@Nullable List<POIXMLDocumentPart> parts) {
+        if (parts == null || parts.isEmpty()) {
+            return null;
+        }
+        Prepared prepared = new Prepared();
+        for (POIXMLDocumentPart part : parts) {
+            prepared.prepareChart(part, theme);
+            preparePictureData(part);
+        }
+        return prepared;
+    }
+
+    private void preparePictureData(POIXMLDocumentPart part) {
+        if (!(part instanceof XWPFPictureData)) {
+            return;
+        }
+        XWPFPictureData pictureData = (XWPFPictureData) part;
+        byte[] data = pictureData.getData();
+        if (data != null && data.length > 0) {
+            this.getImageRegistry().prefetch(data, pictureData.suggestFileExtension());
         }
     }
 
@@ -92,7 +165,7 @@ public class WordXWPFDocument extends WordDocument {
     }
 
     private void handleChart(XDDFChart xddfChart) {
-        JsonObject chartData = XDDFChartUtils.handleXDDFChart(xddfChart, theme);
+        JsonObject chartData = getChartData(prepared, xddfChart, theme);
         if (chartData != null) {
             Chart chartx = new Chart();
             chartx.setTitle(this.getPossibleTitle());
@@ -111,7 +184,7 @@ public class WordXWPFDocument extends WordDocument {
             return;
         }
         String ext = xwpfPictureData.suggestFileExtension().toLowerCase();
-        Image image = Image.toImage(data, ext);
+        Image image = this.toImage(data, ext);
         if (image == null) {
             logger.warn("Empty Image {}", ext);
             return;
@@ -266,9 +339,9 @@ public class WordXWPFDocument extends WordDocument {
         List<XmlObject> xmlObjects = new ArrayList<>();
         xmlObjects.addAll(xwpfRun.getCTR().getObjectList());
         xmlObjects.addAll(xwpfRun.getCTR().getPictList());
-        XmlObject[] mc = xwpfRun.getCTR().selectPath("declare namespace mc='http://schemas.openxmlformats.org/markup-compatibility/2006' .//mc:Fallback");
+        XmlObject[] mc = xwpfRun.getCTR().selectPath(FALLBACK_PATH);
         for (XmlObject xmlObject1:mc){
-            XmlObject[] vtextbox = xmlObject1.selectPath("declare namespace mc='http://schemas.openxmlformats.org/markup-compatibility/2006'  declare namespace v=\"urn:schemas-microsoft-com:vml\" .//v:textbox");
+            XmlObject[] vtextbox = xmlObject1.selectPath(VML_TEXTBOX_PATH);
             handleVTextboxes(vtextbox);
         }
         for (XmlObject xmlObject : xmlObjects) {
@@ -446,11 +519,11 @@ public class WordXWPFDocument extends WordDocument {
     }
 
     private static boolean hasImageTag(XmlObject xmlObject) {
-        XmlObject[] path = xmlObject.selectPath("declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' .//a:graphicData");
+        XmlObject[] path = xmlObject.selectPath(XDDFChartUtils.GRAPHIC_DATA_PATH);
         if (path != null && path.length > 0) {
             return true;
         }
-        path = xmlObject.selectPath("declare namespace w='http://schemas.openxmlformats.org/wordprocessingml/2006/main' .//w:pict");
+        path = xmlObject.selectPath(PICT_PATH);
         if (path != null && path.length > 0) {
             for (XmlObject p : path) {
                 {
@@ -461,7 +534,7 @@ public class WordXWPFDocument extends WordDocument {
                         continue;
                     }
                 }
-                XmlObject[] qq = p.selectPath("declare namespace v='urn:schemas-microsoft-com:vml' .//v:imagedata");
+                XmlObject[] qq = p.selectPath(VML_IMAGEDATA_PATH);
                 if (qq != null && qq.length > 0) {
                     return true;
                 }
@@ -25,7 +25,9 @@ import org.apache.poi.xssf.usermodel.XSSFChart;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.xwpf.usermodel.XWPFChart;
 import org.apache.poi.xwpf.usermodel.XWPFTheme;
+import org.apache.xmlbeans.XmlBeans;
 import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.openxmlformats.schemas.drawingml.x2006.chart.*;
 import org.openxmlformats.schemas.drawingml.x2006.main.CTGraphicalObjectData;
@@ -69,6 +71,22 @@ class XDDFChartUtils {
         return map;
     });
 
+    /**
+     * 预编译的 XPath, selectPath 使用同一个 String 实例时不需要每次重新编译
+     */
+    static final String GRAPHIC_DATA_PATH = compilePath("declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' .//a:graphicData");
+    private static final String CHART_PATH = compilePath("declare namespace c='http://schemas.openxmlformats.org/drawingml/2006/chart' c:chart");
+    private static final String PIC_PATH = compilePath("declare namespace pic='http://schemas.openxmlformats.org/drawingml/2006/picture' pic:pic");
+    private static final String OLE_OBJ_PATH = compilePath("declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' p:oleObj");
+
+    static String compilePath(String path) {
+        try {
+            return XmlBeans.compilePath(path);
+        } catch (XmlException e) {
+            throw new IllegalArgumentException("Invalid xpath: " + path, e);
+        }
+    }
+
     /**
      * 标题搜索(搜索范围前2行,列的前1列开始)
      *
@@ -780,8 +798,7 @@ class XDDFChartUtils {
     public static String xgetRelationId(CTGraphicalObjectData graphicalObjectData) {
         String uri = graphicalObjectData.getUri();
         if (uri.equals("http://schemas.openxmlformats.org/drawingml/2006/chart")) {
-            String xpath = "declare namespace c='http://schemas.openxmlformats.org/drawingml/2006/chart' c:chart";
-            XmlObject[] obj = graphicalObjectData.selectPath(xpath);
+            XmlObject[] obj = graphicalObjectData.selectPath(CHART_PATH);
             if (obj == null || obj.length != 1) {
                 return null;
             }
@@ -789,8 +806,7 @@ class XDDFChartUtils {
             QName idQualifiedName = new QName("http://schemas.openxmlformats.org/officeDocument/2006/relationships", "id");
             return c.getAttributeText(idQualifiedName);
         } else if (uri.equals("http://schemas.openxmlformats.org/drawingml/2006/picture")) {
-            String xpath = "declare namespace pic='http://schemas.openxmlformats.org/drawingml/2006/picture' pic:pic";
-            XmlObject[] obj = graphicalObjectData.selectPath(xpath);
+            XmlObject[] obj = graphicalObjectData.selectPath(PIC_PATH);
             if (obj == null || obj.length != 1) {
                 return null;
             }
@@ -806,8 +822,7 @@ class XDDFChartUtils {
             QName idQualifiedName = new QName("http://schemas.openxmlformats.org/officeDocument/2006/relationships", "embed");
             return c.getAttributeText(idQualifiedName);
         } else if (uri.equals("http://schemas.openxmlformats.org/presentationml/2006/ole")) {
-            String xpath = "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' p:oleObj";
-            XmlObject[] obj = graphicalObjectData.selectPath(xpath);
+            XmlObject[] obj = graphicalObjectData.selectPath(OLE_OBJ_PATH);
             if (obj == null || obj.length != 1) {
                 return null;
             }
@@ -828,8 +843,7 @@ class XDDFChartUtils {
     private static Pair<Double, Double> xgetPictureSize(CTGraphicalObjectData graphicalObjectData) {
         String uri = graphicalObjectData.getUri();
         if (uri.equals("http://schemas.openxmlformats.org/drawingml/2006/picture")) {
-            String xpath = "declare namespace pic='http://schemas.openxmlformats.org/drawingml/2006/picture' pic:pic";
-            XmlObject[] obj = graphicalObjectData.selectPath(xpath);
+            XmlObject[] obj = graphicalObjectData.selectPath(PIC_PATH);
             if (obj != null && obj.length == 1) {
                 XmlCursor c = obj[0].newCursor();
                 QName spPrQName = new QName("http://schemas.openxmlformats.org/drawingml/2006/picture", "spPr");
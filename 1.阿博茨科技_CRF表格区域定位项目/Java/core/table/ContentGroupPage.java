@@ -12,7 +12,9 @@ import org.apache.pdfbox.pdmodel.PDPage;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 // TODO: this class should probably be called "PageArea" or something like that
@@ -22,6 +24,12 @@ public class ContentGroupPage extends Page {
 
     public static final Character[] WHITE_SPACE_CHARS = { ' ', '\t', '\r', '\n', '\f' };
 
+    /**
+     * 设为 {@code true} 时 {@link #getTextRows(List)} 对正好包含整个文本块的区域使用页面的文本块, 不再重新合并。
+     * 结果和区域内重新合并可能不同, 默认关闭, 需要先用 TextRowsBenchmark 确认没有差异。
+     */
+    public static final String PAGE_TEXT_BLOCKS_PROPERTY = "pdfextract.table.page_text_blocks";
+
     public static ContentGroupPage fromPage(Page page) {
         return new ContentGroupPage(
                 page.params, page.pageNumber, page.getPDPage(),
@@ -42,6 +50,98 @@ public class ContentGroupPage extends Page {
     private List<TableRegion> chartRegions = null;
     private List<Chart> charts = new ArrayList<>();
     private List<TextChunk> marginChunks = new ArrayList<>();
+    // 页面的文本块模型, 见 getTextRows(List)
+    private volatile TextBlockIndex textBlockIndex;
+
+    /**
+     * 整个页面合并后的文本块, 以及每个页面文本块所在的文本块 (用来判断一组文本块是否切断了合并后的文本块)。
+     * 记录计算时文本块的状态, 文本块被修改后不再使用这里的结果。
+     */
+    private static final class TextBlockIndex {
+        final List<Ruling> horizontalRulings;
+        final List<Ruling> verticalRulings;
+        final int horizontalRulingCount;
+        final int verticalRulingCount;
+        final List<TextBlock> blocks;
+        // 页面文本块 -> 在 textChunks 中的序号
+        final Map<TextChunk, Integer> chunkIndex = new IdentityHashMap<>();
+        // 每个页面文本块所在的文本块序号, 没有合并到文本块中的是 -1
+        final int[] blockIds;
+        // 每个文本块包含的页面文本块数
+        final int[] blockSizes;
+        final int[] elementCounts;
+        final String[] texts;
+        final boolean[] deleted;
+        final Object[] mergerTypes;
+
+        TextBlockIndex(List<TextChunk> chunks, List<Ruling> horizontalRulings, List<Ruling> verticalRulings, List<TextBlock> blocks) {
+            this.horizontalRulings = horizontalRulings;
+            this.verticalRulings = verticalRulings;
+            this.horizontalRulingCount = horizontalRulings.size();
+            this.verticalRulingCount = verticalRulings.size();
+            this.blocks = blocks;
+            this.blockIds = new int[chunks.size()];
+            this.blockSizes = new int[blocks.size()];
+            this.elementCounts = new int[chunks.size()];
+            this.texts = new String[chunks.size()];
+            this.deleted = new boolean[chunks.size()];
+            this.mergerTypes = new Object[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                TextChunk chunk = chunks.get(i);
+                chunkIndex.put(chunk, i);
+                blockIds[i] = -1;
+                elementCounts[i] = chunk.getElements().size();
+                texts[i] = chunk.getText();
+                deleted[i] = chunk.isDeleted();
+                mergerTypes[i] = TextMerger.getMergerType(chunk);
+            }
+            for (int b = 0; b < blocks.size(); b++) {
+                for (TextChunk chunk : blocks.get(b).getElements()) {
+                    Integer i = chunkIndex.get(chunk);
+                    if (i != null) {
+                        blockIds[i] = b;
+                        blockSizes[b]++;
+                    }
+                }
+            }
+        }
+
+        boolean matches(List<Ruling> horizontalRulings, List<Ruling> verticalRulings) {
+            return horizontalRulings == this.horizontalRulings && horizontalRulings.size() == horizontalRulingCount
+                    && verticalRulings == this.verticalRulings && verticalRulings.size() == verticalRulingCount;
+        }
+
+        /**
+         * 这组文本块所在的完整文本块, 有文本块不属于页面, 被修改过或者只包含了文本块的一部分时返回 {@code null}。
+         */
+        List<TextBlock> getWholeBlocks(List<TextChunk> chunks) {
+            int[] counts = new int[blocks.size()];
+            for (TextChunk chunk : chunks) {
+                Integer i = chunkIndex.get(chunk);
+                if (i == null
+                        || chunk.getElements().size() != elementCounts[i]
+                        || chunk.isDeleted() != deleted[i]
+                        || TextMerger.getMergerType(chunk) != mergerTypes[i]
+                        || !chunk.getText().equals(texts[i])) {
+                    return null;
+                }
+                if (blockIds[i] >= 0) {
+                    counts[blockIds[i]]++;
+                }
+            }
+            List<TextBlock> result = new ArrayList<>();
+            for (int b = 0; b < counts.length; b++) {
+                if (counts[b] == 0) {
+                    continue;
+                }
+                if (counts[b] != blockSizes[b]) {
+                    return null;
+                }
+                result.add(blocks.get(b));
+            }
+            return result;
+        }
+    }
 
     ContentGroupPage(TableExtractParameters params, int pageNumber, PDPage pdPage, float left, float top, float width, float height,
                      int rotation, PaperParameter paper, float minCharWidth, float minCharHeight,float avgCharWidth, float avgCharHeight,
@@ -51,7 +151,11 @@ public class ContentGroupPage extends Page {
 
 
         List<TextChunk> textChunks = TextMerger.groupNeighbour(textObjects, this.getHorizontalRulings(), this.getVerticalRulings(), true);
-        List<TextBlock> tb = TextMerger.groupByBlock(textChunks, this.getHorizontalRulings(), this.getVerticalRulings());
+        // 页面级的合并标志保留在文本块上, 区域内的合并 (getMutableTextChunks 的拷贝) 会用到
+        Map<TextChunk, TextMerger.ChunkMergerType> blockEnds = new IdentityHashMap<>();
+        List<TextBlock> tb = TextMerger.groupByBlock(textChunks, this.getHorizontalRulings(), this.getVerticalRulings(), blockEnds);
+        TextMerger.applyMergerMarks(blockEnds);
+        this.textBlockIndex = new TextBlockIndex(textChunks, this.getHorizontalRulings(), this.getVerticalRulings(), tb);
         List<TextChunk> tcFromTb = tb.stream().map(TextChunk::new).collect(Collectors.toList());
         this.textRows = TextMerger.collectByLines(tcFromTb);
         this.chunkSpatialIndex = buildSpatialIndex(textChunks);
@@ -148,6 +252,50 @@ public class ContentGroupPage extends Page {
         return getTextChunksFromIndex(chunkSpatialIndex, area, true);
     }
 
+    /**
+     * 区域内的文本行, 见 {@link #getTextRows(List)}。
+     */
+    public List<TextBlock> getTextRows(Rectangle area) {
+        return getTextRows(getTextChunks(area));
+    }
+
+    /**
+     * 一组页面文本块组成的文本行, 即 {@code TextMerger.collectByRows(TextMerger.groupByBlock(chunks, 页面的水平线, 页面的垂直线))}。
+     * <p>
+     * 打开 {@value #PAGE_TEXT_BLOCKS_PROPERTY} 时, 这组文本块正好包含整个页面合并后的若干个文本块的话,
+     * 直接用页面的文本块计算文本行; 切断了页面的文本块, 包含不属于页面的文本块 (如拷贝) 或者文本块被修改过时仍然重新合并。
+     * 返回的文本行是新建的, 可以修改。
+     */
+    public List<TextBlock> getTextRows(List<TextChunk> chunks) {
+        List<TextBlock> blocks = Boolean.getBoolean(PAGE_TEXT_BLOCKS_PROPERTY) ? getWholeTextBlocks(chunks) : null;
+        if (blocks == null) {
+            blocks = TextMerger.groupByBlock(chunks, getHorizontalRulings(), getVerticalRulings());
+        }
+        return TextMerger.collectByRows(blocks);
+    }
+
+    /**
+     * 这组文本块是否正好包含整个页面合并后的若干个文本块, 即打开 {@value #PAGE_TEXT_BLOCKS_PROPERTY} 时
+     * {@link #getTextRows(List)} 是否使用页面的文本块。
+     */
+    public boolean isWholeTextBlocks(List<TextChunk> chunks) {
+        return getWholeTextBlocks(chunks) != null;
+    }
+
+    private List<TextBlock> getWholeTextBlocks(List<TextChunk> chunks) {
+        List<Ruling> horizontalRulings = getHorizontalRulings();
+        List<Ruling> verticalRulings = getVerticalRulings();
+        TextBlockIndex index = textBlockIndex;
+        if (index == null || !index.matches(horizontalRulings, verticalRulings)) {
+            // 页面的线变化了 (如 getArea 加上的边框), 重新合并整个页面
+            List<TextChunk> pageChunks = textChunks != null ? textChunks : new ArrayList<>();
+            index = new TextBlockIndex(pageChunks, horizontalRulings, verticalRulings,
+                    TextMerger.groupByBlock(pageChunks, horizontalRulings, verticalRulings));
+            textBlockIndex = index;
+        }
+        return index.getWholeBlocks(chunks);
+    }
+
     public List<TextChunk> getMergeChunks(Rectangle area) {
         return getTextChunksFromIndex(blockSpatialIndex, area, false);
     }
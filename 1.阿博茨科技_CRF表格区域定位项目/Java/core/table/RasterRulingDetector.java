@@ -0,0 +1,231 @@
+package com.abcft.pdfextract.core.table;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 从页面的灰度位图中检测水平线和竖直线。
+ * <p>
+ * 线定义为灰度的突变沿一条直线持续一定的长度: 水平线的每个像素和上方的像素差别明显, 竖直线的每个像素和左侧的像素差别明显,
+ * 并且线上的像素和起点的灰度接近。
+ * 检测直接扫描灰度图的字节数组, 每一行 (列) 只记录已经找到的线覆盖到的位置, 不会重复扫描已经找到的线。
+ * <p>
+ * {@link #renderGray(PDPage, int, boolean)} 可以在渲染时跳过文字, 不需要改写页面的内容流。
+ */
+public final class RasterRulingDetector {
+
+    public static final int DEFAULT_INTENSITY_THRESHOLD = 25;
+    public static final int DEFAULT_HORIZONTAL_LENGTH_MINIMUM = 50;
+    public static final int DEFAULT_VERTICAL_LENGTH_MINIMUM = 10;
+
+    private final int intensityThreshold;
+    private final int horizontalLengthMinimum;
+    private final int verticalLengthMinimum;
+
+    public RasterRulingDetector() {
+        this(DEFAULT_INTENSITY_THRESHOLD, DEFAULT_HORIZONTAL_LENGTH_MINIMUM, DEFAULT_VERTICAL_LENGTH_MINIMUM);
+    }
+
+    /**
+     * @param intensityThreshold 灰度差超过此值视为边缘
+     * @param horizontalLengthMinimum 水平线的长度 (像素) 需要超过此值
+     * @param verticalLengthMinimum 竖直线的长度 (像素) 需要超过此值
+     */
+    public RasterRulingDetector(int intensityThreshold, int horizontalLengthMinimum, int verticalLengthMinimum) {
+        this.intensityThreshold = intensityThreshold;
+        this.horizontalLengthMinimum = horizontalLengthMinimum;
+        this.verticalLengthMinimum = verticalLengthMinimum;
+    }
+
+    /**
+     * 把页面渲染为灰度图 ({@link BufferedImage#TYPE_BYTE_GRAY})。
+     *
+     * @param page 页面
+     * @param dpi 分辨率
+     * @param skipText 是否跳过文字, 跳过时文字的绘制操作 (Tj, TJ, ', ") 不会输出任何内容
+     * @return 页面的灰度图
+     * @throws IOException 渲染失败
+     */
+    public static BufferedImage renderGray(PDPage page, int dpi, boolean skipText) throws IOException {
+        // PDFRenderer 只能按页码渲染, 这里和 DebugHelper.pageConvertToImage 一样使用一个临时的文档
+        PDDocument document = null;
+        try {
+            document = new PDDocument();
+            document.addPage(page);
+            PDFRenderer renderer = skipText ? new NoTextRenderer(document) : new PDFRenderer(document);
+            return renderer.renderImageWithDPI(0, dpi, ImageType.GRAY);
+        } finally {
+            IOUtils.closeQuietly(document);
+        }
+    }
+
+    private static final class NoTextRenderer extends PDFRenderer {
+
+        NoTextRenderer(PDDocument document) {
+            super(document);
+        }
+
+        @Override
+        protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+            return new PageDrawer(parameters) {
+                @Override
+                protected void showText(byte[] string) {
+                    // 跳过文字
+                }
+            };
+        }
+    }
+
+    /**
+     * 从灰度图中检测水平线。
+     *
+     * @param image 灰度图, 如果有多个通道只使用第一个通道
+     * @return 水平线 (图片坐标系)
+     */
+    public List<Ruling> getHorizontalRulings(BufferedImage image) {
+        GrayPixels pixels = GrayPixels.of(image);
+        return getHorizontalRulings(pixels.data, pixels.offset, pixels.stride, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * 从灰度图中检测竖直线。
+     *
+     * @param image 灰度图, 如果有多个通道只使用第一个通道
+     * @return 竖直线 (图片坐标系)
+     */
+    public List<Ruling> getVerticalRulings(BufferedImage image) {
+        GrayPixels pixels = GrayPixels.of(image);
+        return getVerticalRulings(pixels.data, pixels.offset, pixels.stride, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * 从灰度数据中检测水平线, 像素 (x, y) 的灰度为 {@code gray[offset + y * stride + x] & 0xFF}。
+     */
+    public List<Ruling> getHorizontalRulings(byte[] gray, int offset, int stride, int width, int height) {
+        List<Ruling> rulings = new ArrayList<>();
+        // 每一行已经找到的线覆盖到的最大 x, 线都是从左到右找到的, 所以 x 不超过这个值时一定在某条线上
+        int[] coveredTo = new int[height];
+        Arrays.fill(coveredTo, -1);
+
+        for (int x = 0; x < width; x++) {
+            int last = gray[offset + x] & 0xFF;
+            for (int y = 1; y < height - 1; y++) {
+                int row = offset + y * stride;
+                int curr = gray[row + x] & 0xFF;
+                if (Math.abs(curr - last) > intensityThreshold && x > coveredTo[y]) {
+                    int above = row - stride;
+                    int lineX = x + 1;
+                    while (lineX < width) {
+                        int line = gray[row + lineX] & 0xFF;
+                        if (Math.abs(line - (gray[above + lineX] & 0xFF)) <= intensityThreshold
+                                || Math.abs(curr - line) > intensityThreshold) {
+                            break;
+                        }
+                        lineX++;
+                    }
+                    int endX = lineX - 1;
+                    if (endX - x > horizontalLengthMinimum) {
+                        rulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(endX, y)));
+                        coveredTo[y] = Math.max(coveredTo[y], endX);
+                    }
+                }
+                last = curr;
+            }
+        }
+        return rulings;
+    }
+
+    /**
+     * 从灰度数据中检测竖直线, 像素 (x, y) 的灰度为 {@code gray[offset + y * stride + x] & 0xFF}。
+     */
+    public List<Ruling> getVerticalRulings(byte[] gray, int offset, int stride, int width, int height) {
+        List<Ruling> rulings = new ArrayList<>();
+        // 每一列已经找到的线覆盖到的最大 y, 线都是从上到下找到的, 所以 y 不超过这个值时一定在某条线上
+        int[] coveredTo = new int[width];
+        Arrays.fill(coveredTo, -1);
+
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * stride;
+            int last = gray[row] & 0xFF;
+            for (int x = 1; x < width - 1; x++) {
+                int curr = gray[row + x] & 0xFF;
+                if (Math.abs(curr - last) > intensityThreshold && y > coveredTo[x]) {
+                    int lineY = y + 1;
+                    int index = row + stride + x;
+                    while (lineY < height) {
+                        int line = gray[index] & 0xFF;
+                        if (Math.abs(line - (gray[index - 1] & 0xFF)) <= intensityThreshold
+                                || Math.abs(curr - line) > intensityThreshold) {
+                            break;
+                        }
+                        lineY++;
+                        index += stride;
+                    }
+                    int endY = lineY - 1;
+                    if (endY - y > verticalLengthMinimum) {
+                        rulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(x, endY)));
+                        coveredTo[x] = Math.max(coveredTo[x], endY);
+                    }
+                }
+                last = curr;
+            }
+        }
+        return rulings;
+    }
+
+    /**
+     * 灰度图的字节数据, 不是单通道字节图时复制第一个通道。
+     */
+    private static final class GrayPixels {
+        final byte[] data;
+        final int offset;
+        final int stride;
+
+        private GrayPixels(byte[] data, int offset, int stride) {
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+        }
+
+        static GrayPixels of(BufferedImage image) {
+            Raster raster = image.getRaster();
+            if (raster.getNumBands() == 1
+                    && raster.getDataBuffer() instanceof DataBufferByte
+                    && raster.getDataBuffer().getNumBanks() == 1
+                    && raster.getSampleModel() instanceof ComponentSampleModel
+                    && ((ComponentSampleModel) raster.getSampleModel()).getPixelStride() == 1) {
+                ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+                int offset = buffer.getOffset() + sampleModel.getOffset(
+                        -raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY(), 0);
+                return new GrayPixels(buffer.getData(), offset, sampleModel.getScanlineStride());
+            }
+            int width = raster.getWidth();
+            int height = raster.getHeight();
+            byte[] data = new byte[width * height];
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, 0, row);
+                for (int x = 0; x < width; x++) {
+                    data[y * width + x] = (byte) row[x];
+                }
+            }
+            return new GrayPixels(data, 0, width);
+        }
+    }
+}
@@ -845,8 +845,6 @@ public class Ruling extends Line2D.Float{
     }
 
     public static List<Cell> findCells(List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines) {
-        List<Cell> cellsFound = new ArrayList<>();
-
         horizontalRulingLines.sort(Comparator.comparing(Ruling::getY1));
         verticalRulingLines.sort(Comparator.comparing(Ruling::getX1));
 
@@ -906,57 +904,7 @@ public class Ruling extends Line2D.Float{
         hrs.removeIf(r -> !r.horizontal());
         vrs.removeIf(r -> !r.vertical());
 
-        Map<Point2D, Ruling[]> intersectionPoints = Ruling.findIntersections(hrs, vrs);
-        List<Point2D> intersectionPointsList = new ArrayList<>(intersectionPoints.keySet());
-        intersectionPointsList.sort(PointComparator.Y_FIRST);
-        boolean doBreak;
-
-        for (int i = 0; i < intersectionPointsList.size(); i++) {
-            Point2D topLeft = intersectionPointsList.get(i);
-            Ruling[] hv = intersectionPoints.get(topLeft);
-            doBreak = false;
-
-            // CrossingPointsDirectlyBelow( topLeft );
-            List<Point2D> xPoints = new ArrayList<>();
-            // CrossingPointsDirectlyToTheRight( topLeft );
-            List<Point2D> yPoints = new ArrayList<>();
-
-            for (Point2D p : intersectionPointsList.subList(i, intersectionPointsList.size())) {
-                if (p.getX() == topLeft.getX() && p.getY() > topLeft.getY()) {
-                    xPoints.add(p);
-                }
-                if (p.getY() == topLeft.getY() && p.getX() > topLeft.getX()) {
-                    yPoints.add(p);
-                }
-            }
-            outer:
-            for (Point2D xPoint : xPoints) {
-                if (doBreak) {
-                    break;
-                }
-
-                // is there a vertical edge b/w topLeft and xPoint?
-                if (!hv[1].equals(intersectionPoints.get(xPoint)[1])) {
-                    continue;
-                }
-                for (Point2D yPoint : yPoints) {
-                    // is there an horizontal edge b/w topLeft and yPoint ?
-                    if (!hv[0].equals(intersectionPoints.get(yPoint)[0])) {
-                        continue;
-                    }
-                    Point2D btmRight = new Point2D.Float((float) yPoint.getX(), (float) xPoint.getY());
-                    if (intersectionPoints.containsKey(btmRight)
-                            && intersectionPoints.get(btmRight)[0].equals(intersectionPoints.get(xPoint)[0])
-                            && intersectionPoints.get(btmRight)[1].equals(intersectionPoints.get(yPoint)[1])) {
-                        cellsFound.add(new Cell(topLeft, btmRight));
-                        doBreak = true;
-                        break outer;
-                    }
-                }
-            }
-        }
-
-        return cellsFound;
+        return RulingGrid.findCells(Ruling.findIntersections(hrs, vrs));
     }
 
     public boolean nearlyEqualColor(Color color, int thresh) {
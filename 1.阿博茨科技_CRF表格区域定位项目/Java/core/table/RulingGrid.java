@@ -0,0 +1,303 @@
+package com.abcft.pdfextract.core.table;
+
+import com.abcft.pdfextract.core.model.Rectangle;
+import com.abcft.pdfextract.core.util.NumberUtil;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * 把表格线的交点和单元格的边界吸附到网格上, 用网格的行列下标代替浮点坐标来查找单元格和表格区域。
+ * <p>
+ * 交点和单元格的坐标只有有限的几种取值, 这里把 x/y 坐标分别去重排序, 每个交点/单元格边界用行列下标表示:
+ * <ul>
+ *     <li>{@link #findCells(Map)}: 按列/行建立交点的索引, 从每个左上角只沿着同一列向下、同一行向右查找,
+ *     代替原来对所有后续交点的扫描;</li>
+ *     <li>{@link #findAreas(List)}: 在每条竖直/水平网格线上合并相接的单元格, 用并查集求出连通的单元格,
+ *     代替原来用 Point2D 做键的多边形拼接。</li>
+ * </ul>
+ * 找到的单元格和原来的算法完全一致, 包括顺序。
+ */
+public final class RulingGrid {
+
+    private RulingGrid() {
+    }
+
+    /**
+     * 根据表格线的交点查找单元格。
+     *
+     * @param intersectionPoints {@link Ruling#findIntersections(List, List)} 的结果, 值为交点所在的水平线和竖直线
+     * @return 找到的单元格, 按左上角 {@link PointComparator#Y_FIRST} 的顺序
+     */
+    public static List<Cell> findCells(Map<Point2D, Ruling[]> intersectionPoints) {
+        List<Point2D> points = new ArrayList<>(intersectionPoints.keySet());
+        points.sort(PointComparator.Y_FIRST);
+        int n = points.size();
+        List<Cell> cellsFound = new ArrayList<>();
+        if (n < 4) {
+            return cellsFound;
+        }
+
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        Ruling[] horizontals = new Ruling[n];
+        Ruling[] verticals = new Ruling[n];
+        for (int i = 0; i < n; i++) {
+            Point2D pt = points.get(i);
+            xs[i] = pt.getX();
+            ys[i] = pt.getY();
+            Ruling[] hv = intersectionPoints.get(pt);
+            horizontals[i] = hv[0];
+            verticals[i] = hv[1];
+        }
+        double[] gridX = distinct(xs);
+        double[] gridY = distinct(ys);
+        int[] col = new int[n];
+        int[] row = new int[n];
+        for (int i = 0; i < n; i++) {
+            col[i] = Arrays.binarySearch(gridX, xs[i]);
+            row[i] = Arrays.binarySearch(gridY, ys[i]);
+        }
+
+        // 每一列/行的交点, 保持排序后的顺序
+        int[][] columns = groupBy(col, gridX.length);
+        int[][] rows = groupBy(row, gridY.length);
+        int[] posInColumn = positions(columns, n);
+        int[] posInRow = positions(rows, n);
+        Map<Long, Integer> pointAt = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            pointAt.put(key(row[i], col[i]), i);
+        }
+
+        for (int i = 0; i < n; i++) {
+            int[] column = columns[col[i]];
+            int[] line = rows[row[i]];
+            boolean found = false;
+            // 同一列中下方的交点
+            for (int a = posInColumn[i] + 1; a < column.length && !found; a++) {
+                int xPoint = column[a];
+                // is there a vertical edge b/w topLeft and xPoint?
+                if (ys[xPoint] <= ys[i] || !verticals[i].equals(verticals[xPoint])) {
+                    continue;
+                }
+                // 同一行中右侧的交点
+                for (int b = posInRow[i] + 1; b < line.length; b++) {
+                    int yPoint = line[b];
+                    // is there an horizontal edge b/w topLeft and yPoint ?
+                    if (xs[yPoint] <= xs[i] || !horizontals[i].equals(horizontals[yPoint])) {
+                        continue;
+                    }
+                    Integer btmRight = pointAt.get(key(row[xPoint], col[yPoint]));
+                    if (btmRight != null
+                            && horizontals[btmRight].equals(horizontals[xPoint])
+                            && verticals[btmRight].equals(verticals[yPoint])) {
+                        cellsFound.add(new Cell(points.get(i), points.get(btmRight)));
+                        found = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return cellsFound;
+    }
+
+    /**
+     * 把相接 (共享边或顶点) 的单元格合并成表格区域。
+     * <p>
+     * 和原来一样, 单元格的坐标会被保留两位小数 ({@link Rectangle#round()})。
+     *
+     * @return 每组连通的单元格的外框
+     */
+    public static List<Rectangle> findAreas(List<? extends Rectangle> cells) {
+        List<Rectangle> rects = new ArrayList<>(new LinkedHashSet<Rectangle>(cells));
+        NumberUtil.sortByReadingOrder(rects);
+        int n = rects.size();
+        List<Rectangle> areas = new ArrayList<>();
+        if (n == 0) {
+            return areas;
+        }
+
+        float[] lefts = new float[n];
+        float[] tops = new float[n];
+        float[] rights = new float[n];
+        float[] bottoms = new float[n];
+        for (int i = 0; i < n; i++) {
+            Rectangle rect = rects.get(i);
+            rect.round();
+            lefts[i] = rect.getLeft();
+            tops[i] = rect.getTop();
+            rights[i] = rect.getRight();
+            bottoms[i] = rect.getBottom();
+        }
+        float[] gridX = distinct(lefts, rights);
+        float[] gridY = distinct(tops, bottoms);
+        int[] l = indexOf(gridX, lefts);
+        int[] r = indexOf(gridX, rights);
+        int[] t = indexOf(gridY, tops);
+        int[] b = indexOf(gridY, bottoms);
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        // 竖直网格线: 左边或右边在这条线上, 且 y 方向的区间相交的单元格相接
+        unionAlongLines(gridX.length, l, r, t, b, parent);
+        // 水平网格线: 上边或下边在这条线上, 且 x 方向的区间相交的单元格相接
+        unionAlongLines(gridY.length, t, b, l, r, parent);
+
+        // 按第一个单元格的阅读顺序输出每组的外框
+        int[] areaIndex = new int[n];
+        Arrays.fill(areaIndex, -1);
+        List<float[]> bounds = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (areaIndex[root] < 0) {
+                areaIndex[root] = bounds.size();
+                bounds.add(new float[]{lefts[i], tops[i], rights[i], bottoms[i]});
+            } else {
+                float[] bound = bounds.get(areaIndex[root]);
+                bound[0] = Math.min(bound[0], lefts[i]);
+                bound[1] = Math.min(bound[1], tops[i]);
+                bound[2] = Math.max(bound[2], rights[i]);
+                bound[3] = Math.max(bound[3], bottoms[i]);
+            }
+        }
+        for (float[] bound : bounds) {
+            areas.add(new Rectangle(bound[0], bound[1], bound[2] - bound[0], bound[3] - bound[1]));
+        }
+        return areas;
+    }
+
+    /**
+     * 对每条网格线, 把边 (start 或 end) 在这条线上的单元格按垂直方向的区间 [from, to] 排序后扫描,
+     * 区间相交 (包括端点相接) 的单元格合并到一起。
+     */
+    private static void unionAlongLines(int lineCount, int[] start, int[] end, int[] from, int[] to, int[] parent) {
+        int n = start.length;
+        int[] count = new int[lineCount + 1];
+        for (int i = 0; i < n; i++) {
+            count[start[i] + 1]++;
+            if (end[i] != start[i]) {
+                count[end[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < lineCount; i++) {
+            count[i + 1] += count[i];
+        }
+        int[] offset = Arrays.copyOf(count, lineCount);
+        int[] members = new int[count[lineCount]];
+        for (int i = 0; i < n; i++) {
+            members[offset[start[i]]++] = i;
+            if (end[i] != start[i]) {
+                members[offset[end[i]]++] = i;
+            }
+        }
+
+        for (int line = 0; line < lineCount; line++) {
+            int begin = count[line];
+            int size = count[line + 1] - begin;
+            if (size < 2) {
+                continue;
+            }
+            // 成员按区间起点排序, 起点相同的顺序无关
+            long[] sorted = new long[size];
+            for (int k = 0; k < size; k++) {
+                int cell = members[begin + k];
+                sorted[k] = ((long) from[cell] << 32) | cell;
+            }
+            Arrays.sort(sorted);
+            int current = (int) sorted[0];
+            int reach = to[current];
+            for (int k = 1; k < size; k++) {
+                int cell = (int) sorted[k];
+                if (from[cell] <= reach) {
+                    union(parent, current, cell);
+                } else {
+                    current = cell;
+                }
+                if (to[cell] > reach) {
+                    reach = to[cell];
+                }
+            }
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra != rb) {
+            parent[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | col;
+    }
+
+    private static double[] distinct(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    private static float[] distinct(float[] starts, float[] ends) {
+        float[] sorted = Arrays.copyOf(starts, starts.length + ends.length);
+        System.arraycopy(ends, 0, sorted, starts.length, ends.length);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    private static int[] indexOf(float[] grid, float[] values) {
+        int[] indices = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            indices[i] = Arrays.binarySearch(grid, values[i]);
+        }
+        return indices;
+    }
+
+    private static int[][] groupBy(int[] keys, int keyCount) {
+        int[] sizes = new int[keyCount];
+        for (int k : keys) {
+            sizes[k]++;
+        }
+        int[][] groups = new int[keyCount][];
+        for (int k = 0; k < keyCount; k++) {
+            groups[k] = new int[sizes[k]];
+            sizes[k] = 0;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            groups[keys[i]][sizes[keys[i]]++] = i;
+        }
+        return groups;
+    }
+
+    private static int[] positions(int[][] groups, int n) {
+        int[] pos = new int[n];
+        for (int[] group : groups) {
+            for (int k = 0; k < group.length; k++) {
+                pos[group[k]] = k;
+            }
+        }
+        return pos;
+    }
+}
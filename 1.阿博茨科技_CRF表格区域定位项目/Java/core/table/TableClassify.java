@@ -1,9 +1,11 @@
 package com.abcft.pdfextract.core.table;
 
+import com.abcft.pdfextract.core.model.InferenceService;
 import com.abcft.pdfextract.core.model.Rectangle;
 import com.abcft.pdfextract.core.model.TensorflowManager;
 import com.abcft.pdfextract.core.table.extractors.BitmapPageExtractionAlgorithm;
 import com.abcft.pdfextract.core.util.DebugHelper;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
 import com.google.protobuf.ByteString;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,6 +17,7 @@ import java.awt.image.RasterFormatException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import java.nio.file.Files;
@@ -395,87 +398,63 @@ public class TableClassify {
         }
     }
 
-    public static void classifyTablesBatchTest(Page page, List<Table> tables) {
-        if (page == null || tables == null || tables.isEmpty()) {
-            return;
-        }
-
-        logger.info("当前表格分类的文件:{}, 页数:{}",page.getParams().path, page.getPageNumber());
-
-        //载入模型
-        SavedModelBundle savedModelBundle = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.TABLE_CLASSIFY);
-        if (savedModelBundle == null) {
-            logger.info("没有表格分类模型文件");
-            return;
+    /**
+     * 表格分类模型的批量执行逻辑, 一个请求是归一化后的 224x224x3 图像数据, 结果是各个类别的概率。
+     */
+    private static final InferenceService.BatchRunner<float[], float[]> TABLE_CLASSIFY_RUNNER = (session, images) -> {
+        int batch = images.size();
+        int imageSize = IMAGE_WIDTH * IMAGE_HEIGHT * 3;
+        FloatBuffer floatBuffer = FloatBuffer.allocate(batch * imageSize);
+        for (float[] image : images) {
+            floatBuffer.put(image, 0, imageSize);
+        }
+        floatBuffer.rewind();
+        try (Tensor<Float> inputTensor = Tensor.create(new long[]{batch, IMAGE_WIDTH, IMAGE_HEIGHT, 3}, floatBuffer);
+             Tensor<Float> result = session.runner().feed(INPUT_TENSOR_NAME, inputTensor)
+                     .fetch(OUTPUT_TENSOR_NAME).run().get(0).expect(Float.class)) {
+            final long[] rshape = result.shape();
+            if (result.numDimensions() != 2 || rshape[0] != batch) {
+                throw new IllegalStateException(String.format(
+                        "Expected model to produce a [%d N] shaped tensor where N is the number of labels, instead it produced one with shape %s",
+                        batch, Arrays.toString(rshape)));
+            }
+            return Arrays.asList(result.copyTo(new float[batch][(int) rshape[1]]));
         }
+    };
 
-        //将图像转为tensor batch
-        Session session = savedModelBundle.session();
-
-        BufferedImage pageImage = getPageBufferedImage(page, TABLE_CLASSIFY_DPI, true);
-        if (pageImage == null) {
-            logger.warn("can't getOneShotPageImage");
-            return;
+    private static List<float[]> classifyImages(List<float[]> images) {
+        InferenceService<float[], float[]> service =
+                TensorflowManager.INSTANCE.getInferenceService(TensorflowManager.TABLE_CLASSIFY, TABLE_CLASSIFY_RUNNER);
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.timeModel(TensorflowManager.TABLE_CLASSIFY)) {
+            return service.runAll(images);
         }
+    }
 
-        int batchSize = 16;
-        for (int i = 0; i < tables.size(); i += batchSize) {
-            int batch = Math.min(batchSize, tables.size() - i);
-            FloatBuffer floatBuffer = FloatBuffer.allocate(batch * 3 * IMAGE_WIDTH * IMAGE_HEIGHT);
-            for (int j = 0; j < batch; j++) {
-                BufferedImage subImage = getSubBufferedImage(pageImage, TABLE_CLASSIFY_DPI, tables.get(i + j), true, IMAGE_WIDTH, IMAGE_HEIGHT);
-                byte[] bytes = getByteData(subImage);
-
-                if (bytes == null) {
-                    logger.warn("Failed to get image data for page");
-                    return;
-                }
-                float[] result = preProcessImageData(bytes);
-                floatBuffer.position(j * IMAGE_WIDTH * IMAGE_HEIGHT * 3);
-                floatBuffer.put(result);
+    private static void applyClassifyScore(Table table, float tableScore) {
+        table.setClassifyScore(tableScore);
+        if (tableScore > 0.6) {
+            table.updateConfidence(Table.HIGH_CONFIDENCE_THRESHOLD, 1.0);
+        } else {
+            if (tableScore > 0.4) {
+                table.updateConfidence(Table.LOW_CONFIDENCE_THRESHOLD, Table.HIGH_CONFIDENCE_THRESHOLD);
+            } else {
+                table.updateConfidence(0.0, Table.LOW_CONFIDENCE_THRESHOLD);
             }
+        }
 
-            floatBuffer.rewind();
-
-            Tensor<Float> inputTensor = Tensor.create(new long[]{batch, IMAGE_WIDTH, IMAGE_HEIGHT, 3}, floatBuffer);
-
-            List<Tensor<?>> result = session.runner().feed(INPUT_TENSOR_NAME, inputTensor)
-                    .fetch(OUTPUT_TENSOR_NAME).run();
-
-            float[][] predictions = result.get(0).copyTo(new float[batch][2]);
-            for (int j = 0; j < batch; j++) {
-                try {
-                    float[] labelProbabilities = new float[2];
-                    for (int k = 0; k < 2; k++) {
-                        labelProbabilities[k] = predictions[j][k];
-                    }
-                    if (labelProbabilities.length != 2) {
-                        logger.info("the labelProbabilities num is not true");
-                        return;
-                    }
-                    float tableScore = labelProbabilities[TableClassifyType.TABLE];
-                    Table table = tables.get(i + j);
-                    table.setClassifyScore(tableScore);
-                    if (tableScore > 0.6) {
-                        table.updateConfidence(Table.HIGH_CONFIDENCE_THRESHOLD, 1.0);
-                    } else {
-                        if (tableScore > 0.4) {
-                            table.updateConfidence(Table.LOW_CONFIDENCE_THRESHOLD, Table.HIGH_CONFIDENCE_THRESHOLD);
-                        } else {
-                            table.updateConfidence(0.0, Table.LOW_CONFIDENCE_THRESHOLD);
-                        }
-                    }
+        String type = TableClassifyType.desc(tableScore > 0.5 ? TableClassifyType.TABLE : TableClassifyType.OTHER);
+        logger.info("TableId:{}, Table image classified as type: {}, the classify score is: {}", table.getIndex(), type, tableScore);
+    }
 
-                    String type = TableClassifyType.desc(tableScore > 0.5 ? TableClassifyType.TABLE : TableClassifyType.OTHER);
-                    logger.info("TableId:{}, Table image classified as type: {}, the classify score is: {}", table.getIndex(), type, tableScore);
-                } catch (Exception e) {
-                    logger.warn("Failed to classify table");
-                }
-            }
-        }
+    public static void classifyTablesBatchTest(Page page, List<Table> tables) {
+        classifyTablesBatch(page, tables, true);
     }
 
     public static void classifyTablesBatch(Page page, List<Table> tables) {
+        classifyTablesBatch(page, tables, false);
+    }
+
+    private static void classifyTablesBatch(Page page, List<Table> tables, boolean subImageFlag) {
         if (page == null || tables == null || tables.isEmpty()) {
             return;
         }
@@ -483,72 +462,40 @@ public class TableClassify {
         logger.info("当前表格分类的文件:{}, 页数:{}",page.getParams().path, page.getPageNumber());
 
         //载入模型
-        SavedModelBundle savedModelBundle = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.TABLE_CLASSIFY);
-        if (savedModelBundle == null) {
+        if (TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.TABLE_CLASSIFY) == null) {
             logger.info("没有表格分类模型文件");
             return;
         }
 
-        //将图像转为tensor batch
-        Session session = savedModelBundle.session();
-
         BufferedImage pageImage = getPageBufferedImage(page, TABLE_CLASSIFY_DPI, true);
         if (pageImage == null) {
             logger.warn("can't getOneShotPageImage");
             return;
         }
 
-        int batchSize = 16;
-        for (int i = 0; i < tables.size(); i += batchSize) {
-            int batch = Math.min(batchSize, tables.size() - i);
-            FloatBuffer floatBuffer = FloatBuffer.allocate(batch * 3 * IMAGE_WIDTH * IMAGE_HEIGHT);
-            for (int j = 0; j < batch; j++) {
-                BufferedImage subImage = getSubBufferedImage(pageImage, TABLE_CLASSIFY_DPI, tables.get(i + j), false, IMAGE_WIDTH, IMAGE_HEIGHT);
-                byte[] bytes = getByteData(subImage);
-                if (bytes == null) {
-                    logger.warn("Failed to get image data for page");
-                    return;
-                }
-                float[] result = preProcessImageData(bytes);
-                floatBuffer.position(j * IMAGE_WIDTH * IMAGE_HEIGHT * 3);
-                floatBuffer.put(result);
+        //将图像转为batch, 由推理服务合并执行
+        List<float[]> images = new ArrayList<>(tables.size());
+        for (Table table : tables) {
+            BufferedImage subImage = getSubBufferedImage(pageImage, TABLE_CLASSIFY_DPI, table, subImageFlag, IMAGE_WIDTH, IMAGE_HEIGHT);
+            byte[] bytes = getByteData(subImage);
+            if (bytes == null) {
+                logger.warn("Failed to get image data for page");
+                return;
             }
+            images.add(preProcessImageData(bytes));
+        }
 
-            floatBuffer.rewind();
-
-            Tensor<Float> inputTensor = Tensor.create(new long[]{batch, IMAGE_WIDTH, IMAGE_HEIGHT, 3}, floatBuffer);
-            List<Tensor<?>> result = session.runner().feed(INPUT_TENSOR_NAME, inputTensor)
-                    .fetch(OUTPUT_TENSOR_NAME).run();
-
-            float[][] predictions = result.get(0).copyTo(new float[batch][2]);
-            for (int j = 0; j < batch; j++) {
-                try {
-                    float[] labelProbabilities = new float[2];
-                    for (int k = 0; k < 2; k++) {
-                        labelProbabilities[k] = predictions[j][k];
-                    }
-                    if (labelProbabilities.length != 2) {
-                        logger.info("the labelProbabilities num is not true");
-                        return;
-                    }
-                    float tableScore = labelProbabilities[TableClassifyType.TABLE];
-                    Table table = tables.get(i + j);
-                    table.setClassifyScore(tableScore);
-                    if (tableScore > 0.6) {
-                        table.updateConfidence(Table.HIGH_CONFIDENCE_THRESHOLD, 1.0);
-                    } else {
-                        if (tableScore > 0.4) {
-                            table.updateConfidence(Table.LOW_CONFIDENCE_THRESHOLD, Table.HIGH_CONFIDENCE_THRESHOLD);
-                        } else {
-                            table.updateConfidence(0.0, Table.LOW_CONFIDENCE_THRESHOLD);
-                        }
-                    }
-
-                    String type = TableClassifyType.desc(tableScore > 0.5 ? TableClassifyType.TABLE : TableClassifyType.OTHER);
-                    logger.info("TableId:{}, Table image classified as type: {}, the classify score is: {}", table.getIndex(), type, tableScore);
-                } catch (Exception e) {
-                    logger.warn("Failed to classify table");
-                }
+        List<float[]> predictions = classifyImages(images);
+        for (int i = 0; i < tables.size(); i++) {
+            float[] labelProbabilities = predictions.get(i);
+            if (labelProbabilities.length != 2) {
+                logger.info("the labelProbabilities num is not true");
+                return;
+            }
+            try {
+                applyClassifyScore(tables.get(i), labelProbabilities[TableClassifyType.TABLE]);
+            } catch (Exception e) {
+                logger.warn("Failed to classify table");
             }
         }
     }
@@ -561,61 +508,46 @@ public class TableClassify {
         logger.info("当前表格分类的文件:{}, 页数:{}",page.getParams().path, page.getPageNumber());
 
         //载入模型
-        SavedModelBundle savedModelBundle = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.TABLE_CLASSIFY);
-        if (savedModelBundle == null) {
+        if (TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.TABLE_CLASSIFY) == null) {
             logger.warn("没有表格分类模型文件");
             return;
         }
 
-        //将图像转为tensor batch
-        Session session = savedModelBundle.session();
-
         BufferedImage pageImage = getPageBufferedImage(page, TABLE_CLASSIFY_DPI, true);
         if (pageImage == null) {
             logger.warn("can't getOneShotPageImage");
             return;
         }
 
-        for (int i = 0; i < tables.size(); i++) {
-            Table table = tables.get(i);
-            BufferedImage subImage = getSubBufferedImage(pageImage, TABLE_CLASSIFY_DPI, tables.get(i), false, IMAGE_WIDTH, IMAGE_HEIGHT);
+        // 每个表格单独做图像归一化, 模型推理交给推理服务合并执行
+        List<Table> classifyTables = new ArrayList<>(tables.size());
+        List<float[]> images = new ArrayList<>(tables.size());
+        for (Table table : tables) {
+            BufferedImage subImage = getSubBufferedImage(pageImage, TABLE_CLASSIFY_DPI, table, false, IMAGE_WIDTH, IMAGE_HEIGHT);
             byte[] bytes = getByteData(subImage);
             if (bytes == null) {
                 logger.warn("Failed to get image data for page");
                 continue;
             }
+            try (Tensor<Float> image = constructAndExecuteGraphToNormalizeImage(bytes)) {
+                FloatBuffer floatBuffer = FloatBuffer.allocate(IMAGE_WIDTH * IMAGE_HEIGHT * 3);
+                image.writeTo(floatBuffer);
+                images.add(floatBuffer.array());
+            }
+            classifyTables.add(table);
+        }
+        if (images.isEmpty()) {
+            return;
+        }
 
-            Tensor<Float> image = constructAndExecuteGraphToNormalizeImage(bytes);
-            try (Tensor<Float> result = session.runner().feed(INPUT_TENSOR_NAME, image).fetch(OUTPUT_TENSOR_NAME)
-                         .run().get(0).expect(Float.class)) {
-                final long[] rshape = result.shape();
-                if (result.numDimensions() != 2 || rshape[0] != 1) {
-                    logger.warn(String.format(
-                            "Expected model to produce a [1 N] shaped tensor where N is the number of labels, instead it produced one with shape %s",
-                            Arrays.toString(rshape)));
-                    return;
-                }
-                int nlabels = (int) rshape[1];
-                float[] labelProbabilities = result.copyTo(new float[1][nlabels])[0];
-                if (labelProbabilities.length != 2) {
-                    logger.warn("the labelProbabilities num is not true");
-                    return;
-                }
-                float tableScore = labelProbabilities[TableClassifyType.TABLE];
-                table.setClassifyScore(tableScore);
-                if (tableScore > 0.6) {
-                    table.updateConfidence(Table.HIGH_CONFIDENCE_THRESHOLD, 1.0);
-                } else {
-                    if (tableScore > 0.4) {
-                        table.updateConfidence(Table.LOW_CONFIDENCE_THRESHOLD, Table.HIGH_CONFIDENCE_THRESHOLD);
-                    } else {
-                        table.updateConfidence(0.0, Table.LOW_CONFIDENCE_THRESHOLD);
-                    }
-                }
-
-                String type = TableClassifyType.desc(tableScore > 0.5 ? TableClassifyType.TABLE : TableClassifyType.OTHER);
-                logger.info("TableId:{}, Table image classified as type: {}, the classify score is: {}", table.getIndex(), type, tableScore);
+        List<float[]> predictions = classifyImages(images);
+        for (int i = 0; i < classifyTables.size(); i++) {
+            float[] labelProbabilities = predictions.get(i);
+            if (labelProbabilities.length != 2) {
+                logger.warn("the labelProbabilities num is not true");
+                return;
             }
+            applyClassifyScore(classifyTables.get(i), labelProbabilities[TableClassifyType.TABLE]);
         }
     }
 
@@ -3,6 +3,7 @@ package com.abcft.pdfextract.core.table;
 import com.abcft.pdfextract.core.ExtractorUtil;
 import com.abcft.pdfextract.core.PaperParameter;
 import com.abcft.pdfextract.core.model.ContentItem;
+import com.abcft.pdfextract.core.model.FontCache;
 import com.abcft.pdfextract.core.model.TextElement;
 import com.abcft.pdfextract.core.util.GraphicsUtil;
 import com.abcft.pdfextract.core.util.NumberUtil;
@@ -18,6 +19,7 @@ import org.apache.pdfbox.contentstream.operator.markedcontent.EndMarkedContentSe
 import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDMarkedContent;
@@ -52,6 +54,7 @@ class TableExtractEngine extends PDFGraphicsStreamEngine {
     private final float pageWidth;
     private final float pageHeight;
     private final TableExtractParameters params;
+    private final FontCache fontCache;
     private final int pageNumber;
 
     protected float minCharWidth;
@@ -115,6 +118,8 @@ class TableExtractEngine extends PDFGraphicsStreamEngine {
         }
 
         this.params = params;
+        Object document = params.context != null ? params.context.getNativeDocument() : null;
+        this.fontCache = document instanceof PDDocument ? FontCache.of((PDDocument) document) : new FontCache();
         this.wordGenerated = ExtractorUtil.isWordGeneratedPDF(params);
         this.verticalPage = pageWidth < pageHeight;
         this.paper = PaperParameter.findPage(pageWidth, pageHeight, verticalPage);
@@ -259,9 +264,10 @@ class TableExtractEngine extends PDFGraphicsStreamEngine {
 
         int rotate = GraphicsUtil.getAngleInDegrees(at);
 
+        FontCache.FontInfo fontInfo = fontCache.getFontInfo(font);
         TextElement te = TableUtils.makeTextElement(textBlockId, visibleBBox, bounds,
-                font, getGraphicsState().getTextState().getFontSize(),  unicode, new int[]{ code },
-                color, this.widthOfSpace(font, textRenderingMatrix), rotate);
+                fontInfo.getFontName(), getGraphicsState().getTextState().getFontSize(),  unicode, new int[]{ code },
+                color, this.widthOfSpace(fontInfo, textRenderingMatrix), rotate);
 
         if (this.currentClippingPath().intersects(te)) {
             this.minCharWidth = (float) Math.min(this.minCharWidth, te.getWidth());
@@ -592,33 +598,9 @@ class TableExtractEngine extends PDFGraphicsStreamEngine {
         return printable;
     }
 
-    private float widthOfSpace(PDFont font, Matrix textRenderingMatrix) {
-        float glyphSpaceToTextSpaceFactor = 1 / 1000f;
-        if (font instanceof PDType3Font) {
-            glyphSpaceToTextSpaceFactor = font.getFontMatrix().getScaleX();
-        }
-
-        float spaceWidthText = 0;
-        try {
-            // to avoid crash as described in PDFBOX-614, see what the space displacement should be
-            spaceWidthText = font.getSpaceWidth() * glyphSpaceToTextSpaceFactor;
-        } catch (Throwable exception) {
-            LOG.warn(exception.toString());
-        }
-
-        if (spaceWidthText == 0) {
-            spaceWidthText = font.getAverageFontWidth() * glyphSpaceToTextSpaceFactor;
-            // the average space width appears to be higher than necessary so make it smaller
-            spaceWidthText *= .80f;
-        }
-        if (spaceWidthText == 0) {
-            spaceWidthText = 1.0f; // if could not find font, use a generic value
-        }
-
+    private float widthOfSpace(FontCache.FontInfo fontInfo, Matrix textRenderingMatrix) {
         // the space width has to be transformed into display units
-        float spaceWidthDisplay = spaceWidthText * textRenderingMatrix.getScalingFactorX();
-
-        return spaceWidthDisplay;
+        return fontInfo.getSpaceWidthText() * textRenderingMatrix.getScalingFactorX();
     }
 
     private boolean isDebugClippingPaths() {
@@ -235,10 +235,10 @@ public class TableRegion extends Rectangle implements Confident {
     //单元格内容为空的数据所占比率
     public float calSparseRatio(ContentGroupPage page) {
         List<TextBlock> textBlocks;
-        List<TextChunk> textChunks = page.getMutableTextChunks(this).stream().filter(chunk -> StringUtils.isNotBlank(chunk.getText()))
+        List<TextChunk> textChunks = page.getTextChunks(this).stream().filter(chunk -> StringUtils.isNotBlank(chunk.getText()))
                 .collect(Collectors.toList());
         if (this.getTextBlockList() == null || this.textBlockList.isEmpty()) {
-            textBlocks = TextMerger.collectByRows(TextMerger.groupByBlock(textChunks, page.getHorizontalRulings(), page.getVerticalRulings()));
+            textBlocks = page.getTextRows(textChunks);
         } else {
             textBlocks = this.textBlockList;
         }
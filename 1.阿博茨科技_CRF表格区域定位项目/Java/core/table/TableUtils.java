@@ -18,7 +18,6 @@ import org.apache.commons.pool2.ObjectPool;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
 import org.apache.pdfbox.pdmodel.graphics.color.PDICCBased;
 import org.apache.pdfbox.pdmodel.graphics.color.PDIndexed;
@@ -28,7 +27,6 @@ import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.util.Matrix;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
@@ -77,7 +75,7 @@ public final class TableUtils {
     }
 
     static TextElement makeTextElement(int textBlockId, Rectangle2D visibleBBox, Rectangle2D bounds,
-                                       PDFont font, float fontSize, String c, int[] charCodes,
+                                       String fontName, float fontSize, String c, int[] charCodes,
                                        Color color,
                                        float widthOfSpace, int rotate) {
         TextElement element = new TextElement(
@@ -87,7 +85,7 @@ public final class TableUtils {
                 widthOfSpace,
                 c,
                 charCodes,
-                FontUtils.getFontName(font, UNUSED),
+                fontName,
                 fontSize,
                 rotate,
                 color,
@@ -626,7 +624,7 @@ public final class TableUtils {
             if (tableImgae == null) {
                 return false;
             }
-            ImageIO.write(tableImgae, "PNG", stream);
+            GraphicsUtil.encodeImage(tableImgae, "PNG", stream);
             return true;
         } catch (RasterFormatException | IOException e) {
             logger.warn("Failed to save table to png for table " + table, e);
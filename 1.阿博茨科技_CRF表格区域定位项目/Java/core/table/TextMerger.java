@@ -188,6 +188,22 @@ public class TextMerger {
 
     private static boolean canMergeChunk(TextChunk textChunk1, TextChunk textChunk2, RectangleSpatialIndex<TextChunk> chunkSpatialIndex,
                                          List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines) {
+        return canMergeChunk(textChunk1, textChunk2, chunkSpatialIndex, horizontalRulingLines, verticalRulingLines, null);
+    }
+
+    /**
+     * 取得文本块的合并标志, marks 中有的 (本次合并中新加的标志) 优先
+     */
+    private static Object getMergerType(TextChunk textChunk, Map<TextChunk, ChunkMergerType> marks) {
+        if (marks != null && marks.containsKey(textChunk)) {
+            return marks.get(textChunk);
+        }
+        return textChunk.getTag(MERGER_TYPE);
+    }
+
+    private static boolean canMergeChunk(TextChunk textChunk1, TextChunk textChunk2, RectangleSpatialIndex<TextChunk> chunkSpatialIndex,
+                                         List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines,
+                                         Map<TextChunk, ChunkMergerType> marks) {
         // 不同行的不能合并, 或待合并文本在左边的不能合并
         if (!isSameRow(textChunk1, textChunk2) || textChunk1.getVisibleMinX() > textChunk2.getVisibleMaxX()) {
             // 例外条件，针对上标时，isSameRow可能不满足，但存在一定的水平重合
@@ -197,7 +213,7 @@ public class TextMerger {
         }
 
         // 如果前一个chunk具有结束标志，则不能合并
-        if (textChunk1.hasTag(MERGER_TYPE) && textChunk1.getTag(MERGER_TYPE) == ChunkMergerType.CHUNK_END) {
+        if (getMergerType(textChunk1, marks) == ChunkMergerType.CHUNK_END) {
             // 根据情况细分，部分情况下CHUNK_END视为无效
             boolean status = true;
             if (TEXT_UNDER_DOTS.matcher(textChunk1.getText()).find() && TEXT_UNDER_DOTS.matcher(textChunk2.getText()).matches()) {
@@ -398,9 +414,9 @@ public class TextMerger {
 
     private static boolean canMergeBlock(TextBlock prevBlock, TextChunk nextText, RectangleSpatialIndex<TextChunk> chunkSpatialIndex,
                                          List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines,
-                                         Rectangle textVaildRect) {
+                                         Rectangle textVaildRect, Map<TextChunk, ChunkMergerType> marks) {
         TextChunk lastText = prevBlock.getLastTextChunk();
-        if (lastText.hasTag(MERGER_TYPE) && lastText.getTag(MERGER_TYPE) == ChunkMergerType.BLOCK_END) {
+        if (getMergerType(lastText, marks) == ChunkMergerType.BLOCK_END) {
             return false;
         }
 
@@ -532,7 +548,7 @@ public class TextMerger {
         } else {
             // 如果在同一行，则分析是否满足搜索合并区域
             boolean canMerge = true;
-            canMerge = canMergeChunk(lastText, nextText, chunkSpatialIndex, horizontalRulingLines, verticalRulingLines);
+            canMerge = canMergeChunk(lastText, nextText, chunkSpatialIndex, horizontalRulingLines, verticalRulingLines, marks);
             return canMerge;
         }
     }
@@ -834,7 +850,18 @@ public class TextMerger {
         return groupByBlock(textChunks, new ArrayList<>(), new ArrayList<>());
     }
 
+    /**
+     * 合并文本块, 不修改输入的文本块 (合并过程中的 BLOCK_END 标志只在本次调用中有效)
+     */
     public static List<TextBlock> groupByBlock(List<TextChunk> textChunks, List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines) {
+        return groupByBlock(textChunks, horizontalRulingLines, verticalRulingLines, new IdentityHashMap<>());
+    }
+
+    /**
+     * 合并文本块, 合并过程中新加的标志写入 marks (按对象区分), 需要保留时用 {@link #applyMergerMarks(Map)} 写回文本块
+     */
+    static List<TextBlock> groupByBlock(List<TextChunk> textChunks, List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines,
+                                        Map<TextChunk, ChunkMergerType> marks) {
         List<TextBlock> merged = new ArrayList<>();
         TextBlock prevBlock = null;
         Rectangle textValidRect = getTextValidRect(textChunks);
@@ -854,8 +881,8 @@ public class TextMerger {
                 //  [----- lastChunk -----]
                 // [currChunk]   [nextChunk]
                 if (lastText.horizontalOverlap(nextText) > nextText.getWidthOfSpace() && isSameRow(currText, nextText) &&
-                        !canMergeChunk(currText, nextText, chunkSpatialIndex, horizontalRulingLines,verticalRulingLines)) {
-                    lastText.addTag(MERGER_TYPE, ChunkMergerType.BLOCK_END);
+                        !canMergeChunk(currText, nextText, chunkSpatialIndex, horizontalRulingLines,verticalRulingLines, marks)) {
+                    marks.put(lastText, ChunkMergerType.BLOCK_END);
                 }
 
                 // 次级表头下，存在对齐的子级表头文本; 或者连续几行都对齐的文本
@@ -870,14 +897,14 @@ public class TextMerger {
                         if ((FloatUtils.feq(lastText.getVisibleMinX(), currText.getVisibleMinX(), 0.5f) &&
                                 FloatUtils.feq(lastText.getVisibleMinX(), nextText.getVisibleMinX(), 0.5f)) ||
                                 currText.getVisibleMinX() - lastText.getVisibleMinX() > 3*lastText.getAvgCharWidth()) {
-                            lastText.addTag(MERGER_TYPE, ChunkMergerType.BLOCK_END);
-                            currText.addTag(MERGER_TYPE, ChunkMergerType.BLOCK_END);
+                            marks.put(lastText, ChunkMergerType.BLOCK_END);
+                            marks.put(currText, ChunkMergerType.BLOCK_END);
                         }
                     }
                 }
             }
 
-            if (prevBlock != null && canMergeBlock(prevBlock, currText, chunkSpatialIndex, horizontalRulingLines, verticalRulingLines, textValidRect)) {
+            if (prevBlock != null && canMergeBlock(prevBlock, currText, chunkSpatialIndex, horizontalRulingLines, verticalRulingLines, textValidRect, marks)) {
                 prevBlock.addElement(currText);
             } else if (StringUtils.isNotBlank(currText.getText())) {
                 prevBlock = new TextBlock(currText);
@@ -887,6 +914,20 @@ public class TextMerger {
         return merged;
     }
 
+    /**
+     * 把 {@link #groupByBlock(List, List, List, Map)} 的标志写回文本块
+     */
+    static void applyMergerMarks(Map<TextChunk, ChunkMergerType> marks) {
+        marks.forEach((textChunk, type) -> textChunk.addTag(MERGER_TYPE, type));
+    }
+
+    /**
+     * 取得文本块当前的合并标志
+     */
+    static Object getMergerType(TextChunk textChunk) {
+        return textChunk.getTag(MERGER_TYPE);
+    }
+
     /** Splits a TextChunk in two, at the position of the i-th TextElement
      */
     private static TextChunk[] splitAt(TextChunk textChunk, int i) {
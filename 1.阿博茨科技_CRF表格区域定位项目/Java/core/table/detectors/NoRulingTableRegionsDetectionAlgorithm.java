@@ -2935,18 +2935,11 @@ public class NoRulingTableRegionsDetectionAlgorithm {
         }
 
         Rectangle bounds = Rectangle.boundingBoxOf(tableTempList);
-        List<TextChunk> chunkList = page.getMutableTextChunks(new Rectangle(0, bounds.getTop(), page.getWidth(), bounds.getHeight()));
-        for (TextChunk tc : chunkList) {
-            for (TableRegion tr : lineTableRegions) {
-                if (tr.isShapeIntersects(tc)) {
-                    tc.markDeleted();
-                    break;
-                }
-            }
-        }
-        chunkList.removeIf(TextChunk::isDeleted);
+        List<TextChunk> chunkList = page.getTextChunks(new Rectangle(0, bounds.getTop(), page.getWidth(), bounds.getHeight())).stream()
+                .filter(tc -> lineTableRegions.stream().noneMatch(tr -> tr.isShapeIntersects(tc)))
+                .collect(Collectors.toList());
 
-        List<TextBlock> exceptTextBlocks = TextMerger.collectByRows(TextMerger.groupByBlock(chunkList, page.getHorizontalRulings(), page.getVerticalRulings()));
+        List<TextBlock> exceptTextBlocks = page.getTextRows(chunkList);
         for (TextBlock tb : exceptTextBlocks) {
             if (tb.getSize() > 2 && TableRegionDetectionUtils.hasNumberStr(tb.getElements())) {
                 lineTableRegions.removeAll(tableTempList);
@@ -4181,12 +4174,12 @@ public class NoRulingTableRegionsDetectionAlgorithm {
             if (textChunksWithinRC.isEmpty()) {
                 return new ArrayList<>();
             }
-            textLines = TextMerger.collectByRows(TextMerger.groupByBlock(textChunksWithinRC, page.getHorizontalRulings(), page.getVerticalRulings()));
+            textLines = page.getTextRows(textChunksWithinRC);
             fillAreaGroupsInProcessRect = page.getPageFillAreaGroup().stream().filter(group -> group.getGroupRectArea()
                     .isShapeIntersects(processRect)).collect(Collectors.toList());
         } else {
             hRulingInProcessRect = page.getHorizontalRulings();
-            textLines = TextMerger.collectByRows(TextMerger.groupByBlock(textChunks, page.getHorizontalRulings(), page.getVerticalRulings()));
+            textLines = page.getTextRows(textChunks);
             fillAreaGroupsInProcessRect = page.getPageFillAreaGroup();
         }
 
@@ -4,27 +4,15 @@ import com.abcft.pdfextract.core.table.*;
 import com.abcft.pdfextract.core.model.Rectangle;
 import com.abcft.pdfextract.core.table.debug.Debug;
 import com.abcft.pdfextract.core.table.extractors.SpreadsheetExtractionAlgorithm;
-import com.abcft.pdfextract.core.util.DebugHelper;
-import org.apache.pdfbox.contentstream.operator.Operator;
-import org.apache.pdfbox.cos.COSBase;
-import org.apache.pdfbox.cos.COSDictionary;
-import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.pdfparser.PDFStreamParser;
-import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
-import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.common.PDStream;
-import org.apache.pdfbox.rendering.ImageType;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.*;
 import java.util.List;
 
@@ -49,6 +37,9 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
     private static final float IDENTICAL_TABLE_OVERLAP_RATIO = 0.9f;
     private static final int IMAGE_DPI = 72;
 
+    private static final RasterRulingDetector RULING_DETECTOR = new RasterRulingDetector(
+            GRAYSCALE_INTENSITY_THRESHOLD, HORIZONTAL_EDGE_WIDTH_MINIMUM, VERTICAL_EDGE_HEIGHT_MINIMUM);
+
     /**
      * Helper class that encapsulates a text edge
      */
@@ -119,7 +110,7 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         BufferedImage grayImage, noTextImage;
         PDPage pdfPage = page.getPDPage();
         try {
-            grayImage = DebugHelper.pageConvertToImage(pdfPage, IMAGE_DPI, ImageType.GRAY);
+            grayImage = RasterRulingDetector.renderGray(pdfPage, IMAGE_DPI, false);
         } catch (IOException e) {
             return new ArrayList<Rectangle>();
         }
@@ -718,188 +709,19 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
     }
 
     private List<Ruling> getHorizontalRulings(BufferedImage image) {
-
         // get all horizontal edges, which we'll define as a change in grayscale colour
         // along a straight line of a certain length
-        ArrayList<Ruling> horizontalRulings = new ArrayList<Ruling>();
-
-        Raster r = image.getRaster();
-        int width = r.getWidth();
-        int height = r.getHeight();
-
-        for (int x=0; x<width; x++) {
-
-            int[] lastPixel = r.getPixel(x, 0, (int[])null);
-
-            for (int y=1; y<height-1; y++) {
-
-                int[] currPixel = r.getPixel(x, y, (int[])null);
-
-                int diff = Math.abs(currPixel[0] - lastPixel[0]);
-                if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
-                    // we hit what could be a line
-                    // don't bother scanning it if we've hit a pixel in the line before
-                    boolean alreadyChecked = false;
-                    for (Line2D.Float line : horizontalRulings) {
-                        if (y == line.getY1() && x >= line.getX1() && x <= line.getX2()) {
-                            alreadyChecked = true;
-                            break;
-                        }
-                    }
-
-                    if (alreadyChecked) {
-                        lastPixel = currPixel;
-                        continue;
-                    }
-
-                    int lineX = x + 1;
-
-                    while (lineX < width) {
-                        int[] linePixel = r.getPixel(lineX, y, (int[]) null);
-                        int[] abovePixel = r.getPixel(lineX, y - 1, (int[]) null);
-
-                        if (Math.abs(linePixel[0] - abovePixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
-                                || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
-                            break;
-                        }
-
-                        lineX++;
-                    }
-
-                    int endX = lineX - 1;
-                    int lineWidth = endX - x;
-                    if (lineWidth > HORIZONTAL_EDGE_WIDTH_MINIMUM) {
-                        horizontalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(endX, y)));
-                    }
-                }
-
-                lastPixel = currPixel;
-            }
-        }
-
-        return horizontalRulings;
+        return RULING_DETECTOR.getHorizontalRulings(image);
     }
 
     private List<Ruling> getVerticalRulings(BufferedImage image) {
-
         // get all vertical edges, which we'll define as a change in grayscale colour
         // along a straight line of a certain length
-        ArrayList<Ruling> verticalRulings = new ArrayList<Ruling>();
-
-        Raster r = image.getRaster();
-        int width = r.getWidth();
-        int height = r.getHeight();
-
-        for (int y=0; y<height; y++) {
-
-            int[] lastPixel = r.getPixel(0, y, (int[])null);
-
-            for (int x=1; x<width-1; x++) {
-
-                int[] currPixel = r.getPixel(x, y, (int[])null);
-
-                int diff = Math.abs(currPixel[0] - lastPixel[0]);
-                if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
-                    // we hit what could be a line
-                    // don't bother scanning it if we've hit a pixel in the line before
-                    boolean alreadyChecked = false;
-                    for (Line2D.Float line : verticalRulings) {
-                        if (x == line.getX1() && y >= line.getY1() && y <= line.getY2()) {
-                            alreadyChecked = true;
-                            break;
-                        }
-                    }
-
-                    if (alreadyChecked) {
-                        lastPixel = currPixel;
-                        continue;
-                    }
-
-                    int lineY = y + 1;
-
-                    while (lineY < height) {
-                        int[] linePixel = r.getPixel(x, lineY, (int[]) null);
-                        int[] leftPixel = r.getPixel(x - 1, lineY, (int[]) null);
-
-                        if (Math.abs(linePixel[0] - leftPixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
-                                || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
-                            break;
-                        }
-
-                        lineY++;
-                    }
-
-                    int endY = lineY - 1;
-                    int lineLength = endY - y;
-                    if (lineLength > VERTICAL_EDGE_HEIGHT_MINIMUM) {
-                        verticalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(x, endY)));
-                    }
-                }
-
-                lastPixel = currPixel;
-            }
-        }
-
-        return verticalRulings;
+        return RULING_DETECTOR.getVerticalRulings(image);
     }
 
-
-    // taken from http://www.docjar.com/html/api/org/apache/pdfbox/examples/util/RemoveAllText.java.html
     private static BufferedImage removeText(PDPage page) throws IOException {
-
-        PDFStreamParser parser = new PDFStreamParser(page);
-        parser.parse();
-        List<Object> tokens = parser.getTokens();
-        List<Object> newTokens = new ArrayList<Object>();
-        boolean inText = false;
-        for (Object token : tokens)
-        {
-            if( token instanceof Operator)
-            {
-                Operator op = (Operator)token;
-                /*
-                if (op.getName().equals("ET")) {
-                    inText = false;
-                    continue;
-                } else if (op.getName().equals("BT")) {
-                    inText = true;
-                }
-                */
-                // The following algorithm seemed not working...
-                if( op.getName().equals( "TJ") || op.getName().equals( "Tj" ))
-                {
-                    //remove the one argument to this operator
-                    newTokens.remove( newTokens.size() -1 );
-                    continue;
-                }
-            }
-            newTokens.add( token );
-        }
-
-        // Save previous contents
-        COSDictionary pageObj = page.getCOSObject();
-        COSBase contents = pageObj.getDictionaryObject(COSName.CONTENTS);
-
-        PDDocument document = new PDDocument();
-        document.addPage(page);
-
-        PDStream newContents = new PDStream(document);
-        OutputStream os = newContents.createOutputStream();
-        ContentStreamWriter writer = new ContentStreamWriter(os);
-        writer.writeTokens(newTokens);
-        os.close();
-        page.setContents(newContents);
-
-        BufferedImage noTextImage;
-        try {
-            noTextImage = DebugHelper.pageConvertToImage(page, IMAGE_DPI, ImageType.GRAY);
-            document.close();
-        } catch (Exception e) {
-            noTextImage = null;
-        }
-
-        // Restore previous contents
-        pageObj.setItem(COSName.CONTENTS, contents);
-        return noTextImage;
+        // 渲染时跳过文字, 不再改写页面的内容流
+        return RasterRulingDetector.renderGray(page, IMAGE_DPI, true);
     }
-}
\ No newline at end of file
+}
@@ -1322,7 +1322,7 @@ public class RulingTableRegionsDetectionAlgorithm {
             Rectangle reduceRect = rowRect.rectReduce(1.0, 1.0 , page.getWidth(), page.getHeight());
             List<TextChunk> innerChunks = page.getMutableTextChunks(reduceRect);
             boolean isHorizontalAligned = isHorizontalHardAlign(innerChunks);
-            boolean hasMultiRow = TextMerger.collectByRows(TextMerger.groupByBlock(innerChunks, page.getHorizontalRulings(), page.getVerticalRulings())).size() >= 2;
+            boolean hasMultiRow = page.getTextRows(reduceRect).size() >= 2;
             boolean isSpanWidth = (rowRect.getWidth() > 0.9 * rc.getWidth());
             boolean hasVerticalLine = TableRegionDetectionUtils.getLongRulings(Ruling.getRulingsFromArea(page.getVerticalRulings(), reduceRect)
                     , (float) (0.5 * reduceRect.getHeight())).size() > 0;
@@ -2178,8 +2178,7 @@ public class RulingTableRegionsDetectionAlgorithm {
             if (textChunksWithinRC.isEmpty()) {
                 continue;
             }
-            table.addTextBlocksToList(TextMerger.collectByRows(TextMerger.groupByBlock(textChunksWithinRC
-                    , page.getHorizontalRulings(), page.getVerticalRulings())));
+            table.addTextBlocksToList(page.getTextRows(textChunksWithinRC));
         }
     }
 
@@ -229,8 +229,7 @@ public class StructureTableRegionDetectionAlgorithm {
                     || TableRegionDetectionUtils.calTableColNum(page, structureTable, tbList) == 1) {
                 Rectangle searchRect = new Rectangle(structureTable.getLeft(), structureTable.getTop() - 2 * page.getAvgCharHeight()
                         , structureTable.getWidth(), 2 * page.getAvgCharHeight());
-                List<TextBlock> topTextLines = TextMerger.collectByRows(TextMerger.groupByBlock(page.getMutableTextChunks(searchRect)
-                        , page.getHorizontalRulings(), page.getVerticalRulings()));
+                List<TextBlock> topTextLines = page.getTextRows(searchRect);
                 if (TableRegionDetectionUtils.matchAnyText(tbList.get(0).getElements(), NoRulingTableRegionsDetectionAlgorithm.TABLE_BEGINNING_KEYWORD)
                         || TableRegionDetectionUtils.matchAnyText(topTextLines, NoRulingTableRegionsDetectionAlgorithm.TABLE_BEGINNING_KEYWORD)) {
                     continue;
@@ -249,13 +248,11 @@ public class StructureTableRegionDetectionAlgorithm {
 
             List<Cell> rowCells = table.getRow(0);
             for (Cell cell : rowCells) {
-                List<TextChunk> textChunksWithinRC = page.getMutableTextChunks(cell);
-                if (textChunksWithinRC.isEmpty()) {
+                if (page.getTextChunks(cell).isEmpty()) {
                     continue;
                 }
 
-                List<TextBlock> textLines = TextMerger.collectByRows(TextMerger.groupByBlock(textChunksWithinRC
-                        , page.getHorizontalRulings(), page.getVerticalRulings()));
+                List<TextBlock> textLines = page.getTextRows(cell);
                 if (NoRulingTableRegionsDetectionAlgorithm.SPECIAL_STR_CONTENT_RE.matcher(textLines.get(0).getText().trim()
                         .toLowerCase()).matches()) {
                     int apostropheNum = 0;
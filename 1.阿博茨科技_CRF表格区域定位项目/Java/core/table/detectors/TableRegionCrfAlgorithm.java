@@ -546,7 +546,7 @@ public class TableRegionCrfAlgorithm {
     //再次修正表格区域
     private static Rectangle removeTextChunkAreas(ContentGroupPage tablePage,Rectangle newArea,Rectangle oldArea,List<TextChunk> newTextChunks){
         //合并表格行
-        List<TextBlock> textLines = TextMerger.collectByRows(TextMerger.groupByBlock(newTextChunks, tablePage.getHorizontalRulings(), tablePage.getVerticalRulings()));
+        List<TextBlock> textLines = tablePage.getTextRows(newTextChunks);
         if (textLines.size() < 3) {//如果新增的只多出来2行
             for(TextBlock line:textLines){
                 if(TrainDataWriter.TABLE_BEGINNING_KEYWORD_RE.matcher(line.getText()).find() || TrainDataWriter.TABLE_END_KEYWORD_RE.matcher(line.getText()).find()){
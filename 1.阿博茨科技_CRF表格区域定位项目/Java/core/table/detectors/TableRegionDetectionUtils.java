@@ -23,12 +23,10 @@ public class TableRegionDetectionUtils {
     private static final Pattern NUMBER_PREFIX_RE = Pattern.compile("(((\\s*-?)[\\d\\s\\.,-]*\\d$)|((\\s*-?)[\\d\\s\\.]+%$))");
 
     public static boolean hasLargeGapTextBlock(ContentGroupPage page, Rectangle rectangle, float gap, int minLargeGapNum) {
-        List<TextChunk> textChunks = page.getTextChunks(rectangle);
-        if (textChunks.isEmpty()) {
+        if (page.getTextChunks(rectangle).isEmpty()) {
             return false;
         }
-        List<TextBlock> textLines = TextMerger.collectByRows(TextMerger.groupByBlock(textChunks, page.getHorizontalRulings()
-                , page.getVerticalRulings()));
+        List<TextBlock> textLines = page.getTextRows(rectangle);
         return hasLargeGapTextBlock(textLines, gap, minLargeGapNum);
      }
 
@@ -227,11 +225,10 @@ public class TableRegionDetectionUtils {
 
         List<TextBlock> resultTextBlockLists = new ArrayList<>();
         if (textBlockList == null || textBlockList.isEmpty()) {
-            List<TextChunk> textChunksWithinRC = page.getMutableTextChunks(rc);
-            if (textChunksWithinRC.isEmpty()) {
+            if (page.getTextChunks(rc).isEmpty()) {
                 return new ArrayList<>();
             }
-            resultTextBlockLists = TextMerger.collectByRows(TextMerger.groupByBlock(textChunksWithinRC, page.getHorizontalRulings(), page.getVerticalRulings()));
+            resultTextBlockLists = page.getTextRows(rc);
         } else {
             for (TextBlock tb : textBlockList) {
                 if ((tb.getTop() >= rc.getTop() || FloatUtils.feq(rc.getTop(), tb.getTop(), 0.5 * page.getAvgCharHeight()))
@@ -905,13 +902,10 @@ public class TableRegionDetectionUtils {
 
     public static List<Rectangle> getColumnPositions(ContentGroupPage page, Rectangle rc, List<TextBlock> textBlocks) {
         if (textBlocks == null || textBlocks.isEmpty()) {
-            List<TextChunk> textChunks = page.getMutableTextChunks(rc);
-            if (textChunks.isEmpty()) {
+            if (page.getTextChunks(rc).isEmpty()) {
                 return new ArrayList<>();
             }
-            return BitmapPageExtractionAlgorithm.calcColumnPositions(page
-                    , TextMerger.collectByRows(TextMerger.groupByBlock(textChunks
-                            , page.getHorizontalRulings(), page.getVerticalRulings())));
+            return BitmapPageExtractionAlgorithm.calcColumnPositions(page, page.getTextRows(rc));
         } else {
             return BitmapPageExtractionAlgorithm.calcColumnPositions(page, textBlocks);
         }
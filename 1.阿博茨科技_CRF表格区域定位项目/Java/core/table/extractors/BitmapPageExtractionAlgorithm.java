@@ -1,5 +1,9 @@
 package com.abcft.pdfextract.core.table.extractors;
 
+import com.abcft.pdfextract.core.ExtractContext;
+import com.abcft.pdfextract.core.algorithm.DetectionBackend;
+import com.abcft.pdfextract.core.algorithm.DetectionLookahead;
+import com.abcft.pdfextract.core.algorithm.GrpcDetectionBackend;
 import com.abcft.pdfextract.core.model.*;
 import com.abcft.pdfextract.core.table.*;
 import com.abcft.pdfextract.core.table.detectors.RulingTableRegionsDetectionAlgorithm;
@@ -19,6 +23,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 
 import javax.imageio.ImageIO;
 import java.awt.geom.AffineTransform;
@@ -28,6 +34,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -40,7 +47,11 @@ public class BitmapPageExtractionAlgorithm implements ExtractionAlgorithm {
     private static final Logger logger = LogManager.getLogger(BitmapPageExtractionAlgorithm.class);
 
     private static final int TABLE_DETECT_DPI = 108;
+    private static final String TABLE_DETECT_LOOKAHEAD = "bitmap_tables";
     private static AlgorithmGrpcClient algClient = null;
+    private static DetectionBackend detectionBackend = null;
+    // 检测后端不支持表格检测时, 直接调用算法服务的后端
+    private static DetectionBackend clientBackend = null;
     private static final RulingTableRegionsDetectionAlgorithm RULING_TABLE_DETECTOR = new RulingTableRegionsDetectionAlgorithm();
     private static final CellFillAlgorithm CELL_FILL_ALGORITHM = new CellFillAlgorithm();
 
@@ -61,6 +72,18 @@ public class BitmapPageExtractionAlgorithm implements ExtractionAlgorithm {
 
     public static void setAlgorithmGrpcClient(AlgorithmGrpcClient client) {
         algClient = client;
+        clientBackend = client != null ? new GrpcDetectionBackend(client) : null;
+        detectionBackend = clientBackend;
+    }
+
+    /**
+     * 设置位图表格检测使用的后端, 表格解析和分类仍然使用 {@link #setAlgorithmGrpcClient} 设置的服务。
+     * 后端不支持表格检测 ({@link DetectionBackend#canDetectObjects()}) 时, 表格检测也直接调用该服务。
+     * 开启位图表格检测 ({@link TableExtractParameters#useBitmapPageFallback}) 时每个页面都要检测,
+     * 处理一个页面时会同时提交后面页面的检测请求, 见 {@link DetectionLookahead}。
+     */
+    public static void setDetectionBackend(DetectionBackend backend) {
+        detectionBackend = backend;
     }
 
     public static AlgorithmGrpcClient getAlgorithmGrpcClient() {
@@ -128,16 +151,10 @@ public class BitmapPageExtractionAlgorithm implements ExtractionAlgorithm {
             return;
         }
 
-        BufferedImage pageImage = null;
-        try {
-            pageImage = DebugHelper.getOneShotPageImage(page.getPDPage(), TABLE_DETECT_DPI);
-        } catch (IOException e) {
-            logger.warn("can't getOneShotPageImage");
-        }
-        if (pageImage == null) {
+        List<ImageDetectResult> imgRects = detectTables(page);
+        if (imgRects == null) {
             return;
         }
-        List<ImageDetectResult> imgRects = detectTables(pageImage);
         TableDebugUtils.writeImage(page,
                 imgRects.stream()
                         .map(t->t.getPageRect(DebugHelper.DEFAULT_DPI / (float) TABLE_DETECT_DPI))
@@ -2681,21 +2698,50 @@ public class BitmapPageExtractionAlgorithm implements ExtractionAlgorithm {
         }
     }
 
-    private List<ImageDetectResult> detectTables(BufferedImage pageImage) {
+    /**
+     * 检测页面中的表格区域, 页面不能渲染时返回 null
+     */
+    private List<ImageDetectResult> detectTables(ContentGroupPage page) {
+        DetectionBackend backend = detectionBackend;
+        if (backend == null || !backend.canDetectObjects()) {
+            // 后端不支持表格检测时直接调用算法服务
+            backend = clientBackend;
+        }
+        DetectionBackend tableBackend = backend;
+        CompletableFuture<List<ImageDetectResult>> future;
+        TableExtractParameters params = page.getParams();
+        ExtractContext<?> context = params != null ? params.context : null;
+        if (params != null && params.useBitmapPageFallback && context != null
+                && context.getNativeDocument() instanceof PDDocument) {
+            // 每个页面都会检测, 同时提交后面页面的请求
+            PDDocument document = (PDDocument) context.getNativeDocument();
+            int pageIndex = page.getPageNumber() - 1;
+            int lastPageIndex = Math.min(params.endPageIndex, document.getNumberOfPages() - 1);
+            DetectionLookahead<List<ImageDetectResult>> lookahead = DetectionLookahead.of(context, TABLE_DETECT_LOOKAHEAD);
+            future = lookahead.take(pageIndex, lastPageIndex, index -> submitDetectTables(tableBackend,
+                    index == pageIndex ? page.getPDPage() : document.getPage(index)));
+        } else {
+            future = submitDetectTables(tableBackend, page.getPDPage());
+        }
+        if (future == null) {
+            return null;
+        }
+
         List<ImageDetectResult> rectangles = new ArrayList<>();
-        ByteString byteString;
+        List<ImageDetectResult> results;
         try {
-            byteString = getFormatedImageData(pageImage);
-        } catch (IOException e) {
-            logger.warn("Failed to get image data for page", e);
+            results = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return rectangles;
+        } catch (Exception e) {
+            logger.warn("Failed to detect tables for page", e);
             return rectangles;
         }
-        if (byteString == null) {
-            logger.warn("Failed to get image data for page");
+        if (results == null) {
             return rectangles;
         }
 
-        List<ImageDetectResult> results = algClient.imageDetect(byteString);
         for (ImageDetectResult r: results) {
             if (ImageType.imageTypeIsTable(r.type)) {
                 rectangles.add(r);
@@ -2704,6 +2750,22 @@ public class BitmapPageExtractionAlgorithm implements ExtractionAlgorithm {
         return rectangles;
     }
 
+    /**
+     * 在当前线程渲染页面, 提交表格检测请求, 页面不能渲染时返回 null
+     */
+    private static CompletableFuture<List<ImageDetectResult>> submitDetectTables(DetectionBackend backend, PDPage pdPage) {
+        BufferedImage pageImage = null;
+        try {
+            pageImage = DebugHelper.getOneShotPageImage(pdPage, TABLE_DETECT_DPI);
+        } catch (IOException e) {
+            logger.warn("can't getOneShotPageImage");
+        }
+        if (pageImage == null) {
+            return null;
+        }
+        return backend.detectObjects(pageImage);
+    }
+
     private static boolean canExtra(ContentGroupPage page, Rectangle detectTable, List<Table> tables) {
         List<Table> intersectTable = tables.stream().filter(t->t.intersects(detectTable)).collect(Collectors.toList());
         if (intersectTable.isEmpty()) {
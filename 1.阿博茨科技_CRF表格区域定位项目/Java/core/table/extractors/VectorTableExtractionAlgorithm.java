@@ -22,16 +22,14 @@ import com.abcft.pdfextract.core.table.detectors.ClipAreasTableRegionDetectionAl
 import com.abcft.pdfextract.core.table.detectors.RulingTableRegionsDetectionAlgorithm;
 import com.abcft.pdfextract.core.table.detectors.StructureTableRegionDetectionAlgorithm;
 import com.abcft.pdfextract.core.table.detectors.TableRegionCrfAlgorithm;
+import com.abcft.pdfextract.core.util.ExtractMetrics;
+import com.abcft.pdfextract.core.util.LineFeatures;
 import com.abcft.pdfextract.core.util.TrainDataWriter;
 import com.abcft.pdfextract.util.FloatUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.math3.util.FastMath;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.tensorflow.SavedModelBundle;
-import org.tensorflow.Session;
-import org.tensorflow.Tensor;
-import org.tensorflow.example.Example;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -51,8 +49,6 @@ public class VectorTableExtractionAlgorithm implements ExtractionAlgorithm {
     private static final Logger logger = LogManager.getLogger(VectorTableExtractionAlgorithm.class);
 
     public static final String ALGORITHM_NAME = "Vector";
-    public static float crfTime = 0;
-    public static float vectorTime = 0;
     // 算法发布日期。
     private static final String ALGORITHM_DATE = "20180716";
 
@@ -158,7 +154,12 @@ public class VectorTableExtractionAlgorithm implements ExtractionAlgorithm {
 
     private void extractTables(Page page) {
         logger.info("当前处理的文件:{},页数:{}",page.getParams().path,page.getPageNumber());
-        long startTime = System.currentTimeMillis();
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_TABLE_VECTOR)) {
+            extractTablesInternal(page);
+        }
+    }
+
+    private void extractTablesInternal(Page page) {
         if (pageCells == null) {
             pageCells = getPageCells(page, pagePara);  //调用之前调用isHit(Page page)
         }
@@ -186,9 +187,9 @@ public class VectorTableExtractionAlgorithm implements ExtractionAlgorithm {
 
         //CRF模型表格解析
         if (page.params.useCRFModel) {
-            long startTime2 = System.currentTimeMillis();
-            extractCRFTables((ContentGroupPage) page);
-            crfTime+=System.currentTimeMillis() - startTime2;
+            try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_TABLE_CRF)) {
+                extractCRFTables((ContentGroupPage) page);
+            }
             //return;
         }
 
@@ -217,9 +218,6 @@ public class VectorTableExtractionAlgorithm implements ExtractionAlgorithm {
             //对CRF模型结果进行融合
             //Table.combinaCrfAndVectorResults((ContentGroupPage)page,this.crfLineTables,this.crfNonLinesTables,this.lineTables,this.nonLinesTables);
         }
-        vectorTime+=System.currentTimeMillis() - startTime;
-        logger.info("CRF单次页面耗时: {} ms", crfTime);
-        logger.info("矢量单次页面耗时: {} ms", vectorTime);
     }
 
     /**
@@ -367,10 +365,6 @@ public class VectorTableExtractionAlgorithm implements ExtractionAlgorithm {
      */
     private void extractCRFTables(ContentGroupPage tablePage) {
         //logger.info("当前处理的文件:{},页数:{}",tablePage.getParams().path,tablePage.getPageNumber());
-        long startTime = System.currentTimeMillis();
-        SavedModelBundle savedModelBundle = TensorflowManager.INSTANCE.getSavedModelBundle(TensorflowManager.LINE_CRF_TABLE);
-        Session session = savedModelBundle.session();
-        System.out.println(System.currentTimeMillis()-startTime);
         List<Rectangle> layoutAnalysisRectList = tablePage.getTableLayoutAnalysis();
 
         List<TableRegion> crfTableRegions = new ArrayList<>();
@@ -383,16 +377,11 @@ public class VectorTableExtractionAlgorithm implements ExtractionAlgorithm {
         if (lineInfos.isEmpty()) {
             return;
         }
-        Example example = TrainDataWriter.buildExample(lineInfos);
-        Tensor exampleTensor = Tensor.create(example.toByteArray());
-
-        Tensor<?> crfTags = session.runner()
-                .feed("serialized_example", exampleTensor)
-                .fetch("crf_tags")
-                .run()
-                .get(0);
-        int length = (int) crfTags.shape()[1];
-        int[] tags = crfTags.copyTo(new int[1][length])[0];
+        int[] tags;
+        try (ExtractMetrics.Scope ignored = ExtractMetrics.timeModel(TensorflowManager.LINE_CRF_TABLE)) {
+            tags = LineFeatures.runCrfTags(TensorflowManager.LINE_CRF_TABLE, lineInfos);
+        }
+        int length = tags.length;
         if (length == 0 || length != lineInfos.size()) {
             return;
         }
@@ -454,7 +443,6 @@ public class VectorTableExtractionAlgorithm implements ExtractionAlgorithm {
         //为避免影响后续结构化流程,此处予以清空
         this.lineTables.clear();
         this.nonLinesTables.clear();
-        //logger.info("单次页面耗时: {} ms", crfTime);
     }
 
     /**
@@ -253,6 +253,8 @@ public final class DebugHelper {
 
     private static final class PDPageImageItem {
         private WeakReference<BufferedImage> cachedPageImageRef;
+        // 一次性图像使用的位图, 释放时归还
+        private RasterPool.Lease oneShotLease;
         private final PDPage page;
         private boolean oneShot;
         private int dpi;
@@ -278,6 +280,7 @@ public final class DebugHelper {
                 pageImage = null;
             }
             if (null == pageImage || requiredDpi > dpi) {
+                releaseLease();
                 if (oneShot) {
                     pageImage = renderPageImage(requiredDpi / (float)DEFAULT_DPI);
                 } else {
@@ -292,6 +295,8 @@ public final class DebugHelper {
                 Graphics2D g = newImage.createGraphics();
                 g.drawImage(pageImage, 0, 0, null);
                 g.dispose();
+                releaseLease();
+                pageImage = newImage;
                 this.oneShot = false;
                 cachedPageImageRef = new WeakReference<>(pageImage);
             }
@@ -326,18 +331,18 @@ public final class DebugHelper {
                 int height = (int) Math.ceil(cropbBox.getHeight() * scale);
                 int rotationAngle = page.getRotation();
 
-                BufferedImage image;
                 // swap width and height
                 if (rotationAngle == 90 || rotationAngle == 270)
                 {
                     //noinspection SuspiciousNameCombination
-                    image =  GraphicsUtil.createBufferedImageRGB(height, width);
+                    oneShotLease = GraphicsUtil.leaseImageRGB(height, width);
                 }
                 else
                 {
-                    image = GraphicsUtil.createBufferedImageRGB(width, height);
+                    oneShotLease = GraphicsUtil.leaseImageRGB(width, height);
                 }
 
+                BufferedImage image = oneShotLease.getImage();
                 renderer.renderToImage(page, image, scale, ImageType.RGB);
                 return image;
             } finally {
@@ -362,8 +367,16 @@ public final class DebugHelper {
                 pageImageRef.clear();
                 cachedPageImageRef = null;
             }
+            releaseLease();
             oneShot = false;
         }
 
+        private void releaseLease() {
+            if (oneShotLease != null) {
+                oneShotLease.close();
+                oneShotLease = null;
+            }
+        }
+
     }
 }
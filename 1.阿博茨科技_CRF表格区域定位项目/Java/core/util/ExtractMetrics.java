@@ -0,0 +1,337 @@
+package com.abcft.pdfextract.core.util;
+
+import com.google.gson.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文档级别的解析指标统计, 用来替代各个模块里面的静态计时变量。
+ * <p>
+ * 每个文档对应一个实例（见 {@link com.abcft.pdfextract.core.ExtractContext#getMetrics()}）, 解析过程中通过 {@link #bind(ExtractMetrics)}
+ * 绑定到当前线程, 深层的模块（TF 模型调用、字体修复等）使用 {@link #time(String)} / {@link #count(String)} 记录,
+ * 没有绑定时这些调用为空操作。所有统计都是线程安全的, 文档解析结束后可以通过 {@link #toJson()} 导出。
+ * <p>
+ * 用法:
+ * <pre>
+ * try (ExtractMetrics.Scope ignored = ExtractMetrics.time(ExtractMetrics.STAGE_TABLE)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class ExtractMetrics {
+
+    private static final Logger logger = LogManager.getLogger(ExtractMetrics.class);
+
+    public static final String STAGE_CONTENT_GROUP = "content_group";
+    public static final String STAGE_CONTENT = "content";
+    public static final String STAGE_CHART = "chart";
+    public static final String STAGE_TABLE = "table";
+    public static final String STAGE_TABLE_CRF = "table.crf";
+    public static final String STAGE_TABLE_VECTOR = "table.vector";
+    public static final String STAGE_CHART_DETECT = "chart.detect";
+    public static final String STAGE_CHART_CLASSIFY = "chart.classify";
+    public static final String STAGE_FONT_FIX = "font.fix";
+    public static final String STAGE_TF_PREFIX = "tf.";
+
+    private static final ThreadLocal<ExtractMetrics> CURRENT = new ThreadLocal<>();
+    private static final Scope NOOP_SCOPE = new Scope(null);
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = initAllocationSupport();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private static boolean initAllocationSupport() {
+        if (!(THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+        try {
+            if (!bean.isThreadAllocatedMemorySupported()) {
+                return false;
+            }
+            if (!bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            logger.warn("Thread allocation metrics unavailable", e);
+            return false;
+        }
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (!ALLOCATION_SUPPORTED) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 将指定的统计对象绑定到当前线程。
+     *
+     * @param metrics 要绑定的统计对象, 传入 {@code null} 相当于 {@link #unbind()}。
+     * @return 之前绑定的对象, 可能为 {@code null}, 方便调用者恢复。
+     */
+    public static ExtractMetrics bind(ExtractMetrics metrics) {
+        ExtractMetrics previous = CURRENT.get();
+        if (metrics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(metrics);
+        }
+        return previous;
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 获取当前线程绑定的统计对象。
+     *
+     * @return 当前的统计对象, 没有绑定时返回 {@code null}。
+     */
+    public static ExtractMetrics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在当前线程绑定的统计对象上开始计时一个阶段。
+     *
+     * @param stage 阶段名称。
+     * @return 计时范围, 关闭时记录耗时和内存分配; 未绑定时返回空操作的范围。
+     */
+    public static Scope time(String stage) {
+        ExtractMetrics metrics = CURRENT.get();
+        if (metrics == null) {
+            return NOOP_SCOPE;
+        }
+        return metrics.startScope(stage);
+    }
+
+    /**
+     * 对 TF 模型调用计时, 阶段名为 {@code tf.<model>}。
+     */
+    public static Scope timeModel(String modelName) {
+        return time(STAGE_TF_PREFIX + modelName);
+    }
+
+    public static void count(String name) {
+        count(name, 1);
+    }
+
+    public static void count(String name, long delta) {
+        ExtractMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.increment(name, delta);
+        }
+    }
+
+    public Scope startScope(String stage) {
+        return new Scope(getTimer(stage));
+    }
+
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public long getCount(String name) {
+        LongAdder adder = counters.get(name);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    public Timer getTimer(String stage) {
+        return timers.computeIfAbsent(stage, Timer::new);
+    }
+
+    /**
+     * 获取某个阶段累计的耗时。
+     */
+    public long getTotalTime(String stage, TimeUnit unit) {
+        Timer timer = timers.get(stage);
+        return timer != null ? unit.convert(timer.totalNanos.sum(), TimeUnit.NANOSECONDS) : 0;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        JsonObject stages = new JsonObject();
+        for (Timer timer : new TreeMap<>(timers).values()) {
+            stages.add(timer.name, timer.toJson());
+        }
+        json.add("stages", stages);
+        JsonObject counts = new JsonObject();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            counts.addProperty(entry.getKey(), entry.getValue().sum());
+        }
+        json.add("counters", counts);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+
+    /**
+     * 一个阶段的计时范围。不是线程安全的, 必须在开始计时的线程里关闭。
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Timer timer;
+        private final long startNanos;
+        private final long startAllocated;
+
+        private Scope(Timer timer) {
+            this.timer = timer;
+            if (timer != null) {
+                this.startAllocated = currentThreadAllocatedBytes();
+                this.startNanos = System.nanoTime();
+            } else {
+                this.startAllocated = 0;
+                this.startNanos = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (timer == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            long allocated = currentThreadAllocatedBytes() - startAllocated;
+            timer.record(elapsed, allocated);
+        }
+    }
+
+    /**
+     * 单个阶段的统计: 调用次数、总耗时、内存分配和耗时分布。
+     */
+    public static final class Timer {
+
+        private final String name;
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final Histogram histogram = new Histogram();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        public void record(long nanos, long allocated) {
+            totalNanos.add(nanos);
+            if (allocated > 0) {
+                allocatedBytes.add(allocated);
+            }
+            histogram.record(nanos);
+        }
+
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", histogram.getCount());
+            json.addProperty("total_ms", TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()));
+            json.addProperty("p50_ms", histogram.getValueAtPercentile(50) / 1e6);
+            json.addProperty("p90_ms", histogram.getValueAtPercentile(90) / 1e6);
+            json.addProperty("p99_ms", histogram.getValueAtPercentile(99) / 1e6);
+            json.addProperty("max_ms", histogram.getMax() / 1e6);
+            if (ALLOCATION_SUPPORTED) {
+                json.addProperty("allocated_bytes", allocatedBytes.sum());
+            }
+            return json;
+        }
+    }
+
+    /**
+     * 类似 HdrHistogram 的对数-线性直方图: 每个 2 的幂区间再等分成 {@link #SUB_BUCKETS} 份,
+     * 相对误差不超过 1/{@link #SUB_BUCKETS}, 记录操作无锁且不分配内存。
+     */
+    public static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder totalCount = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) Math.max(value, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> exponent) - SUB_BUCKETS;
+            return (exponent + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBoundOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS - 1;
+            int subBucket = index % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << exponent) - 1;
+        }
+
+        public void record(long value) {
+            counts.incrementAndGet(indexOf(value));
+            totalCount.increment();
+            if (value > max.get()) {
+                max.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        public long getCount() {
+            return totalCount.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public long getValueAtPercentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= Math.max(target, 1)) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+}
@@ -24,7 +24,6 @@ import javax.imageio.*;
 import javax.imageio.metadata.IIOInvalidTreeException;
 import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.metadata.IIOMetadataNode;
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
@@ -34,7 +33,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Iterator;
 
 /**
  * Utility class for graphics.
@@ -48,54 +46,35 @@ public class GraphicsUtil {
     private static final Object SYNC_ROOT = new Object();
     // 允许的距离误差
     public static final double DELTA = 0.1;
+    public static final String IMAGE_ENCODER_PROPERTY = "pdfextract.image.encoder";
 
-    private static final int IMAGE_SIZE = 2048;
-
-    private static ThreadLocal<BufferedImage> SHARED_BUFFERED_IMAGE_RGB = ThreadLocal.withInitial(
-            () -> new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB)
-    );
-
+    private static volatile ImageEncoder imageEncoder;
 
     /**
-     * Creates a {@linkplain BufferedImage} with {@linkplain BufferedImage#TYPE_INT_RGB}.
+     * Leases a {@linkplain BufferedImage} with {@linkplain BufferedImage#TYPE_INT_RGB} from {@link RasterPool#getDefault()}.
      * <p>
-     * If {@code width} or {@code height} is too big to use shared one,
-     *  {@code null} will be returned.
+     * The image belongs to the caller until the lease is closed, its content is undefined and should be cleared first.
      *
      * @param width the width of the image.
      * @param height the height of the image.
-     * @return a {@linkplain BufferedImage} or {@code null} if size is too big.
+     * @return the lease of the image.
      */
-    public static BufferedImage getBufferedImageRGB(int width, int height) {
-        BufferedImage largeImage = SHARED_BUFFERED_IMAGE_RGB.get();
-        if (width > largeImage.getWidth() || height > largeImage.getHeight()) {
-            logger.warn(String.format("getBufferedImageRGB(%d, %d) failed, width or height too large", width, height));
-            return null;
-        }
-        return largeImage.getSubimage(0, 0, width, height);
+    public static RasterPool.Lease leaseImageRGB(int width, int height) {
+        return RasterPool.getDefault().lease(width, height, BufferedImage.TYPE_INT_RGB);
     }
 
     /**
-     * Creates a {@linkplain BufferedImage} with {@linkplain BufferedImage#TYPE_INT_RGB}, use shared memory is possible.
-     * <p>
-     * If {@code width} or {@code height} is too big to use shared one,
-     *  a stand-alone {@linkplain BufferedImage} will be created.
+     * Leases a {@linkplain BufferedImage} with {@linkplain BufferedImage#TYPE_BYTE_GRAY} from {@link RasterPool#getDefault()}.
      *
      * @param width the width of the image.
      * @param height the height of the image.
-     * @return a {@linkplain BufferedImage}.
+     * @return the lease of the image.
+     * @see #leaseImageRGB(int, int)
      */
-    public static BufferedImage createBufferedImageRGB(int width, int height) {
-        BufferedImage largeImage = SHARED_BUFFERED_IMAGE_RGB.get();
-        if (width > largeImage.getWidth() || height > largeImage.getHeight()) {
-            logger.warn(String.format("Created large BufferedImage(%dx%d).", width, height));
-            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        }
-        return largeImage.getSubimage(0, 0, width, height);
+    public static RasterPool.Lease leaseImageGray(int width, int height) {
+        return RasterPool.getDefault().lease(width, height, BufferedImage.TYPE_BYTE_GRAY);
     }
 
-
-
     /**
      * Writes a buffered image to a file using the given image format. See
      * {@link #writeImage(BufferedImage image, String formatName,
@@ -199,114 +178,70 @@ public class GraphicsUtil {
      * @return true if the image file was produced, false if there was an error.
      * @throws IOException if an I/O error occurs
      */
-    @SuppressWarnings("Duplicates")
     public static boolean writeImage(BufferedImage image, String formatName, OutputStream output,
                                      int dpi, float quality) throws IOException
     {
-        ImageOutputStream imageOutput = null;
-        ImageWriter writer = null;
-        try
+        return getImageEncoder().write(image, formatName, output, dpi, quality);
+    }
+
+    /**
+     * Encodes a buffered image with the current {@link ImageEncoder}, without resolution metadata.
+     * With the default {@link ImageIOEncoder} the bytes are the same as
+     * {@link ImageIO#write(java.awt.image.RenderedImage, String, OutputStream)}; a {@link PngEncoder} selected
+     * with {@value #IMAGE_ENCODER_PROPERTY} keeps the pixels but uses its own compression settings.
+     *
+     * @param image the image to be written
+     * @param formatName the target format (ex. "png")
+     * @param output the output stream to be used for writing, not closed
+     * @return true if the image was written, false if the format is not supported.
+     * @throws IOException if an I/O error occurs
+     */
+    public static boolean encodeImage(BufferedImage image, String formatName, OutputStream output)
+            throws IOException
+    {
+        return getImageEncoder().write(image, formatName, output, 0, -1f);
+    }
+
+    /**
+     * Returns the encoder used by {@code writeImage} and {@code encodeImage}.
+     * <p>
+     * Defaults to {@link ImageIOEncoder}, which produces the same bytes as {@link ImageIO#write}. Set the system
+     * property {@value #IMAGE_ENCODER_PROPERTY} to {@code png} to use {@link PngEncoder#fromSystemProperties()};
+     * the decoded pixels stay the same, but the PNG bytes change.
+     *
+     * @return the image encoder.
+     */
+    public static ImageEncoder getImageEncoder()
+    {
+        if (imageEncoder == null)
         {
-            // find suitable image writer
-            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
-            ImageWriteParam param = null;
-            IIOMetadata metadata = null;
-            // Loop until we get the best driver, i.e. one that supports
-            // setting dpi in the standard metadata format; however we'd also
-            // accept a driver that can't, if a better one can't be found
-            while (writers.hasNext())
+            synchronized (SYNC_ROOT)
             {
-                if (writer != null)
-                {
-                    writer.dispose();
-                }
-                writer = writers.next();
-                if (writer != null)
+                if (imageEncoder == null)
                 {
-                    param = writer.getDefaultWriteParam();
-                    metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
-                    if (metadata != null
-                            && !metadata.isReadOnly()
-                            && metadata.isStandardMetadataFormatSupported())
+                    if ("png".equalsIgnoreCase(System.getProperty(IMAGE_ENCODER_PROPERTY, "imageio")))
                     {
-                        break;
+                        imageEncoder = PngEncoder.fromSystemProperties();
+                    }
+                    else
+                    {
+                        imageEncoder = new ImageIOEncoder();
                     }
                 }
             }
-            if (writer == null)
-            {
-                logger.error("No ImageWriter found for '" + formatName + "' format");
-                StringBuilder sb = new StringBuilder();
-                String[] writerFormatNames = ImageIO.getWriterFormatNames();
-                for (String fmt : writerFormatNames)
-                {
-                    sb.append(fmt);
-                    sb.append(' ');
-                }
-                logger.error("Supported formats: " + sb);
-                return false;
-            }
-
-            // compression
-            if (param != null && param.canWriteCompressed())
-            {
-                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                if (formatName.toLowerCase().startsWith("tif"))
-                {
-                    // TIFF compression
-                    tiffSetCompressionType(param, image);
-                }
-                else
-                {
-                    param.setCompressionType(param.getCompressionTypes()[0]);
-                    param.setCompressionQuality(quality);
-                }
-            }
-
-            if (formatName.toLowerCase().startsWith("tif"))
-            {
-                // TIFF metadata
-                tiffUpdateMetadata(metadata, image, dpi);
-            }
-            else if ("jpeg".equals(formatName.toLowerCase())
-                    || "jpg".equals(formatName.toLowerCase()))
-            {
-                // This segment must be run before other meta operations,
-                // or else "IIOInvalidTreeException: Invalid node: app0JFIF"
-                // The other (general) "meta" methods may not be used, because
-                // this will break the reading of the meta data in tests
-                jpegUpdateMetadata(metadata, dpi);
-            }
-            else
-            {
-                // write metadata is possible
-                if (metadata != null
-                        && !metadata.isReadOnly()
-                        && metadata.isStandardMetadataFormatSupported())
-                {
-                    setDPI(metadata, dpi, formatName);
-                }
-            }
-
-            // write
-            imageOutput = ImageIO.createImageOutputStream(output);
-            writer.setOutput(imageOutput);
-            writer.write(null, new IIOImage(image, null, metadata), param);
         }
-        finally
-        {
-            if (writer != null)
-            {
-                writer.dispose();
-            }
-            if (imageOutput != null)
-            {
-                imageOutput.close();
-            }
-        }
-        return true;
+        return imageEncoder;
     }
 
+    /**
+     * Replaces the encoder used by {@code writeImage} and {@code encodeImage}.
+     *
+     * @param encoder the encoder, must be thread-safe; {@code null} to restore the default.
+     */
+    public static void setImageEncoder(ImageEncoder encoder)
+    {
+        imageEncoder = encoder;
+    }
 
     private static final String JPEG_NATIVE_FORMAT = "javax_imageio_jpeg_image_1.0";
     private static final String STANDARD_METADATA_FORMAT = "javax_imageio_1.0";
@@ -316,7 +251,7 @@ public class GraphicsUtil {
      * @param image buffered image used to decide compression type
      * @param param ImageIO write parameter to update
      */
-    private static void tiffSetCompressionType(ImageWriteParam param, BufferedImage image)
+    static void tiffSetCompressionType(ImageWriteParam param, BufferedImage image)
     {
         // avoid error: first compression type is RLE, not optimal and incorrect for color images
         // TODO expose this choice to the user?
@@ -461,7 +396,7 @@ public class GraphicsUtil {
      * @throws IIOInvalidTreeException if something goes wrong
      */
     @SuppressWarnings("Duplicates")
-    private static void jpegUpdateMetadata(IIOMetadata metadata, int dpi) throws IIOInvalidTreeException
+    static void jpegUpdateMetadata(IIOMetadata metadata, int dpi) throws IIOInvalidTreeException
     {
         //MetaUtil.debugLogMetadata(metadata, MetaUtil.JPEG_NATIVE_FORMAT);
 
@@ -517,7 +452,7 @@ public class GraphicsUtil {
 
 
     // sets the DPI metadata
-    private static void setDPI(IIOMetadata metadata, int dpi, String formatName)
+    static void setDPI(IIOMetadata metadata, int dpi, String formatName)
             throws IIOInvalidTreeException
     {
         IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(STANDARD_METADATA_FORMAT);
@@ -651,7 +586,7 @@ public class GraphicsUtil {
         if (paint instanceof Color) {
             return (Color) paint;
         }
-        BufferedImage image = getBufferedImageRGB(1, 1);
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
         Graphics2D graphics = image.createGraphics();
         graphics.setPaint(paint);
         graphics.scale(10, 10);
@@ -671,7 +606,7 @@ public class GraphicsUtil {
         Paint paint = shading.toPaint(ctm);
 
         Rectangle2D clip = graphicsState.getCurrentClippingPath().getBounds2D();
-        BufferedImage image = getBufferedImageRGB(1, 1);
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
         Graphics2D graphics = image.createGraphics();
         graphics.setPaint(paint);
         graphics.translate(-clip.getMinX(), -clip.getMinY());
@@ -0,0 +1,25 @@
+package com.abcft.pdfextract.core.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 图片编码器, 通过 {@link GraphicsUtil#setImageEncoder(ImageEncoder)} 替换, 需要线程安全。
+ */
+public interface ImageEncoder {
+
+    /**
+     * 编码图片并写入输出流, 不关闭输出流。
+     *
+     * @param image 图片
+     * @param formatName 图片格式 (png, jpg 等)
+     * @param output 输出流
+     * @param dpi 写入元数据的分辨率, 小于等于 0 时不写入
+     * @param quality 有损格式的压缩质量 (0 - 1.0), 小于 0 时使用默认值
+     * @return 是否支持该格式并写入成功
+     * @throws IOException 写入失败
+     */
+    boolean write(BufferedImage image, String formatName, OutputStream output, int dpi, float quality)
+            throws IOException;
+}
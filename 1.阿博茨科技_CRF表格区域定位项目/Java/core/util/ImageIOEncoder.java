@@ -0,0 +1,127 @@
+package com.abcft.pdfextract.core.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.*;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 使用 ImageIO 的编码器, 支持 ImageIO 能写的所有格式。
+ * <p>
+ * 每种格式和图片类型只查找一次 ImageWriter (缓存的是 {@link ImageWriterSpi}, 每次写入创建新的 writer),
+ * 输出使用内存缓存, 不创建临时文件。
+ */
+public final class ImageIOEncoder implements ImageEncoder {
+
+    private static final Logger logger = LogManager.getLogger(ImageIOEncoder.class);
+
+    private final ConcurrentHashMap<String, Optional<ImageWriterSpi>> providers = new ConcurrentHashMap<>();
+
+    /**
+     * 写入图片, 压缩方式和元数据见 {@link GraphicsUtil#writeImage(BufferedImage, String, OutputStream, int, float)}。
+     */
+    @Override
+    public boolean write(BufferedImage image, String formatName, OutputStream output, int dpi, float quality)
+            throws IOException {
+        ImageWriterSpi provider = providers.computeIfAbsent(formatName.toLowerCase() + "/" + image.getType(),
+                key -> Optional.ofNullable(findProvider(image, formatName))).orElse(null);
+        if (provider == null) {
+            logger.error("No ImageWriter found for '" + formatName + "' format");
+            StringBuilder sb = new StringBuilder();
+            String[] writerFormatNames = ImageIO.getWriterFormatNames();
+            for (String fmt : writerFormatNames) {
+                sb.append(fmt);
+                sb.append(' ');
+            }
+            logger.error("Supported formats: " + sb);
+            return false;
+        }
+
+        ImageWriter writer = provider.createWriterInstance();
+        ImageOutputStream imageOutput = null;
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+            String format = formatName.toLowerCase();
+
+            // compression
+            if (param != null && param.canWriteCompressed()) {
+                if (format.startsWith("tif")) {
+                    // TIFF compression
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    GraphicsUtil.tiffSetCompressionType(param, image);
+                } else if (quality >= 0) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                    param.setCompressionQuality(quality);
+                }
+            }
+
+            if (dpi > 0 && metadata != null) {
+                if (format.startsWith("tif")) {
+                    // TIFF metadata
+                    GraphicsUtil.tiffUpdateMetadata(metadata, image, dpi);
+                } else if ("jpeg".equals(format) || "jpg".equals(format)) {
+                    // This segment must be run before other meta operations,
+                    // or else "IIOInvalidTreeException: Invalid node: app0JFIF"
+                    GraphicsUtil.jpegUpdateMetadata(metadata, dpi);
+                } else if (!metadata.isReadOnly() && metadata.isStandardMetadataFormatSupported()) {
+                    GraphicsUtil.setDPI(metadata, dpi, formatName);
+                }
+            }
+
+            // write
+            imageOutput = new MemoryCacheImageOutputStream(output);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+            if (imageOutput != null) {
+                imageOutput.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 找到最合适的 writer: 支持在标准元数据中设置 dpi 的优先, 都不支持时使用最后一个; 不能编码该图片类型的 writer 会被跳过
+     */
+    private static ImageWriterSpi findProvider(BufferedImage image, String formatName) {
+        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        ImageWriter writer = null;
+        while (writers.hasNext()) {
+            ImageWriter next = writers.next();
+            if (next == null || next.getOriginatingProvider() == null
+                    || !next.getOriginatingProvider().canEncodeImage(type)) {
+                continue;
+            }
+            if (writer != null) {
+                writer.dispose();
+            }
+            writer = next;
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            IIOMetadata metadata = writer.getDefaultImageMetadata(type, param);
+            if (metadata != null
+                    && !metadata.isReadOnly()
+                    && metadata.isStandardMetadataFormatSupported()) {
+                break;
+            }
+        }
+        if (writer == null) {
+            return null;
+        }
+        writer.dispose();
+        return writer.getOriginatingProvider();
+    }
+}
@@ -0,0 +1,278 @@
+package com.abcft.pdfextract.core.util;
+
+import com.abcft.pdfextract.core.model.InferenceService;
+import com.abcft.pdfextract.core.model.TensorflowManager;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Tensor;
+
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CRF 模型 ({@link TensorflowManager#PARAGRAPH}, {@link TensorflowManager#LINE_CRF}, {@link TensorflowManager#LINE_CRF_TABLE})
+ * 的稠密特征输入。
+ * <p>
+ * 新导出的模型除了 serialized_example 之外还接受 dense_lines [1, 行数, 列数] 和 dense_line_count [1] (use_dense 为 true 时使用),
+ * 列顺序保存在常量节点 line_feature_keys 中 (逗号分隔的特征名称, pattern_match_result 占 {@value #PATTERN_MATCH_SIZE} 列)。
+ * 这里按这个顺序直接把 {@link TrainDataWriter.LineInfo} 的字段写入 {@link FloatBuffer}, 不用构造和序列化 tf.Example,
+ * 写入的值和 {@link TrainDataWriter#buildExample(List)} 经过模型解析后的值一致, 所以预测的 tag 也一致。
+ * 没有这些节点的旧模型继续使用 tf.Example。
+ */
+public final class LineFeatures {
+
+    private static final Logger logger = LogManager.getLogger(LineFeatures.class);
+
+    private static final String LINE_FEATURE_KEYS = "line_feature_keys";
+    private static final int PATTERN_MATCH_SIZE = 9;
+
+    /**
+     * 单列特征的取值
+     */
+    @FunctionalInterface
+    private interface Column {
+        float get(TrainDataWriter.LineInfo info);
+    }
+
+    // 和 TrainDataWriter.buildExample 中的特征名称一致, 整数和布尔值按模型中的 tf.to_float 转换
+    private static final Map<String, Column> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("text_length", info -> info.textLength);
+        COLUMNS.put("avg_text_gap", info -> info.avgTextGap);
+        COLUMNS.put("font_size", info -> info.fontSize);
+        COLUMNS.put("bold", info -> info.bold ? 1 : 0);
+        COLUMNS.put("italic", info -> info.italic ? 1 : 0);
+        COLUMNS.put("column_count", info -> info.columnCount);
+        COLUMNS.put("left", info -> info.left);
+        COLUMNS.put("top", info -> info.top);
+        COLUMNS.put("width", info -> info.width);
+        COLUMNS.put("height", info -> info.height);
+        COLUMNS.put("left_diff", info -> info.leftDiff);
+        COLUMNS.put("right_diff", info -> info.rightDiff);
+        COLUMNS.put("prev_left_diff", info -> info.prevLeftDiff);
+        COLUMNS.put("prev_right_diff", info -> info.prevRightDiff);
+        COLUMNS.put("prev_top_diff", info -> info.prevTopDiff);
+        COLUMNS.put("prev_bottom_diff", info -> info.prevBottomDiff);
+        COLUMNS.put("next_left_diff", info -> info.nextLeftDiff);
+        COLUMNS.put("next_right_diff", info -> info.nextRightDiff);
+        COLUMNS.put("next_top_diff", info -> info.nextTopDiff);
+        COLUMNS.put("next_bottom_diff", info -> info.nextBottomDiff);
+        COLUMNS.put("has_top_ruling", info -> info.hasTopRuling ? 1 : 0);
+        COLUMNS.put("has_bottom_ruling", info -> info.hasBottomRuling ? 1 : 0);
+        COLUMNS.put("number_num", info -> info.numberNum);
+        COLUMNS.put("number_ratio", info -> info.numberRatio);
+        COLUMNS.put("has_fill_area", info -> info.hasFillArea ? 1 : 0);
+        COLUMNS.put("has_ruling_region", info -> info.hasRulingRegion ? 1 : 0);
+        COLUMNS.put("left_layout", info -> info.leftLayout);
+        COLUMNS.put("top_layout", info -> info.topLayout);
+        COLUMNS.put("width_layout", info -> info.widthLayout);
+        COLUMNS.put("height_layout", info -> info.heightLayout);
+        COLUMNS.put("left_diff_layout", info -> info.leftDiffLayout);
+        COLUMNS.put("right_diff_layout", info -> info.rightDiffLayout);
+        COLUMNS.put("pre_left_diff_layout", info -> info.prevLeftDiffLayout);
+        COLUMNS.put("pre_right_diff_layout", info -> info.prevRightDiffLayout);
+        COLUMNS.put("pre_top_diff_layout", info -> info.prevTopDiffLayout);
+        COLUMNS.put("pre_bottom_diff_layout", info -> info.prevBottomDiffLayout);
+        COLUMNS.put("next_left_diff_layout", info -> info.nextLeftDiffLayout);
+        COLUMNS.put("next_right_diff_layout", info -> info.nextRightDiffLayout);
+        COLUMNS.put("next_top_diff_layout", info -> info.nextTopDiffLayout);
+        COLUMNS.put("next_bottom_diff_layout", info -> info.nextBottomDiffLayout);
+        COLUMNS.put("has_bottom_space_line", info -> info.hasBottomSpaceLine ? 1 : 0);
+        COLUMNS.put("has_top_space_line", info -> info.hasTopSpaceLine ? 1 : 0);
+        COLUMNS.put("has_prev_similar_table_line", info -> info.hasPrevSimilarTableLine ? 1 : 0);
+        COLUMNS.put("has_next_similar_table_line", info -> info.hasNextSimilarTableLine ? 1 : 0);
+        COLUMNS.put("prev_space_num_ratio", info -> info.prevSpaceNumRatio);
+        COLUMNS.put("next_space_num_ratio", info -> info.nextSpaceNumRatio);
+        COLUMNS.put("has_table_end_key_word", info -> info.hasTableEndKeyWord ? 1 : 0);
+        COLUMNS.put("prev_margin", info -> info.prevMargin);
+        COLUMNS.put("next_margin", info -> info.nextMargin);
+        COLUMNS.put("is_indent", info -> info.isIndent ? 1 : 0);
+        COLUMNS.put("is_end_in_advance", info -> info.isEndInAdVance ? 1 : 0);
+        COLUMNS.put("number_text_chunks", info -> info.numberTextChunks);
+        COLUMNS.put("number_vertical_lines", info -> info.numberVerticalLines);
+        COLUMNS.put("space_ratio", info -> info.spaceRatio);
+    }
+
+    // 每个模型的特征布局, 没有稠密输入或者有不认识的特征的模型是 empty
+    private static final ConcurrentHashMap<String, Optional<LineFeatures>> LAYOUTS = new ConcurrentHashMap<>();
+
+    // 每个工作线程复用的缓冲区, 只在不够大时重新分配
+    private static final ThreadLocal<FloatBuffer> BUFFER = ThreadLocal.withInitial(() -> FloatBuffer.allocate(0));
+
+    private final String[] keys;
+    // 每个特征对应的列, pattern_match_result 是 null
+    private final Column[] columns;
+    private final int width;
+    private final InferenceService.BatchRunner<List<TrainDataWriter.LineInfo>, int[]> runner;
+
+    private LineFeatures(String[] keys) {
+        this.keys = keys;
+        this.columns = new Column[keys.length];
+        int width = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if ("pattern_match_result".equals(keys[i])) {
+                width += PATTERN_MATCH_SIZE;
+                continue;
+            }
+            Column column = COLUMNS.get(keys[i]);
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown line feature: " + keys[i]);
+            }
+            columns[i] = column;
+            width++;
+        }
+        this.width = width;
+        // 模型的输入是单个序列, 每批只有一个请求, 和 tf.Example 的输入一致
+        this.runner = new InferenceService.BatchRunner<List<TrainDataWriter.LineInfo>, int[]>() {
+            @Override
+            public List<int[]> run(org.tensorflow.Session session, List<List<TrainDataWriter.LineInfo>> inputs) {
+                List<TrainDataWriter.LineInfo> lineInfos = inputs.get(0);
+                FloatBuffer lines = fill(lineInfos);
+                try (Tensor<?> useDense = Tensor.create(true);
+                     Tensor<?> denseLines = Tensor.create(new long[]{1, lineInfos.size(), LineFeatures.this.width}, lines);
+                     Tensor<?> lineCount = Tensor.create(new long[]{1}, LongBuffer.wrap(new long[]{lineInfos.size()}));
+                     Tensor<?> crfTags = session.runner()
+                             .feed("use_dense", useDense)
+                             .feed("dense_lines", denseLines)
+                             .feed("dense_line_count", lineCount)
+                             .fetch("crf_tags")
+                             .run()
+                             .get(0)) {
+                    int length = (int) crfTags.shape()[1];
+                    return Collections.singletonList(crfTags.copyTo(new int[1][length])[0]);
+                }
+            }
+
+            @Override
+            public int getMaxBatchSize() {
+                return 1;
+            }
+        };
+    }
+
+    /**
+     * 按给定的特征顺序创建布局。
+     *
+     * @param keys 特征名称, 和 tf.Example 中的名称一致。
+     * @throws IllegalArgumentException 有不认识的特征。
+     */
+    public static LineFeatures forKeys(String... keys) {
+        return new LineFeatures(keys.clone());
+    }
+
+    /**
+     * 取得模型的稠密输入布局, 模型不存在或者不支持稠密输入时返回 {@code null}。
+     * 模型的特征有不认识的名称时也返回 {@code null} (只记录一次日志), 调用方使用 tf.Example 输入。
+     */
+    public static LineFeatures forModel(String name) {
+        return LAYOUTS.computeIfAbsent(name, key -> Optional.ofNullable(loadLayout(key))).orElse(null);
+    }
+
+    private static LineFeatures loadLayout(String name) {
+        SavedModelBundle bundle = TensorflowManager.INSTANCE.getSavedModelBundle(name);
+        if (bundle == null || bundle.graph().operation(LINE_FEATURE_KEYS) == null
+                || bundle.graph().operation("use_dense") == null) {
+            return null;
+        }
+        String keys;
+        try (Tensor<?> value = bundle.session().runner().fetch(LINE_FEATURE_KEYS).run().get(0)) {
+            keys = new String(value.bytesValue(), StandardCharsets.UTF_8);
+        }
+        try {
+            return new LineFeatures(StringUtils.split(keys, ','));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Model {} has unsupported {} ({}), use tf.Example input: {}",
+                    name, LINE_FEATURE_KEYS, keys, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 特征名称
+     */
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * 每行的列数
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 把所有行的特征按行写入当前线程的缓冲区, 返回的缓冲区在同一线程下次调用前有效。
+     */
+    public FloatBuffer fill(List<TrainDataWriter.LineInfo> lineInfos) {
+        int size = lineInfos.size() * width;
+        FloatBuffer buffer = BUFFER.get();
+        if (buffer.capacity() < size) {
+            buffer = FloatBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+            BUFFER.set(buffer);
+        }
+        buffer.clear();
+        for (TrainDataWriter.LineInfo info : lineInfos) {
+            for (int i = 0; i < columns.length; i++) {
+                Column column = columns[i];
+                if (column != null) {
+                    buffer.put(column.get(info));
+                    continue;
+                }
+                List<Long> patterns = info.patternMatchResult;
+                if (patterns == null || patterns.size() != PATTERN_MATCH_SIZE) {
+                    throw new IllegalStateException("pattern_match_result should have "
+                            + PATTERN_MATCH_SIZE + " values");
+                }
+                for (Long pattern : patterns) {
+                    buffer.put((float) pattern);
+                }
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 使用 CRF 模型预测一个序列的 tag, 模型支持时使用稠密输入 (可以用 tensorflow.crf.dense_input=false 关闭), 否则使用 tf.Example。
+     *
+     * @param name 模型名称。
+     * @param lineInfos 每一行的特征。
+     * @return 每一行的 tag。
+     */
+    public static int[] runCrfTags(String name, List<TrainDataWriter.LineInfo> lineInfos) {
+        return runCrfTags(name, lineInfos, TensorflowManager.INSTANCE.isCrfDenseInput());
+    }
+
+    /**
+     * 使用 CRF 模型预测一个序列的 tag。
+     *
+     * @param name 模型名称。
+     * @param lineInfos 每一行的特征。
+     * @param dense 是否使用稠密输入, 模型不支持时仍然使用 tf.Example。
+     * @return 每一行的 tag。
+     */
+    public static int[] runCrfTags(String name, List<TrainDataWriter.LineInfo> lineInfos, boolean dense) {
+        LineFeatures features = dense ? forModel(name) : null;
+        if (features == null) {
+            return TensorflowManager.INSTANCE.runCrfTags(name, TrainDataWriter.buildExample(lineInfos).toByteArray());
+        }
+        InferenceService<List<TrainDataWriter.LineInfo>, int[]> service =
+                TensorflowManager.INSTANCE.getInferenceService(name, features.runner);
+        if (service == null) {
+            throw new IllegalStateException("Model " + name + " isn't available");
+        }
+        return service.run(lineInfos);
+    }
+}
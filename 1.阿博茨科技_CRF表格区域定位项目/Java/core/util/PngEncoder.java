@@ -0,0 +1,662 @@
+package com.abcft.pdfextract.core.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG 编码器, 可以设置压缩级别, 压缩策略和行过滤方式; 其他格式交给 {@link ImageIOEncoder}。
+ * <p>
+ * 大图片按行分块, 在后台线程中并行压缩, 每块以 SYNC_FLUSH 结束后顺序拼接成一个 zlib 流 (和 pigz 的做法一样);
+ * 颜色不超过 256 种的图片 (矢量图表通常是纯色填充) 可以输出为调色板图片, 颜色是精确的, 不做有损量化。
+ * 只直接编码 8 位 sRGB 的常见位图类型 (见 {@link #isSupported(BufferedImage)}), 其他类型 (16 位灰度, 非 sRGB 等)
+ * 用 getRGB 转换会丢失精度, 和其他格式一样交给 {@link ImageIOEncoder}。默认配置见 {@link #fromSystemProperties()}。
+ */
+public final class PngEncoder implements ImageEncoder {
+
+    private static final Logger logger = LogManager.getLogger(PngEncoder.class);
+
+    public static final String LEVEL_PROPERTY = "pdfextract.image.png.level";
+    public static final String STRATEGY_PROPERTY = "pdfextract.image.png.strategy";
+    public static final String FILTER_PROPERTY = "pdfextract.image.png.filter";
+    public static final String PALETTE_PROPERTY = "pdfextract.image.png.palette";
+    public static final String PARALLELISM_PROPERTY = "pdfextract.image.png.parallelism";
+
+    /**
+     * 行过滤方式, ADAPTIVE 对每行选择差值绝对值之和最小的过滤方式 (调色板图片不过滤)。
+     */
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int COLOR_GRAY = 0;
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_PALETTE = 3;
+    private static final int COLOR_RGBA = 6;
+    private static final int MAX_PALETTE_SIZE = 256;
+    // 并行压缩时每块最少的像素数
+    private static final int MIN_CHUNK_PIXELS = 256 * 1024;
+
+    private static volatile ExecutorService executor;
+
+    private final int level;
+    private final int strategy;
+    private final Filter filter;
+    private final boolean palette;
+    private final int parallelism;
+    private final ImageEncoder fallback;
+
+    private PngEncoder(Builder builder) {
+        this.level = builder.level;
+        this.strategy = builder.strategy;
+        this.filter = builder.filter;
+        this.palette = builder.palette;
+        this.parallelism = builder.parallelism;
+        this.fallback = builder.fallback;
+    }
+
+    /**
+     * 按系统属性创建编码器:
+     * {@value #LEVEL_PROPERTY} (0-9, 默认 6), {@value #STRATEGY_PROPERTY} (default/filtered/huffman, 默认 default),
+     * {@value #FILTER_PROPERTY} (none/sub/up/average/paeth/adaptive, 默认 adaptive),
+     * {@value #PALETTE_PROPERTY} (默认 false), {@value #PARALLELISM_PROPERTY} (默认 min(4, 核数), 1 表示不并行)。
+     * 默认的压缩级别和策略和 deflate 的默认值一致, 更快或更小的输出需要显式设置。
+     */
+    public static PngEncoder fromSystemProperties() {
+        Builder builder = new Builder()
+                .setLevel(Integer.getInteger(LEVEL_PROPERTY, 6))
+                .setPalette(Boolean.parseBoolean(System.getProperty(PALETTE_PROPERTY, "false")))
+                .setParallelism(Integer.getInteger(PARALLELISM_PROPERTY,
+                        Math.min(4, Runtime.getRuntime().availableProcessors())));
+        String strategy = System.getProperty(STRATEGY_PROPERTY, "default").toLowerCase();
+        switch (strategy) {
+            case "filtered":
+                builder.setStrategy(Deflater.FILTERED);
+                break;
+            case "huffman":
+                builder.setStrategy(Deflater.HUFFMAN_ONLY);
+                break;
+            default:
+                builder.setStrategy(Deflater.DEFAULT_STRATEGY);
+                break;
+        }
+        try {
+            builder.setFilter(Filter.valueOf(System.getProperty(FILTER_PROPERTY, "adaptive").toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown png filter {}", System.getProperty(FILTER_PROPERTY));
+        }
+        return builder.build();
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (PngEncoder.class) {
+                if (executor == null) {
+                    AtomicInteger id = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                        Thread thread = new Thread(r, "png-encoder-" + id.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public boolean write(BufferedImage image, String formatName, OutputStream output, int dpi, float quality)
+            throws IOException {
+        if (!"png".equalsIgnoreCase(formatName) || !isSupported(image)) {
+            return fallback.write(image, formatName, output, dpi, quality);
+        }
+        encode(image, output, dpi);
+        return true;
+    }
+
+    /**
+     * 是否可以无损地直接编码: 8 位 sRGB 的 RGB/ARGB 位图和 8 位灰度图。
+     */
+    static boolean isSupported(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void encode(BufferedImage image, OutputStream output, int dpi) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int colorType;
+        int[] colors = null;
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            colorType = COLOR_GRAY;
+        } else if (image.getColorModel().hasAlpha()) {
+            colorType = COLOR_RGBA;
+        } else {
+            colorType = COLOR_RGB;
+            if (palette) {
+                colors = collectColors(image);
+                if (colors != null) {
+                    colorType = COLOR_PALETTE;
+                }
+            }
+        }
+        Scanlines scanlines = new Scanlines(image, colorType, colors != null ? new ColorIndex(colors) : null,
+                colorType == COLOR_PALETTE && filter == Filter.ADAPTIVE ? Filter.NONE : filter);
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(width);
+        headerOut.writeInt(height);
+        headerOut.writeByte(8);
+        headerOut.writeByte(colorType);
+        headerOut.writeByte(0);
+        headerOut.writeByte(0);
+        headerOut.writeByte(0);
+        writeChunk(out, "IHDR", header.toByteArray());
+
+        if (dpi > 0) {
+            int pixelsPerMeter = (int) Math.round(dpi / 0.0254);
+            ByteArrayOutputStream phys = new ByteArrayOutputStream(9);
+            DataOutputStream physOut = new DataOutputStream(phys);
+            physOut.writeInt(pixelsPerMeter);
+            physOut.writeInt(pixelsPerMeter);
+            physOut.writeByte(1);
+            writeChunk(out, "pHYs", phys.toByteArray());
+        }
+
+        if (colors != null) {
+            byte[] plte = new byte[colors.length * 3];
+            for (int i = 0; i < colors.length; i++) {
+                plte[i * 3] = (byte) (colors[i] >> 16);
+                plte[i * 3 + 1] = (byte) (colors[i] >> 8);
+                plte[i * 3 + 2] = (byte) colors[i];
+            }
+            writeChunk(out, "PLTE", plte);
+        }
+
+        writeImageData(out, scanlines, height);
+        writeChunk(out, "IEND", new byte[0]);
+        out.flush();
+    }
+
+    private void writeImageData(DataOutputStream out, Scanlines scanlines, int height) throws IOException {
+        int chunkCount = 1;
+        if (parallelism > 1) {
+            long pixels = (long) scanlines.width * height;
+            chunkCount = (int) Math.min(parallelism, Math.max(1, pixels / MIN_CHUNK_PIXELS));
+        }
+        List<Compressed> pieces = new ArrayList<>(chunkCount);
+        if (chunkCount == 1) {
+            pieces.add(compress(scanlines, 0, height, true));
+        } else {
+            int rowsPerChunk = (height + chunkCount - 1) / chunkCount;
+            List<Future<Compressed>> futures = new ArrayList<>(chunkCount);
+            for (int start = 0; start < height; start += rowsPerChunk) {
+                int from = start;
+                int to = Math.min(height, start + rowsPerChunk);
+                futures.add(getExecutor().submit(() -> compress(scanlines, from, to, to == height)));
+            }
+            for (Future<Compressed> future : futures) {
+                try {
+                    pieces.add(future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while encoding png", e);
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to encode png", e.getCause());
+                }
+            }
+        }
+
+        // zlib 头, 和 deflate 的压缩级别对应
+        byte flags;
+        if (level <= 1) {
+            flags = 0x01;
+        } else if (level <= 5) {
+            flags = 0x5e;
+        } else if (level == 6 || level == Deflater.DEFAULT_COMPRESSION) {
+            flags = (byte) 0x9c;
+        } else {
+            flags = (byte) 0xda;
+        }
+        long adler = 1;
+        for (int i = 0; i < pieces.size(); i++) {
+            Compressed piece = pieces.get(i);
+            adler = i == 0 ? piece.adler : combineAdler32(adler, piece.adler, piece.length);
+            byte[] data = piece.data;
+            if (i == 0) {
+                byte[] withHeader = new byte[data.length + 2];
+                withHeader[0] = 0x78;
+                withHeader[1] = flags;
+                System.arraycopy(data, 0, withHeader, 2, data.length);
+                data = withHeader;
+            }
+            if (i == pieces.size() - 1) {
+                byte[] withTrailer = new byte[data.length + 4];
+                System.arraycopy(data, 0, withTrailer, 0, data.length);
+                withTrailer[data.length] = (byte) (adler >>> 24);
+                withTrailer[data.length + 1] = (byte) (adler >>> 16);
+                withTrailer[data.length + 2] = (byte) (adler >>> 8);
+                withTrailer[data.length + 3] = (byte) adler;
+                data = withTrailer;
+            }
+            writeChunk(out, "IDAT", data);
+        }
+    }
+
+    /**
+     * 压缩 [from, to) 行, 输出不带 zlib 头的 deflate 数据, 最后一块以 FINISH 结束, 其他块以 SYNC_FLUSH 结束
+     */
+    private Compressed compress(Scanlines scanlines, int from, int to, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        deflater.setStrategy(strategy);
+        Adler32 adler = new Adler32();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            Scanlines.Cursor cursor = scanlines.cursor(from);
+            long length = 0;
+            for (int y = from; y < to; y++) {
+                byte[] row = cursor.next(y);
+                adler.update(row);
+                length += row.length;
+                deflater.setInput(row);
+                while (!deflater.needsInput()) {
+                    int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                    compressed.write(buffer, 0, n);
+                }
+            }
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            return new Compressed(compressed.toByteArray(), adler.getValue(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * 合并两段数据的 Adler-32, 同 zlib 的 adler32_combine
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long rem = length2 % base;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xffff) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + base - rem;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * 统计图片的颜色, 超过 {@value #MAX_PALETTE_SIZE} 种时返回 null
+     */
+    private static int[] collectColors(BufferedImage image) {
+        int width = image.getWidth();
+        int[] row = new int[width];
+        ColorIndex index = new ColorIndex(new int[0]);
+        int last = 0;
+        boolean hasLast = false;
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int rgb : row) {
+                if (hasLast && rgb == last) {
+                    continue;
+                }
+                if (index.add(rgb) > MAX_PALETTE_SIZE) {
+                    return null;
+                }
+                last = rgb;
+                hasLast = true;
+            }
+        }
+        return index.getColors();
+    }
+
+    private static final class Compressed {
+        final byte[] data;
+        final long adler;
+        final long length;
+
+        Compressed(byte[] data, long adler, long length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 调色板颜色到序号的开放寻址哈希表
+     */
+    private static final class ColorIndex {
+        private static final int CAPACITY = 1024;
+
+        private final int[] keys = new int[CAPACITY];
+        private final int[] values = new int[CAPACITY];
+        private final boolean[] used = new boolean[CAPACITY];
+        private int size;
+
+        ColorIndex(int[] colors) {
+            for (int color : colors) {
+                add(color);
+            }
+        }
+
+        /**
+         * 添加颜色, 返回添加后的颜色数
+         */
+        int add(int rgb) {
+            int slot = slot(rgb);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = rgb;
+                values[slot] = size++;
+            }
+            return size;
+        }
+
+        int indexOf(int rgb) {
+            return values[slot(rgb)];
+        }
+
+        private int slot(int rgb) {
+            int slot = (rgb * 0x9E3779B9) >>> 22;
+            while (used[slot] && keys[slot] != rgb) {
+                slot = (slot + 1) & (CAPACITY - 1);
+            }
+            return slot;
+        }
+
+        int[] getColors() {
+            int[] colors = new int[size];
+            for (int i = 0; i < CAPACITY; i++) {
+                if (used[i]) {
+                    colors[values[i]] = keys[i];
+                }
+            }
+            return colors;
+        }
+    }
+
+    /**
+     * 生成过滤后的扫描行 (第一个字节是过滤方式)
+     */
+    private static final class Scanlines {
+        final BufferedImage image;
+        final int colorType;
+        final ColorIndex palette;
+        final Filter filter;
+        final int width;
+        final int bpp;
+        final int rowBytes;
+
+        Scanlines(BufferedImage image, int colorType, ColorIndex palette, Filter filter) {
+            this.image = image;
+            this.colorType = colorType;
+            this.palette = palette;
+            this.filter = filter;
+            this.width = image.getWidth();
+            switch (colorType) {
+                case COLOR_RGB:
+                    bpp = 3;
+                    break;
+                case COLOR_RGBA:
+                    bpp = 4;
+                    break;
+                default:
+                    bpp = 1;
+                    break;
+            }
+            this.rowBytes = width * bpp;
+        }
+
+        Cursor cursor(int from) {
+            return new Cursor(from);
+        }
+
+        final class Cursor {
+            private final int[] pixels = new int[width];
+            private byte[] previous = new byte[rowBytes];
+            private byte[] current = new byte[rowBytes];
+            private final byte[][] candidates;
+            private final byte[] output = new byte[rowBytes + 1];
+
+            Cursor(int from) {
+                if (from > 0 && filter != Filter.NONE && filter != Filter.SUB) {
+                    read(from - 1, previous);
+                }
+                candidates = new byte[filter == Filter.ADAPTIVE ? 5 : 1][rowBytes];
+            }
+
+            /**
+             * 第 y 行过滤后的数据, 返回的数组在下一次调用时会被覆盖
+             */
+            byte[] next(int y) {
+                read(y, current);
+                if (filter == Filter.ADAPTIVE) {
+                    int best = 0;
+                    long bestSum = Long.MAX_VALUE;
+                    for (int type = 0; type < 5; type++) {
+                        long sum = apply(type, candidates[type]);
+                        if (sum < bestSum) {
+                            bestSum = sum;
+                            best = type;
+                        }
+                    }
+                    output[0] = (byte) best;
+                    System.arraycopy(candidates[best], 0, output, 1, rowBytes);
+                } else {
+                    int type = filter.ordinal();
+                    output[0] = (byte) type;
+                    apply(type, candidates[0]);
+                    System.arraycopy(candidates[0], 0, output, 1, rowBytes);
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+                return output;
+            }
+
+            /**
+             * 按过滤方式计算 current 的差值写到 target, 返回差值绝对值之和
+             */
+            private long apply(int type, byte[] target) {
+                long sum = 0;
+                for (int i = 0; i < rowBytes; i++) {
+                    int raw = current[i] & 0xff;
+                    int left = i >= bpp ? current[i - bpp] & 0xff : 0;
+                    int up = previous[i] & 0xff;
+                    int upLeft = i >= bpp ? previous[i - bpp] & 0xff : 0;
+                    int value;
+                    switch (type) {
+                        case 1:
+                            value = raw - left;
+                            break;
+                        case 2:
+                            value = raw - up;
+                            break;
+                        case 3:
+                            value = raw - ((left + up) >>> 1);
+                            break;
+                        case 4:
+                            value = raw - paeth(left, up, upLeft);
+                            break;
+                        default:
+                            value = raw;
+                            break;
+                    }
+                    target[i] = (byte) value;
+                    sum += Math.abs((byte) value);
+                }
+                return sum;
+            }
+
+            private void read(int y, byte[] row) {
+                if (colorType == COLOR_GRAY) {
+                    image.getRaster().getSamples(0, y, width, 1, 0, pixels);
+                    for (int x = 0; x < width; x++) {
+                        row[x] = (byte) pixels[x];
+                    }
+                    return;
+                }
+                image.getRGB(0, y, width, 1, pixels, 0, width);
+                int i = 0;
+                for (int x = 0; x < width; x++) {
+                    int argb = pixels[x];
+                    switch (colorType) {
+                        case COLOR_PALETTE:
+                            row[i++] = (byte) palette.indexOf(argb);
+                            break;
+                        case COLOR_RGBA:
+                            row[i++] = (byte) (argb >> 16);
+                            row[i++] = (byte) (argb >> 8);
+                            row[i++] = (byte) argb;
+                            row[i++] = (byte) (argb >>> 24);
+                            break;
+                        default:
+                            row[i++] = (byte) (argb >> 16);
+                            row[i++] = (byte) (argb >> 8);
+                            row[i++] = (byte) argb;
+                            break;
+                    }
+                }
+            }
+        }
+
+        private static int paeth(int a, int b, int c) {
+            int p = a + b - c;
+            int pa = Math.abs(p - a);
+            int pb = Math.abs(p - b);
+            int pc = Math.abs(p - c);
+            if (pa <= pb && pa <= pc) {
+                return a;
+            } else if (pb <= pc) {
+                return b;
+            }
+            return c;
+        }
+    }
+
+    public static final class Builder {
+        private int level = 6;
+        private int strategy = Deflater.DEFAULT_STRATEGY;
+        private Filter filter = Filter.ADAPTIVE;
+        private boolean palette = false;
+        private int parallelism = 1;
+        private ImageEncoder fallback = new ImageIOEncoder();
+
+        /**
+         * deflate 压缩级别, 0-9
+         */
+        public Builder setLevel(int level) {
+            if (level < 0 || level > 9) {
+                throw new IllegalArgumentException("Invalid deflate level " + level);
+            }
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * deflate 压缩策略, {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED} 或 {@link Deflater#HUFFMAN_ONLY}
+         */
+        public Builder setStrategy(int strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        public Builder setFilter(Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * 颜色不超过 256 种时是否输出调色板图片
+         */
+        public Builder setPalette(boolean palette) {
+            this.palette = palette;
+            return this;
+        }
+
+        /**
+         * 大图片并行压缩的块数, 1 表示不并行
+         */
+        public Builder setParallelism(int parallelism) {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        /**
+         * 非 PNG 格式使用的编码器
+         */
+        public Builder setFallback(ImageEncoder fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        public PngEncoder build() {
+            return new PngEncoder(this);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.abcft.pdfextract.core.util;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 临时位图的缓冲池, 按尺寸等级复用 {@link BufferedImage}。
+ * <p>
+ * 通过 {@link #lease(int, int, int)} 租用位图, 用完后关闭租约归还 (try-with-resources), 归还前位图只属于租用者,
+ * 不会和其他调用者共用; 归还后不能再使用。位图的宽高按 {@value #SIZE_STEP} 像素向上取整分级, 租用时得到的是对应等级位图的子图,
+ * 内容是之前使用时留下的, 需要调用者自己清除。池中空闲位图的总字节数不超过预算 ({@value #BUDGET_PROPERTY}, 默认 64MB),
+ * 超出预算或者超过 {@value #MAX_POOLED_SIZE} 像素的位图不会缓存, 直接分配。
+ * <p>
+ * 只支持 {@link BufferedImage#TYPE_INT_RGB} 和 {@link BufferedImage#TYPE_BYTE_GRAY}。
+ */
+public final class RasterPool {
+
+    public static final String BUDGET_PROPERTY = "pdfextract.raster.pool.budget";
+
+    private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    private static final int SIZE_STEP = 256;
+    private static final int MAX_POOLED_SIZE = 4096;
+
+    private static volatile RasterPool defaultPool;
+
+    private final long budget;
+    private final Map<Long, ArrayDeque<BufferedImage>> idle = new HashMap<>();
+    private long idleBytes;
+    private long leaseCount;
+    private long allocationCount;
+
+    public RasterPool(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * 进程共享的缓冲池, 预算由系统属性 {@value #BUDGET_PROPERTY} 指定 (字节)。
+     */
+    public static RasterPool getDefault() {
+        if (defaultPool == null) {
+            synchronized (RasterPool.class) {
+                if (defaultPool == null) {
+                    defaultPool = new RasterPool(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+                }
+            }
+        }
+        return defaultPool;
+    }
+
+    /**
+     * 租用一个位图。
+     *
+     * @param width 宽度
+     * @param height 高度
+     * @param imageType {@link BufferedImage#TYPE_INT_RGB} 或 {@link BufferedImage#TYPE_BYTE_GRAY}
+     * @return 租约, 用完后需要关闭
+     */
+    public Lease lease(int width, int height, int imageType) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid image size %dx%d", width, height));
+        }
+        if (imageType != BufferedImage.TYPE_INT_RGB && imageType != BufferedImage.TYPE_BYTE_GRAY) {
+            throw new IllegalArgumentException("Unsupported image type " + imageType);
+        }
+        if (width > MAX_POOLED_SIZE || height > MAX_POOLED_SIZE) {
+            synchronized (this) {
+                leaseCount++;
+                allocationCount++;
+            }
+            return new Lease(this, null, new BufferedImage(width, height, imageType));
+        }
+        int classWidth = roundUp(width);
+        int classHeight = roundUp(height);
+        long key = key(classWidth, classHeight, imageType);
+        BufferedImage backing = null;
+        synchronized (this) {
+            leaseCount++;
+            ArrayDeque<BufferedImage> images = idle.get(key);
+            if (images != null && !images.isEmpty()) {
+                backing = images.pop();
+                idleBytes -= bytes(backing);
+            } else {
+                allocationCount++;
+            }
+        }
+        if (backing == null) {
+            backing = new BufferedImage(classWidth, classHeight, imageType);
+        }
+        BufferedImage image = width == classWidth && height == classHeight
+                ? backing : backing.getSubimage(0, 0, width, height);
+        return new Lease(this, backing, image);
+    }
+
+    private synchronized void release(BufferedImage backing) {
+        long size = bytes(backing);
+        if (idleBytes + size > budget) {
+            return;
+        }
+        idle.computeIfAbsent(key(backing.getWidth(), backing.getHeight(), backing.getType()), k -> new ArrayDeque<>())
+                .push(backing);
+        idleBytes += size;
+    }
+
+    /**
+     * 清空空闲的位图。
+     */
+    public synchronized void clear() {
+        idle.clear();
+        idleBytes = 0;
+    }
+
+    /**
+     * 租用次数。
+     */
+    public synchronized long getLeaseCount() {
+        return leaseCount;
+    }
+
+    /**
+     * 实际分配位图的次数。
+     */
+    public synchronized long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * 空闲位图的总字节数。
+     */
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    private static int roundUp(int size) {
+        return (size + SIZE_STEP - 1) / SIZE_STEP * SIZE_STEP;
+    }
+
+    private static long key(int width, int height, int imageType) {
+        return ((long) imageType << 32) | ((long) (width / SIZE_STEP) << 16) | (height / SIZE_STEP);
+    }
+
+    private static long bytes(BufferedImage image) {
+        int pixelBytes = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? 1 : 4;
+        return (long) image.getWidth() * image.getHeight() * pixelBytes;
+    }
+
+    /**
+     * 位图的租约, 关闭后位图归还到缓冲池。
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final RasterPool pool;
+        private BufferedImage backing;
+        private BufferedImage image;
+
+        private Lease(RasterPool pool, BufferedImage backing, BufferedImage image) {
+            this.pool = pool;
+            this.backing = backing;
+            this.image = image;
+        }
+
+        /**
+         * 租用的位图, 大小和租用时指定的一致; 租约关闭后返回 null。
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        @Override
+        public void close() {
+            BufferedImage backing = this.backing;
+            this.backing = null;
+            this.image = null;
+            if (backing != null) {
+                pool.release(backing);
+            }
+        }
+    }
+}
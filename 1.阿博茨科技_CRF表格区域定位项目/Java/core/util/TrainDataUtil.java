@@ -14,7 +14,6 @@ import org.jdom.Element;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
@@ -273,27 +272,31 @@ public class TrainDataUtil {
     }
 
     private static boolean savePageImage(PDPage page, File file, PageScaleInfo scaleInfo) {
-        BufferedImage pageImage = null;
-        try {
-            pageImage = GraphicsUtil.getBufferedImageRGB(scaleInfo.widthPx, scaleInfo.heightPx);
-            if (pageImage == null) {
+        if (scaleInfo.widthPx <= 0 || scaleInfo.heightPx <= 0) {
+            return false;
+        }
+        try (RasterPool.Lease lease = GraphicsUtil.leaseImageRGB(scaleInfo.widthPx, scaleInfo.heightPx)) {
+            BufferedImage pageImage = lease.getImage();
+            try {
+                Graphics2D graphics = pageImage.createGraphics();
+                graphics.setBackground(Color.WHITE);
+                graphics.clearRect(0, 0, pageImage.getWidth(), pageImage.getHeight());
+                PDFRenderer pageRenderer = new PDFRenderer(null);
+                pageRenderer.renderPageToGraphics(page, graphics, scaleInfo.scale);
+                graphics.dispose();
+            } catch (Exception e) {
+                logger.warn("render page failed", e);
                 return false;
             }
-            Graphics2D graphics = pageImage.createGraphics();
-            graphics.setBackground(Color.WHITE);
-            graphics.clearRect(0, 0, pageImage.getWidth(), pageImage.getHeight());
-            PDFRenderer pageRenderer = new PDFRenderer(null);
-            pageRenderer.renderPageToGraphics(page, graphics, scaleInfo.scale);
-            graphics.dispose();
-        } catch (Exception e) {
-            logger.warn("render page failed", e);
-            return false;
+            return writePageImage(pageImage, file);
         }
+    }
 
+    private static boolean writePageImage(BufferedImage pageImage, File file) {
         OutputStream output = null;
         try {
             output = new FileOutputStream(file);
-            if (ImageIO.write(pageImage, "JPG", output)) {
+            if (GraphicsUtil.encodeImage(pageImage, "JPG", output)) {
                 return true;
             } else {
                 logger.warn("save page image failed");
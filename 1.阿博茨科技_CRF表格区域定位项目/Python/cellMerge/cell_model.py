@@ -67,6 +67,9 @@ class Model:
         #此处使用的连接符是" <a> ",是为了后续分割的时候<a>会被分割为一个单独的向量
         self.batch_x =tf.string_join([features["x_l"], features["x_r"]], " <a> ", name='total_text')
         self.sequence_lengths = features["l"]
+        #导出的模型还可以直接输入字符id矩阵(调用方用assets/vocab.txt转换,右侧补<PAD>的id),由use_ids选择输入,省去图中的字符串分割和查表
+        self.batch_x_ids = features.get("x_ids")
+        self.use_ids = features.get("use_ids")
         self.batch_y = labels
         if self.is_training:
             self.keep_prob =Config.model.keep_prob
@@ -78,11 +81,20 @@ class Model:
             vocabulary_file=os.path.join(Config.data.base_path, 'vocab.txt'),
             default_value=UNK
         )
-        words = tf.string_split(self.batch_x, delimiter=" ")#此接口会产生一个索引index,和值value
-        #此处会自动对齐
-        words_dense=tf.sparse_tensor_to_dense(words,default_value='<PAD>')#根据value和index生成一个矩阵,不在index里的位置补0
-        words_id=self.table.lookup(words_dense)#将原本的value变成id
-        self.batch_x_input = tf.cast(words_id, tf.int32)
+
+        def string_to_ids():
+            words = tf.string_split(self.batch_x, delimiter=" ")#此接口会产生一个索引index,和值value
+            #此处会自动对齐
+            words_dense=tf.sparse_tensor_to_dense(words,default_value='<PAD>')#根据value和index生成一个矩阵,不在index里的位置补0
+            words_id=self.table.lookup(words_dense)#将原本的value变成id
+            return tf.cast(words_id, tf.int32)
+
+        if self.use_ids is None:
+            self.batch_x_input = string_to_ids()
+        else:
+            self.batch_x_input = tf.cond(self.use_ids,
+                                         lambda: tf.cast(self.batch_x_ids, tf.int32),
+                                         string_to_ids)
 
     def _build_metric(self):
         self.metrics = {
@@ -11,6 +11,7 @@ import numpy as np
 from hbconfig import Config
 import os
 import functools
+import multiprocessing
 
 EOS = u"<EOS>"
 EOL = u"<EOL>"
@@ -43,42 +44,68 @@ def load_vocab():
 
 
 def read_file():
+    """逐行读取语料并转换成 id, 写入预先分配的缓冲区 (容量不够时翻倍), 整体是线性的"""
     vocab = load_vocab()
+    char_ids = {}
+    data = np.empty(1 << 20, dtype=np.int64)
+    size = 0
     with tf.gfile.GFile(Config.data.raw_data_path, "r") as f:
-        lines = f.readlines()
-        data = np.array([], dtype=np.int64)
-        for line in lines:
+        for line in f:
             if len(line.strip()) <= 5:
                 continue
             line = line.strip().decode("utf-8")
-            ids = [vocab.get(ch) for ch in line]  # 0为PAD_ID
+            ids = []
+            for ch in line:
+                cid = char_ids.get(ch)
+                if cid is None:
+                    cid = char_ids[ch] = vocab.get(ch)  # 0为PAD_ID
+                ids.append(cid)
             ids.append(EOS_ID)
-            data = np.append(data, np.array(ids))
-        np.save(Config.data.processed_path, data)
+            if size + len(ids) > len(data):
+                data = np.resize(data, max(len(data) * 2, size + len(ids)))
+            data[size:size + len(ids)] = ids
+            size += len(ids)
+    np.save(Config.data.processed_path, data[:size])
+
+
+def make_text_batch(data, batch_size, max_len):
+    """
+    从语料中随机截取 batch_size 个片段, 一次性构造整批数据:
+    片段中有句子结尾时, 截到第二个句子结尾之前, 并把第一个句子结尾换成 EOL, 标签为 [1, 0];
+    否则在片段中随机位置插入 EOL, 标签为 [0, 1]。
+    """
+    start = np.random.randint(len(data) - max_len, size=batch_size)
+    length = np.random.randint(9, high=max_len, size=batch_size)
+    positions = np.arange(max_len)
+    windows = data[start[:, None] + positions].astype(np.int32)
+    valid = positions < length[:, None]
+
+    is_eos = (windows == EOS_ID) & valid
+    eos_count = np.cumsum(is_eos, axis=1)
+    has_eos = eos_count[:, -1] > 0
+    # 有句子结尾: 第二个句子结尾及之后的部分去掉, 第一个句子结尾换成 EOL
+    eos_rows = has_eos[:, None] & valid & (eos_count <= 1)
+    first_eos = is_eos & (eos_count == 1)
+
+    # 没有句子结尾: 在 [4, length) 中随机插入 EOL, 之后的部分后移一位
+    insert_at = np.random.randint(4, high=length)
+    shifted = np.maximum(positions[None, :] - (positions[None, :] > insert_at[:, None]), 0)
+    inserted = windows[np.arange(batch_size)[:, None], shifted]
+    inserted[positions[None, :] == insert_at[:, None]] = EOL_ID
+    insert_rows = ~has_eos[:, None] & (positions[None, :] <= length[:, None])
+
+    batch_data = np.full((batch_size, max_len), PAD_ID, dtype=np.int32)
+    batch_data[eos_rows] = np.where(first_eos, EOL_ID, windows)[eos_rows]
+    batch_data[insert_rows] = inserted[insert_rows]
+    batch_label = np.zeros(dtype=np.int32, shape=(batch_size, Config.data.num_classes))
+    batch_label[has_eos, 0] = 1
+    batch_label[~has_eos, 1] = 1
+    return batch_data, batch_label
 
 
 def read_data(data, batch_size, max_len):
     while True:
-        start = np.random.randint(len(data)-max_len, size=batch_size)
-        length = np.random.randint(9, high=max_len, size=batch_size)
-        batch_data = np.ones(dtype=np.int32, shape=(batch_size, max_len))
-        batch_data = batch_data * PAD_ID
-        batch_label = np.zeros(dtype=np.int32, shape=(batch_size, Config.data.num_classes))
-        for i in range(batch_size):
-            sub_data = np.copy(data[start[i]:start[i]+length[i]])
-            w = np.argwhere(sub_data == EOS_ID)
-            if len(w) > 0:
-                if len(w) > 1:
-                    sub_data = sub_data[:w[1, 0]]
-                sub_data[w[0]] = EOL_ID
-                batch_data[i, 0:len(sub_data)] = sub_data
-                batch_label[i] = [1, 0]
-            else:
-                index = np.random.randint(4, high=len(sub_data))
-                sub_data = np.insert(sub_data, index, EOL_ID)
-                batch_data[i, 0:len(sub_data)] = sub_data
-                batch_label[i] = [0, 1]
-        yield batch_data, batch_label
+        yield make_text_batch(data, batch_size, max_len)
 
 
 def _parse_text_tfexample_fn(example, mode):
@@ -122,18 +149,24 @@ def get_input_fn(mode, tfrecord_pattern, batch_size, parse_tfexample_fn, input_h
         #     vocabulary_file=os.path.join(Config.data.base_path, 'vocab.txt'),
         #     num_oov_buckets=1)
 
-        dataset = tf.data.TFRecordDataset.list_files(tfrecord_pattern)
+        num_parallel_calls = Config.data.get('num_parallel_calls', multiprocessing.cpu_count())
+        cache = Config.data.get('cache', None)
+
+        dataset = tf.data.Dataset.list_files(tfrecord_pattern)
         if mode == tf.estimator.ModeKeys.TRAIN:
             dataset = dataset.shuffle(buffer_size=100)
-        dataset = dataset.repeat()
+        if not cache:
+            dataset = dataset.repeat()
         # Preprocesses 10 files concurrently and interleaves records from each file.
-        dataset = dataset.interleave(
+        # 训练时不要求顺序确定, 先读完的文件先输出
+        dataset = dataset.apply(tf.contrib.data.parallel_interleave(
             tf.data.TFRecordDataset,
             cycle_length=10,
-            block_length=1)
+            block_length=1,
+            sloppy=mode == tf.estimator.ModeKeys.TRAIN))
         dataset = dataset.map(
             functools.partial(parse_tfexample_fn, mode=mode),
-            num_parallel_calls=10)
+            num_parallel_calls=num_parallel_calls)
 
         if Config.data.type == 'tfrecord':
             from tensorflow.python.ops import lookup_ops
@@ -164,7 +197,13 @@ def get_input_fn(mode, tfrecord_pattern, batch_size, parse_tfexample_fn, input_h
 
             dataset = dataset.filter(line_filter_fn)
             if Config.train.useText:
-                dataset = dataset.map(lambda features, labels: build_text_vector(features, labels, table))
+                dataset = dataset.map(lambda features, labels: build_text_vector(features, labels, table),
+                                      num_parallel_calls=num_parallel_calls)
+
+        if cache:
+            # cache 为 True 时缓存在内存中, 否则为缓存文件的路径; 解析后的数据只在第一遍时计算
+            dataset = dataset.cache('' if cache is True else '%s-%s' % (cache, mode))
+            dataset = dataset.repeat()
 
         #测试数据较多的时候,为保证测试结果较为均衡，也应该予以shuffle
         if mode != tf.estimator.ModeKeys.PREDICT:
@@ -176,6 +215,8 @@ def get_input_fn(mode, tfrecord_pattern, batch_size, parse_tfexample_fn, input_h
         else:
             dataset = dataset.padded_batch(
                 batch_size, padded_shapes=dataset.output_shapes)
+        # 训练的同时准备后面的批次
+        dataset = dataset.prefetch(Config.data.get('prefetch_batches', 2))
         # iterator = dataset.make_one_shot_iterator()
         '''
         iterator = dataset.make_initializable_iterator()
@@ -249,18 +290,11 @@ def make_batch(data, batch_size=64, scope="train"):
             with tf.name_scope(scope):
 
                 if scope == "train":
-                    x = np.ones(dtype=np.int32, shape=(Config.data.trainset_size, batch_size, Config.data.max_seq_length))
-                    y = np.zeros(dtype=np.int32, shape=(Config.data.trainset_size, batch_size, Config.data.num_classes))
+                    size = Config.data.trainset_size
                 else:
-                    x = np.ones(dtype=np.int32, shape=(Config.data.testset_size, batch_size, Config.data.max_seq_length))
-                    y = np.zeros(dtype=np.int32, shape=(Config.data.testset_size, batch_size, Config.data.num_classes))
-
-                x = x * PAD_ID
-                for i in range(len(x)):
-                    x[i], y[i] = next(read_data(data, batch_size, Config.data.max_seq_length))
-
-                x = x.reshape([-1, Config.data.max_seq_length])
-                y = y.reshape([-1, Config.data.num_classes])
+                    size = Config.data.testset_size
+                # 一次性构造所有批次的数据
+                x, y = make_text_batch(data, size * batch_size, Config.data.max_seq_length)
 
                 # Define placeholders
                 input_placeholder = tf.placeholder(
@@ -278,6 +312,7 @@ def make_batch(data, batch_size=64, scope="train"):
                     dataset = dataset.repeat(1)  # 1 Epoch
                 # dataset = dataset.shuffle(buffer_size=buffer_size)
                 dataset = dataset.batch(batch_size)
+                dataset = dataset.prefetch(Config.data.get('prefetch_batches', 2))
 
                 iterator = dataset.make_initializable_iterator()
                 next_x, next_y = iterator.get_next()
@@ -0,0 +1,132 @@
+# -*- coding: utf-8 -*-
+"""
+  给 Chart 类型分类模型 (retrain 得到的 Inception 冻结图 image_classify.pb) 增加批量输入, 供 Java 的
+  TFDetectChartType 一次预测多张图片。
+
+  原模型从 Cast 输入单张 [H, W, 3] 的图片, 经过 ExpandDims 和 ResizeBilinear 得到 [1, 299, 299, 3],
+  pool_3/_reshape 也固定了 batch 为 1。修改后:
+    batch_images     PlaceholderWithDefault, [N, 299, 299, 3] 缩放后的图片 (像素取值 0~255),
+                     默认值是原来 ResizeBilinear 的输出, 所以原来从 Cast 输入的方式不受影响
+    pool_3/_reshape  形状改成 [-1, 2048]
+  写入前用随机图片对比原模型和新模型 (单张和批量两种输入) 的输出, 不一致时不写入并返回非 0。
+
+  用法:
+    python export_chart_classify.py --input ../tf-models/image_classify.pb --output ../tf-models/image_classify.pb
+"""
+from __future__ import print_function
+
+import argparse
+import sys
+
+import numpy as np
+import tensorflow as tf
+from tensorflow.core.framework import attr_value_pb2
+from tensorflow.core.framework import tensor_shape_pb2
+
+BATCH_INPUT = 'batch_images'
+IMAGE_INPUT = 'Cast'
+OUTPUT = 'final_result'
+
+
+def load(path):
+    graph_def = tf.GraphDef()
+    with tf.gfile.GFile(path, 'rb') as f:
+        graph_def.ParseFromString(f.read())
+    return graph_def
+
+
+def find_node(graph_def, name):
+    for node in graph_def.node:
+        if node.name == name:
+            return node
+    raise KeyError('Node %s not found' % name)
+
+
+def add_batch_input(graph_def, resize_node, reshape_node):
+    """返回修改后的 graph_def 和模型输入的 (高, 宽)"""
+    output = tf.GraphDef()
+    output.CopyFrom(graph_def)
+    if any(node.name == BATCH_INPUT for node in output.node):
+        raise ValueError('Model already has %s' % BATCH_INPUT)
+
+    resize = find_node(output, resize_node)
+    size = tf.make_ndarray(find_node(output, resize.input[1]).attr['value'].tensor)
+    height, width = int(size[0]), int(size[1])
+
+    # 使用 ResizeBilinear 输出的节点改成使用 batch_images
+    for node in output.node:
+        for i, name in enumerate(node.input):
+            if name in (resize_node, resize_node + ':0'):
+                node.input[i] = BATCH_INPUT
+
+    batch_input = output.node.add()
+    batch_input.name = BATCH_INPUT
+    batch_input.op = 'PlaceholderWithDefault'
+    batch_input.input.append(resize_node)
+    batch_input.attr['dtype'].CopyFrom(attr_value_pb2.AttrValue(type=tf.float32.as_datatype_enum))
+    shape = tensor_shape_pb2.TensorShapeProto(dim=[
+        tensor_shape_pb2.TensorShapeProto.Dim(size=d) for d in (-1, height, width, 3)])
+    batch_input.attr['shape'].CopyFrom(attr_value_pb2.AttrValue(shape=shape))
+
+    # pool_3/_reshape 的目标形状是 [1, 2048], 改成 [-1, 2048]
+    reshape_shape = find_node(output, find_node(output, reshape_node).input[1])
+    dims = tf.make_ndarray(reshape_shape.attr['value'].tensor).copy()
+    dims[0] = -1
+    reshape_shape.attr['value'].tensor.CopyFrom(tf.make_tensor_proto(dims))
+    return output, (height, width)
+
+
+def run(graph_def, feeds_list):
+    with tf.Graph().as_default() as graph:
+        tf.import_graph_def(graph_def, name='')
+        output = graph.get_tensor_by_name(OUTPUT + ':0')
+        with tf.Session(graph=graph) as sess:
+            return [sess.run(output, feed_dict={k + ':0': v for k, v in feeds.items()}) for feeds in feeds_list]
+
+
+def resize(images, size):
+    """和模型里的 ResizeBilinear 一致 (align_corners=False)"""
+    with tf.Graph().as_default():
+        with tf.Session() as sess:
+            return [sess.run(tf.image.resize_bilinear(image[np.newaxis], size))[0] for image in images]
+
+
+def verify(original, batched, size, count, atol):
+    rng = np.random.RandomState(0)
+    images = [rng.randint(0, 256, size=(rng.randint(50, 600), rng.randint(50, 600), 3)).astype(np.float32)
+              for _ in range(count)]
+    expected = np.concatenate(run(original, [{IMAGE_INPUT: image} for image in images]))
+    single = np.concatenate(run(batched, [{IMAGE_INPUT: image} for image in images]))
+    batch = run(batched, [{BATCH_INPUT: np.stack(resize(images, size))}])[0]
+
+    ok = True
+    for name, actual in (('single', single), ('batch', batch)):
+        diff = np.max(np.abs(expected - actual))
+        same_top1 = np.array_equal(np.argmax(expected, axis=1), np.argmax(actual, axis=1))
+        print('%-8s max diff %.6f, top-1 %s' % (name, diff, 'same' if same_top1 else 'DIFFERENT'))
+        ok = ok and diff <= atol and same_top1
+    return ok
+
+
+def main():
+    parser = argparse.ArgumentParser(formatter_class=argparse.ArgumentDefaultsHelpFormatter)
+    parser.add_argument('--input', required=True, help='frozen image_classify.pb')
+    parser.add_argument('--output', required=True, help='output .pb, can be the same as --input')
+    parser.add_argument('--resize_node', default='ResizeBilinear')
+    parser.add_argument('--reshape_node', default='pool_3/_reshape')
+    parser.add_argument('--verify_images', type=int, default=8)
+    parser.add_argument('--atol', type=float, default=1e-4)
+    args = parser.parse_args()
+
+    original = load(args.input)
+    batched, size = add_batch_input(original, args.resize_node, args.reshape_node)
+    print('Model input size %dx%d' % size)
+    if not verify(original, batched, size, args.verify_images, args.atol):
+        sys.exit(1)
+    with tf.gfile.GFile(args.output, 'wb') as f:
+        f.write(batched.SerializeToString())
+    print('Exported %s' % args.output)
+
+
+if __name__ == '__main__':
+    main()
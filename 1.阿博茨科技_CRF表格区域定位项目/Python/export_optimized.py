@@ -0,0 +1,363 @@
+# -*- coding: utf-8 -*-
+"""
+  导出给 Java 在 CPU 上推理用的优化模型。
+
+  输入是 main.py 导出的 SavedModel (logs/<model>/export/Servo/<时间戳>), 输出写到 Java 的模型目录下:
+    <output_root>/<name>.optimized   冻结变量, 去掉训练用的节点, 常量折叠, 合并 BatchNorm 和重复节点
+    <output_root>/<name>.quantized   在 optimized 的基础上把权重量化成 8 位 (--quantize)
+  TensorflowManager 会优先加载这些目录, 不存在时使用原来的 <output_root>/<name>。
+
+  写入前会用保留的测试数据 (--eval_pattern 指定的 TFRecord) 对比原模型和优化后模型的输出,
+  不一致时不写入并返回非 0。最后输出每个模型的加载时间, 内存 (RSS) 增量和单次调用的延迟。
+
+  用法:
+    python export_optimized.py --name cell-merge --servo_dir logs/cellMergeNLP/export/Servo/1530000000 \
+        --output_root ../tf-models --eval_pattern 'data/cell-eval-*.tfrecord' --quantize
+"""
+from __future__ import print_function
+
+import argparse
+import glob
+import os
+import shutil
+import sys
+import time
+
+import numpy as np
+import tensorflow as tf
+from tensorflow.core.framework import types_pb2
+from tensorflow.python.saved_model import tag_constants
+from tensorflow.tools.graph_transforms import TransformGraph
+
+OPTIMIZED_SUFFIX = '.optimized'
+QUANTIZED_SUFFIX = '.quantized'
+
+BASE_TRANSFORMS = [
+    'remove_nodes(op=Identity, op=CheckNumerics, op=StopGradient)',
+    'fold_constants(ignore_errors=true)',
+    'fold_batch_norms',
+    'fold_old_batch_norms',
+    'merge_duplicate_nodes',
+    'strip_unused_nodes',
+    'sort_by_execution_order',
+]
+QUANTIZE_TRANSFORMS = [
+    'quantize_weights(minimum_size=1024)',
+    'sort_by_execution_order',
+]
+
+# Java 中直接按名称输入/取出的节点, 不在 signature 里的也必须保留
+JAVA_NODES = {
+    'font-ocr': ['uint8_images', 'image_bytes', 'use_uint8', 'top3_texts'],
+    'paragraph': ['serialized_example', 'dense_lines', 'dense_line_count', 'use_dense', 'line_feature_keys', 'crf_tags'],
+    'line-crf': ['serialized_example', 'dense_lines', 'dense_line_count', 'use_dense', 'line_feature_keys', 'crf_tags'],
+    'line-crf-table': ['serialized_example', 'dense_lines', 'dense_line_count', 'use_dense', 'line_feature_keys',
+                       'crf_tags'],
+    'cell-merge': ['x_l', 'x_r', 'l', 'x_ids', 'use_ids', 'scores', 'class'],
+    'table_classify': ['input', 'MobilenetV2/Predictions/Reshape_1'],
+}
+
+# 能作为输入的节点类型
+PLACEHOLDER_OPS = {'Placeholder', 'PlaceholderWithDefault'}
+
+TABLE_INIT_OPS = {
+    'InitializeTable', 'InitializeTableV2',
+    'InitializeTableFromTextFile', 'InitializeTableFromTextFileV2',
+    'LookupTableImport', 'LookupTableImportV2',
+}
+
+
+def op_name(tensor_name):
+    name = tensor_name.split(':')[0]
+    return name[1:] if name.startswith('^') else name
+
+
+def rss_mb():
+    """当前进程的 RSS, 只支持 Linux"""
+    try:
+        with open('/proc/self/status') as f:
+            for line in f:
+                if line.startswith('VmRSS:'):
+                    return int(line.split()[1]) / 1024.0
+    except IOError:
+        pass
+    return float('nan')
+
+
+def load(servo_dir):
+    graph = tf.Graph()
+    sess = tf.Session(graph=graph)
+    start_rss = rss_mb()
+    start = time.time()
+    meta_graph = tf.saved_model.loader.load(sess, [tag_constants.SERVING], servo_dir)
+    load_ms = (time.time() - start) * 1000
+    return sess, meta_graph, load_ms, rss_mb() - start_rss
+
+
+def signature_nodes(meta_graph):
+    inputs, outputs = set(), set()
+    for signature in meta_graph.signature_def.values():
+        inputs.update(op_name(t.name) for t in signature.inputs.values())
+        outputs.update(op_name(t.name) for t in signature.outputs.values())
+    return inputs, outputs
+
+
+def optimize(name, servo_dir, quantize):
+    """冻结并优化模型, 返回 (graph_def, meta_graph, 表初始化节点, 资源文件节点)"""
+    sess, meta_graph, _, _ = load(servo_dir)
+    graph = sess.graph
+    inputs, outputs = signature_nodes(meta_graph)
+    for node in JAVA_NODES.get(name, []):
+        try:
+            graph.get_operation_by_name(node)
+        except KeyError:
+            continue
+        # 简单地按名称判断, 能作为输入的是 Placeholder
+        if graph.get_operation_by_name(node).type in PLACEHOLDER_OPS:
+            inputs.add(node)
+        else:
+            outputs.add(node)
+
+    # 查找表 (vocab 等) 的初始化节点, 冻结后作为新模型的 legacy_init_op
+    table_inits = [op.name for op in graph.get_operations() if op.type in TABLE_INIT_OPS]
+    # 资源文件的路径常量改成 SavedModel 中的实际路径, 保存时会复制到新模型的 assets 目录
+    asset_nodes = {}
+    if tf.GraphKeys.ASSET_FILEPATHS in meta_graph.collection_def:
+        for tensor_name in meta_graph.collection_def[tf.GraphKeys.ASSET_FILEPATHS].node_list.value:
+            asset_nodes[op_name(tensor_name)] = None
+
+    graph_def = graph.as_graph_def()
+    for node in graph_def.node:
+        if node.name in asset_nodes:
+            filename = os.path.basename(node.attr['value'].tensor.string_val[0].decode('utf-8'))
+            path = os.path.join(servo_dir, 'assets', filename)
+            node.attr['value'].tensor.string_val[0] = path.encode('utf-8')
+            asset_nodes[node.name] = path
+
+    keep = sorted(inputs | outputs | set(table_inits) | set(asset_nodes))
+    frozen = tf.graph_util.convert_variables_to_constants(sess, graph_def, keep)
+    sess.close()
+
+    transforms = list(BASE_TRANSFORMS)
+    if quantize:
+        transforms += QUANTIZE_TRANSFORMS
+    # strip_unused_nodes 默认把输入替换成 float 的 Placeholder, 这里指定原来的类型
+    placeholder_types = []
+    has_default = False
+    for node in frozen.node:
+        if node.name in inputs and node.op in PLACEHOLDER_OPS:
+            placeholder_types.append(types_pb2.DataType.Name(node.attr['dtype'].type))
+            has_default = has_default or node.op == 'PlaceholderWithDefault'
+    if len(set(placeholder_types)) > 1 or has_default:
+        # 输入的类型不同时无法用一个参数描述, 带默认值的输入替换后会丢掉默认值,
+        # 都跳过 strip_unused_nodes (冻结时已经去掉了用不到的节点)
+        transforms.remove('strip_unused_nodes')
+    elif placeholder_types:
+        transforms[transforms.index('strip_unused_nodes')] = \
+            'strip_unused_nodes(type=%s)' % placeholder_types[0][len('DT_'):].lower()
+    optimized = TransformGraph(frozen, sorted(inputs), keep, transforms)
+    return optimized, meta_graph, table_inits, asset_nodes
+
+
+def save(graph_def, meta_graph, table_inits, asset_nodes, output_dir):
+    with tf.Graph().as_default() as graph:
+        tf.import_graph_def(graph_def, name='')
+        with tf.Session(graph=graph) as sess:
+            init_op = None
+            if table_inits:
+                init_op = tf.group(*[graph.get_operation_by_name(n) for n in table_inits],
+                                   name='optimized_init_all_tables')
+            assets = [graph.get_tensor_by_name(n + ':0') for n in asset_nodes]
+            builder = tf.saved_model.builder.SavedModelBuilder(output_dir)
+            builder.add_meta_graph_and_variables(
+                sess, [tag_constants.SERVING],
+                signature_def_map=dict(meta_graph.signature_def),
+                assets_collection=assets or None,
+                legacy_init_op=init_op)
+            builder.save()
+
+
+class Feeds(object):
+    """从保留的测试数据构造模型的输入, 每个元素是一次调用的 feed_dict (按节点名称)"""
+
+    @staticmethod
+    def build(name, meta_graph, eval_pattern, max_examples, batch_size):
+        records = []
+        for path in sorted(glob.glob(eval_pattern)) if eval_pattern else []:
+            for record in tf.python_io.tf_record_iterator(path):
+                records.append(record)
+                if len(records) >= max_examples:
+                    break
+            if len(records) >= max_examples:
+                break
+        if name in ('paragraph', 'line-crf', 'line-crf-table') and records:
+            return [{'serialized_example': r} for r in records]
+        if name == 'cell-merge' and records:
+            return Feeds._cell_merge(meta_graph, records, batch_size)
+        if name == 'font-ocr' and records:
+            return Feeds._font_ocr(records, batch_size)
+        print('No eval records for %s, compare with random inputs' % name)
+        return Feeds._random(meta_graph, max_examples, batch_size)
+
+    @staticmethod
+    def _chunks(items, batch_size):
+        return [items[i:i + batch_size] for i in range(0, len(items), batch_size)]
+
+    @staticmethod
+    def _cell_merge(meta_graph, records, batch_size):
+        inputs, _ = signature_nodes(meta_graph)
+        feeds = []
+        for chunk in Feeds._chunks(records, batch_size):
+            examples = [tf.train.Example.FromString(r).features.feature for r in chunk]
+            feed = {
+                'x_l': np.array([e['x_l'].bytes_list.value[0] for e in examples], dtype=object),
+                'x_r': np.array([e['x_r'].bytes_list.value[0] for e in examples], dtype=object),
+                'l': np.array([e['l'].int64_list.value[0] for e in examples], dtype=np.int64),
+            }
+            if 'use_ids' in inputs:
+                feed['use_ids'] = False
+                feed['x_ids'] = np.zeros([0, 0], dtype=np.int64)
+            feeds.append(feed)
+        return feeds
+
+    @staticmethod
+    def _font_ocr(records, batch_size):
+        feeds = []
+        for chunk in Feeds._chunks(records, batch_size):
+            images = [np.frombuffer(tf.train.Example.FromString(r).features.feature['image/encoded']
+                                    .bytes_list.value[0], dtype=np.uint8).reshape([64, 64, 1])
+                      for r in chunk]
+            feeds.append({
+                'uint8_images': np.stack(images),
+                'image_bytes': np.array([], dtype=object),
+                'use_uint8': True,
+            })
+        return feeds
+
+    @staticmethod
+    def _random(meta_graph, max_examples, batch_size):
+        """只支持数值输入: 固定随机种子, 未知的维度用 batch_size"""
+        random = np.random.RandomState(42)
+        inputs = {}
+        for signature in meta_graph.signature_def.values():
+            for info in signature.inputs.values():
+                if info.dtype in (types_pb2.DT_STRING, types_pb2.DT_BOOL):
+                    raise ValueError('Random inputs are not supported for %s' % info.name)
+                shape = [d.size if d.size > 0 else batch_size for d in info.tensor_shape.dim]
+                inputs[op_name(info.name)] = (shape, tf.as_dtype(info.dtype).as_numpy_dtype)
+        feeds = []
+        for _ in range(max(1, max_examples // batch_size)):
+            feed = {}
+            for node, (shape, dtype) in inputs.items():
+                if np.issubdtype(dtype, np.floating):
+                    feed[node] = random.uniform(-1, 1, shape).astype(dtype)
+                else:
+                    feed[node] = random.randint(0, 10, shape).astype(dtype)
+            feeds.append(feed)
+        return feeds
+
+
+def fetch_names(meta_graph, name, graph):
+    _, outputs = signature_nodes(meta_graph)
+    for node in JAVA_NODES.get(name, []):
+        try:
+            if graph.get_operation_by_name(node).type not in PLACEHOLDER_OPS:
+                outputs.add(node)
+        except KeyError:
+            pass
+    return sorted(outputs)
+
+
+def run_all(servo_dir, name, feeds):
+    """加载模型并执行所有输入, 返回 (输出列表, 加载时间 ms, RSS 增量 MB, 平均延迟 ms)"""
+    sess, meta_graph, load_ms, rss = load(servo_dir)
+    fetches = [n + ':0' for n in fetch_names(meta_graph, name, sess.graph)]
+    results = []
+    elapsed = 0.0
+    for feed in feeds:
+        feed_dict = {k + ':0': v for k, v in feed.items()}
+        start = time.time()
+        results.append(sess.run(fetches, feed_dict=feed_dict))
+        elapsed += time.time() - start
+    sess.close()
+    latency = elapsed * 1000 / max(1, len(feeds))
+    return fetches, results, load_ms, rss, latency
+
+
+def compare(fetches, expected, actual, atol, min_agreement):
+    """浮点输出比较最大误差, 其他 (类别, tag, 文本) 比较一致的比例"""
+    passed = True
+    for i, fetch in enumerate(fetches):
+        a = [np.asarray(r[i]) for r in expected]
+        b = [np.asarray(r[i]) for r in actual]
+        if np.issubdtype(a[0].dtype, np.floating):
+            diff = max(float(np.max(np.abs(x - y))) if x.size else 0.0 for x, y in zip(a, b))
+            ok = diff <= atol
+            print('  %-40s max abs diff %.6f (<= %g) %s' % (fetch, diff, atol, 'OK' if ok else 'FAIL'))
+        else:
+            same = sum(int(np.sum(x == y)) for x, y in zip(a, b) if x.shape == y.shape)
+            total = sum(x.size for x in a)
+            agreement = float(same) / total if total else 1.0
+            ok = agreement >= min_agreement
+            print('  %-40s agreement %.4f (>= %g) %s' % (fetch, agreement, min_agreement, 'OK' if ok else 'FAIL'))
+        passed = passed and ok
+    return passed
+
+
+def export_variant(args, suffix, quantize, feeds, baseline, report):
+    output_dir = os.path.join(args.output_root, args.name + suffix)
+    tmp_dir = output_dir + '.tmp'
+    if os.path.exists(tmp_dir):
+        shutil.rmtree(tmp_dir)
+    graph_def, meta_graph, table_inits, asset_nodes = optimize(args.name, args.servo_dir, quantize)
+    save(graph_def, meta_graph, table_inits, asset_nodes, tmp_dir)
+
+    fetches, results, load_ms, rss, latency = run_all(tmp_dir, args.name, feeds)
+    report.append((args.name + suffix, load_ms, rss, latency))
+    print('Accuracy gate for %s:' % (args.name + suffix))
+    atol = args.quantized_atol if quantize else args.atol
+    min_agreement = args.quantized_min_agreement if quantize else 1.0
+    if not compare(fetches, baseline, results, atol, min_agreement):
+        shutil.rmtree(tmp_dir)
+        return False
+    if os.path.exists(output_dir):
+        shutil.rmtree(output_dir)
+    os.rename(tmp_dir, output_dir)
+    print('Exported %s' % output_dir)
+    return True
+
+
+def main():
+    parser = argparse.ArgumentParser(formatter_class=argparse.ArgumentDefaultsHelpFormatter)
+    parser.add_argument('--name', required=True, choices=sorted(JAVA_NODES.keys()),
+                        help='model name used by TensorflowManager')
+    parser.add_argument('--servo_dir', required=True, help='exported SavedModel directory')
+    parser.add_argument('--output_root', required=True, help='model directory of the Java side')
+    parser.add_argument('--eval_pattern', default=None, help='held-out TFRecords for the accuracy gate')
+    parser.add_argument('--max_examples', type=int, default=2000)
+    parser.add_argument('--batch_size', type=int, default=32)
+    parser.add_argument('--quantize', action='store_true', help='also export 8-bit weight quantized variant')
+    parser.add_argument('--atol', type=float, default=1e-4)
+    parser.add_argument('--quantized_atol', type=float, default=5e-2)
+    parser.add_argument('--quantized_min_agreement', type=float, default=0.99)
+    args = parser.parse_args()
+
+    sess, meta_graph, _, _ = load(args.servo_dir)
+    sess.close()
+    feeds = Feeds.build(args.name, meta_graph, args.eval_pattern, args.max_examples, args.batch_size)
+    _, baseline, load_ms, rss, latency = run_all(args.servo_dir, args.name, feeds)
+    report = [(args.name, load_ms, rss, latency)]
+
+    ok = export_variant(args, OPTIMIZED_SUFFIX, False, feeds, baseline, report)
+    if ok and args.quantize:
+        ok = export_variant(args, QUANTIZED_SUFFIX, True, feeds, baseline, report)
+
+    # RSS 是在同一个进程中依次加载的增量, 只作为相对的参考
+    print('\n%-30s %12s %12s %14s' % ('model', 'load (ms)', 'RSS (MB)', 'latency (ms)'))
+    for row in report:
+        print('%-30s %12.1f %12.1f %14.2f' % row)
+    sys.exit(0 if ok else 1)
+
+
+if __name__ == '__main__':
+    main()
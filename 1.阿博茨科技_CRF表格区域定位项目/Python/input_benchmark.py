@@ -0,0 +1,68 @@
+# -*- coding: utf-8 -*-
+"""
+  测量训练输入管道的吞吐 (examples/sec), 只读取和预处理数据, 不运行模型。
+
+  用法:
+    python input_benchmark.py --config line-crf-table --steps 500
+  对比训练时每秒处理的样本数, 输入的吞吐明显更高时输入就不是训练的瓶颈。
+"""
+from __future__ import print_function
+
+import argparse
+import time
+
+import numpy as np
+import tensorflow as tf
+from hbconfig import Config
+
+import data_loader
+
+
+def batch_size_of(values):
+    for value in tf.contrib.framework.nest.flatten(values):
+        if isinstance(value, np.ndarray) and value.ndim > 0:
+            return value.shape[0]
+    return 0
+
+
+def main(mode, steps, warmup):
+    train_input_fn, train_input_hook, test_input_fn, test_input_hook = data_loader.make_train_and_test_input_fn()
+    input_fn, input_hook = (train_input_fn, train_input_hook) if mode == 'train' else (test_input_fn, test_input_hook)
+
+    with tf.Graph().as_default():
+        inputs = input_fn()
+        if isinstance(inputs, tf.data.Dataset):
+            iterator = inputs.make_initializable_iterator()
+            next_batch = iterator.get_next()
+            init_ops = [iterator.initializer, tf.tables_initializer()]
+        else:
+            next_batch = inputs
+            init_ops = [tf.tables_initializer()]
+
+        with tf.Session() as sess:
+            sess.run(init_ops)
+            if input_hook is not None and input_hook.iterator_initializer_func is not None:
+                input_hook.iterator_initializer_func(sess)
+
+            for _ in range(warmup):
+                sess.run(next_batch)
+            examples = 0
+            start = time.time()
+            for _ in range(steps):
+                examples += batch_size_of(sess.run(next_batch))
+            elapsed = time.time() - start
+
+    print('%s input: %d batches, %d examples in %.2fs, %.1f examples/sec'
+          % (mode, steps, examples, elapsed, examples / elapsed))
+
+
+if __name__ == '__main__':
+    parser = argparse.ArgumentParser(formatter_class=argparse.ArgumentDefaultsHelpFormatter)
+    parser.add_argument('--config', type=str, default='text', help='config file name')
+    parser.add_argument('--mode', type=str, default='train', choices=['train', 'eval'])
+    parser.add_argument('--steps', type=int, default=200)
+    parser.add_argument('--warmup', type=int, default=10)
+    args = parser.parse_args()
+
+    Config(args.config)
+    main(args.mode, args.steps, args.warmup)
@@ -55,6 +55,11 @@ class Model:
             predictions={"prediction": self.viterbi_sequence},
             export_outputs=export_outputs)
 
+    @staticmethod
+    def supports_dense_input():
+        """稠密特征输入 (line_example_decoder.build_serving_input) 不包含文本, 使用文本特征时只能输入 tf.Example"""
+        return not Config.train.useText
+
     def _init_placeholder(self, features, labels):
         self.features = features
         # print(features)
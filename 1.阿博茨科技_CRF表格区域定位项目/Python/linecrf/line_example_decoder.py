@@ -12,6 +12,30 @@ from tensorflow.python.framework import sparse_tensor
 
 slim_example_decoder = tf.contrib.slim.tfexample_decoder
 
+# 行特征向量的列顺序, Java 端的稠密输入 (LineFeatures) 按导出模型中 line_feature_keys 的顺序填充
+LINE_FEATURE_KEYS = ['font_size', 'bold', 'italic', 'column_count',
+                     'left', 'top', 'width', 'height', 'left_diff', 'right_diff',
+                     'prev_left_diff', 'prev_right_diff', 'prev_top_diff', 'prev_bottom_diff',
+                     'next_left_diff', 'next_right_diff', 'next_top_diff', 'next_bottom_diff',
+                     'has_top_ruling', 'has_bottom_ruling', 'number_num', 'number_ratio',
+                     'pattern_match_result', 'has_fill_area', 'has_ruling_region',
+
+                     'left_layout', 'top_layout', 'width_layout', 'height_layout', 'left_diff_layout','right_diff_layout',
+                     'pre_left_diff_layout', 'pre_right_diff_layout', 'pre_top_diff_layout', 'pre_bottom_diff_layout',
+                     'next_left_diff_layout', 'next_right_diff_layout', 'next_top_diff_layout','next_bottom_diff_layout',
+
+                     'has_bottom_space_line', 'has_top_space_line',"has_prev_similar_table_line","has_next_similar_table_line",
+                     "prev_space_num_ratio","next_space_num_ratio","number_text_chunks","space_ratio"
+                     ]
+
+# pattern_match_result 每行占的列数
+PATTERN_MATCH_SIZE = 9
+
+
+def line_vector_length():
+    """每行特征向量的长度"""
+    return len(LINE_FEATURE_KEYS) - 1 + PATTERN_MATCH_SIZE
+
 
 class LookupTensor(slim_example_decoder.Tensor):
     """An ItemHandler that returns a parsed Tensor, the result of a lookup."""
@@ -66,20 +90,7 @@ class Line(slim_example_decoder.ItemHandler):
          
                                                                                     
         """
-        self._keys = ['font_size', 'bold', 'italic', 'column_count',
-                      'left', 'top', 'width', 'height', 'left_diff', 'right_diff',
-                      'prev_left_diff', 'prev_right_diff', 'prev_top_diff', 'prev_bottom_diff',
-                      'next_left_diff', 'next_right_diff', 'next_top_diff', 'next_bottom_diff',
-                      'has_top_ruling', 'has_bottom_ruling', 'number_num', 'number_ratio',
-                      'pattern_match_result', 'has_fill_area', 'has_ruling_region',
-
-                      'left_layout', 'top_layout', 'width_layout', 'height_layout', 'left_diff_layout','right_diff_layout',
-                      'pre_left_diff_layout', 'pre_right_diff_layout', 'pre_top_diff_layout', 'pre_bottom_diff_layout',
-                      'next_left_diff_layout', 'next_right_diff_layout', 'next_top_diff_layout','next_bottom_diff_layout',
-
-                      'has_bottom_space_line', 'has_top_space_line',"has_prev_similar_table_line","has_next_similar_table_line",
-                      "prev_space_num_ratio","next_space_num_ratio","number_text_chunks","space_ratio"
-                      ]
+        self._keys = list(LINE_FEATURE_KEYS)
         super(Line, self).__init__(self._keys)
 
     def tensors_to_item(self, keys_to_tensors):
@@ -98,7 +109,7 @@ class Line(slim_example_decoder.ItemHandler):
             if isinstance(side, sparse_tensor.SparseTensor):
                 side = tf.to_float(side.values)
                 if key is 'pattern_match_result':
-                    side = tf.reshape(side, [-1, 9])
+                    side = tf.reshape(side, [-1, PATTERN_MATCH_SIZE])
                     side = tf.transpose(side)
                 else:
                     side = tf.expand_dims(side, 0)
@@ -212,6 +223,46 @@ def parse_tfexample_fn(example, mode=tf.estimator.ModeKeys.TRAIN):
     return input_dict, label
 
 
+def build_serving_input():
+    """
+    导出模型的输入, 两种方式二选一:
+    serialized_example: 序列化的 tf.Example, 和训练数据格式一致;
+    dense_lines + dense_line_count: 直接输入行特征矩阵 [1, 行数, line_vector_length()] 和行数, use_dense 为 True 时使用,
+    列顺序见常量节点 line_feature_keys (逗号分隔), 省去 Java 端构造和解析 tf.Example。
+    稠密输入不包含文本特征, 只适用于 useText 为 False 的模型。
+    """
+    example = tf.placeholder_with_default('', shape=[], name='serialized_example')
+    dense_lines = tf.placeholder_with_default(
+        tf.zeros([1, 0, line_vector_length()], dtype=tf.float32),
+        shape=[None, None, line_vector_length()], name='dense_lines')
+    dense_line_count = tf.placeholder_with_default(
+        tf.zeros([1], dtype=tf.int64), shape=[None], name='dense_line_count')
+    use_dense = tf.placeholder_with_default(False, shape=[], name='use_dense')
+    tf.constant(','.join(LINE_FEATURE_KEYS), name='line_feature_keys')
+
+    def parse_example():
+        input_dict, _ = parse_tfexample_fn(example, tf.estimator.ModeKeys.PREDICT)
+        return tf.expand_dims(input_dict['line'], 0), tf.expand_dims(input_dict['line_count'], 0)
+
+    def dense_input():
+        return dense_lines, dense_line_count
+
+    line, line_count = tf.cond(use_dense, dense_input, parse_example)
+    features = {
+        'line': line,
+        'line_count': line_count,
+    }
+    receiver_tensors = {'serialized_example': example}
+    receiver_tensors_alternatives = {
+        'dense': {
+            'dense_lines': dense_lines,
+            'dense_line_count': dense_line_count,
+            'use_dense': use_dense,
+        }
+    }
+    return tf.estimator.export.ServingInputReceiver(features, receiver_tensors, receiver_tensors_alternatives)
+
+
 if __name__ == '__main__':
 # module=eval("/home/jhqiu/git/paragraph_classfication/logs/line-crf2/export","/home/jhqiu/git/paragraph_classfication/data/line-eval-1.tfrecord.tfrecord")
 
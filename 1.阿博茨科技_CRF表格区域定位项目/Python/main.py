@@ -138,6 +138,9 @@ def experiment_fn(run_config, params):
                 receiver_tensors=input_dict)
         elif Config.model.type == 'line-crf':
             from linecrf import line_example_decoder
+            from linecrf.crf_model import Model as CrfModel
+            if CrfModel.supports_dense_input():
+                return line_example_decoder.build_serving_input()
             example = tf.placeholder(dtype=tf.string, shape=[], name='serialized_example')
             input_dict, _ = line_example_decoder.parse_tfexample_fn(example, tf.estimator.ModeKeys.PREDICT)
             for key in input_dict:
@@ -150,6 +153,9 @@ def experiment_fn(run_config, params):
                 'x_l': tf.placeholder(tf.string, shape=[None], name='x_l'),
                 'x_r': tf.placeholder(tf.string, shape=[None], name='x_r'),
                 'l': tf.placeholder(tf.int64, shape=[None], name='l'),
+                # 字符id输入, use_ids为True时使用x_ids, 忽略x_l和x_r
+                'x_ids': tf.placeholder(tf.int64, shape=[None, None], name='x_ids'),
+                'use_ids': tf.placeholder(tf.bool, shape=[], name='use_ids'),
             }
             return tf.estimator.export.ServingInputReceiver(
                 features=input_dict,